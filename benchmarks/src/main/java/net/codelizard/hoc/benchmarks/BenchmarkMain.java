@@ -0,0 +1,48 @@
+package net.codelizard.hoc.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks the way JMH's own main does, but always with the GC profiler, so every run reports bytes
+ * allocated per operation ({@code gc.alloc.rate.norm}) next to the times. Takes the same arguments as JMH, such as a
+ * benchmark name to run only that one, or {@code -rf text -rff results.txt} to save the results.
+ *
+ * @author Codelizard
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    /**
+     * @param args JMH's command line options.
+     * @throws Exception If the options are malformed or a benchmark fails.
+     */
+    public static void main(final String... args) throws Exception {
+
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if(commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if(commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+        if(commandLine.shouldListWithParams()) {
+            new Runner(commandLine).listWithParams(commandLine);
+            return;
+        }
+
+        final Options options = new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+
+    }
+
+}
@@ -0,0 +1,143 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.content.ResourceType;
+import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.PlayerAction;
+import net.codelizard.hoc.logic.PlayerActionBuilder;
+import net.codelizard.hoc.logic.PlayerCommand;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures how much garbage input costs. {@code garbageTurns} sends players sitting at an event a stream of
+ * messages that mostly aren't valid answers, the way spammers do; each one is a full turn that just re-prompts.
+ * {@code parseCommands} and {@code parseWithExceptions} compare parsing the same messages with {@link PlayerCommand}
+ * against the exception-driven parsing it replaced.</p>
+ *
+ * @author Codelizard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+
+    /** Number of distinct players sending messages. */
+    private static final int PLAYERS = 64;
+
+    /** Gets a new player from the title screen to their first event. */
+    private static final String[] TO_FIRST_EVENT = {"/start", "Start Game", "Start!"};
+
+    /** How many messages each player sends per invocation; the length of {@link #MESSAGES}. */
+    private static final int MESSAGE_COUNT = 16;
+
+    /** What the players send: mostly junk, with the odd number and resource name that still isn't a valid answer. */
+    private static final String[] MESSAGES = {
+        "asdf", "lol", "???", "12x", "Physicall", "-", "hello bot", "3: nothing", "99999999999", "time!",
+        "\uD83D\uDE00", "stealth ", "0x10", "", "please", "42"
+    };
+
+    private ActionProcessor processor;
+
+    /** One action per player per message, player-major. */
+    private PlayerAction[] actions;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        HeroesOfCordan.loadContent();
+        processor = new ActionProcessor();
+
+        actions = new PlayerAction[PLAYERS * MESSAGE_COUNT];
+        for(int player = 0; player < PLAYERS; player++) {
+
+            final PlayerActionBuilder builder = new PlayerActionBuilder()
+                .setServiceName("Benchmark")
+                .setServiceUserId(String.valueOf(player))
+                .setUserFirstName("Player " + player);
+
+            for(String nextText : TO_FIRST_EVENT) {
+                processor.handleAction(builder.setInputText(nextText).build());
+            }
+            for(int message = 0; message < MESSAGES.length; message++) {
+                actions[player * MESSAGE_COUNT + message] = builder.setInputText(MESSAGES[message]).build();
+            }
+
+        }
+
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PLAYERS * MESSAGE_COUNT)
+    public void garbageTurns(final Blackhole blackhole) {
+        for(PlayerAction nextAction : actions) {
+            blackhole.consume(processor.handleAction(nextAction));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public void parseCommands(final Blackhole blackhole) {
+        for(String nextMessage : MESSAGES) {
+            final PlayerCommand command = PlayerCommand.parse(nextMessage);
+            blackhole.consume(command.isNumber());
+            blackhole.consume(command.getListIndex());
+            blackhole.consume(command.getResourceType());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public void parseWithExceptions(final Blackhole blackhole) {
+        for(String nextMessage : MESSAGES) {
+            blackhole.consume(legacyNumber(nextMessage));
+            blackhole.consume(legacyListIndex(nextMessage));
+            blackhole.consume(legacyResourceType(nextMessage));
+        }
+    }
+
+    /** How SELECT_HEROES used to read a hero number. */
+    private static int legacyNumber(final String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException nfx) {
+            return -1;
+        }
+    }
+
+    /** How GameState.parseIndex used to read a list entry. */
+    private static int legacyListIndex(final String text) {
+        final int colon = text.indexOf(":");
+        try {
+            return Integer.parseInt(colon >= 0 ? text.substring(0, colon) : text) - 1;
+        } catch (NumberFormatException nfx) {
+            return -1;
+        }
+    }
+
+    /** How EVENT and MONSTER used to read a resource. */
+    private static ResourceType legacyResourceType(final String text) {
+        try {
+            return ResourceType.valueOf(text.toUpperCase());
+        } catch (IllegalArgumentException iax) {
+            return null;
+        }
+    }
+
+}
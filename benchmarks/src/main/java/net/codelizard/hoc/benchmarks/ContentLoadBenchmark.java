@@ -0,0 +1,74 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.content.ContentBundle;
+import net.codelizard.hoc.content.ContentCompiler;
+import net.codelizard.hoc.content.GameContent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares how long the game takes to load its content at startup from the JSON versus from the precompiled bundle.
+ * Each measurement is the first load in a fresh JVM, since that's what startup actually pays, class loading and all.
+ *
+ * @author Codelizard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class ContentLoadBenchmark {
+
+    private byte[] json;
+
+    private byte[] bundle;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = readResource("/heroes_of_cordan.json");
+        bundle = readResource("/heroes_of_cordan.bin");
+    }
+
+    @Benchmark
+    public GameContent loadJson() throws IOException {
+        return ContentCompiler.parseJson(json);
+    }
+
+    @Benchmark
+    public GameContent loadBundle() throws IOException {
+        return ContentBundle.read(new ByteArrayInputStream(bundle), ContentCompiler.checksum(json));
+    }
+
+    private static byte[] readResource(final String name) throws IOException {
+
+        try(InputStream input = ContentLoadBenchmark.class.getResourceAsStream(name)) {
+            if(input == null) {
+                throw new IOException(name + " is missing; build the game with Maven so the bundle is compiled.");
+            }
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            for(int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.GameResponse;
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.ActionDispatcher;
+import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.PlayerAction;
+import net.codelizard.hoc.logic.PlayerActionBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures how turn throughput through {@link ActionDispatcher} scales with the number of worker threads. Several
+ * producer threads share one dispatcher, the way Telegram's update threads do; each invocation pushes a burst of turns
+ * from that producer's own players through it and waits for all of them to finish. A single producer can't submit
+ * turns as fast as a few workers finish them, so it would measure {@code submit()} instead of the workers.</p>
+ *
+ * <p>There's only a scaling curve to see on a machine with at least as many cores as the largest
+ * {@code workerThreads}; use {@code -t} to change the number of producers.</p>
+ *
+ * @author Codelizard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(DispatcherBenchmark.PRODUCERS)
+public class DispatcherBenchmark {
+
+    /** Number of threads submitting turns at once. */
+    static final int PRODUCERS = 4;
+
+    /** Number of distinct players sending turns through each producer. */
+    private static final int PLAYERS = 64;
+
+    /** Number of turns sent per player per invocation. */
+    private static final int TURNS_PER_PLAYER = 8;
+
+    /** Total turns per invocation, for each producer. */
+    private static final int TURNS = PLAYERS * TURNS_PER_PLAYER;
+
+    /**
+     * A short play session that walks into the dungeon and loops between events and fights. Inputs that don't match
+     * the player's current buttons simply re-prompt, which is still a full turn.
+     */
+    private static final String[] SCRIPT = {
+        "/start", "Start Game", "Start!", "Time", "Back to Adventure", "Time", "OK.", "Time", "Back to Adventure"
+    };
+
+    @Param({"1", "2", "4", "8"})
+    public int workerThreads;
+
+    private ActionDispatcher dispatcher;
+
+    @Setup
+    public void setUp() throws Exception {
+        HeroesOfCordan.loadContent();
+        dispatcher = new ActionDispatcher(new ActionProcessor(), workerThreads);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        dispatcher.shutdown(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TURNS)
+    public Object turns(final Producer producer) {
+
+        @SuppressWarnings("unchecked")
+        final CompletableFuture<GameResponse>[] responses = new CompletableFuture[TURNS];
+        for(int index = 0; index < TURNS; index++) {
+            responses[index] = dispatcher.submit(producer.actions[index]);
+        }
+
+        return CompletableFuture.allOf(responses).join();
+
+    }
+
+    /**
+     * One producer thread's players, so that no two producers ever send turns for the same player.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+
+        /** Every action this producer sends during one invocation, in submission order. */
+        private PlayerAction[] actions;
+
+        @Setup
+        public void setUp(final ThreadParams threadParams) {
+
+            final int firstPlayer = threadParams.getThreadIndex() * PLAYERS;
+            actions = new PlayerAction[TURNS];
+            for(int turn = 0; turn < TURNS_PER_PLAYER; turn++) {
+                for(int player = firstPlayer; player < firstPlayer + PLAYERS; player++) {
+                    actions[turn * PLAYERS + player - firstPlayer] = new PlayerActionBuilder()
+                        .setInputText(SCRIPT[turn % SCRIPT.length])
+                        .setServiceName("Benchmark")
+                        .setServiceUserId(String.valueOf(player))
+                        .setUserFirstName("Player " + player)
+                        .build();
+                }
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.GameResponse;
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.ActionProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.telegram.telegrambots.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.api.objects.replykeyboard.buttons.KeyboardButton;
+import org.telegram.telegrambots.api.objects.replykeyboard.buttons.KeyboardRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures turning responses into Telegram reply keyboards. The responses come from sessions played with random
+ * choices, so the mix of keyboards is the one real players see. {@code cachedKeyboards} goes through
+ * {@link GameResponse#telegramReplyKeyboardResponse()} and its keyboard cache; {@code rebuiltKeyboards} builds every
+ * keyboard from scratch, the way that method used to. Compare their {@code gc.alloc.rate.norm} for the allocation.</p>
+ *
+ * @author Codelizard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyboardBenchmark {
+
+    /** Number of sessions to collect responses from. */
+    private static final int SESSIONS = 32;
+
+    /** Number of turns each session is played for. */
+    private static final int TURNS = 64;
+
+    private GameResponse[] responses;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        HeroesOfCordan.loadContent();
+
+        final ActionProcessor processor = new ActionProcessor();
+        final Random random = new Random(1);
+        responses = new GameResponse[SESSIONS * TURNS];
+        for(int session = 0; session < SESSIONS; session++) {
+            final RandomSession next = new RandomSession(processor, session, random);
+            for(int turn = 0; turn < TURNS; turn++) {
+                responses[session * TURNS + turn] = next.play();
+            }
+        }
+
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS * TURNS)
+    public void cachedKeyboards(final Blackhole blackhole) {
+        for(GameResponse nextResponse : responses) {
+            blackhole.consume(nextResponse.telegramReplyKeyboardResponse());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS * TURNS)
+    public void rebuiltKeyboards(final Blackhole blackhole) {
+        for(GameResponse nextResponse : responses) {
+            blackhole.consume(legacyKeyboard(nextResponse.getResponses(), 1));
+        }
+    }
+
+    /** How GameResponse used to build a keyboard for every reply. */
+    private static ReplyKeyboardMarkup legacyKeyboard(final List<String> responses, final int columns) {
+
+        if(responses.isEmpty()) {
+            return null;
+        }
+
+        final List<KeyboardButton> keyboardButtons = new ArrayList<>();
+        final List<KeyboardRow> keyboardRows = new ArrayList<>();
+
+        for(String nextResponse : responses) {
+            keyboardButtons.add(new KeyboardButton().setText(nextResponse));
+        }
+
+        while(!keyboardButtons.isEmpty()) {
+            final KeyboardRow nextRow = new KeyboardRow();
+            for(int column = 0; column < columns && !keyboardButtons.isEmpty(); column++) {
+                nextRow.add(keyboardButtons.remove(0));
+            }
+            keyboardRows.add(nextRow);
+        }
+
+        final ReplyKeyboardMarkup customKeyboard = new ReplyKeyboardMarkup();
+        customKeyboard.setOneTimeKeyboad(true);
+        customKeyboard.setResizeKeyboard(true);
+        customKeyboard.setKeyboard(keyboardRows);
+        return customKeyboard;
+
+    }
+
+}
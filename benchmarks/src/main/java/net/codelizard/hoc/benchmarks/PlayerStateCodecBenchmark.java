@@ -0,0 +1,129 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.PlayerState;
+import net.codelizard.hoc.logic.PlayerStateCodec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PlayerStateCodec} against plain Jackson JSON serialization of the same PlayerStates. The states come
+ * from sessions played with random choices for a random number of turns, so they cover everything from the title
+ * screen to deep in the dungeon. The average encoded size of each format is printed during setup.
+ * <p>
+ * Only encoding is timed for Jackson, because it can't decode what it writes: the JSON only holds what PlayerState's
+ * getters expose, which leaves out the party's heroes, the decks and the random number generator, and RuleSet has no
+ * constructor Jackson could create one with.
+ *
+ * @author Codelizard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerStateCodecBenchmark {
+
+    /** Number of sessions to build states from. */
+    private static final int SESSIONS = 64;
+
+    /** The most turns any one session is played for. */
+    private static final int MAX_TURNS = 400;
+
+    private PlayerStateCodec codec;
+
+    private ObjectMapper jsonMapper;
+
+    private PlayerState[] states;
+
+    /** Every state, already encoded by the codec. */
+    private byte[][] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        HeroesOfCordan.loadContent();
+        codec = new PlayerStateCodec(HeroesOfCordan.getContent());
+
+        //PlayerState's Random has no properties, which Jackson refuses to serialize by default.
+        jsonMapper = new ObjectMapper().disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+
+        final ActionProcessor processor = new ActionProcessor();
+        final Random random = new Random(1);
+        for(int session = 0; session < SESSIONS; session++) {
+            final RandomSession next = new RandomSession(processor, session, random);
+            final int turns = random.nextInt(MAX_TURNS);
+            for(int turn = 0; turn < turns; turn++) {
+                next.play();
+                //Stop once a game ends rather than starting another one in the same session.
+                if(next.isBackAtTitle()) {
+                    break;
+                }
+            }
+        }
+
+        final List<PlayerState> collected = new ArrayList<>();
+        processor.getSessions().forEach((key, state) -> collected.add(state));
+        states = collected.toArray(new PlayerState[0]);
+
+        encoded = new byte[states.length][];
+        long compactBytes = 0;
+        long jsonBytes = 0;
+        for(int index = 0; index < states.length; index++) {
+            encoded[index] = codec.encode(states[index]);
+            compactBytes += encoded[index].length;
+            jsonBytes += jsonMapper.writeValueAsBytes(states[index]).length;
+        }
+
+        System.out.printf("%nAverage encoded size over %d states: codec %d bytes, JSON %d bytes.%n",
+            states.length, compactBytes / states.length, jsonBytes / states.length);
+
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public void encodeCodec(final Blackhole blackhole) {
+        for(PlayerState nextState : states) {
+            blackhole.consume(codec.encode(nextState));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public void decodeCodec(final Blackhole blackhole) throws IOException {
+        for(byte[] nextEncoded : encoded) {
+            blackhole.consume(codec.decode(nextEncoded));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public void encodeJson(final Blackhole blackhole) throws JsonProcessingException {
+        for(PlayerState nextState : states) {
+            blackhole.consume(jsonMapper.writeValueAsBytes(nextState));
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.GameResponse;
+import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.GameState;
+import net.codelizard.hoc.logic.PlayerAction;
+import net.codelizard.hoc.logic.PlayerActionBuilder;
+import net.codelizard.hoc.logic.PlayerState;
+import net.codelizard.hoc.logic.SessionKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A session played with random choices one message at a time, for benchmarks that need realistic states and replies
+ * to measure. The first message is {@code /start}, and every one after that is one of the last reply's buttons picked
+ * at random, or "OK." if it had none.
+ *
+ * @author Codelizard
+ */
+final class RandomSession {
+
+    /** Plays the session's messages. */
+    private final ActionProcessor processor;
+
+    /** The session's key. */
+    private final SessionKey key;
+
+    /** Picks the buttons. */
+    private final Random random;
+
+    /** The message the next call to {@link #play()} sends. */
+    private String nextText = "/start";
+
+    /** How many messages have been sent. */
+    private int turns;
+
+    /**
+     * @param processor Plays the session's messages. Can be shared with other sessions.
+     * @param session The session's number, which sets its key and player name.
+     * @param random Picks the buttons. Can be shared with other sessions, as long as they're played in a fixed order.
+     */
+    RandomSession(final ActionProcessor processor, final int session, final Random random) {
+        this.processor = processor;
+        this.key = SessionKey.of("Benchmark", String.valueOf(session));
+        this.random = random;
+    }
+
+    /**
+     * Sends the next message and picks the one after it.
+     * @return The reply.
+     */
+    GameResponse play() {
+
+        final GameResponse response = processor.handleAction(action(key, nextText));
+        turns++;
+
+        final List<String> options = response.getResponses();
+        nextText = options.isEmpty() ? "OK." : options.get(random.nextInt(options.size()));
+        return response;
+
+    }
+
+    /**
+     * @return The session's key.
+     */
+    SessionKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return The session's state, or {@code null} before the first message.
+     */
+    PlayerState getState() {
+        return processor.getSessions().get(key);
+    }
+
+    /**
+     * @return The message the next call to {@link #play()} sends.
+     */
+    String getNextText() {
+        return nextText;
+    }
+
+    /**
+     * @return Whether or not a game has ended and the session is back on the title screen.
+     */
+    boolean isBackAtTitle() {
+        return turns > 1 && getState().getGameState() == GameState.TITLE;
+    }
+
+    /**
+     * Plays sessions until each reaches the dungeon and is choosing an action.
+     * @param sessions How many sessions to play.
+     * @param maxTurns The most messages any one session is sent before giving up on it.
+     * @return The states of the sessions that reached the dungeon. Never empty.
+     * @throws IllegalStateException If no session reached the dungeon.
+     */
+    static PlayerState[] dungeonStates(final int sessions, final int maxTurns) {
+
+        final ActionProcessor processor = new ActionProcessor();
+        final Random random = new Random(1);
+        final List<PlayerState> collected = new ArrayList<>();
+        for(int session = 0; session < sessions; session++) {
+            final RandomSession next = new RandomSession(processor, session, random);
+            for(int turn = 0; turn < maxTurns; turn++) {
+                next.play();
+                if(next.getState().getGameState() == GameState.ACTION) {
+                    collected.add(next.getState());
+                    break;
+                }
+            }
+        }
+
+        //The benchmarks share their work out over the states, so they can't do anything without one.
+        if(collected.isEmpty()) {
+            throw new IllegalStateException("None of " + sessions + " sessions reached the dungeon in " + maxTurns
+                + " turns.");
+        }
+        return collected.toArray(new PlayerState[0]);
+
+    }
+
+    /**
+     * @param key The session to send the message from.
+     * @param text The message.
+     * @return The message as an action from the session's player.
+     */
+    static PlayerAction action(final SessionKey key, final String text) {
+        return new PlayerActionBuilder()
+            .setInputText(text)
+            .setServiceName(key.getServiceName())
+            .setServiceUserId(key.getServiceUserId())
+            .setUserFirstName("Player " + key.getServiceUserId())
+            .build();
+    }
+
+}
@@ -0,0 +1,72 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.PlayerState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures building the text of a dungeon turn's reply: {@code costListing} lists what beating the upcoming event
+ * and monster would cost, and {@code statusReport} writes out the party's resources. The states come from sessions
+ * played with random choices until they reach the dungeon and are choosing an action. The keyboard that goes with the
+ * text is measured by {@link KeyboardBenchmark}. {@code gc.alloc.rate.norm} is the allocation per reply.</p>
+ *
+ * @author Codelizard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    /** Number of sessions to build states from. */
+    private static final int SESSIONS = 64;
+
+    /** The most turns any one session is played for before giving up on reaching the dungeon. */
+    private static final int MAX_TURNS = 200;
+
+    private PlayerState[] states;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        HeroesOfCordan.loadContent();
+
+        states = RandomSession.dungeonStates(SESSIONS, MAX_TURNS);
+
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public void costListing(final Blackhole blackhole) {
+        for(int index = 0; index < SESSIONS; index++) {
+            final PlayerState nextState = states[index % states.length];
+            blackhole.consume(nextState.upcomingEvent().costListing(nextState));
+            blackhole.consume(nextState.upcomingMonster().costListing(nextState));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SESSIONS)
+    public void statusReport(final Blackhole blackhole) {
+        for(int index = 0; index < SESSIONS; index++) {
+            blackhole.consume(states[index % states.length].statusReport());
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.logic.H2SessionStore;
+import net.codelizard.hoc.logic.InMemorySessionStore;
+import net.codelizard.hoc.logic.MappedFileSessionStore;
+import net.codelizard.hoc.logic.SessionKey;
+import net.codelizard.hoc.logic.SessionStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <p>Measures read and write latency of every {@link SessionStore} backend, so that one can be picked for
+ * {@code hoc.sessions.store} by numbers rather than by guesswork. Each store is filled with records about the size of
+ * an encoded PlayerState before measuring, and then read and written at random keys.</p>
+ *
+ * <p>Whether each store is correct is checked by SessionStoreTest, not here.</p>
+ *
+ * @author Codelizard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionStoreBenchmark {
+
+    /** Number of sessions in the store while measuring. */
+    private static final int SESSIONS = 10000;
+
+    /** Size of each record, roughly the average encoded PlayerState. */
+    private static final int RECORD_BYTES = 220;
+
+    @Param({"memory", "mmap", "h2"})
+    private String backend;
+
+    private Path directory;
+
+    private SessionStore store;
+
+    private SessionKey[] keys;
+
+    private byte[] record;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("hoc-store-benchmark");
+
+        store = openStore();
+        keys = new SessionKey[SESSIONS];
+        record = new byte[RECORD_BYTES];
+        new Random(1).nextBytes(record);
+        for(int index = 0; index < SESSIONS; index++) {
+            keys[index] = SessionKey.of("Benchmark", String.valueOf(index));
+            store.write(keys[index], record);
+        }
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        store.close();
+
+        //H2 leaves its database file behind.
+        try(Stream<Path> leftovers = Files.list(directory)) {
+            for(Path nextFile : (Iterable<Path>) leftovers::iterator) {
+                Files.delete(nextFile);
+            }
+        }
+        Files.delete(directory);
+
+    }
+
+    @Benchmark
+    public byte[] read() throws IOException {
+        return store.read(keys[ThreadLocalRandom.current().nextInt(SESSIONS)]);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        store.write(keys[ThreadLocalRandom.current().nextInt(SESSIONS)], record);
+    }
+
+    private SessionStore openStore() throws IOException {
+        switch(backend) {
+            case "memory":
+                return new InMemorySessionStore();
+            case "mmap":
+                return new MappedFileSessionStore(directory.resolve("sessions.bin"));
+            case "h2":
+                return new H2SessionStore(directory.resolve("sessions"));
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+}
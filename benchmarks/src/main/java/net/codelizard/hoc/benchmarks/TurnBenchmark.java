@@ -0,0 +1,144 @@
+package net.codelizard.hoc.benchmarks;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.GameState;
+import net.codelizard.hoc.logic.PlayerAction;
+import net.codelizard.hoc.logic.PlayerState;
+import net.codelizard.hoc.logic.PlayerStateCodec;
+import net.codelizard.hoc.logic.SessionKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures whole turns through {@link ActionProcessor#handleAction}, one game state at a time: the player is sitting
+ * at the chosen state and sends one of the buttons they were offered. The states are snapshots taken from sessions
+ * played with random choices, so the mix of floors, parties and answers is the one real players see.</p>
+ *
+ * <p>A turn changes the player's state, so each one starts by decoding its snapshot back into the session registry.
+ * {@code restore} does only that; subtract it from {@code turn} for the cost of the turn itself, and do the same with
+ * {@code gc.alloc.rate.norm} for the bytes a turn allocates.</p>
+ *
+ * @author Codelizard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TurnBenchmark {
+
+    /** Number of snapshots taken of the chosen state. */
+    private static final int SNAPSHOTS = 64;
+
+    /** The most snapshots taken from any one session, so that a few long sessions don't make up the whole mix. */
+    private static final int SNAPSHOTS_PER_SESSION = 4;
+
+    /** The most sessions played looking for snapshots, for states that random play rarely reaches. */
+    private static final int MAX_SESSIONS = 2_000;
+
+    /** The most turns any one session is played for. */
+    private static final int MAX_TURNS = 400;
+
+    /** The state the player is sitting at when the turn starts. */
+    @Param({"ACTION", "EVENT", "MONSTER", "LOOT_CONSUMABLE", "LOOT_EQUIPMENT", "TRANSMUTE"})
+    public String gameState;
+
+    private PlayerStateCodec codec;
+
+    private ActionProcessor processor;
+
+    /** Each snapshot's session. */
+    private SessionKey[] keys;
+
+    /** Each snapshot, encoded by the codec. */
+    private byte[][] snapshots;
+
+    /** The message sent from each snapshot. */
+    private PlayerAction[] actions;
+
+    @Setup
+    public void setUp() throws Exception {
+
+        HeroesOfCordan.loadContent();
+        codec = new PlayerStateCodec(HeroesOfCordan.getContent());
+
+        final GameState wanted = GameState.valueOf(gameState);
+        final ActionProcessor player = new ActionProcessor();
+        final Random random = new Random(1);
+        keys = new SessionKey[SNAPSHOTS];
+        snapshots = new byte[SNAPSHOTS][];
+        actions = new PlayerAction[SNAPSHOTS];
+
+        int taken = 0;
+        for(int session = 0; session < MAX_SESSIONS && taken < SNAPSHOTS; session++) {
+
+            final RandomSession next = new RandomSession(player, session, random);
+            int takenHere = 0;
+            for(int turn = 0; turn < MAX_TURNS && taken < SNAPSHOTS; turn++) {
+
+                final PlayerState state = next.getState();
+                if(state != null && state.getGameState() == wanted && takenHere < SNAPSHOTS_PER_SESSION) {
+                    //Each snapshot gets a session of its own, so replaying one never disturbs another.
+                    keys[taken] = SessionKey.of("Snapshot", String.valueOf(taken));
+                    snapshots[taken] = codec.encode(state);
+                    actions[taken] = RandomSession.action(keys[taken], next.getNextText());
+                    taken++;
+                    takenHere++;
+                }
+
+                next.play();
+                //Stop once a game ends rather than starting another one in the same session.
+                if(next.isBackAtTitle()) {
+                    break;
+                }
+
+            }
+
+        }
+
+        if(taken < SNAPSHOTS) {
+            throw new IllegalStateException("Only " + taken + " of " + SNAPSHOTS + " snapshots of " + wanted
+                + " were found in " + MAX_SESSIONS + " sessions.");
+        }
+
+        processor = new ActionProcessor();
+
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SNAPSHOTS)
+    public void turn(final Blackhole blackhole) throws IOException {
+        for(int index = 0; index < SNAPSHOTS; index++) {
+            processor.getSessions().put(keys[index], codec.decode(snapshots[index]));
+            blackhole.consume(processor.handleAction(actions[index]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SNAPSHOTS)
+    public void restore(final Blackhole blackhole) throws IOException {
+        for(int index = 0; index < SNAPSHOTS; index++) {
+            processor.getSessions().put(keys[index], codec.decode(snapshots[index]));
+            blackhole.consume(processor.getSessions().get(keys[index]));
+        }
+    }
+
+}
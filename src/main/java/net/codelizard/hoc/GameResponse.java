@@ -1,9 +1,6 @@
 package net.codelizard.hoc;
 
 import org.telegram.telegrambots.api.objects.replykeyboard.ReplyKeyboard;
-import org.telegram.telegrambots.api.objects.replykeyboard.ReplyKeyboardMarkup;
-import org.telegram.telegrambots.api.objects.replykeyboard.buttons.KeyboardButton;
-import org.telegram.telegrambots.api.objects.replykeyboard.buttons.KeyboardRow;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,6 +14,16 @@ import java.util.List;
  */
 public final class GameResponse {
     
+    /** System property for how many Telegram keyboards to keep built. */
+    private static final String KEYBOARD_CACHE_PROPERTY = "hoc.keyboards.cached";
+    
+    /** How many Telegram keyboards to keep built if {@value #KEYBOARD_CACHE_PROPERTY} isn't set. */
+    private static final int DEFAULT_KEYBOARD_CACHE_LIMIT = 4096;
+    
+    /** Telegram keyboards, shared between every response that shows the same options. */
+    private static final TelegramKeyboardCache KEYBOARDS = new TelegramKeyboardCache(
+        Integer.getInteger(KEYBOARD_CACHE_PROPERTY, DEFAULT_KEYBOARD_CACHE_LIMIT));
+    
     /** The text of the message being sent back to the user. */
     private final String text;
     
@@ -64,6 +71,13 @@ public final class GameResponse {
         return responses;
     }
     
+    /**
+     * @return The number of columns of buttons when using {@link #telegramReplyKeyboardResponse()}.
+     */
+    public int getColumns() {
+        return columns;
+    }
+    
     /**
      * Sets the number of columns of buttons when using {@link #telegramReplyKeyboardResponse()}.
      * @param columns The new number of columns to use when listing buttons.
@@ -74,7 +88,8 @@ public final class GameResponse {
     
     /**
      * Converts the responses provided into a ReplyKeyboard to be sent back to the user. (When no responses were given,
-     * returns {@code null} so that their default keyboard will be used) Only usable with the Telegram API.
+     * returns {@code null} so that their default keyboard will be used) Only usable with the Telegram API. The keyboard
+     * comes from a cache shared by every response, and must not be modified.
      * @return A ReplyKeyboard appropriate to the responses outlined at object creation.
      */
     public ReplyKeyboard telegramReplyKeyboardResponse() {
@@ -85,30 +100,17 @@ public final class GameResponse {
             
         } else {
             
-            final List<KeyboardButton> keyboardButtons = new ArrayList<>();
-            final List<KeyboardRow> keyboardRows = new ArrayList<>();
-            
-            for(String nextResponse : responses) {
-                keyboardButtons.add(new KeyboardButton().setText(nextResponse));
-            }
-            
-            while(!keyboardButtons.isEmpty()) {
-                final KeyboardRow nextRow = new KeyboardRow();
-                for(int column = 0; column < columns && !keyboardButtons.isEmpty(); column++) {
-                    nextRow.add(keyboardButtons.remove(0));
-                }
-                keyboardRows.add(nextRow);
-            }
-            
-            final ReplyKeyboardMarkup customKeyboard = new ReplyKeyboardMarkup();
-            customKeyboard.setOneTimeKeyboad(true); //All HoC keyboards are only useful for one message.
-            customKeyboard.setResizeKeyboard(true);
-            customKeyboard.setKeyboard(keyboardRows);
-            
-            return customKeyboard;
+            return KEYBOARDS.get(responses, columns);
             
         }
         
     }
     
+    /**
+     * @return The cache that {@link #telegramReplyKeyboardResponse()} takes keyboards from, for its metrics.
+     */
+    public static TelegramKeyboardCache getKeyboardCache() {
+        return KEYBOARDS;
+    }
+    
 }
@@ -1,14 +1,33 @@
 package net.codelizard.hoc;
 
+import net.codelizard.hoc.content.ContentBundle;
+import net.codelizard.hoc.content.ContentCompiler;
+import net.codelizard.hoc.content.ContentSource;
 import net.codelizard.hoc.content.DynamicMessages;
 import net.codelizard.hoc.content.GameContent;
+import net.codelizard.hoc.logic.ActionDispatcher;
 import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.H2SessionStore;
+import net.codelizard.hoc.logic.InMemorySessionStore;
+import net.codelizard.hoc.logic.MappedFileSessionStore;
+import net.codelizard.hoc.logic.PlayerStateCodec;
+import net.codelizard.hoc.logic.SessionRegistry;
+import net.codelizard.hoc.logic.SessionStore;
+import net.codelizard.hoc.persistence.SessionPersistence;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.telegram.telegrambots.TelegramBotsApi;
 import org.telegram.telegrambots.TelegramApiException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Entry point of the program, which launches all supported platform bots.
@@ -20,11 +39,62 @@ public class HeroesOfCordan {
     /** File in src/main/resources that contains the game data. */
     private static final String CONTENT_FILENAME = "/heroes_of_cordan.json";
     
+    /** The game data precompiled by ContentCompiler, which is put next to the JSON at build time. */
+    private static final String CONTENT_BUNDLE_FILENAME = "/heroes_of_cordan.bin";
+    
+    /** System property naming a content JSON file to use instead of the built-in content, reloaded when it changes. */
+    private static final String CONTENT_FILE_PROPERTY = "hoc.content.file";
+    
+    /** System property naming the directory that the action journal and snapshots are kept in. */
+    private static final String DATA_DIR_PROPERTY = "hoc.data.dir";
+    
+    /** The directory that the action journal and snapshots are kept in, if the system property isn't set. */
+    private static final String DEFAULT_DATA_DIR = "data";
+    
+    /** System property setting the most player sessions to keep in memory before idle ones are moved to disk. */
+    private static final String RESIDENT_SESSIONS_PROPERTY = "hoc.sessions.resident";
+    
+    /** The most player sessions to keep in memory, if the system property isn't set. */
+    private static final int DEFAULT_RESIDENT_SESSIONS = 50000;
+    
+    /** System property choosing where idle sessions are moved to: "memory", "mmap" or "h2". */
+    private static final String SESSION_STORE_PROPERTY = "hoc.sessions.store";
+    
+    /** Where idle sessions are moved to, if the system property isn't set. */
+    private static final String DEFAULT_SESSION_STORE = "mmap";
+    
+    /** File in the data directory that idle sessions are moved to by the mmap store. */
+    private static final String PASSIVATION_FILENAME = "passivated.bin";
+    
+    /** Database in the data directory that idle sessions are moved to by the h2 store. */
+    private static final String PASSIVATION_DATABASE = "passivated";
+    
+    /** How many minutes to wait between snapshots of every player's state. */
+    private static final long SNAPSHOT_INTERVAL_MINUTES = 5;
+    
+    /** How many minutes to wait between lines of metrics in the log. */
+    private static final long METRICS_INTERVAL_MINUTES = 1;
+    
+    /** How many seconds shutdown waits for each of queued turns and queued replies. */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    
     /** The action processor to handle user commands. */
     private static ActionProcessor actionProcessor;
     
-    /** The game content to read events, monsters etc from. */
-    private static GameContent gameContent;
+    /** Runs user commands from all platform bots on a shared pool of worker threads. */
+    private static ActionDispatcher actionDispatcher;
+    
+    /** Keeps every player's progress safe across restarts. */
+    private static SessionPersistence sessionPersistence;
+    
+    /** The game content to read events, monsters etc from, which may be reloaded while the game is running. */
+    private static ContentSource contentSource;
+    
+    /** The Telegram interface, once it has started. Read by the shutdown hook, which can run at any time. */
+    private static volatile TelegramHocBot telegramBot;
+    
+    /** Writes the metrics log lines. */
+    private static ScheduledExecutorService metricsScheduler;
     
     /**
      * @param args the command line arguments
@@ -33,32 +103,166 @@ public class HeroesOfCordan {
      */
     public static void main(String... args) throws Exception {
         
-        gameContent = loadGameContent();
+        loadContent();
         
-        actionProcessor = new ActionProcessor();
+        final String contentFile = System.getProperty(CONTENT_FILE_PROPERTY);
+        if(contentFile != null) {
+            contentSource.watch(Paths.get(contentFile));
+        }
+        
+        final Path dataDirectory = Paths.get(System.getProperty(DATA_DIR_PROPERTY, DEFAULT_DATA_DIR));
+        final PlayerStateCodec codec = new PlayerStateCodec(contentSource::getLatest);
+        
+        actionProcessor = new ActionProcessor(new SessionRegistry(
+            Integer.getInteger(RESIDENT_SESSIONS_PROPERTY, DEFAULT_RESIDENT_SESSIONS),
+            openSessionStore(dataDirectory),
+            codec
+        ));
+        recoverSessions(dataDirectory, codec);
+        actionDispatcher = new ActionDispatcher(actionProcessor);
+        Runtime.getRuntime().addShutdownHook(new Thread(HeroesOfCordan::shutdown, "HoC-Shutdown"));
         
         startTelegramBot();
+        startMetricsLog();
         
         System.out.println("HoC is ready.");
         
     }
     
     /**
-     * Loads the game's content from disk and returns it.
+     * Loads the game's content without starting any platform bots. Tools that drive the game logic directly (such as
+     * benchmarks) must call this before handling any actions.
+     * @throws IOException If there is an error reading the game content.
+     */
+    public static void loadContent() throws IOException {
+        final String contentFile = System.getProperty(CONTENT_FILE_PROPERTY);
+        contentSource = new ContentSource(
+            contentFile == null ? loadGameContent() : loadContentFile(Paths.get(contentFile))
+        );
+    }
+    
+    /**
+     * Loads the game's content and returns it. The precompiled bundle is used if there is one that matches the content
+     * JSON; otherwise the JSON is parsed directly.
      * @return The game content in native form.
      * @throws IOException If there is an error reading the game content.
      */
     private static GameContent loadGameContent() throws IOException {
         
-        final ObjectMapper jsonMapper = new ObjectMapper();
-        final GameContent content = jsonMapper.readValue(
-            TelegramHocBot.class.getResourceAsStream(CONTENT_FILENAME), GameContent.class
-        );
-        content.inferObjectTiers();
+        final long started = System.nanoTime();
+        final byte[] json = readResource(CONTENT_FILENAME);
+        if(json == null) {
+            throw new IOException("Game content " + CONTENT_FILENAME + " is missing.");
+        }
+        
+        GameContent content = null;
+        String source = CONTENT_FILENAME;
+        try(InputStream bundle = HeroesOfCordan.class.getResourceAsStream(CONTENT_BUNDLE_FILENAME)) {
+            if(bundle != null) {
+                content = ContentBundle.read(bundle, ContentCompiler.checksum(json));
+                source = CONTENT_BUNDLE_FILENAME;
+            }
+        } catch (IOException x) {
+            System.out.println("Ignoring content bundle: " + x.getMessage());
+        }
+        
+        if(content == null) {
+            content = ContentCompiler.parseJson(json);
+        }
+        content.getIndex();
+        
+        System.out.printf("Loaded game content from %s in %.1f ms.%n", source, (System.nanoTime() - started) / 1e6);
         return content;
         
     }
     
+    /**
+     * Loads the game's content from a JSON file outside the JAR, validating it the same way the build does.
+     * @param file The content JSON file.
+     * @return The game content in native form.
+     * @throws IOException If there is an error reading the file, or the content is invalid.
+     */
+    private static GameContent loadContentFile(final Path file) throws IOException {
+        
+        final long started = System.nanoTime();
+        final GameContent content = ContentCompiler.parseJson(Files.readAllBytes(file));
+        
+        final List<String> problems = ContentCompiler.validate(content);
+        if(!problems.isEmpty()) {
+            throw new IOException("Game content " + file + " is invalid: " + String.join(" ", problems));
+        }
+        content.getIndex();
+        
+        System.out.printf("Loaded game content from %s in %.1f ms.%n", file, (System.nanoTime() - started) / 1e6);
+        return content;
+        
+    }
+    
+    /**
+     * @param name The name of a resource in src/main/resources.
+     * @return The resource's contents, or {@code null} if there is no such resource.
+     * @throws IOException If there is an error reading the resource.
+     */
+    private static byte[] readResource(final String name) throws IOException {
+        
+        try(InputStream input = HeroesOfCordan.class.getResourceAsStream(name)) {
+            if(input == null) {
+                return null;
+            }
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            for(int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+        
+    }
+    
+    /**
+     * Opens the session store chosen by the {@value #SESSION_STORE_PROPERTY} system property.
+     * @param dataDirectory The directory to keep the store's files in.
+     * @return The opened store.
+     * @throws IOException If the store couldn't be opened.
+     */
+    private static SessionStore openSessionStore(final Path dataDirectory) throws IOException {
+        
+        final String storeName = System.getProperty(SESSION_STORE_PROPERTY, DEFAULT_SESSION_STORE);
+        switch(storeName) {
+            case "memory":
+                return new InMemorySessionStore();
+            case "mmap":
+                return new MappedFileSessionStore(dataDirectory.resolve(PASSIVATION_FILENAME));
+            case "h2":
+                return new H2SessionStore(dataDirectory.resolve(PASSIVATION_DATABASE));
+            default:
+                throw new IllegalArgumentException("Unknown session store \"" + storeName + "\"; expected memory, "
+                    + "mmap or h2.");
+        }
+        
+    }
+    
+    /**
+     * Restores every player's session from the snapshot and journal on disk, then starts journaling new actions and
+     * taking regular snapshots.
+     * @param dataDirectory The directory the journal and snapshots are kept in.
+     * @param codec Converts states to and from their saved form.
+     * @throws IOException If there is an error reading the saved sessions.
+     */
+    private static void recoverSessions(final Path dataDirectory, final PlayerStateCodec codec) throws IOException {
+        
+        System.out.print("Recovering sessions... ");
+        
+        sessionPersistence = new SessionPersistence(dataDirectory, actionProcessor, codec);
+        final long replayed = sessionPersistence.recover();
+        sessionPersistence.startSnapshots(SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        
+        final SessionRegistry sessions = actionProcessor.getSessions();
+        System.out.println("Recovered sessions (" + sessions.size() + " in memory, " + sessions.passivatedSize()
+            + " passivated, " + replayed + " actions replayed).");
+        
+    }
+    
     /**
      * Initializes and starts the Telegram interface to HoC.
      */
@@ -67,24 +271,108 @@ public class HeroesOfCordan {
         System.out.print("Starting Telegram bot... ");
         
         final TelegramBotsApi botApi = new TelegramBotsApi();
-        botApi.registerBot(new TelegramHocBot(actionProcessor));
+        telegramBot = new TelegramHocBot(actionDispatcher);
+        botApi.registerBot(telegramBot);
         
         System.out.println("Started.");
         
     }
     
     /**
-     * @return The game's content in native object form.
+     * Starts writing a line of metrics to the log every {@value #METRICS_INTERVAL_MINUTES} minutes.
+     */
+    private static void startMetricsLog() {
+        
+        metricsScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "HoC-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        metricsScheduler.scheduleAtFixedRate(() -> {
+            try {
+                System.out.println(metricsReport());
+            } catch (RuntimeException x) {
+                //A failed report mustn't stop the ones after it.
+                x.printStackTrace();
+            }
+        }, METRICS_INTERVAL_MINUTES, METRICS_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        
+    }
+    
+    /**
+     * @return One line summing up how the send queue, sessions, keyboard cache and content are doing.
+     */
+    private static String metricsReport() {
+        
+        final StringBuilder report = new StringBuilder("Metrics:");
+        final TelegramHocBot bot = telegramBot;
+        if(bot != null) {
+            report.append(" sends[").append(bot.getSendQueue().metricsReport()).append(']');
+        }
+        report.append(" turns[in-flight=").append(actionDispatcher.getInFlightCount())
+            .append(" players=").append(actionDispatcher.activeLanes()).append(']');
+        report.append(" sessions[").append(actionProcessor.getSessions().metricsReport()).append(']');
+        report.append(" keyboards[").append(GameResponse.getKeyboardCache().metricsReport()).append(']');
+        report.append(" content[").append(contentSource.metricsReport()).append(']');
+        return report.toString();
+        
+    }
+    
+    /**
+     * Shutdown hook. Lets queued turns finish, then delivers their replies, then closes the journal, so that every move
+     * a player was told about is on disk and every move on disk was told to its player.
+     */
+    private static void shutdown() {
+        
+        System.out.println("Shutting down...");
+        if(metricsScheduler != null) {
+            metricsScheduler.shutdownNow();
+        }
+        
+        try {
+            if(!actionDispatcher.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.out.println("Gave up waiting for " + actionDispatcher.getInFlightCount() + " queued turns.");
+            }
+            final TelegramHocBot bot = telegramBot;
+            if(bot != null && !bot.getSendQueue().shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.out.println("Gave up waiting for " + bot.getSendQueue().getQueueDepth() + " queued replies.");
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+        
+        try {
+            sessionPersistence.close();
+        } catch (IOException x) {
+            x.printStackTrace();
+        }
+        
+        System.out.println(metricsReport());
+        System.out.println("HoC has shut down.");
+        
+    }
+    
+    /**
+     * @return The game's content in native object form: the version pinned by the current turn, if this is called
+     * during one, or else the latest version.
      */
     public static GameContent getContent() {
-        return gameContent;
+        return contentSource.get();
+    }
+    
+    /**
+     * @return Where the game's content comes from.
+     */
+    public static ContentSource getContentSource() {
+        return contentSource;
     }
     
     /**
      * @return The loaded list of dynamic messages.
      */
     public static DynamicMessages getDynamicMessages() {
-        return gameContent.getDynamicMessages();
+        return getContent().getDynamicMessages();
     }
     
     /**
@@ -92,7 +380,7 @@ public class HeroesOfCordan {
      * @return The loaded static message.
      */
     public static String getStaticMessage(String identifier) {
-        return gameContent.getStaticMessage(identifier);
+        return getContent().getStaticMessage(identifier);
     }
     
 }
@@ -1,10 +1,9 @@
 package net.codelizard.hoc;
 
-import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.ActionDispatcher;
 import net.codelizard.hoc.logic.PlayerAction;
 import net.codelizard.hoc.logic.PlayerActionBuilder;
 
-import org.telegram.telegrambots.api.methods.send.SendMessage;
 import org.telegram.telegrambots.api.objects.Message;
 import org.telegram.telegrambots.api.objects.Update;
 import org.telegram.telegrambots.api.objects.User;
@@ -26,16 +25,23 @@ public class TelegramHocBot extends TelegramLongPollingBot {
 
     /** Full name of the bot. */
     private static final String BOT_USERNAME = "Heroes of Cordan";
+    
+    /** How many replies can be in flight to Telegram at once. */
+    private static final int SENDER_THREADS = 4;
 
     /** Telegram bot API token. */
     private final String apiToken;
     
-    /** The action processor to handle user commands. */
-    private final ActionProcessor actionProcessor;
+    /** The dispatcher to hand user commands to. */
+    private final ActionDispatcher actionDispatcher;
+    
+    /** Delivers replies to Telegram without holding up the threads that produce them. */
+    private final TelegramSendQueue sendQueue;
     
-    public TelegramHocBot(final ActionProcessor actionProcessor) throws IOException, TelegramApiException {
-        this.actionProcessor = actionProcessor;
+    public TelegramHocBot(final ActionDispatcher actionDispatcher) throws IOException, TelegramApiException {
+        this.actionDispatcher = actionDispatcher;
         this.apiToken = loadApiToken();
+        this.sendQueue = new TelegramSendQueue(this::sendMessage, SENDER_THREADS);
     }
 
     @Override
@@ -65,19 +71,19 @@ public class TelegramHocBot extends TelegramLongPollingBot {
                     .setUserFirstName(sender.getFirstName())
                     .build();
                 
-                GameResponse response = actionProcessor.handleAction(action);
+                final String chatId = message.getChatId().toString();
                 
-                final SendMessage telegramResponse = new SendMessage();
-                telegramResponse.setChatId(message.getChatId().toString());
-                telegramResponse.setText(response.getText());
-                telegramResponse.setReplyMarkup(response.telegramReplyKeyboardResponse());
-
-                try {
-                    sendMessage(telegramResponse);
-                } catch (TelegramApiException tax) {
+                //The turn runs on a worker thread, so the update thread is free to pick up other players' messages.
+                actionDispatcher.submit(action).whenComplete((response, x) -> {
+                    if(x == null) {
+                        sendQueue.enqueue(chatId, response);
+                        return;
+                    }
                     //TODO: Log it
-                    tax.printStackTrace();
-                }
+                    x.printStackTrace();
+                    sendQueue.enqueue(chatId,
+                        new GameResponse(HeroesOfCordan.getStaticMessage("error.update") + x.getMessage()));
+                });
 
             }
 
@@ -85,6 +91,13 @@ public class TelegramHocBot extends TelegramLongPollingBot {
 
     }
     
+    /**
+     * @return The queue replies are delivered through, for monitoring.
+     */
+    public TelegramSendQueue getSendQueue() {
+        return sendQueue;
+    }
+    
     /**
      * Retrieves the bot's Telegram API token.
      * @return The API token for Telegram.
@@ -0,0 +1,180 @@
+package net.codelizard.hoc;
+
+import org.telegram.telegrambots.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.api.objects.replykeyboard.buttons.KeyboardButton;
+import org.telegram.telegrambots.api.objects.replykeyboard.buttons.KeyboardRow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Interns Telegram reply keyboards by their options and column count, so that the same few keyboards (yes/no,
+ * resource choices, the ACTION menu...) are built once and then shared by every reply that shows them. All operations
+ * are safe to call from any thread.</p>
+ *
+ * <p>The cache holds at most a fixed number of keyboards. Almost every reply uses one of a few hundred, so rather than
+ * tracking which are least recently used, the cache simply starts over when it fills up.</p>
+ *
+ * <p>Keyboards handed out by the cache are shared and must never be modified.</p>
+ *
+ * @author Codelizard
+ */
+public final class TelegramKeyboardCache {
+
+    /** Interned keyboards, by their options and column count. */
+    private final ConcurrentHashMap<Key, ReplyKeyboardMarkup> keyboards = new ConcurrentHashMap<>();
+
+    /** The most keyboards to keep. */
+    private final int limit;
+
+    /** Lookups that found the keyboard already built. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Lookups that had to build the keyboard. */
+    private final LongAdder misses = new LongAdder();
+
+    /** Keyboards dropped because the cache was full. */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new, empty TelegramKeyboardCache.
+     * @param limit The most keyboards to keep.
+     * @throws IllegalArgumentException If the limit isn't positive.
+     */
+    public TelegramKeyboardCache(final int limit) {
+        if(limit < 1) {
+            throw new IllegalArgumentException("Keyboard cache limit must be positive, not " + limit + ".");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the keyboard for a list of options, building it if it isn't cached.
+     * @param options The options to show, one button each. Must not be modified during the call.
+     * @param columns How many buttons to put in each row.
+     * @return The keyboard, shared and never to be modified.
+     */
+    public ReplyKeyboardMarkup get(final List<String> options, final int columns) {
+
+        //Look up by the caller's list, and only copy it if the keyboard has to be cached.
+        final ReplyKeyboardMarkup cached = keyboards.get(new Key(options, columns));
+        if(cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        final ReplyKeyboardMarkup built = build(options, columns);
+        if(keyboards.size() >= limit) {
+            final int dropped = keyboards.size();
+            keyboards.clear();
+            evictions.add(dropped);
+        }
+        final ReplyKeyboardMarkup raced = keyboards.putIfAbsent(
+            new Key(Collections.unmodifiableList(new ArrayList<>(options)), columns), built);
+        return raced != null ? raced : built;
+
+    }
+
+    /**
+     * @return How many keyboards are cached.
+     */
+    public int size() {
+        return keyboards.size();
+    }
+
+    /**
+     * @return How many lookups found the keyboard already built.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many lookups had to build the keyboard.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return How many keyboards have been dropped because the cache was full.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return A one-line summary of the cache's metrics, for logging.
+     */
+    public String metricsReport() {
+
+        final long hitCount = getHitCount();
+        final long lookups = hitCount + getMissCount();
+
+        return String.format(
+            "keyboards=%d hits=%d misses=%d hit-rate=%.1f%% evictions=%d",
+            size(), hitCount, getMissCount(), lookups == 0 ? 100.0 : 100.0 * hitCount / lookups, getEvictionCount()
+        );
+
+    }
+
+    private static ReplyKeyboardMarkup build(final List<String> options, final int columns) {
+
+        final List<KeyboardRow> keyboardRows = new ArrayList<>((options.size() + columns - 1) / columns);
+        for(int first = 0; first < options.size(); first += columns) {
+            final KeyboardRow nextRow = new KeyboardRow();
+            for(int option = first; option < first + columns && option < options.size(); option++) {
+                nextRow.add(new KeyboardButton().setText(options.get(option)));
+            }
+            keyboardRows.add(nextRow);
+        }
+
+        final ReplyKeyboardMarkup customKeyboard = new ReplyKeyboardMarkup();
+        customKeyboard.setOneTimeKeyboad(true); //All HoC keyboards are only useful for one message.
+        customKeyboard.setResizeKeyboard(true);
+        customKeyboard.setKeyboard(Collections.unmodifiableList(keyboardRows));
+        return customKeyboard;
+
+    }
+
+    /**
+     * A keyboard's options and column count.
+     */
+    private static final class Key {
+
+        /** The options, one button each. */
+        private final List<String> options;
+
+        /** How many buttons are in each row. */
+        private final int columns;
+
+        /** Cached, since every lookup needs it. */
+        private final int hash;
+
+        Key(final List<String> options, final int columns) {
+            this.options = options;
+            this.columns = columns;
+            this.hash = 31 * options.hashCode() + columns;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if(!(other instanceof Key)) {
+                return false;
+            }
+            final Key otherKey = (Key) other;
+            return hash == otherKey.hash && columns == otherKey.columns && options.equals(otherKey.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
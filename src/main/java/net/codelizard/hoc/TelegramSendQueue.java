@@ -0,0 +1,603 @@
+package net.codelizard.hoc;
+
+import org.telegram.telegrambots.TelegramApiException;
+import org.telegram.telegrambots.api.methods.send.SendMessage;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Delivers GameResponses to Telegram on dedicated sender threads, so the threads producing responses never wait on
+ * a Telegram round-trip.</p>
+ *
+ * <p>Messages to the same chat are delivered one at a time, in the order they were queued. Sends are paced with token
+ * buckets to stay under Telegram's global and per-chat rate limits: bursts are smoothed out instead of being refused,
+ * and when the global limit is the bottleneck, interactive replies go out before bulk messages such as announcements.
+ * If Telegram still rejects a message with "429 Too Many Requests", only that chat is paused: its message is retried
+ * after the delay Telegram asked for, and other chats keep being delivered in the meantime.</p>
+ *
+ * @author Codelizard
+ */
+public class TelegramSendQueue {
+
+    /** Telegram's documented limit on messages per second across all chats. */
+    private static final double GLOBAL_MESSAGES_PER_SECOND = 30;
+
+    /** Telegram's documented limit on messages per second to a single chat. */
+    private static final double CHAT_MESSAGES_PER_SECOND = 1;
+
+    /** How many messages a single chat may receive in a quick burst before pacing kicks in. */
+    private static final int CHAT_BURST = 3;
+
+    /** Finds the delay in Telegram's "Too Many Requests: retry after N" error description. */
+    private static final Pattern RETRY_AFTER = Pattern.compile("retry after (\\d+)", Pattern.CASE_INSENSITIVE);
+
+    /** How long to wait before retrying when Telegram throttles us without saying for how long. */
+    private static final long DEFAULT_RETRY_SECONDS = 1;
+
+    /** How often shutdown checks whether the queue has been delivered, in milliseconds. */
+    private static final long DRAIN_POLL_MILLIS = 10;
+
+    /** How urgently a message should be sent. */
+    public enum Priority {
+
+        /** A reply to something a player just did. They're waiting on it. */
+        INTERACTIVE,
+
+        /** A message nobody is actively waiting on, such as an announcement. */
+        BULK
+
+    }
+
+    /** Sends a message to Telegram, blocking until it's been accepted. */
+    public interface Transport {
+
+        /**
+         * @param message The message to send.
+         * @throws TelegramApiException If Telegram rejected the message.
+         */
+        void send(SendMessage message) throws TelegramApiException;
+
+    }
+
+    /** Gets told about every message that's delivered. */
+    public interface DeliveryListener {
+
+        /**
+         * @param chatId The chat the message was delivered to.
+         * @param priority The priority the message was queued with.
+         * @param waitedNanos How long the message waited in the queue before it was sent, in nanoseconds.
+         * @param latencyNanos How long it took from queueing the message until Telegram accepted it, in nanoseconds.
+         */
+        void delivered(String chatId, Priority priority, long waitedNanos, long latencyNanos);
+
+    }
+
+    /** Performs the actual sends. */
+    private final Transport transport;
+
+    /** The threads messages are sent on. */
+    private final ExecutorService senders;
+
+    /** Wakes up paced or throttled chats once their delay has passed. */
+    private final ScheduledExecutorService retryScheduler;
+
+    /** Decides which chat sends next, and when. */
+    private final Thread pacer;
+
+    /** Chats with a message ready to send, most urgent first. Only ever taken from by the pacer. */
+    private final PriorityBlockingQueue<ReadyLane> ready = new PriorityBlockingQueue<>();
+
+    /** Breaks priority ties so chats of the same priority are served first-come, first-served. */
+    private final AtomicLong readySequence = new AtomicLong();
+
+    /** Limits sends across all chats. Only ever used by the pacer. */
+    private final TokenBucket globalBucket;
+
+    /** The per-chat rate limit. */
+    private final double chatMessagesPerSecond;
+
+    /** Per-chat queues of undelivered messages. A lane stays around until its chat has been quiet for a while. */
+    private final ConcurrentMap<String, ChatLane> lanes = new ConcurrentHashMap<>();
+
+    /** Told about every delivered message, if set. */
+    private volatile DeliveryListener deliveryListener;
+
+    /** Messages queued but not yet delivered or dropped. */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    /** Messages successfully delivered. */
+    private final LongAdder delivered = new LongAdder();
+
+    /** Messages dropped because Telegram refused them for a reason other than throttling. */
+    private final LongAdder failed = new LongAdder();
+
+    /** Times Telegram asked us to back off. */
+    private final LongAdder throttled = new LongAdder();
+
+    /** Total time from queueing to delivery over all delivered messages, in nanoseconds. */
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    /** Longest time from queueing to delivery seen so far, in nanoseconds. */
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /** Delivered messages per priority. */
+    private final LongAdder[] deliveredByPriority = new LongAdder[Priority.values().length];
+
+    /** Total time spent waiting to be sent per priority, in nanoseconds. */
+    private final LongAdder[] totalWaitNanos = new LongAdder[Priority.values().length];
+
+    /** Longest time spent waiting to be sent per priority, in nanoseconds. */
+    private final AtomicLong[] maxWaitNanos = new AtomicLong[Priority.values().length];
+
+    /**
+     * Creates a new TelegramSendQueue using Telegram's documented rate limits.
+     * @param transport Performs the actual sends.
+     * @param senderThreads How many messages can be in flight to Telegram at once.
+     */
+    public TelegramSendQueue(final Transport transport, final int senderThreads) {
+        this(transport, senderThreads, GLOBAL_MESSAGES_PER_SECOND, CHAT_MESSAGES_PER_SECOND);
+    }
+
+    /**
+     * Creates a new TelegramSendQueue.
+     * @param transport Performs the actual sends.
+     * @param senderThreads How many messages can be in flight to Telegram at once.
+     * @param globalMessagesPerSecond How many messages may be sent per second across all chats.
+     * @param chatMessagesPerSecond How many messages may be sent per second to any one chat.
+     */
+    public TelegramSendQueue(final Transport transport, final int senderThreads,
+                             final double globalMessagesPerSecond, final double chatMessagesPerSecond) {
+
+        this.transport = transport;
+        this.globalBucket = new TokenBucket(globalMessagesPerSecond, (int) Math.ceil(globalMessagesPerSecond));
+        this.chatMessagesPerSecond = chatMessagesPerSecond;
+
+        for(Priority nextPriority : Priority.values()) {
+            deliveredByPriority[nextPriority.ordinal()] = new LongAdder();
+            totalWaitNanos[nextPriority.ordinal()] = new LongAdder();
+            maxWaitNanos[nextPriority.ordinal()] = new AtomicLong();
+        }
+
+        //None of these keep the JVM alive; shutdown() is what makes sure the queue is delivered first.
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads),
+            runnable -> daemon(runnable, "HoC-Send-" + threadCount.incrementAndGet()));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> daemon(runnable, "HoC-Send-Retry"));
+
+        this.pacer = daemon(this::pace, "HoC-Send-Pacer");
+        this.pacer.start();
+
+    }
+
+    /**
+     * Queues an interactive response to be sent to a chat after every response previously queued for that chat.
+     * @param chatId The ID of the chat to send the response to.
+     * @param response The response to send.
+     */
+    public void enqueue(final String chatId, final GameResponse response) {
+        enqueue(chatId, response, Priority.INTERACTIVE);
+    }
+
+    /**
+     * Queues a response to be sent to a chat after every response previously queued for that chat.
+     * @param chatId The ID of the chat to send the response to.
+     * @param response The response to send.
+     * @param priority How urgently the response should be sent.
+     */
+    public void enqueue(final String chatId, final GameResponse response, final Priority priority) {
+
+        final OutboundMessage message = new OutboundMessage(chatId, response, priority, System.nanoTime());
+        queueDepth.incrementAndGet();
+
+        //A lane can retire between being looked up and being offered to; if so, look it up again.
+        while(!lanes.computeIfAbsent(chatId, ChatLane::new).offer(message)) {
+            Thread.yield();
+        }
+
+    }
+
+    /**
+     * @param deliveryListener Told about every message that's delivered from now on, or {@code null} for nobody.
+     */
+    public void setDeliveryListener(final DeliveryListener deliveryListener) {
+        this.deliveryListener = deliveryListener;
+    }
+
+    /**
+     * Waits for every queued message to be delivered, then stops sending. Messages still waiting when the timeout is
+     * hit are not sent.
+     * @param timeout How long to wait for queued messages.
+     * @param unit The unit of the timeout.
+     * @return {@code true} if every queued message was delivered or dropped, {@code false} if the timeout was hit
+     * first.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean shutdown(final long timeout, final TimeUnit unit) throws InterruptedException {
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while(queueDepth.get() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(DRAIN_POLL_MILLIS);
+        }
+
+        pacer.interrupt();
+        retryScheduler.shutdown();
+        senders.shutdown();
+        return senders.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+            && queueDepth.get() == 0;
+
+    }
+
+    /**
+     * @return How many messages are waiting to be delivered.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return How many chats currently have messages waiting or were sent to recently.
+     */
+    public int getActiveChats() {
+        return lanes.size();
+    }
+
+    /**
+     * @return How many messages have been delivered.
+     */
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * @return How many messages have been dropped because Telegram refused them.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return How many times Telegram has asked us to slow down.
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return The average time from queueing a message to it being delivered, in milliseconds.
+     */
+    public double getAverageLatencyMillis() {
+        final long count = delivered.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / (count * 1e6);
+    }
+
+    /**
+     * @return The longest time from queueing a message to it being delivered, in milliseconds.
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    /**
+     * @param priority The priority to check.
+     * @return The average time delivered messages of that priority spent waiting to be sent, in milliseconds.
+     */
+    public double getAverageWaitMillis(final Priority priority) {
+        final long count = deliveredByPriority[priority.ordinal()].sum();
+        return count == 0 ? 0 : totalWaitNanos[priority.ordinal()].sum() / (count * 1e6);
+    }
+
+    /**
+     * @param priority The priority to check.
+     * @return The longest time a delivered message of that priority spent waiting to be sent, in milliseconds.
+     */
+    public double getMaxWaitMillis(final Priority priority) {
+        return maxWaitNanos[priority.ordinal()].get() / 1e6;
+    }
+
+    /**
+     * @return A one-line summary of the queue's metrics, for logging.
+     */
+    public String metricsReport() {
+
+        final StringBuilder output = new StringBuilder(String.format(
+            "depth=%d chats=%d delivered=%d failed=%d throttled=%d latency(avg/max)=%.1f/%.1fms",
+            getQueueDepth(), getActiveChats(), getDeliveredCount(), getFailedCount(), getThrottledCount(),
+            getAverageLatencyMillis(), getMaxLatencyMillis()
+        ));
+
+        for(Priority nextPriority : Priority.values()) {
+            output.append(String.format(" %s-wait(avg/max)=%.1f/%.1fms",
+                nextPriority.name().toLowerCase(), getAverageWaitMillis(nextPriority), getMaxWaitMillis(nextPriority)));
+        }
+
+        return output.toString();
+
+    }
+
+    /**
+     * Main loop of the pacer thread. Waits for a global token, then hands the most urgent ready chat that isn't over
+     * its own limit to a sender thread. Chats that are over their limit are set aside until they have a token again.
+     */
+    private void pace() {
+
+        try {
+
+            while(!Thread.currentThread().isInterrupted()) {
+
+                final long globalWait = globalBucket.nanosUntilAvailable(System.nanoTime());
+                if(globalWait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(globalWait);
+                    continue;
+                }
+
+                final ReadyLane next = ready.take();
+                final ChatLane lane = next.lane;
+
+                final long now = System.nanoTime();
+                final long chatWait = lane.bucket.nanosUntilAvailable(now);
+                if(chatWait > 0) {
+                    retryScheduler.schedule(() -> ready.add(next), chatWait, TimeUnit.NANOSECONDS);
+                    continue;
+                }
+
+                globalBucket.acquire(now);
+                lane.bucket.acquire(now);
+                senders.execute(lane);
+
+            }
+
+        } catch (InterruptedException ix) {
+            //Shutting down.
+        }
+
+    }
+
+    private static Thread daemon(final Runnable runnable, final String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Marks a chat as having a message ready to send.
+     * @param lane The chat's lane.
+     * @param priority The priority of the chat's next message.
+     */
+    private void markReady(final ChatLane lane, final Priority priority) {
+        ready.add(new ReadyLane(lane, priority, readySequence.incrementAndGet()));
+    }
+
+    /**
+     * Tries to send a single message.
+     * @param message The message to send.
+     * @return {@code 0} if the message was handled (delivered or dropped), or the number of seconds to wait before
+     * trying it again if Telegram throttled us.
+     */
+    private long attemptDelivery(final OutboundMessage message) {
+
+        final long waited = System.nanoTime() - message.enqueuedAt;
+
+        try {
+
+            final SendMessage telegramMessage = new SendMessage();
+            telegramMessage.setChatId(message.chatId);
+            telegramMessage.setText(message.response.getText());
+            telegramMessage.setReplyMarkup(message.response.telegramReplyKeyboardResponse());
+
+            transport.send(telegramMessage);
+
+            final long latency = System.nanoTime() - message.enqueuedAt;
+            delivered.increment();
+            totalLatencyNanos.add(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            deliveredByPriority[message.priority.ordinal()].increment();
+            totalWaitNanos[message.priority.ordinal()].add(waited);
+            maxWaitNanos[message.priority.ordinal()].accumulateAndGet(waited, Math::max);
+            queueDepth.decrementAndGet();
+
+            final DeliveryListener listener = deliveryListener;
+            if(listener != null) {
+                listener.delivered(message.chatId, message.priority, waited, latency);
+            }
+
+            return 0;
+
+        } catch (TelegramApiException tax) {
+
+            final long retryAfter = retryAfterSeconds(tax);
+            if(retryAfter > 0) {
+                throttled.increment();
+                return retryAfter;
+            }
+
+            //TODO: Log it
+            tax.printStackTrace();
+            failed.increment();
+            queueDepth.decrementAndGet();
+            return 0;
+
+        } catch (RuntimeException rx) {
+
+            //Never let one bad message wedge its chat's lane.
+            rx.printStackTrace();
+            failed.increment();
+            queueDepth.decrementAndGet();
+            return 0;
+
+        }
+
+    }
+
+    /**
+     * @param tax An exception from the Telegram API.
+     * @return How many seconds Telegram asked us to wait, or {@code 0} if the exception wasn't a throttling error.
+     */
+    private static long retryAfterSeconds(final TelegramApiException tax) {
+
+        final String description = tax.getApiResponse() != null ? tax.getApiResponse() : String.valueOf(tax.getMessage());
+
+        final Matcher matcher = RETRY_AFTER.matcher(description);
+        if(matcher.find()) {
+            return Math.max(1, Long.parseLong(matcher.group(1)));
+        } else if(description.contains("Too Many Requests")) {
+            return DEFAULT_RETRY_SECONDS;
+        } else {
+            return 0;
+        }
+
+    }
+
+    /**
+     * A message waiting to be sent.
+     */
+    private static final class OutboundMessage {
+
+        final String chatId;
+        final GameResponse response;
+        final Priority priority;
+
+        /** When the message was queued, from {@link System#nanoTime()}. */
+        final long enqueuedAt;
+
+        OutboundMessage(final String chatId, final GameResponse response, final Priority priority,
+                        final long enqueuedAt) {
+            this.chatId = chatId;
+            this.response = response;
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+    }
+
+    /**
+     * An entry in the ready queue. Orders by priority first, then by when the chat became ready.
+     */
+    private static final class ReadyLane implements Comparable<ReadyLane> {
+
+        final ChatLane lane;
+        final Priority priority;
+        final long sequence;
+
+        ReadyLane(final ChatLane lane, final Priority priority, final long sequence) {
+            this.lane = lane;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final ReadyLane other) {
+            final int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+    /**
+     * A single chat's queue of undelivered messages. At most one of a lane's messages is ready or in flight at a time,
+     * which is what keeps each chat's messages in order.
+     */
+    private final class ChatLane implements Runnable {
+
+        private final String chatId;
+
+        /** Limits sends to this chat. Only ever used by the pacer. */
+        final TokenBucket bucket = new TokenBucket(chatMessagesPerSecond, CHAT_BURST);
+
+        /** Undelivered messages. Guarded by {@code this}. */
+        private final Queue<OutboundMessage> messages = new ArrayDeque<>();
+
+        /** Whether this lane is currently ready, sending, or waiting out a throttle. Guarded by {@code this}. */
+        private boolean scheduled;
+
+        /** Whether this lane has been removed from the lane map and must no longer accept messages. Guarded by {@code this}. */
+        private boolean retired;
+
+        ChatLane(final String chatId) {
+            this.chatId = chatId;
+        }
+
+        /**
+         * @param message The message to queue.
+         * @return {@code true} if the message was queued, {@code false} if this lane has retired.
+         */
+        boolean offer(final OutboundMessage message) {
+
+            synchronized(this) {
+                if(retired) {
+                    return false;
+                }
+                messages.add(message);
+                if(scheduled) {
+                    return true;
+                }
+                scheduled = true;
+            }
+
+            markReady(this, message.priority);
+            return true;
+
+        }
+
+        @Override
+        public void run() {
+
+            final OutboundMessage message;
+            synchronized(this) {
+                message = messages.peek();
+            }
+
+            final long retryAfter = attemptDelivery(message);
+            if(retryAfter > 0) {
+                //Leave the message at the head of the queue and free up the sender thread for other chats.
+                retryScheduler.schedule(() -> markReady(this, message.priority), retryAfter, TimeUnit.SECONDS);
+                return;
+            }
+
+            final OutboundMessage nextMessage;
+            synchronized(this) {
+                messages.poll();
+                nextMessage = messages.peek();
+                if(nextMessage == null) {
+                    scheduled = false;
+                }
+            }
+
+            if(nextMessage != null) {
+                markReady(this, nextMessage.priority);
+            } else {
+                /* Keep the lane (and its token bucket) around until the bucket has refilled, so a chat can't dodge its
+                 * limit by having its lane retired and recreated with a full bucket. */
+                retryScheduler.schedule(this::retireIfIdle, bucket.refillNanos(), TimeUnit.NANOSECONDS);
+            }
+
+        }
+
+        /**
+         * Removes this lane from the lane map if no messages have been queued since it last went idle.
+         */
+        private void retireIfIdle() {
+            synchronized(this) {
+                if(!scheduled && messages.isEmpty()) {
+                    retired = true;
+                    lanes.remove(chatId, this);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+package net.codelizard.hoc;
+
+/**
+ * <p>A token bucket rate limiter: tokens refill continuously at a fixed rate up to a maximum, and each send spends one.
+ * The maximum controls how large a burst can be let through at once.</p>
+ *
+ * <p>TokenBuckets are not thread-safe; each one must only be used by a single thread.</p>
+ *
+ * @author Codelizard
+ */
+final class TokenBucket {
+
+    /** How many nanoseconds it takes to refill one token. */
+    private final long nanosPerToken;
+
+    /** How many nanoseconds it takes to refill the bucket from empty. */
+    private final long capacityNanos;
+
+    /**
+     * The moment the bucket would hold zero tokens, from {@link System#nanoTime()}. Storing the bucket this way means
+     * it never needs a refill timer: the token count is simply how much time has passed since this moment.
+     */
+    private long emptyAt;
+
+    /**
+     * Creates a new, full TokenBucket.
+     * @param tokensPerSecond How many tokens are refilled per second.
+     * @param capacity The most tokens the bucket can hold.
+     */
+    TokenBucket(final double tokensPerSecond, final int capacity) {
+        this.nanosPerToken = (long) (1_000_000_000L / tokensPerSecond);
+        this.capacityNanos = nanosPerToken * Math.max(1, capacity);
+        this.emptyAt = System.nanoTime() - capacityNanos;
+    }
+
+    /**
+     * @param now The current time, from {@link System#nanoTime()}.
+     * @return How many nanoseconds until a token is available, or {@code 0} if one is available now.
+     */
+    long nanosUntilAvailable(final long now) {
+        return Math.max(0, emptyAt + nanosPerToken - now);
+    }
+
+    /**
+     * Spends a token. Must only be called when {@link #nanosUntilAvailable(long)} returned {@code 0}.
+     * @param now The current time, from {@link System#nanoTime()}.
+     */
+    void acquire(final long now) {
+        //Tokens don't accumulate past the capacity.
+        emptyAt = Math.max(emptyAt, now - capacityNanos) + nanosPerToken;
+    }
+
+    /**
+     * @return How long it takes to refill the bucket from empty, in nanoseconds.
+     */
+    long refillNanos() {
+        return capacityNanos;
+    }
+
+}
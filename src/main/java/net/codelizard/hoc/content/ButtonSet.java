@@ -0,0 +1,18 @@
+package net.codelizard.hoc.content;
+
+import java.util.List;
+
+/**
+ * Something that offers the player a fixed set of buttons, each labeled with a static message. ContentIndex looks up
+ * buttons by label for anything that implements this, without needing to know what it is.
+ *
+ * @author Codelizard
+ */
+public interface ButtonSet {
+
+    /**
+     * @return Identifiers of the static messages offered as buttons, in the order they're checked. Must never change.
+     */
+    List<String> getButtons();
+
+}
@@ -0,0 +1,446 @@
+package net.codelizard.hoc.content;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * <p>Reads and writes GameContent in a compact binary form, so that the game doesn't have to parse the content JSON
+ * with reflection every time it starts. Bundles are written at build time by {@link ContentCompiler}.</p>
+ *
+ * <p>A bundle starts with a header: a magic number, a format version and a checksum of the JSON it was compiled from,
+ * so that a bundle left over from before the JSON was edited can be spotted and ignored. Then comes a table of every
+ * distinct string in the content (many descriptions and flavor texts appear more than once), followed by the content
+ * itself, which refers to strings by their position in the table. Object tiers are stored, so they don't need to be
+ * inferred again after loading. Maps are read back in the order they were written.</p>
+ *
+ * @author Codelizard
+ */
+public final class ContentBundle {
+
+    /** Marks the start of a content bundle: "HoCB". */
+    private static final int MAGIC = 0x486F4342;
+
+    /** The current bundle format. */
+    private static final int VERSION = 1;
+
+    /** Every ResourceType, in ordinal order. */
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
+
+    private ContentBundle() {}
+
+    /**
+     * Writes content to a bundle.
+     * @param content The content to write. Object tiers must already have been inferred.
+     * @param sourceChecksum The checksum of the JSON the content was loaded from.
+     * @param output Where to write the bundle. It's flushed but not closed.
+     * @throws IOException If there is an error writing the bundle.
+     */
+    public static void write(final GameContent content, final long sourceChecksum, final OutputStream output)
+            throws IOException {
+
+        final Writer writer = new Writer();
+        writer.writeContent(content);
+
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(sourceChecksum);
+
+        writeVarInt(out, writer.strings.size());
+        for(String nextString : writer.strings) {
+            final byte[] utf8 = nextString.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, utf8.length);
+            out.write(utf8);
+        }
+
+        writer.bodyBytes.writeTo(out);
+        out.flush();
+
+    }
+
+    /**
+     * Reads content from a bundle.
+     * @param input The bundle. It isn't closed.
+     * @param sourceChecksum The checksum of the JSON the bundle is expected to have been compiled from.
+     * @return The content, with object tiers already set.
+     * @throws IOException If the bundle is damaged, in an unknown format or compiled from different JSON.
+     */
+    public static GameContent read(final InputStream input, final long sourceChecksum) throws IOException {
+
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if(in.readInt() != MAGIC) {
+            throw new IOException("Not a content bundle.");
+        }
+
+        final int version = in.readUnsignedByte();
+        if(version != VERSION) {
+            throw new IOException("Unsupported content bundle version: " + version + ".");
+        }
+        if(in.readLong() != sourceChecksum) {
+            throw new IOException("Content bundle is out of date with the content JSON.");
+        }
+
+        final String[] strings = new String[readVarInt(in)];
+        for(int index = 0; index < strings.length; index++) {
+            final byte[] utf8 = new byte[readVarInt(in)];
+            in.readFully(utf8);
+            strings[index] = new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        return new Reader(in, strings).readContent();
+
+    }
+
+    /**
+     * Builds the string table and the content body at the same time, since the table has to be written first but isn't
+     * known until all of the content has been seen.
+     */
+    private static final class Writer {
+
+        /** Every distinct string, in the order they were first seen. */
+        private final List<String> strings = new ArrayList<>();
+
+        /** The position of each string in {@link #strings}. */
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+        /** The content body, which refers to strings by their index. */
+        private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+
+        /** Writes to {@link #bodyBytes}. */
+        private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+        void writeContent(final GameContent content) throws IOException {
+
+            writeVarInt(body, content.getStaticMessages().size());
+            for(Map.Entry<String, String> nextMessage : content.getStaticMessages().entrySet()) {
+                writeString(nextMessage.getKey());
+                writeString(nextMessage.getValue());
+            }
+
+            for(List<String> nextList : content.getDynamicMessages().messageLists()) {
+                writeStrings(nextList);
+            }
+
+            writeVarInt(body, content.getTiers().size());
+            for(Map.Entry<Integer, Tier> nextTier : content.getTiers().entrySet()) {
+                writeVarInt(body, nextTier.getKey());
+                writeObjects(nextTier.getValue().getEvents());
+                writeObjects(nextTier.getValue().getMonsters());
+                writeObjects(nextTier.getValue().getEquipment());
+                writeObjects(nextTier.getValue().getConsumables());
+                writeObject(nextTier.getValue().getBoss());
+            }
+
+            writeVarInt(body, content.getHeroes().size());
+            for(Hero nextHero : content.getHeroes()) {
+                writeHero(nextHero);
+            }
+
+        }
+
+        private void writeObjects(final List<? extends ContentObject> objects) throws IOException {
+            writeVarInt(body, objects.size());
+            for(ContentObject nextObject : objects) {
+                writeObject(nextObject);
+            }
+        }
+
+        private void writeObject(final ContentObject object) throws IOException {
+
+            writeString(object.getId());
+            writeString(object.getName());
+            writeVarInt(body, object.getTier());
+            writeStrings(object.getDescriptions());
+            writeStrings(object.getFlavor());
+
+            writeVarInt(body, object.getResources().size());
+            for(Map.Entry<ResourceType, ResourceValue> nextResource : object.getResources().entrySet()) {
+                body.writeByte(nextResource.getKey().ordinal());
+                writeVarInt(body, zigZag(nextResource.getValue().getValue()));
+                writeStrings(nextResource.getValue().getTexts());
+            }
+
+            if(object instanceof Monster) {
+                final LootType lootType = ((Monster) object).getLootType();
+                body.writeByte(lootType == null ? -1 : lootType.ordinal());
+            }
+
+        }
+
+        private void writeHero(final Hero hero) throws IOException {
+
+            writeString(hero.getId());
+            writeString(hero.getName());
+            writeString(hero.getRpgClass());
+            writeString(hero.getDescription());
+            writeString(hero.getFlavor());
+            writeString(hero.getQuote());
+
+            final HeroDiscount discount = hero.getDiscount();
+            body.writeBoolean(discount != null);
+            if(discount != null) {
+                body.writeByte(discount.getType().ordinal());
+                body.writeByte(discount.getResource().ordinal());
+            }
+
+            writeVarInt(body, hero.getResources().size());
+            for(Map.Entry<Integer, Map<ResourceType, Integer>> nextLevel : hero.getResources().entrySet()) {
+                writeVarInt(body, nextLevel.getKey());
+                writeVarInt(body, nextLevel.getValue().size());
+                for(Map.Entry<ResourceType, Integer> nextResource : nextLevel.getValue().entrySet()) {
+                    body.writeByte(nextResource.getKey().ordinal());
+                    writeVarInt(body, zigZag(nextResource.getValue()));
+                }
+            }
+
+        }
+
+        /**
+         * Writes a list of strings, which may be {@code null}.
+         */
+        private void writeStrings(final List<String> list) throws IOException {
+
+            if(list == null) {
+                writeVarInt(body, 0);
+                return;
+            }
+
+            writeVarInt(body, list.size() + 1);
+            for(String nextString : list) {
+                writeString(nextString);
+            }
+
+        }
+
+        /**
+         * Writes a string, which may be {@code null}, as its position in the string table plus one.
+         */
+        private void writeString(final String string) throws IOException {
+
+            if(string == null) {
+                writeVarInt(body, 0);
+                return;
+            }
+
+            Integer index = stringIndexes.get(string);
+            if(index == null) {
+                index = strings.size();
+                strings.add(string);
+                stringIndexes.put(string, index);
+            }
+            writeVarInt(body, index + 1);
+
+        }
+
+    }
+
+    /**
+     * Reads the content body, given the string table that came before it.
+     */
+    private static final class Reader {
+
+        private final DataInput in;
+
+        private final String[] strings;
+
+        Reader(final DataInput in, final String[] strings) {
+            this.in = in;
+            this.strings = strings;
+        }
+
+        GameContent readContent() throws IOException {
+
+            final GameContent content = new GameContent();
+
+            final int staticCount = readVarInt(in);
+            final Map<String, String> staticMessages = new LinkedHashMap<>();
+            for(int index = 0; index < staticCount; index++) {
+                staticMessages.put(readString(), readString());
+            }
+            content.setStaticMessages(staticMessages);
+
+            final List<List<String>> dynamicLists = new ArrayList<>();
+            for(int index = 0; index < DynamicMessages.LIST_COUNT; index++) {
+                dynamicLists.add(readStrings());
+            }
+            content.setDynamicMessages(new DynamicMessages(dynamicLists));
+
+            final int tierCount = readVarInt(in);
+            final Map<Integer, Tier> tiers = new LinkedHashMap<>();
+            for(int index = 0; index < tierCount; index++) {
+                final int tierNumber = readVarInt(in);
+                final Tier tier = new Tier();
+                tier.setEvents(readObjects(Event::new));
+                tier.setMonsters(readObjects(Monster::new));
+                tier.setEquipment(readObjects(Equipment::new));
+                tier.setConsumables(readObjects(Consumable::new));
+                tier.setBoss(readObject(new Monster()));
+                tiers.put(tierNumber, tier);
+            }
+            content.setTiers(tiers);
+
+            final int heroCount = readVarInt(in);
+            final List<Hero> heroes = new ArrayList<>(heroCount);
+            for(int index = 0; index < heroCount; index++) {
+                heroes.add(readHero());
+            }
+            content.setHeroes(heroes);
+
+            return content;
+
+        }
+
+        private <T extends ContentObject> List<T> readObjects(final Supplier<T> factory) throws IOException {
+
+            final int count = readVarInt(in);
+            final List<T> objects = new ArrayList<>(count);
+            for(int index = 0; index < count; index++) {
+                objects.add(readObject(factory.get()));
+            }
+            return objects;
+
+        }
+
+        private <T extends ContentObject> T readObject(final T object) throws IOException {
+
+            object.setId(readString());
+            object.setName(readString());
+            object.setTier(readVarInt(in));
+            object.setDescriptions(readStrings());
+            object.setFlavor(readStrings());
+
+            final int resourceCount = readVarInt(in);
+            final Map<ResourceType, ResourceValue> resources = new LinkedHashMap<>();
+            for(int index = 0; index < resourceCount; index++) {
+                final ResourceType type = readResourceType();
+                final ResourceValue value = new ResourceValue();
+                value.setValue(unZigZag(readVarInt(in)));
+                value.setTexts(readStrings());
+                resources.put(type, value);
+            }
+            object.setResources(resources);
+
+            if(object instanceof Monster) {
+                final int lootType = in.readByte();
+                ((Monster) object).setLootType(lootType < 0 ? null : LootType.values()[lootType]);
+            }
+
+            return object;
+
+        }
+
+        private Hero readHero() throws IOException {
+
+            final Hero hero = new Hero();
+            hero.setId(readString());
+            hero.setName(readString());
+            hero.setRpgClass(readString());
+            hero.setDescription(readString());
+            hero.setFlavor(readString());
+            hero.setQuote(readString());
+
+            if(in.readBoolean()) {
+                final HeroDiscount discount = new HeroDiscount();
+                discount.setType(DiscountType.values()[in.readUnsignedByte()]);
+                discount.setResource(readResourceType());
+                hero.setDiscount(discount);
+            }
+
+            final int levelCount = readVarInt(in);
+            final Map<Integer, Map<ResourceType, Integer>> resources = new LinkedHashMap<>();
+            for(int level = 0; level < levelCount; level++) {
+                final int levelNumber = readVarInt(in);
+                final int resourceCount = readVarInt(in);
+                final Map<ResourceType, Integer> levelResources = new LinkedHashMap<>();
+                for(int index = 0; index < resourceCount; index++) {
+                    levelResources.put(readResourceType(), unZigZag(readVarInt(in)));
+                }
+                resources.put(levelNumber, levelResources);
+            }
+            hero.setResources(resources);
+
+            return hero;
+
+        }
+
+        private ResourceType readResourceType() throws IOException {
+            final int ordinal = in.readUnsignedByte();
+            if(ordinal >= RESOURCE_TYPES.length) {
+                throw new IOException("Unknown resource type in content bundle: " + ordinal + ".");
+            }
+            return RESOURCE_TYPES[ordinal];
+        }
+
+        private List<String> readStrings() throws IOException {
+
+            final int countPlusOne = readVarInt(in);
+            if(countPlusOne == 0) {
+                return null;
+            }
+
+            final List<String> list = new ArrayList<>(countPlusOne - 1);
+            for(int index = 1; index < countPlusOne; index++) {
+                list.add(readString());
+            }
+            return list;
+
+        }
+
+        private String readString() throws IOException {
+
+            final int indexPlusOne = readVarInt(in);
+            if(indexPlusOne > strings.length) {
+                throw new IOException("String index out of range in content bundle: " + indexPlusOne + ".");
+            }
+            return indexPlusOne == 0 ? null : strings[indexPlusOne - 1];
+
+        }
+
+    }
+
+    private static void writeVarInt(final DataOutput out, int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(final DataInput in) throws IOException {
+
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            final int next = in.readUnsignedByte();
+            value |= (next & 0x7F) << shift;
+            if((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length number.");
+
+    }
+
+    private static int zigZag(final int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(final int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
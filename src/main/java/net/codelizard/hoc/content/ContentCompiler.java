@@ -0,0 +1,236 @@
+package net.codelizard.hoc.content;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Build-time tool that checks the content JSON for mistakes that would otherwise only show up mid-game, then
+ * compiles it into a {@link ContentBundle}. Maven runs it after compiling, so the bundle ends up next to the JSON in
+ * the game JAR:</p>
+ *
+ * <pre>java net.codelizard.hoc.content.ContentCompiler &lt;content JSON&gt; &lt;bundle to write&gt;</pre>
+ *
+ * <p>It also parses content JSON for the game itself, when there is no usable bundle to load instead.</p>
+ *
+ * @author Codelizard
+ */
+public final class ContentCompiler {
+
+    /** The fewest heroes there can be, since Quick Play picks four different ones. */
+    private static final int MIN_HEROES = 4;
+
+    private ContentCompiler() {}
+
+    /**
+     * @param args The content JSON to read, and the bundle to write.
+     * @throws Exception If the content can't be read or is invalid, or the bundle can't be written.
+     */
+    public static void main(final String... args) throws Exception {
+
+        //Maven runs this inside its own JVM, so fail with an exception rather than System.exit().
+        if(args.length != 2) {
+            throw new IllegalArgumentException("Usage: ContentCompiler <content JSON> <bundle to write>");
+        }
+
+        final Path source = Paths.get(args[0]);
+        final Path bundle = Paths.get(args[1]);
+
+        final byte[] json = Files.readAllBytes(source);
+        final GameContent content = parseJson(json);
+
+        final List<String> problems = validate(content);
+        if(!problems.isEmpty()) {
+            for(String nextProblem : problems) {
+                System.err.println(source.getFileName() + ": " + nextProblem);
+            }
+            throw new IllegalStateException(problems.size() + " problem(s) found in " + source + ".");
+        }
+
+        if(bundle.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(bundle.toAbsolutePath().getParent());
+        }
+        try(OutputStream output = Files.newOutputStream(bundle)) {
+            ContentBundle.write(content, checksum(json), output);
+        }
+
+        System.out.println("Compiled " + source.getFileName() + " (" + json.length + " bytes) into "
+            + bundle.getFileName() + " (" + Files.size(bundle) + " bytes).");
+
+    }
+
+    /**
+     * Parses content JSON and infers object tiers.
+     * @param json The content JSON.
+     * @return The content.
+     * @throws IOException If the JSON can't be parsed.
+     */
+    public static GameContent parseJson(final byte[] json) throws IOException {
+        final GameContent content = new ObjectMapper().readValue(new ByteArrayInputStream(json), GameContent.class);
+        content.inferObjectTiers();
+        return content;
+    }
+
+    /**
+     * @param json Content JSON.
+     * @return The checksum a bundle compiled from this JSON carries.
+     */
+    public static long checksum(final byte[] json) {
+        final CRC32 crc = new CRC32();
+        crc.update(json, 0, json.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Checks content for anything that would break the game at runtime.
+     * @param content The content to check.
+     * @return A description of each problem found, or an empty list if there are none.
+     */
+    public static List<String> validate(final GameContent content) {
+
+        final List<String> problems = new ArrayList<>();
+        final Set<String> ids = new HashSet<>();
+
+        if(content.getStaticMessages() == null) {
+            problems.add("static_messages is missing.");
+        }
+
+        if(content.getDynamicMessages() == null) {
+            problems.add("dynamic_messages is missing.");
+        } else {
+            for(List<String> nextList : content.getDynamicMessages().messageLists()) {
+                if(nextList == null) {
+                    problems.add("dynamic_messages is missing a message list.");
+                }
+            }
+        }
+
+        final Map<Integer, Tier> tiers = content.getTiers();
+        if(tiers == null || tiers.isEmpty()) {
+            problems.add("There are no tiers.");
+        } else {
+            for(int tierNumber = 1; tierNumber <= tiers.size(); tierNumber++) {
+                final Tier tier = tiers.get(tierNumber);
+                if(tier == null) {
+                    problems.add("Tiers must be numbered 1 to " + tiers.size() + ", but tier " + tierNumber
+                        + " is missing.");
+                } else {
+                    validateTier(tierNumber, tier, ids, problems);
+                }
+            }
+        }
+
+        final List<Hero> heroes = content.getHeroes();
+        if(heroes == null || heroes.size() < MIN_HEROES) {
+            problems.add("There must be at least " + MIN_HEROES + " heroes.");
+        } else {
+            for(Hero nextHero : heroes) {
+                validateHero(nextHero, ids, problems);
+            }
+        }
+
+        return problems;
+
+    }
+
+    private static void validateTier(final int tierNumber, final Tier tier, final Set<String> ids,
+            final List<String> problems) {
+
+        final String where = "Tier " + tierNumber;
+        validateObjects(where + " events", tier.getEvents(), ids, problems);
+        validateObjects(where + " monsters", tier.getMonsters(), ids, problems);
+        validateObjects(where + " equipment", tier.getEquipment(), ids, problems);
+        validateObjects(where + " consumables", tier.getConsumables(), ids, problems);
+
+        if(tier.getBoss() == null) {
+            problems.add(where + " has no boss.");
+        } else {
+            validateObject(where + " boss", tier.getBoss(), ids, problems);
+        }
+
+    }
+
+    private static void validateObjects(final String where, final List<? extends ContentObject> objects,
+            final Set<String> ids, final List<String> problems) {
+
+        if(objects == null || objects.isEmpty()) {
+            problems.add(where + ": there are none.");
+            return;
+        }
+
+        for(ContentObject nextObject : objects) {
+            validateObject(where, nextObject, ids, problems);
+        }
+
+    }
+
+    private static void validateObject(final String where, final ContentObject object, final Set<String> ids,
+            final List<String> problems) {
+
+        final String what = where + " " + (object.getId() == null ? "(no ID)" : object.getId());
+
+        if(object.getId() == null) {
+            problems.add(what + ": missing id.");
+        } else if(!ids.add(object.getId())) {
+            problems.add(what + ": id is used more than once.");
+        }
+        if(object.getName() == null) {
+            problems.add(what + ": missing name.");
+        }
+        if(object.getDescriptions() == null || object.getDescriptions().isEmpty()) {
+            problems.add(what + ": needs at least one description.");
+        }
+        if(object.getFlavor() == null || object.getFlavor().isEmpty()) {
+            problems.add(what + ": needs at least one flavor text.");
+        }
+
+        if(object.getResources() == null || object.getResources().isEmpty()) {
+            problems.add(what + ": has no resources.");
+        } else {
+            for(Map.Entry<ResourceType, ResourceValue> nextResource : object.getResources().entrySet()) {
+                if(nextResource.getValue().getValue() == null) {
+                    problems.add(what + ": " + nextResource.getKey() + " has no value.");
+                }
+            }
+        }
+
+        if(object instanceof Monster && ((Monster) object).getLootType() == null) {
+            problems.add(what + ": missing loot.");
+        }
+
+    }
+
+    private static void validateHero(final Hero hero, final Set<String> ids, final List<String> problems) {
+
+        final String what = "Hero " + (hero.getId() == null ? "(no ID)" : hero.getId());
+
+        if(hero.getId() == null) {
+            problems.add(what + ": missing id.");
+        } else if(!ids.add(hero.getId())) {
+            problems.add(what + ": id is used more than once.");
+        }
+        if(hero.getName() == null) {
+            problems.add(what + ": missing name.");
+        }
+        if(hero.getDiscount() == null || hero.getDiscount().getType() == null
+                || hero.getDiscount().getResource() == null) {
+            problems.add(what + ": needs a discount with a type and a resource.");
+        }
+        if(hero.getResources() == null || !hero.getResources().containsKey(1)) {
+            problems.add(what + ": needs resources for level 1.");
+        }
+
+    }
+
+}
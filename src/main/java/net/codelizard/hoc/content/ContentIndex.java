@@ -0,0 +1,328 @@
+package net.codelizard.hoc.content;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Constant-time lookups into GameContent: every event, monster, boss and item by ID, every hero by ID, every
+ * tier's pool of each kind of card as a dense list, along with each card's position in its pool, and every
+ * {@link ButtonSet}'s buttons by their label. Built once from
+ * loaded content (see {@link GameContent#getIndex()}) and never changed afterwards, so it's safe to share between
+ * threads. The only exception is each button set's lookups, which are built the first time the set is used.</p>
+ *
+ * <p>Bosses can be looked up by ID and by tier, but aren't part of any pool.</p>
+ *
+ * @author Codelizard
+ */
+public final class ContentIndex {
+
+    /** The kinds of card that tiers have pools of. */
+    private static final List<Class<? extends ContentObject>> POOL_TYPES = Collections.unmodifiableList(Arrays.asList(
+        Event.class, Monster.class, Equipment.class, Consumable.class
+    ));
+
+    /** Every event, monster, boss and item, by ID. */
+    private final Map<String, ContentObject> objects = new HashMap<>();
+
+    /** Every hero, by ID. */
+    private final Map<String, Hero> heroes = new HashMap<>();
+
+    /** For each kind of card, in {@link #POOL_TYPES} order: each tier's pool, indexed by tier number. */
+    private final List<List<List<? extends ContentObject>>> pools = new ArrayList<>();
+
+    /** Each tier's boss, indexed by tier number. */
+    private final List<Monster> bosses;
+
+    /** The position of every pooled card in its pool. */
+    private final Map<ContentObject, Integer> positions = new IdentityHashMap<>();
+
+    /** The static messages that button labels come from. */
+    private final GameContent content;
+
+    /** The lookups for every button set used so far. */
+    private final Map<ButtonSet, Buttons> buttons = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes content. Object tiers must already have been inferred.
+     * @param content The content to index.
+     * @throws IllegalArgumentException If two objects or two heroes share an ID.
+     */
+    ContentIndex(final GameContent content) {
+
+        this.content = content;
+        final int highestTier = content.getTiers().keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+
+        bosses = new ArrayList<>(Collections.nCopies(highestTier + 1, (Monster) null));
+        for(int kind = 0; kind < POOL_TYPES.size(); kind++) {
+            pools.add(new ArrayList<>(Collections.nCopies(highestTier + 1, Collections.emptyList())));
+        }
+
+        for(Map.Entry<Integer, Tier> nextEntry : content.getTiers().entrySet()) {
+
+            final int tierNumber = nextEntry.getKey();
+            final Tier tier = nextEntry.getValue();
+            addPool(Event.class, tierNumber, tier.getEvents());
+            addPool(Monster.class, tierNumber, tier.getMonsters());
+            addPool(Equipment.class, tierNumber, tier.getEquipment());
+            addPool(Consumable.class, tierNumber, tier.getConsumables());
+
+            if(tier.getBoss() != null) {
+                addObject(tier.getBoss());
+                bosses.set(tierNumber, tier.getBoss());
+            }
+
+        }
+
+        for(Hero nextHero : content.getHeroes()) {
+            if(heroes.put(nextHero.getId(), nextHero) != null) {
+                throw new IllegalArgumentException("More than one hero has the ID \"" + nextHero.getId() + "\".");
+            }
+        }
+
+    }
+
+    /**
+     * Normalizes a button label or a player's message so that two of them have the same key exactly when
+     * {@link String#equalsIgnoreCase(String)} considers them equal.
+     * @param text A button label or message.
+     * @return The key to look the text up by.
+     */
+    public static String buttonKey(final String text) {
+
+        for(int index = 0; index < text.length(); index++) {
+            final char original = text.charAt(index);
+            if(Character.toLowerCase(Character.toUpperCase(original)) != original) {
+
+                //Only copy the text once there's something to change.
+                final char[] key = text.toCharArray();
+                for(int changed = index; changed < key.length; changed++) {
+                    key[changed] = Character.toLowerCase(Character.toUpperCase(key[changed]));
+                }
+                return new String(key);
+
+            }
+        }
+        return text;
+
+    }
+
+    /**
+     * @param id An ID.
+     * @return The event, monster, boss or item with that ID, or {@code null} if there is none.
+     */
+    public ContentObject get(final String id) {
+        return objects.get(id);
+    }
+
+    /**
+     * @param <T> The type of object to look up.
+     * @param id An ID.
+     * @param type The type of object to look up.
+     * @return The object of that type with that ID, or {@code null} if there is none.
+     */
+    public <T extends ContentObject> T get(final String id, final Class<T> type) {
+        final ContentObject found = objects.get(id);
+        return type.isInstance(found) ? type.cast(found) : null;
+    }
+
+    /**
+     * @param id An ID.
+     * @return The hero with that ID, or {@code null} if there is none.
+     */
+    public Hero getHero(final String id) {
+        return heroes.get(id);
+    }
+
+    /**
+     * @param <T> The kind of card.
+     * @param type The kind of card: Event, Monster, Equipment or Consumable.
+     * @param tier A tier number.
+     * @return Every card of that kind in the tier, in content order, or an empty list if there is no such tier.
+     * @throws IllegalArgumentException If tiers don't have pools of that type.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ContentObject> List<T> pool(final Class<T> type, final int tier) {
+
+        final int kind = POOL_TYPES.indexOf(type);
+        if(kind < 0) {
+            throw new IllegalArgumentException("Tiers don't have pools of " + type.getSimpleName() + ".");
+        }
+
+        final List<List<? extends ContentObject>> tiers = pools.get(kind);
+        return tier >= 0 && tier < tiers.size() ? (List<T>) tiers.get(tier) : Collections.emptyList();
+
+    }
+
+    /**
+     * @param tier A tier number.
+     * @return The tier's boss, or {@code null} if there is no such tier.
+     */
+    public Monster boss(final int tier) {
+        return tier >= 0 && tier < bosses.size() ? bosses.get(tier) : null;
+    }
+
+    /**
+     * @param object A card.
+     * @return The card's position in its tier's pool, or -1 if it isn't in a pool.
+     */
+    public int position(final ContentObject object) {
+        final Integer position = positions.get(object);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Picks a random card from the same pool as the given one, other than the given one itself.
+     * @param <T> The kind of card.
+     * @param object The card to pick an alternative to.
+     * @param random The random number generator to pick with.
+     * @return A different card of the same kind and tier, or the given card if there are no others.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ContentObject> T randomOther(final T object, final SplittableRandom random) {
+
+        final int position = position(object);
+        if(position < 0) {
+            return object;
+        }
+
+        final List<T> pool = pool((Class<T>) poolType(object), object.getTier());
+        if(pool.size() < 2) {
+            return object;
+        }
+
+        //Choose among the other size - 1 cards by skipping over the given one.
+        int choice = random.nextInt(pool.size() - 1);
+        if(choice >= position) {
+            choice++;
+        }
+        return pool.get(choice);
+
+    }
+
+    /**
+     * @param set A button set, such as a GameState.
+     * @param key The {@link #buttonKey} of a player's message.
+     * @return The identifier of the set's button with that label, or {@code null} if it has none.
+     */
+    public String button(final ButtonSet set, final String key) {
+        return buttons(set).byKey.get(key);
+    }
+
+    /**
+     * Returns the labels of a selection of a set's buttons. Each selection's list is built once and then shared, so
+     * showing the same buttons again allocates nothing.
+     * @param set A button set, such as a GameState.
+     * @param selected A bitmask of the buttons to show, where bit {@code n} is the set's {@code n}th button.
+     * @return The labels of the selected buttons in the order the set declares them, unmodifiable.
+     * @throws IllegalArgumentException If a bit is set for a button the set doesn't have.
+     */
+    public List<String> buttonLabels(final ButtonSet set, final int selected) {
+
+        final Buttons setButtons = buttons(set);
+        final AtomicReferenceArray<List<String>> selections = setButtons.selections;
+        if(selected < 0 || selected >= selections.length()) {
+            throw new IllegalArgumentException(set + " doesn't have all the buttons in "
+                + Integer.toBinaryString(selected) + ".");
+        }
+
+        List<String> labels = selections.get(selected);
+        if(labels == null) {
+
+            final List<String> allLabels = setButtons.labels;
+            final List<String> built = new ArrayList<>(Integer.bitCount(selected));
+            for(int button = 0; button < allLabels.size(); button++) {
+                if((selected & (1 << button)) != 0) {
+                    built.add(allLabels.get(button));
+                }
+            }
+
+            //Threads that race to build the same selection build equal lists, so it doesn't matter whose is kept.
+            labels = Collections.unmodifiableList(built);
+            selections.set(selected, labels);
+
+        }
+        return labels;
+
+    }
+
+    /**
+     * @param set A button set.
+     * @return The set's lookups, built now if this is the first time the set has been used.
+     */
+    private Buttons buttons(final ButtonSet set) {
+        //Looking first keeps the common case from locking, which computeIfAbsent does on Java 8 even on a hit.
+        final Buttons existing = buttons.get(set);
+        return existing != null ? existing : buttons.computeIfAbsent(set, this::indexButtons);
+    }
+
+    private Buttons indexButtons(final ButtonSet set) {
+
+        final Map<String, String> byKey = new HashMap<>();
+        final List<String> labels = new ArrayList<>();
+        for(String nextButton : set.getButtons()) {
+            final String label = content.getStaticMessage(nextButton);
+            //If two buttons share a label, the one the set checks first wins, as it always has.
+            byKey.putIfAbsent(buttonKey(label), nextButton);
+            labels.add(label);
+        }
+        return new Buttons(byKey, Collections.unmodifiableList(labels));
+
+    }
+
+    private void addPool(final Class<? extends ContentObject> type, final int tierNumber,
+            final List<? extends ContentObject> cards) {
+
+        final List<ContentObject> pool = new ArrayList<>(cards);
+        for(int position = 0; position < pool.size(); position++) {
+            addObject(pool.get(position));
+            positions.put(pool.get(position), position);
+        }
+
+        pools.get(POOL_TYPES.indexOf(type)).set(tierNumber, Collections.unmodifiableList(pool));
+
+    }
+
+    private void addObject(final ContentObject object) {
+        if(objects.put(object.getId(), object) != null) {
+            throw new IllegalArgumentException("More than one object has the ID \"" + object.getId() + "\".");
+        }
+    }
+
+    private static Class<? extends ContentObject> poolType(final ContentObject object) {
+        for(Class<? extends ContentObject> nextType : POOL_TYPES) {
+            if(nextType.isInstance(object)) {
+                return nextType;
+            }
+        }
+        throw new IllegalArgumentException(object + " isn't a kind of card that tiers have pools of.");
+    }
+
+    /** The lookups for one button set. */
+    private static final class Buttons {
+
+        /** The identifier of each button by the {@link #buttonKey} of its label. */
+        private final Map<String, String> byKey;
+
+        /** The labels of the buttons in the order the set declares them. */
+        private final List<String> labels;
+
+        /** The list of labels to show for each bitmask of the buttons, built as they're first needed. */
+        private final AtomicReferenceArray<List<String>> selections;
+
+        private Buttons(final Map<String, String> byKey, final List<String> labels) {
+            this.byKey = byKey;
+            this.labels = labels;
+            this.selections = new AtomicReferenceArray<>(1 << labels.size());
+        }
+
+    }
+
+}
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * A parent class of other content objects that contains fields common to all of them.
@@ -29,6 +30,10 @@ public abstract class ContentObject {
     /** The resource resources or bonuses related to the object. */
     protected Map<ResourceType, ResourceValue> resources;
 
+    /** The numbers from {@link #resources}, for use during play. (Derived from resources; not stored separately) */
+    @JsonIgnore
+    protected ResourceVector resourceAmounts = new ResourceVector();
+
     /** The description(s) about the object. */
     protected List<String> descriptions;
     
@@ -63,6 +68,13 @@ public abstract class ContentObject {
         return resources;
     }
 
+    /**
+     * @return The numbers from the resources related to this object. Shared by every player, so must not be modified.
+     */
+    public ResourceVector getResourceAmounts() {
+        return resourceAmounts;
+    }
+
     /**
      * @return All long descriptions of this object.
      */
@@ -103,6 +115,7 @@ public abstract class ContentObject {
      */
     public void setResources(final Map<ResourceType, ResourceValue> resources) {
         this.resources = resources;
+        this.resourceAmounts = ResourceVector.ofValues(resources);
     }
 
     /**
@@ -120,24 +133,27 @@ public abstract class ContentObject {
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A randomly-selected description from the list of descriptions of this ContentObject.
      */
-    public String randomDescription() {
-        return descriptions.get( (int) (Math.random() * descriptions.size()) );
+    public String randomDescription(final SplittableRandom random) {
+        return descriptions.get(random.nextInt(descriptions.size()));
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A randomly-selected flavor text from the list of flavor texts for this ContentObject.
      */
-    public String randomFlavor() {
-        return flavor.get( (int) (Math.random() * flavor.size()) );
+    public String randomFlavor(final SplittableRandom random) {
+        return flavor.get(random.nextInt(flavor.size()));
     }
     
     /**
+     * @param random The random number generator to choose the description and flavor text with.
      * @return A full, complete description of this ContentObject.
      */
-    public String fullLengthDescription() {
-        return "--" + name + "--\n\n" + randomDescription() + "\n\n" + randomFlavor();
+    public String fullLengthDescription(final SplittableRandom random) {
+        return "--" + name + "--\n\n" + randomDescription(random) + "\n\n" + randomFlavor(random);
     }
     
 }
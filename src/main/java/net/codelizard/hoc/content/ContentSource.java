@@ -0,0 +1,290 @@
+package net.codelizard.hoc.content;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Holds the game's current GameContent and swaps in new versions while the game is running. Every published
+ * GameContent gets a version number one higher than the last, and is swapped in atomically, so readers always see one
+ * complete version or the next.</p>
+ *
+ * <p>A turn pins the latest version for its thread with {@link #pin()} before it starts, and {@link #get()} keeps
+ * returning that version until the turn calls {@link #unpin()}, so a turn never sees content change halfway through.
+ * Players whose state still refers to objects from an older version are remapped by ID at the start of their next turn.
+ * For that to be possible, a new version has to be compatible with the one it replaces: text and numbers can change
+ * freely, and new cards and heroes can be added at the end of their lists, but nothing can be removed or reordered.
+ * Anything else needs a restart.</p>
+ *
+ * <p>{@link #watch(Path)} reloads the content whenever its JSON file changes. A version that fails to parse, fails
+ * validation or isn't compatible is rejected and logged, and the current version stays in place.</p>
+ *
+ * @author Codelizard
+ */
+public class ContentSource implements Closeable {
+
+    /** How long to wait after a change before reloading, since editors often save a file in several steps. */
+    private static final long DEBOUNCE_MILLIS = 250;
+
+    /** The latest published version. */
+    private final AtomicReference<GameContent> latest = new AtomicReference<>();
+
+    /** The version pinned by the current thread's turn, if it's in one. */
+    private final ThreadLocal<GameContent> pinned = new ThreadLocal<>();
+
+    /** Versions published after the first. */
+    private final LongAdder reloads = new LongAdder();
+
+    /** Versions that were rejected. */
+    private final LongAdder rejections = new LongAdder();
+
+    /** Watches the content file, if it's being watched. */
+    private WatchService watchService;
+
+    /**
+     * Creates a new ContentSource, publishing the given content as version 1.
+     * @param initial The content to start with.
+     */
+    public ContentSource(final GameContent initial) {
+        initial.getIndex();
+        initial.setVersion(1);
+        latest.set(initial);
+    }
+
+    /**
+     * @return The version pinned by the current thread, or the latest version if it hasn't pinned one.
+     */
+    public GameContent get() {
+        final GameContent current = pinned.get();
+        return current != null ? current : latest.get();
+    }
+
+    /**
+     * @return The latest version, regardless of what the current thread has pinned.
+     */
+    public GameContent getLatest() {
+        return latest.get();
+    }
+
+    /**
+     * Pins the latest version for the current thread, until {@link #unpin()} is called.
+     * @return The pinned version.
+     */
+    public GameContent pin() {
+        final GameContent current = latest.get();
+        pinned.set(current);
+        return current;
+    }
+
+    /**
+     * Releases the version pinned by the current thread.
+     */
+    public void unpin() {
+        pinned.remove();
+    }
+
+    /**
+     * Parses, validates and publishes new content.
+     * @param json The new content JSON.
+     * @return The newly published version.
+     * @throws IOException If the JSON can't be parsed.
+     * @throws IllegalArgumentException If the content is invalid, or can't replace the current version without a
+     * restart.
+     */
+    public synchronized GameContent reload(final byte[] json) throws IOException {
+
+        final GameContent current = latest.get();
+        final GameContent updated;
+        try {
+
+            updated = ContentCompiler.parseJson(json);
+
+            final List<String> problems = ContentCompiler.validate(updated);
+            if(problems.isEmpty()) {
+                problems.addAll(incompatibilities(current, updated));
+            }
+            if(!problems.isEmpty()) {
+                throw new IllegalArgumentException(String.join(" ", problems));
+            }
+
+            //Built here rather than on first use, so that no turn pays for it.
+            updated.getIndex();
+
+        } catch (IOException | RuntimeException x) {
+            rejections.increment();
+            throw x;
+        }
+
+        updated.setVersion(current.getVersion() + 1);
+        latest.set(updated);
+        reloads.increment();
+        return updated;
+
+    }
+
+    /**
+     * Starts reloading the content whenever the given file changes, on a background thread.
+     * @param file The content JSON file to watch.
+     * @throws IOException If the file's directory can't be watched.
+     */
+    public synchronized void watch(final Path file) throws IOException {
+
+        final Path directory = file.toAbsolutePath().getParent();
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        final WatchService service = watchService;
+        final Thread watcher = new Thread(() -> watchLoop(service, file.toAbsolutePath()), "HoC-Content");
+        watcher.setDaemon(true);
+        watcher.start();
+
+    }
+
+    /**
+     * @return How many new versions have been published since the first.
+     */
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    /**
+     * @return How many new versions have been rejected.
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return A one-line summary of the source's metrics, for logging.
+     */
+    public String metricsReport() {
+        return String.format("version=%d reloads=%d rejected=%d", latest.get().getVersion(), getReloadCount(),
+            getRejectionCount());
+    }
+
+    /**
+     * Stops watching the content file, if it's being watched.
+     * @throws IOException If there is an error closing the watch service.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Main loop of the watcher thread.
+     * @param service The watch service to take changes from.
+     * @param file The content file.
+     */
+    private void watchLoop(final WatchService service, final Path file) {
+
+        while(true) {
+
+            try {
+
+                final WatchKey key = service.take();
+                boolean changed = false;
+                for(WatchEvent<?> nextEvent : key.pollEvents()) {
+                    changed |= file.getFileName().equals(nextEvent.context());
+                }
+                key.reset();
+                if(!changed) {
+                    continue;
+                }
+
+                //Let the editor finish, then swallow the rest of its events so this change is only loaded once.
+                Thread.sleep(DEBOUNCE_MILLIS);
+                for(WatchKey pending = service.poll(); pending != null; pending = service.poll()) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+
+                final GameContent updated = reload(Files.readAllBytes(file));
+                System.out.println("Reloaded game content from " + file + " as version " + updated.getVersion() + ".");
+
+            } catch (InterruptedException | ClosedWatchServiceException x) {
+                return;
+            } catch (Exception x) {
+                System.out.println("Rejected changes to " + file + ": " + x.getMessage());
+            }
+
+        }
+
+    }
+
+    /**
+     * Checks whether states that refer to one version of the content can be remapped by ID to another, and decoded
+     * against it. IDs and positions in every tier's pools and the hero list must stay the same, since saved states
+     * refer to cards by position and players browse heroes by position.
+     * @param current The version being replaced.
+     * @param updated The version replacing it.
+     * @return A description of each incompatibility, or an empty list if there are none.
+     */
+    static List<String> incompatibilities(final GameContent current, final GameContent updated) {
+
+        final List<String> problems = new ArrayList<>();
+        final ContentIndex currentIndex = current.getIndex();
+        final ContentIndex updatedIndex = new ContentIndex(updated);
+
+        for(Map.Entry<Integer, Tier> nextTier : current.getTiers().entrySet()) {
+
+            final int tierNumber = nextTier.getKey();
+            checkPrefix("Tier " + tierNumber + " events", currentIndex.pool(Event.class, tierNumber),
+                updatedIndex.pool(Event.class, tierNumber), problems);
+            checkPrefix("Tier " + tierNumber + " monsters", currentIndex.pool(Monster.class, tierNumber),
+                updatedIndex.pool(Monster.class, tierNumber), problems);
+            checkPrefix("Tier " + tierNumber + " equipment", currentIndex.pool(Equipment.class, tierNumber),
+                updatedIndex.pool(Equipment.class, tierNumber), problems);
+            checkPrefix("Tier " + tierNumber + " consumables", currentIndex.pool(Consumable.class, tierNumber),
+                updatedIndex.pool(Consumable.class, tierNumber), problems);
+
+            final Monster boss = currentIndex.boss(tierNumber);
+            final Monster updatedBoss = updatedIndex.boss(tierNumber);
+            if(boss != null && (updatedBoss == null || !boss.getId().equals(updatedBoss.getId()))) {
+                problems.add("Tier " + tierNumber + " boss changed from " + boss.getId() + "; that needs a restart.");
+            }
+
+        }
+
+        final List<Hero> heroes = current.getHeroes();
+        final List<Hero> updatedHeroes = updated.getHeroes();
+        for(int index = 0; index < heroes.size(); index++) {
+            if(index >= updatedHeroes.size() || !heroes.get(index).getId().equals(updatedHeroes.get(index).getId())) {
+                problems.add("Heroes were removed or reordered at " + heroes.get(index).getId()
+                    + "; that needs a restart.");
+                break;
+            }
+        }
+
+        return problems;
+
+    }
+
+    private static void checkPrefix(final String where, final List<? extends ContentObject> current,
+            final List<? extends ContentObject> updated, final List<String> problems) {
+
+        for(int position = 0; position < current.size(); position++) {
+            if(position >= updated.size() || !current.get(position).getId().equals(updated.get(position).getId())) {
+                problems.add(where + " were removed or reordered at " + current.get(position).getId()
+                    + "; that needs a restart.");
+                return;
+            }
+        }
+
+    }
+
+}
@@ -4,7 +4,9 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * Represents collections of messages shown at various points in the game. This class is designed to be read in from a
@@ -16,6 +18,9 @@ import java.util.List;
 @JsonIgnoreProperties(ignoreUnknown=true)
 public class DynamicMessages {
     
+    /** The number of lists returned by {@link #messageLists()}. */
+    static final int LIST_COUNT = 9;
+    
     /** DynamicMessages shown when entering the dungeon. */
     @JsonProperty("enter_dungeon_messages")
     private List<String> enterDungeonMessages;
@@ -57,75 +62,111 @@ public class DynamicMessages {
      */
     public DynamicMessages() {}
     
-    private String randomMessage(List<String> list, String defaultMessage) {
+    /**
+     * Constructs a DynamicMessages object from lists in the order {@link #messageLists()} returns them.
+     * @param lists Every list of messages.
+     */
+    DynamicMessages(final List<List<String>> lists) {
+        this.enterDungeonMessages = lists.get(0);
+        this.enterDungeonClosingMessages = lists.get(1);
+        this.restartMessages = lists.get(2);
+        this.shortRestMessages = lists.get(3);
+        this.longRestMessages = lists.get(4);
+        this.cureMessages = lists.get(5);
+        this.massCureMessages = lists.get(6);
+        this.outOfTimeMessages = lists.get(7);
+        this.outOfHealthMessages = lists.get(8);
+    }
+    
+    /**
+     * @return Every list of messages, in a fixed order. Used for validating and bundling content.
+     */
+    List<List<String>> messageLists() {
+        return Arrays.asList(enterDungeonMessages, enterDungeonClosingMessages, restartMessages, shortRestMessages,
+            longRestMessages, cureMessages, massCureMessages, outOfTimeMessages, outOfHealthMessages);
+    }
+    
+    private String randomMessage(List<String> list, String defaultMessage, SplittableRandom random) {
         if(list.size() > 0) {
-            return list.get((int) Math.floor(Math.random() * list.size()));
+            return list.get(random.nextInt(list.size()));
         } else {
             return defaultMessage;
         }
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of restart messages.
      */
-    public String randomRestartMessage() {
-        return randomMessage(restartMessages, "Restarting...");
+    public String randomRestartMessage(final SplittableRandom random) {
+        return randomMessage(restartMessages, "Restarting...", random);
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of enter dungeon messages.
      */
-    public String randomEnterDungeonMessage() {
-        return randomMessage(enterDungeonMessages, "Your party assembled, you descend into the dungeon...");
+    public String randomEnterDungeonMessage(final SplittableRandom random) {
+        return randomMessage(enterDungeonMessages, "Your party assembled, you descend into the dungeon...", random);
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of enter dungeon closing messages.
      */
-    public String randomEnterDungeonClosingMessage() {
-        return randomMessage(enterDungeonClosingMessages, "Will they become the Heroes of Cordan?");
+    public String randomEnterDungeonClosingMessage(final SplittableRandom random) {
+        return randomMessage(enterDungeonClosingMessages, "Will they become the Heroes of Cordan?", random);
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of short rest messages.
      */
-    public String randomShortRestMessage() {
-        return randomMessage(shortRestMessages, "You take a short break to recover your strength.");
+    public String randomShortRestMessage(final SplittableRandom random) {
+        return randomMessage(shortRestMessages, "You take a short break to recover your strength.", random);
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of long rest messages.
      */
-    public String randomLongRestMessage() {
-        return randomMessage(longRestMessages, "You camp out for a while to recover your strength and tend to your injuries.");
+    public String randomLongRestMessage(final SplittableRandom random) {
+        return randomMessage(longRestMessages,
+            "You camp out for a while to recover your strength and tend to your injuries.", random);
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of cure messages.
      */
-    public String randomCureMessage() {
-        return randomMessage(cureMessages, "You channel divine magic to heal a wound.");
+    public String randomCureMessage(final SplittableRandom random) {
+        return randomMessage(cureMessages, "You channel divine magic to heal a wound.", random);
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of mass cure messages.
      */
-    public String randomMassCureMessage() {
-        return randomMessage(massCureMessages, "You channel divine magic to heal your party's wounds.");
+    public String randomMassCureMessage(final SplittableRandom random) {
+        return randomMessage(massCureMessages, "You channel divine magic to heal your party's wounds.", random);
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of out-of-time messages.
      */
-    public String randomOutOfTimeMessage() {
-        return randomMessage(outOfTimeMessages, "You have run out of time; you cannot hope to complete your quest now.");
+    public String randomOutOfTimeMessage(final SplittableRandom random) {
+        return randomMessage(outOfTimeMessages,
+            "You have run out of time; you cannot hope to complete your quest now.", random);
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random message from the list of out-of-health messages.
      */
-    public String randomOutOfHealthMessage() {
-        return randomMessage(outOfHealthMessages, "Your party is forced to retreat and hide to heal their injuries.");
+    public String randomOutOfHealthMessage(final SplittableRandom random) {
+        return randomMessage(outOfHealthMessages,
+            "Your party is forced to retreat and hide to heal their injuries.", random);
     }
     
 }
@@ -1,5 +1,6 @@
 package net.codelizard.hoc.content;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -8,6 +9,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * Represents all the events, monsters etc in the game in deserialized form. This class is designed to be read in from
@@ -33,6 +35,14 @@ public class GameContent {
     /** The heroes in the game. */
     private List<Hero> heroes;
     
+    /** Which version of the content this is, as published by a {@link ContentSource}; 0 if it was never published. */
+    @JsonIgnore
+    private volatile int version;
+    
+    /** Lookups into everything above. Built the first time it's needed, once loading is done. */
+    @JsonIgnore
+    private volatile ContentIndex index;
+    
     public GameContent() {}
     
     /**
@@ -63,6 +73,42 @@ public class GameContent {
         return heroes;
     }
     
+    /**
+     * @return Which version of the content this is, or 0 if it was never published by a {@link ContentSource}.
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * @param version The version this content is being published as.
+     */
+    void setVersion(final int version) {
+        this.version = version;
+    }
+    
+    /**
+     * Returns constant-time lookups into this content, building them on the first call. Must only be called once the
+     * content has been fully loaded and its object tiers inferred, since the index doesn't see later changes.
+     * @return The index of this content.
+     * @throws IllegalArgumentException If two objects or two heroes share an ID.
+     */
+    public ContentIndex getIndex() {
+        
+        ContentIndex current = index;
+        if(current == null) {
+            synchronized(this) {
+                current = index;
+                if(current == null) {
+                    current = new ContentIndex(this);
+                    index = current;
+                }
+            }
+        }
+        return current;
+        
+    }
+    
     /**
      * @param dynamicMessages The new dyanmic messages object to use.
      */
@@ -111,12 +157,15 @@ public class GameContent {
     }
     
     /**
+     * @param random The random number generator to choose heroes with.
      * @return A list of four randomly-chosen heroes (for Quick Play).
      */
-    public List<Hero> fourRandomHeroes() {
+    public List<Hero> fourRandomHeroes(final SplittableRandom random) {
         
         List<Hero> copy = new ArrayList<>(heroes);
-        Collections.shuffle(copy);
+        for(int position = copy.size(); position > 1; position--) {
+            Collections.swap(copy, position - 1, random.nextInt(position));
+        }
         return copy.subList(0, 4);
         
     }
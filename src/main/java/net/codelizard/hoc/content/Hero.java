@@ -1,5 +1,6 @@
 package net.codelizard.hoc.content;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -39,6 +40,10 @@ public class Hero {
     
     /** The resources the character contributes at each level. */
     private Map<Integer, Map<ResourceType, Integer>> resources;
+    
+    /** The resources from {@link #resources}, indexed by level, for use during play. (Derived from resources) */
+    @JsonIgnore
+    private ResourceVector[] levelResources = new ResourceVector[0];
 
     /**
      * @return An internal-use ID.
@@ -96,6 +101,15 @@ public class Hero {
         return resources;
     }
 
+    /**
+     * @param level A party level.
+     * @return The resources the hero contributes to the party total at that level, or {@code null} if there are none
+     * listed for it. Shared by every player, so must not be modified.
+     */
+    public ResourceVector getResourceAmounts(final int level) {
+        return level >= 0 && level < levelResources.length ? levelResources[level] : null;
+    }
+
     /**
      * @param id The new ID to use.
      */
@@ -149,7 +163,23 @@ public class Hero {
      * @param resources The new resource map to use.
      */
     public void setResources(final Map<Integer, Map<ResourceType, Integer>> resources) {
+        
         this.resources = resources;
+        
+        int highestLevel = -1;
+        if(resources != null) {
+            for(Integer nextLevel : resources.keySet()) {
+                highestLevel = Math.max(highestLevel, nextLevel);
+            }
+        }
+        
+        levelResources = new ResourceVector[highestLevel + 1];
+        for(int level = 0; level <= highestLevel; level++) {
+            if(resources.containsKey(level)) {
+                levelResources[level] = ResourceVector.ofCounts(resources.get(level));
+            }
+        }
+        
     }
     
     public String getInitialResourcesText() {
@@ -15,17 +15,18 @@ public abstract class Item extends ContentObject {
         
         StringBuilder output = new StringBuilder();
         
+        //Listed in content order, so the map is still used for its keys.
         for(ResourceType nextType : resources.keySet()) {
 
-            final ResourceValue value = resources.get(nextType);
-            if(value.getValue() != 0) {
+            final int amount = resourceAmounts.get(nextType);
+            if(amount != 0) {
                 
                 if(output.length() > 0) {
                     output.append(", ");
                 }
                 
                 output.append("+")
-                      .append(value.getValue())
+                      .append(amount)
                       .append(" ")
                       .append(nextType.name);
 
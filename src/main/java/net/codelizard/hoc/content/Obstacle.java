@@ -23,8 +23,8 @@ public abstract class Obstacle extends ContentObject {
      */
     public boolean canDefeat(final ResourceType resourceType, final PlayerState currentState) {
         
-        final ResourceValue value = resources.get(resourceType);
-        if(value == null || value.getValue() == 0) { //Must have a valid nonzero cost entry
+        final int baseCost = resourceAmounts.get(resourceType);
+        if(baseCost == 0) { //Must have a valid nonzero cost entry
             
             return false;
             
@@ -33,7 +33,7 @@ public abstract class Obstacle extends ContentObject {
             int discount = getDiscount(currentState, resourceType);
 
             //Discounts can't bring a resource cost below 1
-            int cost = Math.max(1, value.getValue() - discount);
+            int cost = Math.max(1, baseCost - discount);
             
             return resourceType.canAlwaysSpend
                     || cost <= currentState.getResourceCount(resourceType);
@@ -42,6 +42,21 @@ public abstract class Obstacle extends ContentObject {
         
     }
     
+    /**
+     * @param resourceType The resource the party would spend.
+     * @param currentState The party's current state.
+     * @return What defeating this Obstacle with the resource would cost after discounts, or 0 if it can't be defeated
+     * with that resource at all.
+     */
+    public int cost(final ResourceType resourceType, final PlayerState currentState) {
+        
+        final int baseCost = resourceAmounts.get(resourceType);
+        
+        //Discounts can't bring a resource cost below 1
+        return baseCost == 0 ? 0 : Math.max(1, baseCost - getDiscount(currentState, resourceType));
+        
+    }
+    
     /**
      * Generates a full listing of all spendable resources that can be used to defeat this Obstacle. Discounts are
      * marked with a * and only costs with entries are listed.
@@ -55,13 +70,13 @@ public abstract class Obstacle extends ContentObject {
         //Iterate over the ResourceType's values to preserve order of declaration
         for(ResourceType nextType : ResourceType.values()) {
 
-            final ResourceValue value = resources.get(nextType);
-            if(value != null && value.getValue() != 0) {
+            final int baseCost = resourceAmounts.get(nextType);
+            if(baseCost != 0) {
 
                 int discount = getDiscount(currentState, nextType);
 
                 //Discounts can't bring a resource cost below 1
-                int cost = Math.max(1, value.getValue() - discount);
+                int cost = Math.max(1, baseCost - discount);
 
                 output.append("[")
                       .append(cost);
@@ -74,7 +89,7 @@ public abstract class Obstacle extends ContentObject {
                       .append(nextType.name)
                       .append("]")
                       .append(" ")
-                      .append(value.randomText())
+                      .append(resources.get(nextType).randomText(currentState.getRandom()))
                       .append("\n");
 
             }
@@ -2,6 +2,7 @@ package net.codelizard.hoc.content;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * Represents a numerical value for spending/gaining resources, potentially with optional text descriptions attached.
@@ -51,10 +52,11 @@ public class ResourceValue {
     }
     
     /**
+     * @param random The random number generator to choose with.
      * @return A random text from the texts for this value, or an empty string if there are no texts.
      */
-    public String randomText() {
-        return texts.size() > 0 ? texts.get((int) (Math.random() * texts.size())) : "";
+    public String randomText(final SplittableRandom random) {
+        return texts.size() > 0 ? texts.get(random.nextInt(texts.size())) : "";
     }
     
     @Override
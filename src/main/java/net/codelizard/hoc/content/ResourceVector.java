@@ -0,0 +1,155 @@
+package net.codelizard.hoc.content;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * <p>An amount of every type of resource, stored as a primitive array indexed by {@link ResourceType#ordinal()}. Used
+ * instead of a {@code Map<ResourceType, Integer>} wherever resources are counted during play, so that checking,
+ * spending and gaining them never boxes or allocates. Types that have no amount count as zero.</p>
+ *
+ * <p>ResourceVectors are mutable and not thread-safe. The ones handed out by content objects are shared by every
+ * player and must never be modified.</p>
+ *
+ * @author Codelizard
+ */
+public final class ResourceVector {
+
+    /** Every resource type, by ordinal. */
+    private static final ResourceType[] TYPES = ResourceType.values();
+
+    /** The amount of each resource type, by ordinal. */
+    private final int[] amounts = new int[TYPES.length];
+
+    /**
+     * Creates a new ResourceVector with zero of everything.
+     */
+    public ResourceVector() {}
+
+    /**
+     * @param values The resource values of a content object, or {@code null}.
+     * @return A vector of the values' numbers, treating missing numbers as zero.
+     */
+    public static ResourceVector ofValues(final Map<ResourceType, ResourceValue> values) {
+
+        final ResourceVector vector = new ResourceVector();
+        if(values != null) {
+            for(Map.Entry<ResourceType, ResourceValue> nextValue : values.entrySet()) {
+                final Integer amount = nextValue.getValue() == null ? null : nextValue.getValue().getValue();
+                if(nextValue.getKey() != null && amount != null) {
+                    vector.amounts[nextValue.getKey().ordinal()] = amount;
+                }
+            }
+        }
+        return vector;
+
+    }
+
+    /**
+     * @param counts Resource counts, or {@code null}.
+     * @return A vector of the counts, treating missing counts as zero.
+     */
+    public static ResourceVector ofCounts(final Map<ResourceType, Integer> counts) {
+
+        final ResourceVector vector = new ResourceVector();
+        if(counts != null) {
+            for(Map.Entry<ResourceType, Integer> nextCount : counts.entrySet()) {
+                if(nextCount.getKey() != null && nextCount.getValue() != null) {
+                    vector.amounts[nextCount.getKey().ordinal()] = nextCount.getValue();
+                }
+            }
+        }
+        return vector;
+
+    }
+
+    /**
+     * @param type A resource type.
+     * @return The amount of that type.
+     */
+    public int get(final ResourceType type) {
+        return amounts[type.ordinal()];
+    }
+
+    /**
+     * @param type A resource type.
+     * @param amount The new amount of that type.
+     */
+    public void set(final ResourceType type, final int amount) {
+        amounts[type.ordinal()] = amount;
+    }
+
+    /**
+     * @param type A resource type.
+     * @param amount How much to add to that type; may be negative.
+     */
+    public void add(final ResourceType type, final int amount) {
+        amounts[type.ordinal()] += amount;
+    }
+
+    /**
+     * Sets every amount to zero.
+     */
+    public void clear() {
+        Arrays.fill(amounts, 0);
+    }
+
+    /**
+     * Adds every amount in another vector to this one.
+     * @param other The amounts to add.
+     */
+    public void addAll(final ResourceVector other) {
+        for(int index = 0; index < amounts.length; index++) {
+            amounts[index] += other.amounts[index];
+        }
+    }
+
+    /**
+     * Replaces every amount in this vector with the amount in another.
+     * @param other The amounts to copy.
+     */
+    public void setAll(final ResourceVector other) {
+        System.arraycopy(other.amounts, 0, amounts, 0, amounts.length);
+    }
+
+    /**
+     * @return A bitmask of the ordinals of the resource types with a nonzero amount.
+     */
+    public int nonZeroTypes() {
+        int mask = 0;
+        for(int index = 0; index < amounts.length; index++) {
+            if(amounts[index] != 0) {
+                mask |= 1 << index;
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof ResourceVector && Arrays.equals(amounts, ((ResourceVector) other).amounts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(amounts);
+    }
+
+    /**
+     * @return A one-line description of this ResourceVector for debugging purposes.
+     */
+    @Override
+    public String toString() {
+
+        final StringBuilder output = new StringBuilder("{");
+        for(ResourceType nextType : TYPES) {
+            if(output.length() > 1) {
+                output.append(", ");
+            }
+            output.append(nextType).append('=').append(amounts[nextType.ordinal()]);
+        }
+        return output.append('}').toString();
+
+    }
+
+}
@@ -89,4 +89,11 @@ public class Tier {
         this.consumables = consumables;
     }
     
+    /**
+     * @param boss The new boss to use.
+     */
+    public void setBoss(final Monster boss) {
+        this.boss = boss;
+    }
+    
 }
@@ -0,0 +1,251 @@
+package net.codelizard.hoc.logic;
+
+import net.codelizard.hoc.GameResponse;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs player turns on a pool of worker threads. Turns from different players are processed in parallel, but turns
+ * from the same player (the same service name and service user ID) are always processed one at a time, in the order
+ * they were submitted. This guarantees that a player's PlayerState is never touched by two threads at once.
+ *
+ * @author Codelizard
+ */
+public class ActionDispatcher {
+
+    /** How often shutdown checks whether queued turns have finished, in milliseconds. */
+    private static final long DRAIN_POLL_MILLIS = 10;
+
+    /** The action processor that does the actual turn handling. */
+    private final ActionProcessor actionProcessor;
+
+    /** The worker threads turns are run on. */
+    private final ExecutorService workers;
+
+    /** Per-player queues of pending turns. A lane only exists while its player has turns queued or running. */
+    private final ConcurrentMap<SessionKey, Lane> lanes = new ConcurrentHashMap<>();
+
+    /** Submitted turns whose futures haven't completed yet, including ones waiting on the journal. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** Whether or not {@link #shutdown(long, TimeUnit)} has been called. */
+    private volatile boolean shutDown;
+
+    /**
+     * Creates a new ActionDispatcher with one worker thread per available processor.
+     * @param actionProcessor The action processor to run turns with.
+     */
+    public ActionDispatcher(final ActionProcessor actionProcessor) {
+        this(actionProcessor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new ActionDispatcher.
+     * @param actionProcessor The action processor to run turns with.
+     * @param workerThreads The number of worker threads to run turns on.
+     */
+    public ActionDispatcher(final ActionProcessor actionProcessor, final int workerThreads) {
+        this.actionProcessor = actionProcessor;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workerThreads), new WorkerThreadFactory());
+    }
+
+    /**
+     * Queues a PlayerAction to be processed. It will run after every action previously submitted for the same player
+     * has finished.
+     * @param action The PlayerAction to process.
+     * @return A future that completes with the response to send back to the user.
+     */
+    public CompletableFuture<GameResponse> submit(final PlayerAction action) {
+
+        final CompletableFuture<GameResponse> result = new CompletableFuture<>();
+        if(shutDown) {
+            result.completeExceptionally(new RejectedExecutionException("The dispatcher has shut down."));
+            return result;
+        }
+
+        //Only counted as done once whatever is waiting on the result has been told, so that a reply is always queued
+        //before shutdown() returns.
+        inFlight.incrementAndGet();
+        final Runnable turn = () -> {
+            try {
+                actionProcessor.process(action).whenComplete((response, x) -> {
+                    try {
+                        if(x == null) {
+                            result.complete(response);
+                        } else {
+                            result.completeExceptionally(x);
+                        }
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+                inFlight.decrementAndGet();
+            }
+        };
+
+        final SessionKey key = action.getSessionKey();
+
+        //A lane can retire between being looked up and being offered to; if so, look it up again.
+        try {
+            while(!lanes.computeIfAbsent(key, Lane::new).offer(turn)) {
+                Thread.yield();
+            }
+        } catch (RejectedExecutionException x) {
+            //The dispatcher has shut down, so the turn will never run.
+            result.completeExceptionally(x);
+            inFlight.decrementAndGet();
+        }
+
+        return result;
+
+    }
+
+    /**
+     * @return The number of players that currently have turns queued or running.
+     */
+    public int activeLanes() {
+        return lanes.size();
+    }
+
+    /**
+     * @return The number of submitted turns that haven't finished yet, including ones whose response is waiting for
+     * the turn to be journaled.
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * Stops accepting new work and waits for queued turns to finish and hand over their responses. Turns submitted
+     * after this is called are rejected.
+     * @param timeout How long to wait for queued turns.
+     * @param unit The unit of the timeout.
+     * @return {@code true} if every queued turn finished, {@code false} if the timeout was hit first.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean shutdown(final long timeout, final TimeUnit unit) throws InterruptedException {
+
+        shutDown = true;
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        //A running turn queues its player's next one on the pool, so the pool can't be shut down until they're done.
+        while(inFlight.get() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(DRAIN_POLL_MILLIS);
+        }
+
+        workers.shutdown();
+        return workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+            && inFlight.get() == 0;
+
+    }
+
+    /**
+     * A single player's queue of pending turns. At most one of a lane's turns is ever scheduled on the worker pool at a
+     * time; each turn reschedules the lane after it finishes so that busy players can't starve everyone else.
+     */
+    private final class Lane implements Runnable {
+
+        private final SessionKey key;
+
+        /** Pending turns. Guarded by {@code this}. */
+        private final Queue<Runnable> turns = new ArrayDeque<>();
+
+        /** Whether this lane is currently scheduled on (or running in) the worker pool. Guarded by {@code this}. */
+        private boolean scheduled;
+
+        /** Whether this lane has been removed from the lane map and must no longer accept turns. Guarded by {@code this}. */
+        private boolean retired;
+
+        Lane(final SessionKey key) {
+            this.key = key;
+        }
+
+        /**
+         * @param turn The turn to queue.
+         * @return {@code true} if the turn was queued, {@code false} if this lane has retired.
+         * @throws RejectedExecutionException If the worker pool has shut down. The lane retires, since it can never run.
+         */
+        boolean offer(final Runnable turn) {
+
+            synchronized(this) {
+                if(retired) {
+                    return false;
+                }
+                turns.add(turn);
+                if(scheduled) {
+                    return true;
+                }
+                scheduled = true;
+            }
+
+            try {
+                workers.execute(this);
+            } catch (RejectedExecutionException x) {
+                synchronized(this) {
+                    turns.remove(turn);
+                    scheduled = false;
+                    retired = true;
+                }
+                lanes.remove(key, this);
+                throw x;
+            }
+            return true;
+
+        }
+
+        @Override
+        public void run() {
+
+            final Runnable turn;
+            synchronized(this) {
+                turn = turns.poll();
+            }
+
+            try {
+                turn.run();
+            } finally {
+
+                synchronized(this) {
+                    if(turns.isEmpty()) {
+                        scheduled = false;
+                        retired = true;
+                        lanes.remove(key, this);
+                        return;
+                    }
+                }
+
+                workers.execute(this);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Names worker threads so they can be told apart in stack traces.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(runnable, "HoC-Turn-" + threadCount.incrementAndGet());
+        }
+
+    }
+
+}
@@ -2,22 +2,54 @@ package net.codelizard.hoc.logic;
 
 import net.codelizard.hoc.GameResponse;
 import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.content.ContentSource;
+import net.codelizard.hoc.content.GameContent;
+import net.codelizard.hoc.persistence.ActionJournal;
+import net.codelizard.hoc.persistence.JournalRecord;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Top-level class handling the game's logic and state transitions. It should be service-agnostic so that the logic
  * can be re-used between different messaging services.
  * 
+ * <p>handleAction may be called from several threads at once, as long as no two calls for the same player overlap;
+ * {@link ActionDispatcher} provides that guarantee. Each turn also holds the lock on the player's PlayerState, and on
+ * the new one if the turn replaces it, so that snapshots and passivation only ever see states between turns.</p>
+ * 
  * @author Codelizard
  */
 public class ActionProcessor {
     
-    //TOOD: Extract this into a database.
-    private final Map<String, Map<String, PlayerState>> gameState = new HashMap<>();
+    /** Every player's session. Idle ones live in whichever {@link SessionStore} the registry was given. */
+    private final SessionRegistry sessions;
+    
+    /** Where accepted actions are recorded, or {@code null} if they aren't being recorded. */
+    private volatile ActionJournal journal;
+    
+    /**
+     * Creates a new ActionProcessor that keeps every session in memory.
+     */
+    public ActionProcessor() {
+        this(new SessionRegistry());
+    }
+    
+    /**
+     * Creates a new ActionProcessor.
+     * @param sessions The registry to keep sessions in.
+     */
+    public ActionProcessor(final SessionRegistry sessions) {
+        this.sessions = sessions;
+    }
     
-    public ActionProcessor() {}
+    /**
+     * @return Every player's session, for admin tooling.
+     */
+    public SessionRegistry getSessions() {
+        return sessions;
+    }
     
     /**
      * Retrieves the current state of a player.
@@ -25,10 +57,7 @@ public class ActionProcessor {
      * @return The current state of the specified Player.
      */
     private PlayerState getState(final PlayerAction action) {
-        if(!gameState.containsKey(action.getServiceName())) {
-            gameState.put(action.getServiceName(), new HashMap<>());
-        }
-        return gameState.get(action.getServiceName()).get(action.getServiceUserId());
+        return sessions.get(action.getSessionKey());
     }
     
     /**
@@ -37,35 +66,181 @@ public class ActionProcessor {
      * @param newState The new state to associate with the player.
      */
     private void setState(final PlayerAction action, final PlayerState newState) {
+        sessions.put(action.getSessionKey(), newState);
+    }
+    
+    /**
+     * Starts recording every accepted action in a journal, so that sessions can be recovered after a restart.
+     * @param journal The journal to record actions in.
+     */
+    public void setJournal(final ActionJournal journal) {
+        this.journal = journal;
+    }
+    
+    /**
+     * Entry point of the game logic. Given an incoming PlayerAction, determines what state they are in, what state
+     * they are moving to, and what text should be sent back to the user.
+     * @param action The PlayerAction to process.
+     * @return A response to be sent back to the user.
+     */
+    public GameResponse handleAction(final PlayerAction action) {
+        return process(action).join();
+    }
+    
+    /**
+     * Processes an incoming PlayerAction. The turn itself runs before this returns; if actions are being journaled,
+     * the response is only released once the action has been made durable, so a player is never shown the result of a
+     * move that could be lost in a crash.
+     * @param action The PlayerAction to process.
+     * @return A future that completes with the response to be sent back to the user.
+     */
+    public CompletableFuture<GameResponse> process(final PlayerAction action) {
+        
+        final ActionJournal currentJournal = journal;
+        final long turnSeed = ThreadLocalRandom.current().nextLong();
+        PlayerState found = getState(action);
+        final boolean firstContact = found == null;
         
-        if(!gameState.containsKey(action.getServiceName())) {
-            gameState.put(action.getServiceName(), new HashMap<>());
+        while(true) {
+            
+            final PlayerState currentState = found != null ? found : lookUpState(action);
+            
+            //Holding the state's lock for the whole turn keeps snapshots and passivation from catching it half-updated.
+            synchronized(currentState) {
+                
+                //It may have been passivated while waiting for the lock; if so, it has to be reactivated first.
+                if(!sessions.isResident(action.getSessionKey(), currentState)) {
+                    found = null;
+                    continue;
+                }
+                
+                if(currentJournal == null) {
+                    return CompletableFuture.completedFuture(
+                        runTurn(action, currentState, firstContact, turnSeed, currentState.getJournalSequence())
+                    );
+                }
+                
+                final ActionJournal.Ticket ticket;
+                try {
+                    ticket = currentJournal.append(action, turnSeed);
+                } catch (IOException x) {
+                    x.printStackTrace();
+                    //Nothing was recorded, so a session made just for this action mustn't outlive it either.
+                    if(firstContact) {
+                        sessions.remove(action.getSessionKey());
+                    }
+                    return CompletableFuture.completedFuture(
+                        new GameResponse(HeroesOfCordan.getStaticMessage("error.journal") + x.getMessage())
+                    );
+                }
+                
+                final GameResponse response = runTurn(
+                    action, currentState, firstContact, turnSeed, ticket.getSequence()
+                );
+                return ticket.getCommitted().handle((ignored, x) -> {
+                    if(x == null) {
+                        return response;
+                    }
+                    x.printStackTrace();
+                    //The move has already been made, so the player still needs its reply and buttons to carry on.
+                    final GameResponse warning = new GameResponse(HeroesOfCordan.getStaticMessage("error.journal")
+                        + x.getMessage() + "\n\n" + response.getText(), response.getResponses());
+                    warning.setColumns(response.getColumns());
+                    return warning;
+                });
+                
+            }
+            
         }
         
-        gameState.get(action.getServiceName()).put(action.getServiceUserId(), newState);
+    }
+    
+    /**
+     * Re-applies a journaled action during recovery, exactly as it was originally processed. The response is thrown
+     * away, and the action is not journaled again.
+     * @param record The journaled action.
+     */
+    public void replay(final JournalRecord record) {
+        
+        final PlayerAction action = record.getAction();
+        PlayerState found = getState(action);
+        final boolean firstContact = found == null;
+        
+        while(true) {
+            final PlayerState currentState = found != null ? found : lookUpState(action);
+            synchronized(currentState) {
+                if(sessions.isResident(action.getSessionKey(), currentState)) {
+                    runTurn(action, currentState, firstContact, record.getTurnSeed(), record.getSequence());
+                    return;
+                }
+            }
+            found = null;
+        }
         
     }
     
     /**
-     * Entry point of the game logic. Given an incoming PlayerAction, determines what state they are in, what state
-     * they are moving to, and what text should be sent back to the user.
+     * Retrieves the current state of a player, creating a new one if they have none.
+     * @param action The PlayerAction object associated with the player being handled.
+     * @return The current state of the specified Player.
+     */
+    private PlayerState lookUpState(final PlayerAction action) {
+        return sessions.getOrCreate(action.getSessionKey(), PlayerState::new);
+    }
+    
+    /**
+     * Runs a single turn for a player. Must be called while holding the lock on the player's current state.
      * @param action The PlayerAction to process.
+     * @param currentState The player's current state.
+     * @param firstContact Whether or not this is the first action ever seen from the player.
+     * @param turnSeed The seed for anything random that happens during the turn.
+     * @param sequence The journal sequence number of the action.
      * @return A response to be sent back to the user.
      */
-    public GameResponse handleAction(final PlayerAction action) {
+    private GameResponse runTurn(final PlayerAction action, final PlayerState currentState, final boolean firstContact,
+            final long turnSeed, final long sequence) {
+        
+        //The whole turn sees one version of the content, even if a new one is published partway through.
+        final ContentSource contentSource = HeroesOfCordan.getContentSource();
+        final GameContent content = contentSource.pin();
+        try {
+            currentState.useContent(content);
+            return playTurn(action, currentState, firstContact, turnSeed, sequence, content);
+        } finally {
+            contentSource.unpin();
+        }
+        
+    }
+    
+    /**
+     * Runs a single turn for a player, once the content version for the turn has been pinned.
+     * @param action The PlayerAction to process.
+     * @param currentState The player's current state, already switched to the pinned content version.
+     * @param firstContact Whether or not this is the first action ever seen from the player.
+     * @param turnSeed The seed for anything random that happens during the turn.
+     * @param sequence The journal sequence number of the action.
+     * @param content The content version pinned for the turn.
+     * @return A response to be sent back to the user.
+     */
+    private GameResponse playTurn(final PlayerAction action, final PlayerState currentState,
+            final boolean firstContact, final long turnSeed, final long sequence, final GameContent content) {
         
-        final PlayerState currentState = getState(action);
-        final String playerText = action.getInputText();
+        final PlayerCommand command = PlayerCommand.parse(action.getInputText());
         PlayerState newState;
         
-        if(currentState == null /* Never seen this user before */
-            || "/start".equalsIgnoreCase(playerText) /* Telegram bot initiation command */ ) {
+        currentState.reseed(turnSeed);
+        
+        if(firstContact) {
             
             //We've never seen this user before.
+            newState = currentState;
+            
+        } else if(command.matches("/start") /* Telegram bot initiation command */ ) {
+            
             newState = new PlayerState();
             
-        } else if (HeroesOfCordan.getStaticMessage("global.restart").equalsIgnoreCase(playerText)
-                || "/restart".equalsIgnoreCase(playerText)) {
+        } else if (command.matches(HeroesOfCordan.getStaticMessage("global.restart"))
+                || command.matches("/restart")) {
             
             //User abandoning in-progress game
             newState = new PlayerState();
@@ -75,23 +250,45 @@ public class ActionProcessor {
             
             //Main game logic
             try {
-                newState = currentState.getGameState().update(currentState, playerText);
+                newState = currentState.getGameState().update(currentState, command);
             } catch (Exception x) {
                 x.printStackTrace();
+                currentState.setJournalSequence(sequence);
                 return new GameResponse(HeroesOfCordan.getStaticMessage("error.update") + x.getMessage());
             }
             
         }
         
-        setState(action, newState);
+        newState.setJournalSequence(sequence);
         
+        //Most turns mutate the existing state in place, which doesn't need to be recorded again.
+        if(newState == currentState) {
+            return enterState(newState);
+        }
+        
+        //Once it's recorded, snapshots and passivation lock the new state instead, so it has to stay locked until
+        //it has been entered.
+        synchronized(newState) {
+            newState.reseed(turnSeed);
+            newState.useContent(content);
+            setState(action, newState);
+            return enterState(newState);
+        }
+        
+    }
+    
+    /**
+     * Enters the game state a player has just moved into. Must be called while holding the lock on the player's state.
+     * @param newState The player's state after the turn.
+     * @return A response to be sent back to the user.
+     */
+    private GameResponse enterState(final PlayerState newState) {
         try {
             return newState.getGameState().enterState(newState);
         } catch (Exception x) {
             x.printStackTrace();
             return new GameResponse(HeroesOfCordan.getStaticMessage("error.enter_state") + x.getMessage());
         }
-        
     }
     
 }
@@ -0,0 +1,194 @@
+package net.codelizard.hoc.logic;
+
+import net.codelizard.hoc.content.ContentIndex;
+import net.codelizard.hoc.content.ContentObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * <p>One of the decks of cards dealt for a floor. Rather than copying the cards, a deck refers to its tier's shared,
+ * immutable pool from {@link ContentIndex} and keeps its own order as a ring of {@code short} positions in that pool,
+ * with a cursor at the top card. Drawing, discarding and sending the top card to the bottom are all O(1), and a dealt
+ * deck costs two bytes per card on top of a small fixed overhead.</p>
+ *
+ * <p>Since only positions are stored, a deck can be switched to a newer version of the content just by swapping in
+ * that version's pool; content reloads never remove or reorder pooled cards.</p>
+ *
+ * @param <T> The kind of card in the deck.
+ * @author Codelizard
+ */
+final class FloorDeck<T extends ContentObject> {
+
+    /** The kind of card in the deck, for looking its pool up. */
+    private final Class<T> type;
+
+    /** The tier the deck was dealt from, or 0 if it hasn't been dealt. */
+    private int tier;
+
+    /** The pool the deck's positions refer to. */
+    private List<T> pool = Collections.emptyList();
+
+    /** Ring of pool positions; the deck runs from {@link #head} for {@link #size} entries, wrapping around. */
+    private short[] order = new short[0];
+
+    /** Where in {@link #order} the top card is. */
+    private int head;
+
+    /** How many cards are left. */
+    private int size;
+
+    /**
+     * Creates a new, empty FloorDeck.
+     * @param type The kind of card the deck will hold.
+     */
+    FloorDeck(final Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * Deals a fresh deck of every card in a tier's pool, shuffled.
+     * @param index The content to deal from.
+     * @param tierNumber The tier to deal from.
+     * @param random The random number generator to shuffle with.
+     */
+    void deal(final ContentIndex index, final int tierNumber, final SplittableRandom random) {
+
+        usePool(index, tierNumber, pool(index, tierNumber).size());
+        for(int position = 0; position < size; position++) {
+            order[position] = (short) position;
+        }
+
+        //Fisher-Yates, drawing from the end of the deck the same way Collections.shuffle() does.
+        for(int position = size; position > 1; position--) {
+            final int other = random.nextInt(position);
+            final short swapped = order[position - 1];
+            order[position - 1] = order[other];
+            order[other] = swapped;
+        }
+
+    }
+
+    /**
+     * Restores a deck from its tier and positions, such as when reading a saved state.
+     * @param index The content the positions refer to.
+     * @param tierNumber The tier the deck was dealt from.
+     * @param positions The pool positions of the remaining cards, top first.
+     * @throws IllegalArgumentException If a position is outside the tier's pool.
+     */
+    void restore(final ContentIndex index, final int tierNumber, final int[] positions) {
+
+        usePool(index, tierNumber, positions.length);
+        for(int card = 0; card < positions.length; card++) {
+            if(positions[card] < 0 || positions[card] >= pool.size()) {
+                throw new IllegalArgumentException("Deck position " + positions[card] + " is outside tier "
+                    + tierNumber + ".");
+            }
+            order[card] = (short) positions[card];
+        }
+
+    }
+
+    /**
+     * Empties the deck.
+     */
+    void clear() {
+        tier = 0;
+        pool = Collections.emptyList();
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Switches the deck over to the same tier's pool in another version of the content.
+     * @param index The content version to switch to.
+     */
+    void useContent(final ContentIndex index) {
+        if(tier > 0) {
+            pool = pool(index, tier);
+        }
+    }
+
+    /**
+     * @return Whether or not there are no cards left.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return How many cards are left.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The tier the deck was dealt from, or 0 if it hasn't been dealt.
+     */
+    int getTier() {
+        return tier;
+    }
+
+    /**
+     * @param card How far down the deck the card is; 0 is the top.
+     * @return The card's position in its tier's pool.
+     */
+    int positionAt(final int card) {
+        if(card < 0 || card >= size) {
+            throw new IndexOutOfBoundsException("Card " + card + " of a deck of " + size + ".");
+        }
+        return order[(head + card) % order.length];
+    }
+
+    /**
+     * @return The card on top of the deck.
+     * @throws IndexOutOfBoundsException If the deck is empty.
+     */
+    T top() {
+        return pool.get(positionAt(0));
+    }
+
+    /**
+     * Removes the top card from the game.
+     * @throws IndexOutOfBoundsException If the deck is empty.
+     */
+    void discard() {
+        positionAt(0);
+        head = (head + 1) % order.length;
+        size--;
+    }
+
+    /**
+     * Moves the top card to the bottom of the deck. Does nothing if the deck is empty.
+     */
+    void redraw() {
+        if(size > 0) {
+            //The bottom slot is either free, or the top card's own slot when nothing has been discarded yet.
+            order[(head + size) % order.length] = order[head];
+            head = (head + 1) % order.length;
+        }
+    }
+
+    private void usePool(final ContentIndex index, final int tierNumber, final int cards) {
+
+        pool = pool(index, tierNumber);
+        if(cards > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Decks can have at most " + Short.MAX_VALUE + " cards.");
+        }
+        if(order.length < cards) {
+            order = new short[cards];
+        }
+
+        tier = tierNumber;
+        head = 0;
+        size = cards;
+
+    }
+
+    private List<T> pool(final ContentIndex index, final int tierNumber) {
+        return index.pool(type, tierNumber);
+    }
+
+}
@@ -5,8 +5,9 @@ import net.codelizard.hoc.HeroesOfCordan;
 import net.codelizard.hoc.content.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Represents all of the mutually exclusive potential states a player can be in at any given time. This is used to
@@ -14,10 +15,10 @@ import java.util.Map;
  * 
  * @author Codelizard
  */
-public enum GameState {
+public enum GameState implements ButtonSet {
     
     /** The player is on the title (such as it is) and is choosing whether to start, read instructions, etc. */
-    TITLE() {
+    TITLE("opening.instructions", "opening.new_game", "opening.advanced_start") {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
@@ -30,16 +31,17 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
-            if(getStaticMessage("opening.instructions").equalsIgnoreCase(playerText)) {
+            final String button = pressedButton(command);
+            if("opening.instructions".equals(button)) {
                 currentState.setParty(new Party());
                 currentState.setGameState(INSTRUCTIONS);
-            } else if(getStaticMessage("opening.new_game").equalsIgnoreCase(playerText)) {
-                currentState.setParty(new Party(HeroesOfCordan.getContent().fourRandomHeroes()));
+            } else if("opening.new_game".equals(button)) {
+                currentState.setParty(new Party(HeroesOfCordan.getContent().fourRandomHeroes(currentState.getRandom())));
                 currentState.calculateResources();
                 currentState.setGameState(ENTER_DUNGEON);
-            } else if(getStaticMessage("opening.advanced_start").equalsIgnoreCase(playerText)) {
+            } else if("opening.advanced_start".equals(button)) {
                 currentState.setParty(new Party());
                 currentState.setGameState(SELECT_HEROES);
             }
@@ -56,13 +58,13 @@ public enum GameState {
         @Override
         public GameResponse enterState(PlayerState currentState) {
             return new GameResponse(
-                getDynamicMessages().randomRestartMessage(),
+                getDynamicMessages().randomRestartMessage(currentState.getRandom()),
                 getStaticMessage("global.confirm")
             );
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             currentState.setGameState(TITLE);
             return currentState;
@@ -83,12 +85,12 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             //Accept any response even if it's not the exact one expected.
             /* Also, send the party into the Quick Start after reading the instructions;
              * new players shouldn't be dumped into the advanced setup. */
-            currentState.setParty(new Party(HeroesOfCordan.getContent().fourRandomHeroes()));
+            currentState.setParty(new Party(HeroesOfCordan.getContent().fourRandomHeroes(currentState.getRandom())));
             currentState.calculateResources();
             currentState.setGameState(ENTER_DUNGEON);
             return currentState;
@@ -137,16 +139,14 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
-            int index;
-            try {
-                index = Integer.parseInt(playerText);
-            } catch (NumberFormatException nfx) {
+            if(!command.isNumber()) {
                 //Invalid input, resend the list.
                 return currentState;
             }
             
+            final int index = command.getNumber();
             final List<Hero> heroes = HeroesOfCordan.getContent().getHeroes();
             if(index >= 0 && index < heroes.size()) {
                 
@@ -167,7 +167,7 @@ public enum GameState {
     },
     
     /** The player is viewing a hero detail screen. */
-    HERO_DETAIL() {
+    HERO_DETAIL("hero_detail.select", "hero_detail.cancel") {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
@@ -194,9 +194,10 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
-            if(getStaticMessage("hero_detail.select").equalsIgnoreCase(playerText)) {
+            final String button = pressedButton(command);
+            if("hero_detail.select".equals(button)) {
                 
                 final Hero hero = HeroesOfCordan.getContent().getHeroes().get(currentState.getHeroIndex());
                 currentState.getParty().addHero(hero);
@@ -208,7 +209,7 @@ public enum GameState {
                     currentState.setGameState(SELECT_HEROES);
                 }
                 
-            } else if(getStaticMessage("hero_detail.cancel").equalsIgnoreCase(playerText)) {
+            } else if("hero_detail.cancel".equals(button)) {
                 
                 currentState.setGameState(SELECT_HEROES);
                 
@@ -226,19 +227,21 @@ public enum GameState {
         @Override
         public GameResponse enterState(PlayerState currentState) {
             
-            String output = getDynamicMessages().randomEnterDungeonMessage()
+            String output = getDynamicMessages().randomEnterDungeonMessage(currentState.getRandom())
                     + "\n\n"
                     + currentState.listHeroes()
                     + "...\n"
-                    + getDynamicMessages().randomEnterDungeonClosingMessage();
+                    + getDynamicMessages().randomEnterDungeonClosingMessage(currentState.getRandom());
             
             return new GameResponse(output, getStaticMessage("enter_dungeon.start"));
             
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
+            //Every game starts on the first floor, however far this player got in their last one.
+            currentState.setFloorNumber(0);
             currentState.nextFloor();
             
             //Any response is acceptable.
@@ -250,7 +253,7 @@ public enum GameState {
     },
     
     /** The player is in the game and is encountering an Event. */
-    EVENT() {
+    EVENT("global.use_consumable") {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
@@ -265,7 +268,7 @@ public enum GameState {
             }
             
             //General decription text
-            output.append(nextEvent.fullLengthDescription())
+            output.append(nextEvent.fullLengthDescription(currentState.getRandom()))
                   .append("\n\n");
             
             //Defeat costs
@@ -277,7 +280,7 @@ public enum GameState {
             }
             
             //Remind the player what they have, since they're about to spend some.
-            output.append(currentState.statusReport());
+            currentState.appendStatusReport(output);
             
             //If the player has any consumables, give them the option to use one
             if(!currentState.getConsumables().isEmpty()) {
@@ -292,11 +295,13 @@ public enum GameState {
 
         /** Player is responding to an event with the resource they wish to spend, or "use consumable". */
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
+            
+            final String button = pressedButton(command);
             
             final Event nextEvent = currentState.upcomingEvent();
             
-            if(getStaticMessage("global.use_consumable").equalsIgnoreCase(playerText)) {
+            if("global.use_consumable".equals(button)) {
                 
                 currentState.setReturnState(EVENT);
                 currentState.setGameState(USE_CONSUMABLE);
@@ -304,19 +309,15 @@ public enum GameState {
                 
             } else {
                 
-                ResourceType spentResource;
-                try {
-                    spentResource = ResourceType.valueOf(playerText.toUpperCase());
-                } catch (IllegalArgumentException iax) {
+                final ResourceType spentResource = command.getResourceType();
+                if(spentResource == null) {
                     //Re-prompt for input
                     return currentState;
                 }
                 
-                final Map<ResourceType, ResourceValue> eventResources = nextEvent.getResources();
-                final ResourceValue value = eventResources.get(spentResource);
                 if(nextEvent.canDefeat(spentResource, currentState)) {
                     
-                    int cost = value.getValue();
+                    int cost = nextEvent.getResourceAmounts().get(spentResource);
                     final int discount = currentState.getParty().eventDiscount(spentResource);
                     
                     //Discounts can't bring a resource cost below 1
@@ -359,7 +360,13 @@ public enum GameState {
     },
     
     /** The player is deciding which action to take next. */
-    ACTION() {
+    ACTION(
+        "action.fight", "action.short_rest", "action.long_rest",
+        "action.charge", "action.transmute", "action.cure",
+        "action.mass_cure", "action.scout", "action.secret_door",
+        "action.use_consumable", "action.boss", "action.boss_charge",
+        "action.repeat_instructions"
+    ) {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
@@ -405,162 +412,107 @@ public enum GameState {
             }
             
             //Always close with the status report at the bottom for the reader's convenience.
-            message.append("\n\n")
-                   .append(currentState.statusReport());
+            currentState.appendStatusReport(message.append("\n\n"));
             
             //Only add buttons for things the player has enough resources for.
-            final List<String> responses = new ArrayList<>();
-            if(!currentState.outOfMonsters()) {
-                responses.add(getStaticMessage("action.fight"));
-            }
-            
-            if(currentState.canShortRest()) {
-                responses.add(getStaticMessage("action.short_rest"));
-            }
-            
-            if(currentState.canExtendedRest()) {
-                responses.add(getStaticMessage("action.long_rest"));
-            }
-            
-            if(currentState.getResourceCount(ResourceType.PHYSICAL) > 0
-                && !currentState.outOfMonsters()) {
-                responses.add(getStaticMessage("action.charge"));
-            }
-            
-            if(currentState.getResourceCount(ResourceType.ARCANE) > 0
-                && currentState.hasItems()) { //Only if they actually have something to transmute
-                responses.add(getStaticMessage("action.transmute"));
-            }
-            
-            if(currentState.getResourceCount(ResourceType.DIVINE) > 0) {
-                responses.add(getStaticMessage("action.cure"));
-            }
-            
-            if(currentState.getResourceCount(ResourceType.DIVINE) >= 3) {
-                responses.add(getStaticMessage("action.mass_cure"));
-            }
-            
-            if(currentState.getResourceCount(ResourceType.STEALTH) > 0) {
-                responses.add(getStaticMessage("action.scout"));
-            }
-            
-            if(currentState.getResourceCount(ResourceType.MECHANICAL) > 0
-                && !currentState.outOfMonsters()) {
-                responses.add(getStaticMessage("action.secret_door"));
-            }
-            
-            if(currentState.hasItems()) {
-                responses.add(getStaticMessage("action.use_consumable"));
-            }
-            
-            if(currentState.canFightBoss()) {
-                responses.add(getStaticMessage("action.boss"));
-                if(currentState.getResourceCount(ResourceType.PHYSICAL) > 0) {
-                    responses.add(getStaticMessage("action.boss_charge"));
-                }
-            }
-            
-            responses.add(getStaticMessage("action.repeat_instructions"));
+            final List<String> responses = HeroesOfCordan.getContent().getIndex()
+                .buttonLabels(ACTION, availableActions(currentState));
             
             return new GameResponse(message.toString(), responses);
             
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
-            if(getStaticMessage("action.fight").equalsIgnoreCase(playerText)) {
-                
-                currentState.spendResource(ResourceType.TIME, FIGHT_TIME_COST);
-                currentState.setGameState(MONSTER);
-                
-            } else if(getStaticMessage("action.short_rest").equalsIgnoreCase(playerText)) {
-                
-                currentState.spendResource(ResourceType.TIME, SHORT_REST_TIME_COST);
-                currentState.setGameState(SHORT_REST);
-                
-            } else if(getStaticMessage("action.long_rest").equalsIgnoreCase(playerText)) {
-                
-                currentState.spendResource(ResourceType.TIME, LONG_REST_TIME_COST);
-                currentState.setGameState(LONG_REST);
-                
-            } else if(getStaticMessage("action.charge").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.getResourceCount(ResourceType.PHYSICAL) >= CHARGE_PHYSICAL_COST) {
-                    currentState.spendResource(ResourceType.PHYSICAL, CHARGE_PHYSICAL_COST);
-                    currentState.spendResource(ResourceType.TIME, CHARGE_TIME_COST);
+            final String button = pressedButton(command);
+            final RuleSet rules = currentState.getRules();
+            switch(button == null ? "" : button) {
+                case "action.fight":
+                    currentState.spendResource(ResourceType.TIME, rules.get(Rule.FIGHT_TIME_COST));
                     currentState.setGameState(MONSTER);
-                }
-                
-            } else if(getStaticMessage("action.transmute").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.getResourceCount(ResourceType.ARCANE) >= TRANSMUTE_ARCANE_COST
-                    && currentState.hasItems()) {
-                    //Don't spend resources yet; they might back out of transmuting
-                    currentState.setGameState(TRANSMUTE);
-                }
-                
-            } else if(getStaticMessage("action.cure").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.getResourceCount(ResourceType.DIVINE) >= CURE_DIVINE_COST) {
-                    currentState.spendResource(ResourceType.DIVINE, CURE_DIVINE_COST);
-                    currentState.spendResource(ResourceType.TIME, CURE_TIME_COST);
-                    currentState.setGameState(CURE);
-                }
-                
-            } else if(getStaticMessage("action.mass_cure").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.getResourceCount(ResourceType.DIVINE) >= MASS_CURE_DIVINE_COST) {
-                    currentState.spendResource(ResourceType.DIVINE, MASS_CURE_DIVINE_COST);
-                    currentState.spendResource(ResourceType.TIME, MASS_CURE_TIME_COST);
-                    currentState.setGameState(MASS_CURE);
-                }
-                
-            } else if(getStaticMessage("action.scout").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.getResourceCount(ResourceType.STEALTH) >= SCOUT_STEALTH_COST) {
-                    currentState.spendResource(ResourceType.STEALTH, SCOUT_STEALTH_COST);
-                    currentState.spendResource(ResourceType.TIME, SCOUT_TIME_COST);
-                    currentState.setGameState(SCOUT);
-                }
-                
-            } else if(getStaticMessage("action.secret_door").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.getResourceCount(ResourceType.MECHANICAL) >= SECRET_DOOR_MECHANICAL_COST) {
-                    currentState.spendResource(ResourceType.MECHANICAL, SECRET_DOOR_MECHANICAL_COST);
-                    currentState.spendResource(ResourceType.TIME, SECRET_DOOR_TIME_COST);
-                    currentState.setGameState(SECRET_DOOR);
-                }
-                
-            } else if(getStaticMessage("action.use_consumable").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.hasItems()) {
-                    currentState.setReturnState(ACTION);
-                    currentState.setGameState(USE_CONSUMABLE);
-                }
-                
-            } else if(getStaticMessage("action.boss").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.canFightBoss()) {
-                    currentState.spendResource(ResourceType.TIME, BOSS_TIME_COST);
-                    currentState.setFightingBoss(true);
-                    currentState.setGameState(MONSTER);
-                }
-                
-            } else if(getStaticMessage("action.boss_charge").equalsIgnoreCase(playerText)) {
-                
-                if(currentState.canFightBoss()
-                    && currentState.getResourceCount(ResourceType.PHYSICAL) > BOSS_CHARGE_PHYSICAL_COST) {
-                    currentState.spendResource(ResourceType.PHYSICAL, BOSS_CHARGE_PHYSICAL_COST);
-                    currentState.spendResource(ResourceType.TIME, BOSS_CHARGE_TIME_COST);
-                    currentState.setFightingBoss(true);
-                    currentState.setGameState(MONSTER);
-                }
-                
-            } else if(getStaticMessage("action.repeat_instructions").equalsIgnoreCase(playerText)) {
-                
-                currentState.setSeenInstructions(ACTION, false);
-                
+                    break;
+                case "action.short_rest":
+                    currentState.spendResource(ResourceType.TIME, rules.get(Rule.SHORT_REST_TIME_COST));
+                    currentState.setGameState(SHORT_REST);
+                    break;
+                case "action.long_rest":
+                    currentState.spendResource(ResourceType.TIME, rules.get(Rule.LONG_REST_TIME_COST));
+                    currentState.setGameState(LONG_REST);
+                    break;
+                case "action.charge":
+                    if(currentState.getResourceCount(ResourceType.PHYSICAL) >= rules.get(Rule.CHARGE_PHYSICAL_COST)) {
+                        currentState.spendResource(ResourceType.PHYSICAL, rules.get(Rule.CHARGE_PHYSICAL_COST));
+                        currentState.spendResource(ResourceType.TIME, rules.get(Rule.CHARGE_TIME_COST));
+                        currentState.setGameState(MONSTER);
+                    }
+                    break;
+                case "action.transmute":
+                    if(currentState.getResourceCount(ResourceType.ARCANE) >= rules.get(Rule.TRANSMUTE_ARCANE_COST)
+                        && currentState.hasItems()) {
+                        //Don't spend resources yet; they might back out of transmuting
+                        currentState.setGameState(TRANSMUTE);
+                    }
+                    break;
+                case "action.cure":
+                    if(currentState.getResourceCount(ResourceType.DIVINE) >= rules.get(Rule.CURE_DIVINE_COST)) {
+                        currentState.spendResource(ResourceType.DIVINE, rules.get(Rule.CURE_DIVINE_COST));
+                        currentState.spendResource(ResourceType.TIME, rules.get(Rule.CURE_TIME_COST));
+                        currentState.setGameState(CURE);
+                    }
+                    break;
+                case "action.mass_cure":
+                    if(currentState.getResourceCount(ResourceType.DIVINE) >= rules.get(Rule.MASS_CURE_DIVINE_COST)) {
+                        currentState.spendResource(ResourceType.DIVINE, rules.get(Rule.MASS_CURE_DIVINE_COST));
+                        currentState.spendResource(ResourceType.TIME, rules.get(Rule.MASS_CURE_TIME_COST));
+                        currentState.setGameState(MASS_CURE);
+                    }
+                    break;
+                case "action.scout":
+                    if(currentState.getResourceCount(ResourceType.STEALTH) >= rules.get(Rule.SCOUT_STEALTH_COST)) {
+                        currentState.spendResource(ResourceType.STEALTH, rules.get(Rule.SCOUT_STEALTH_COST));
+                        currentState.spendResource(ResourceType.TIME, rules.get(Rule.SCOUT_TIME_COST));
+                        currentState.setGameState(SCOUT);
+                    }
+                    break;
+                case "action.secret_door":
+                    if(currentState.getResourceCount(ResourceType.MECHANICAL)
+                        >= rules.get(Rule.SECRET_DOOR_MECHANICAL_COST)) {
+                        currentState.spendResource(ResourceType.MECHANICAL,
+                            rules.get(Rule.SECRET_DOOR_MECHANICAL_COST));
+                        currentState.spendResource(ResourceType.TIME, rules.get(Rule.SECRET_DOOR_TIME_COST));
+                        currentState.setGameState(SECRET_DOOR);
+                    }
+                    break;
+                case "action.use_consumable":
+                    if(currentState.hasItems()) {
+                        currentState.setReturnState(ACTION);
+                        currentState.setGameState(USE_CONSUMABLE);
+                    }
+                    break;
+                case "action.boss":
+                    if(currentState.canFightBoss()) {
+                        currentState.spendResource(ResourceType.TIME, rules.get(Rule.BOSS_TIME_COST));
+                        currentState.setFightingBoss(true);
+                        currentState.setGameState(MONSTER);
+                    }
+                    break;
+                case "action.boss_charge":
+                    if(currentState.canFightBoss()
+                        && currentState.getResourceCount(ResourceType.PHYSICAL)
+                            > rules.get(Rule.BOSS_CHARGE_PHYSICAL_COST)) {
+                        currentState.spendResource(ResourceType.PHYSICAL, rules.get(Rule.BOSS_CHARGE_PHYSICAL_COST));
+                        currentState.spendResource(ResourceType.TIME, rules.get(Rule.BOSS_CHARGE_TIME_COST));
+                        currentState.setFightingBoss(true);
+                        currentState.setGameState(MONSTER);
+                    }
+                    break;
+                case "action.repeat_instructions":
+                    currentState.setSeenInstructions(ACTION, false);
+                    break;
+                default:
+                    //Not one of the buttons, so show the same choices again.
+                    break;
             }
 
             //Override state change if we ran out of time
@@ -575,7 +527,7 @@ public enum GameState {
     },
     
     /** The player is fighting a monster. */
-    MONSTER() {
+    MONSTER("global.use_consumable") {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
@@ -590,7 +542,7 @@ public enum GameState {
             }
             
             //General decription text
-            output.append(nextMonster.fullLengthDescription())
+            output.append(nextMonster.fullLengthDescription(currentState.getRandom()))
                   .append("\n\n");
             
             //Defeat costs
@@ -598,7 +550,7 @@ public enum GameState {
             output.append("\n");
             
             //Remind the player what they have, since they're about to spend some.
-            output.append(currentState.statusReport());
+            currentState.appendStatusReport(output);
             
             final List<String> responses = new ArrayList<>();
             for(ResourceType nextType : nextMonster.usableResources(currentState)) {
@@ -619,11 +571,13 @@ public enum GameState {
 
         /** Player is responding to a monster with the resource they wish to spend, or "use consumable". */
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
+            
+            final String button = pressedButton(command);
             
             final Monster nextMonster = currentState.upcomingMonster();
             
-            if(getStaticMessage("global.use_consumable").equalsIgnoreCase(playerText)) {
+            if("global.use_consumable".equals(button)) {
                 
                 currentState.setReturnState(MONSTER);
                 currentState.setGameState(USE_CONSUMABLE);
@@ -631,16 +585,12 @@ public enum GameState {
                 
             } else {
                 
-                ResourceType spentResource;
-                try {
-                    spentResource = ResourceType.valueOf(playerText.toUpperCase());
-                } catch (IllegalArgumentException iax) {
+                final ResourceType spentResource = command.getResourceType();
+                if(spentResource == null) {
                     //Re-prompt for input
                     return currentState;
                 }
                 
-                final Map<ResourceType, ResourceValue> eventResources = nextMonster.getResources();
-                final ResourceValue value = eventResources.get(spentResource);
                 if(nextMonster.canDefeat(spentResource, currentState)) {
                     
                     //If this was a boss, exit boss-fightin' mode.
@@ -649,7 +599,7 @@ public enum GameState {
                     int discount = currentState.getParty().monsterDiscount(spentResource);
 
                     //Discounts can't bring a resource cost below 1
-                    int cost = Math.max(1, value.getValue() - discount);
+                    int cost = Math.max(1, nextMonster.getResourceAmounts().get(spentResource) - discount);
                     currentState.spendResource(spentResource, cost);
                     
                     //Did the party run out of time?
@@ -709,7 +659,7 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             //Back to the Action menu regardless of what they responded with.
             currentState.setGameState(ACTION);
@@ -737,7 +687,7 @@ public enum GameState {
             
             String output = getStaticMessage("loot.message")
                     + "\n\n"
-                    + loot.fullLengthDescription()
+                    + loot.fullLengthDescription(currentState.getRandom())
                     + "\n\n"
                     + getStaticMessage("loot.consumable_blurb")
                     + "\n"
@@ -753,11 +703,11 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             if(currentState.consumablesOverfull()) {
                 
-                int index = parseIndex(playerText);
+                int index = command.getListIndex();
                 if(index >= 0 && index <= Party.FULL_PARTY_SIZE + 1) {
                     //TODO: Do this better instead of accessing the list directly
                     Consumable usedConsumable = currentState.getConsumables().remove(index);
@@ -798,7 +748,7 @@ public enum GameState {
             
             String output = getStaticMessage("loot.message")
                     + "\n\n"
-                    + loot.fullLengthDescription()
+                    + loot.fullLengthDescription(currentState.getRandom())
                     + "\n\n"
                     + getStaticMessage("loot.equipment_blurb")
                     + "\n"
@@ -814,11 +764,11 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             if(currentState.equipmentOverfull()) {
                 
-                int index = parseIndex(playerText);
+                int index = command.getListIndex();
                 if(index >= 0 && index <= Party.FULL_PARTY_SIZE + 1) {
                     //TODO: Do this better instead of accessing the list directly
                     currentState.getEquipment().remove(index);
@@ -863,7 +813,7 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             //Move them along to the next floor.
             currentState.setGameState(EVENT);
@@ -887,9 +837,9 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
-            int index = parseIndex(playerText);
+            int index = command.getListIndex();
             
             if(index >= 0 && index < currentState.getConsumables().size()) {
                 Consumable usedConsumable = currentState.getConsumables().remove(index);
@@ -910,11 +860,12 @@ public enum GameState {
         @Override
         public GameResponse enterState(PlayerState currentState) {
             currentState.refillResources();
-            return new GameResponse(getDynamicMessages().randomShortRestMessage(), getStaticMessage("global.confirm"));
+            return new GameResponse(getDynamicMessages().randomShortRestMessage(currentState.getRandom()),
+                getStaticMessage("global.confirm"));
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             currentState.setGameState(ACTION);
             return currentState;
         }
@@ -927,11 +878,12 @@ public enum GameState {
         @Override
         public GameResponse enterState(PlayerState currentState) {
             currentState.refillAll();
-            return new GameResponse(getDynamicMessages().randomLongRestMessage(), getStaticMessage("global.confirm"));
+            return new GameResponse(getDynamicMessages().randomLongRestMessage(currentState.getRandom()),
+                getStaticMessage("global.confirm"));
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             currentState.setGameState(ACTION);
             return currentState;
         }
@@ -962,9 +914,9 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
-            int index = parseIndex(playerText);
+            int index = command.getListIndex();
             
             final List<Item> items = currentState.getItems();
             
@@ -981,8 +933,9 @@ public enum GameState {
                 currentState.setTransmuteResult(newItem);
                 
                 //Now that the transmutation has been confirmed, spend resources
-                currentState.spendResource(ResourceType.ARCANE, TRANSMUTE_ARCANE_COST);
-                currentState.spendResource(ResourceType.TIME, TRANSMUTE_TIME_COST);
+                final RuleSet rules = currentState.getRules();
+                currentState.spendResource(ResourceType.ARCANE, rules.get(Rule.TRANSMUTE_ARCANE_COST));
+                currentState.spendResource(ResourceType.TIME, rules.get(Rule.TRANSMUTE_TIME_COST));
                 
                 //And recalculate the new maximums in case we transmuted equipment
                 currentState.calculateResources();
@@ -1015,7 +968,7 @@ public enum GameState {
             
             final String output = getStaticMessage("transmute.result")
                     + "\n\n"
-                    + result.fullLengthDescription()
+                    + result.fullLengthDescription(currentState.getRandom())
                     + "\n\n"
                     + getStaticMessage("loot.consumable_blurb")
                     + "\n"
@@ -1026,7 +979,7 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             //Doesn't matter what their response was.
             currentState.setTransmuteResult(null);
@@ -1042,12 +995,13 @@ public enum GameState {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
-            currentState.gainResource(ResourceType.HEALTH, CURE_HEALTH_GAIN, false);
-            return new GameResponse(getDynamicMessages().randomCureMessage(), getStaticMessage("global.confirm"));
+            currentState.gainResource(ResourceType.HEALTH, currentState.getRules().get(Rule.CURE_HEALTH_GAIN), false);
+            return new GameResponse(getDynamicMessages().randomCureMessage(currentState.getRandom()),
+                getStaticMessage("global.confirm"));
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             currentState.setGameState(ACTION);
             return currentState;
         }
@@ -1059,12 +1013,14 @@ public enum GameState {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
-            currentState.gainResource(ResourceType.HEALTH, MASS_CURE_HEALTH_GAIN, false);
-            return new GameResponse(getDynamicMessages().randomMassCureMessage(), getStaticMessage("global.confirm"));
+            currentState.gainResource(ResourceType.HEALTH, currentState.getRules().get(Rule.MASS_CURE_HEALTH_GAIN),
+                false);
+            return new GameResponse(getDynamicMessages().randomMassCureMessage(currentState.getRandom()),
+                getStaticMessage("global.confirm"));
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             currentState.setGameState(ACTION);
             return currentState;
         }
@@ -1072,7 +1028,7 @@ public enum GameState {
     },
     
     /** The party is scouting ahead to see what the next event is, potentially discarding it. */
-    SCOUT() {
+    SCOUT("global.yes", "global.no") {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
@@ -1100,12 +1056,13 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
-            if(getStaticMessage("global.yes").equalsIgnoreCase(playerText)) {
+            final String button = pressedButton(command);
+            if("global.yes".equals(button)) {
                 currentState.redrawEvent();
                 currentState.setGameState(ACTION);
-            } else if(getStaticMessage("global.no").equalsIgnoreCase(playerText)) {
+            } else if("global.no".equals(button)) {
                 currentState.setGameState(ACTION);
             }
             return currentState;
@@ -1115,7 +1072,7 @@ public enum GameState {
     },
     
     /** The party is checking to see what the next monster is, potentially discarding it. */
-    SECRET_DOOR() {
+    SECRET_DOOR("global.yes", "global.no") {
         
         @Override
         public GameResponse enterState(PlayerState currentState) {
@@ -1143,12 +1100,13 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
-            if(getStaticMessage("global.yes").equalsIgnoreCase(playerText)) {
+            final String button = pressedButton(command);
+            if("global.yes".equals(button)) {
                 currentState.redrawMonster();
                 currentState.setGameState(ACTION);
-            } else if(getStaticMessage("global.no").equalsIgnoreCase(playerText)) {
+            } else if("global.no".equals(button)) {
                 currentState.setGameState(ACTION);
             }
             return currentState;
@@ -1163,15 +1121,15 @@ public enum GameState {
         @Override
         public GameResponse enterState(PlayerState currentState) {
             
-            String message = getDynamicMessages().randomOutOfHealthMessage();
+            String message = getDynamicMessages().randomOutOfHealthMessage(currentState.getRandom());
             
-            currentState.spendResource(ResourceType.TIME, TPK_TIME_COST);
+            currentState.spendResource(ResourceType.TIME, currentState.getRules().get(Rule.TPK_TIME_COST));
             
             //Did we run out of time as a result?
             if(currentState.getResourceCount(ResourceType.TIME) <= 0) {
                 
                 currentState.setGameState(OUT_OF_TIME);
-                message += "\n\n" + getDynamicMessages().randomOutOfTimeMessage();
+                message += "\n\n" + getDynamicMessages().randomOutOfTimeMessage(currentState.getRandom());
                 return new GameResponse(message, getStaticMessage("game_over.restart"));
                 
             } else {
@@ -1184,7 +1142,7 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             //Regardless of what they actually typed, take them back to an Event.
             currentState.setGameState(EVENT);
@@ -1200,13 +1158,13 @@ public enum GameState {
         @Override
         public GameResponse enterState(PlayerState currentState) {
             return new GameResponse(
-                getDynamicMessages().randomOutOfTimeMessage(),
+                getDynamicMessages().randomOutOfTimeMessage(currentState.getRandom()),
                 getStaticMessage("game_over.restart")
             );
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             //It doesn't actually matter WHAT they typed; send them to the title screen.
             currentState.setGameState(TITLE);
@@ -1235,7 +1193,7 @@ public enum GameState {
         }
 
         @Override
-        public PlayerState update(PlayerState currentState, String playerText) {
+        public PlayerState update(PlayerState currentState, PlayerCommand command) {
             
             //Regardless of what they send, back to the title screen.
             currentState.setGameState(TITLE);
@@ -1245,68 +1203,50 @@ public enum GameState {
         
     };
     
-    /** How much Time it costs to use the Back To Adventure action. */
-    private static final int FIGHT_TIME_COST = 3;
-    
-    /** How much Time it costs to use the Short Rest action. */
-    private static final int SHORT_REST_TIME_COST = 5;
-    
-    /** How much Time it costs to use the Long Rest action. */
-    private static final int LONG_REST_TIME_COST = 15;
-    
-    /** How much Physical it costs to use the Charge Ahead action. */
-    private static final int CHARGE_PHYSICAL_COST = 1;
-    
-    /** How much Time it costs to use the Charge Ahead action. */
-    private static final int CHARGE_TIME_COST = 2;
-    
-    /** How much Arcane it costs to use the Transmute action. */
-    private static final int TRANSMUTE_ARCANE_COST = 1;
-    
-    /** How much Time it costs to use the Arcane action. */
-    private static final int TRANSMUTE_TIME_COST = 1;
-    
-    /** How much Divine it costs to use the Cure action. */
-    private static final int CURE_DIVINE_COST = 1;
-    
-    /** How much Time it costs to use the Cure action. */
-    private static final int CURE_TIME_COST = 1;
-    
-    /** How much Health is gained by the Cure action. */
-    private static final int CURE_HEALTH_GAIN = 1;
-    
-    /** How much Divine it costs to use the Mass Cure action. */
-    private static final int MASS_CURE_DIVINE_COST = 3;
-    
-    /** How much Time it costs to use the Mass Cure action. */
-    private static final int MASS_CURE_TIME_COST = 1;
+    /** Resource types that a short rest restores, as a bitmask of ordinals. */
+    private static final int SHORT_REST_TYPES = typeMask(ResourceType.SHORT_REST_RESOURCES);
     
-    /** How much Health is gained by the Mass Cure action. */
-    private static final int MASS_CURE_HEALTH_GAIN = 4;
+    /** Resource types that a long rest restores, as a bitmask of ordinals. */
+    private static final int EXTENDED_REST_TYPES = typeMask(ResourceType.EXTENDED_REST_RESOURCES);
     
-    /** How much Stealth it costs to use the Scout Ahead action. */
-    private static final int SCOUT_STEALTH_COST = 1;
+    /** Every resource type, by ordinal. */
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
     
-    /** How much Time it costs to use the Scout Ahead action. */
-    private static final int SCOUT_TIME_COST = 1;
-    
-    /** How much Mechanical it costs to use the Secret Door action. */
-    private static final int SECRET_DOOR_MECHANICAL_COST = 1;
-    
-    /** How much Time it costs to use the Secret Door action. */
-    private static final int SECRET_DOOR_TIME_COST = 1;
-    
-    /** How much Time it costs to use the Seal A Portal action. */
-    private static final int BOSS_TIME_COST = 3;
+    /*
+     * Bits of availableActions(), one per ACTION button in the order ACTION declares them, which is also the order the
+     * buttons are shown in.
+     */
+    private static final int FIGHT_AVAILABLE = 1;
+    private static final int SHORT_REST_AVAILABLE = 1 << 1;
+    private static final int LONG_REST_AVAILABLE = 1 << 2;
+    private static final int CHARGE_AVAILABLE = 1 << 3;
+    private static final int TRANSMUTE_AVAILABLE = 1 << 4;
+    private static final int CURE_AVAILABLE = 1 << 5;
+    private static final int MASS_CURE_AVAILABLE = 1 << 6;
+    private static final int SCOUT_AVAILABLE = 1 << 7;
+    private static final int SECRET_DOOR_AVAILABLE = 1 << 8;
+    private static final int USE_CONSUMABLE_AVAILABLE = 1 << 9;
+    private static final int BOSS_AVAILABLE = 1 << 10;
+    private static final int BOSS_CHARGE_AVAILABLE = 1 << 11;
+    private static final int REPEAT_INSTRUCTIONS_AVAILABLE = 1 << 12;
     
-    /** How much Physical it costs to use the Dramatic Entry action. */
-    private static final int BOSS_CHARGE_PHYSICAL_COST = 1;
+    /** Identifiers of the static messages this state offers as buttons, in the order they're checked. */
+    private final List<String> buttons;
     
-    /** How much Time it costs to use the Dramatic Entry action. */
-    private static final int BOSS_CHARGE_TIME_COST = 2;
+    /**
+     * @param buttons Identifiers of the static messages this state offers as buttons and acts on in update().
+     */
+    GameState(final String... buttons) {
+        this.buttons = Collections.unmodifiableList(Arrays.asList(buttons));
+    }
     
-    /** How much Time the party loses if it wipes. */
-    private static final int TPK_TIME_COST = 20;
+    /**
+     * @return Identifiers of the static messages this state offers as buttons; see {@link ContentIndex#button}.
+     */
+    @Override
+    public List<String> getButtons() {
+        return buttons;
+    }
     
     /**
      * Generates a response to be returned to the user after transitioning INTO this GameState, based on the information
@@ -1321,10 +1261,93 @@ public enum GameState {
      * Returns the state the game will advance to next, which might be the current state for a looping segment of the
      * game, but must never be {@code null}.
      * @param currentState The state of the current player's game. It may be mutated during game logic handling.
-     * @param playerText The text the user has entered to the bot.
+     * @param command The message the user has sent to the bot, already parsed.
      * @return The new representation of the player's state, which may be a new object or the mutated input parameter.
      */
-    public abstract PlayerState update(PlayerState currentState, String playerText);
+    public abstract PlayerState update(PlayerState currentState, PlayerCommand command);
+    
+    /**
+     * Works out which of this state's buttons the player pressed, using the current content's labels.
+     * @param command The message the user has sent to the bot.
+     * @return The identifier of the button's static message, or {@code null} if the message isn't one of them.
+     */
+    String pressedButton(final PlayerCommand command) {
+        return HeroesOfCordan.getContent().getIndex().button(this, command.getButtonKey());
+    }
+    
+    /**
+     * Works out which ACTION buttons to show, reading each resource once.
+     * @param currentState The state of the current player's game.
+     * @return A bitmask of the available actions, as used by {@link ContentIndex#buttonLabels}.
+     */
+    private static int availableActions(final PlayerState currentState) {
+        
+        int positiveTypes = 0;
+        int belowMaxTypes = 0;
+        for(ResourceType nextType : RESOURCE_TYPES) {
+            final int count = currentState.getResourceCount(nextType);
+            if(count > 0) {
+                positiveTypes |= 1 << nextType.ordinal();
+            }
+            if(count < currentState.getResourceMax(nextType)) {
+                belowMaxTypes |= 1 << nextType.ordinal();
+            }
+        }
+        
+        final boolean monstersLeft = !currentState.outOfMonsters();
+        final boolean hasItems = currentState.hasItems();
+        final boolean hasPhysical = (positiveTypes & 1 << ResourceType.PHYSICAL.ordinal()) != 0;
+        
+        int available = REPEAT_INSTRUCTIONS_AVAILABLE;
+        if(monstersLeft) {
+            available |= FIGHT_AVAILABLE;
+        }
+        if((belowMaxTypes & SHORT_REST_TYPES) != 0) {
+            available |= SHORT_REST_AVAILABLE;
+        }
+        if((belowMaxTypes & EXTENDED_REST_TYPES) != 0) {
+            available |= LONG_REST_AVAILABLE;
+        }
+        if(hasPhysical && monstersLeft) {
+            available |= CHARGE_AVAILABLE;
+        }
+        if((positiveTypes & 1 << ResourceType.ARCANE.ordinal()) != 0 && hasItems) {
+            //Only if they actually have something to transmute
+            available |= TRANSMUTE_AVAILABLE;
+        }
+        if((positiveTypes & 1 << ResourceType.DIVINE.ordinal()) != 0) {
+            available |= CURE_AVAILABLE;
+        }
+        if(currentState.getResourceCount(ResourceType.DIVINE)
+                >= currentState.getRules().get(Rule.MASS_CURE_DIVINE_COST)) {
+            available |= MASS_CURE_AVAILABLE;
+        }
+        if((positiveTypes & 1 << ResourceType.STEALTH.ordinal()) != 0) {
+            available |= SCOUT_AVAILABLE;
+        }
+        if((positiveTypes & 1 << ResourceType.MECHANICAL.ordinal()) != 0 && monstersLeft) {
+            available |= SECRET_DOOR_AVAILABLE;
+        }
+        if(hasItems) {
+            available |= USE_CONSUMABLE_AVAILABLE;
+        }
+        if(currentState.canFightBoss()) {
+            available |= BOSS_AVAILABLE;
+            if(hasPhysical) {
+                available |= BOSS_CHARGE_AVAILABLE;
+            }
+        }
+        return available;
+        
+    }
+    
+    private static int typeMask(final Iterable<ResourceType> types) {
+        int mask = 0;
+        for(ResourceType nextType : types) {
+            mask |= 1 << nextType.ordinal();
+        }
+        return mask;
+    }
     
     /** Helper method to save having to fully qualify getStaticMessage on every use. */
     private static String getStaticMessage(String identifier) {
@@ -1336,32 +1359,4 @@ public enum GameState {
         return HeroesOfCordan.getDynamicMessages();
     }
     
-    /** Helper method: Given player input intended to interact with an indexed list, try to get an index from it. */
-    private static int parseIndex(String playerText) {
-        
-        //Just need to look at the index
-        String indexText;
-        int colonIndex = playerText.indexOf(":");
-        if(colonIndex >= 0) {
-            indexText = playerText.substring(0, colonIndex);
-        } else {
-            //Try the entire input
-            indexText = playerText;
-        }
-
-        int index;
-        try {
-            index = Integer.parseInt(indexText);
-        } catch (NumberFormatException nfx) {
-            //Invalid input, try again.
-            return -1;
-        }
-
-        //The players provide 1-indexed indexes, not 0-indexed, so:
-        index--;
-        
-        return index;
-                
-    }
-    
 }
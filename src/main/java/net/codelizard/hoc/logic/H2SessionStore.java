@@ -0,0 +1,158 @@
+package net.codelizard.hoc.logic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A SessionStore backed by an embedded H2 database, through plain JDBC. Each session is one row, keyed by service
+ * name and user ID. This trades some latency against the other stores for letting the database manage its own cache
+ * and file layout.</p>
+ *
+ * <p>Like every SessionStore it's scratch space, so the table is emptied when the store is opened. All statements go
+ * through a single connection, one at a time.</p>
+ *
+ * @author Codelizard
+ */
+public class H2SessionStore implements SessionStore {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS sessions ("
+        + "service_name VARCHAR NOT NULL, user_id VARCHAR NOT NULL, state VARBINARY NOT NULL, "
+        + "PRIMARY KEY (service_name, user_id))";
+
+    private static final String CLEAR = "DELETE FROM sessions";
+
+    private static final String UPSERT = "MERGE INTO sessions (service_name, user_id, state) KEY (service_name, user_id) "
+        + "VALUES (?, ?, ?)";
+
+    private static final String SELECT = "SELECT state FROM sessions WHERE service_name = ? AND user_id = ?";
+
+    private static final String DELETE = "DELETE FROM sessions WHERE service_name = ? AND user_id = ?";
+
+    private static final String COUNT = "SELECT COUNT(*) FROM sessions";
+
+    private static final String SELECT_KEYS = "SELECT service_name, user_id FROM sessions";
+
+    private final Connection connection;
+
+    private final PreparedStatement upsert;
+
+    private final PreparedStatement select;
+
+    private final PreparedStatement delete;
+
+    /**
+     * Opens a new, empty H2SessionStore, discarding anything already in the database.
+     * @param databaseFile Where to keep the database, without H2's file extension.
+     * @throws IOException If the database couldn't be opened.
+     */
+    public H2SessionStore(final Path databaseFile) throws IOException {
+
+        try {
+            if(databaseFile.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(databaseFile.toAbsolutePath().getParent());
+            }
+            connection = DriverManager.getConnection("jdbc:h2:" + databaseFile.toAbsolutePath());
+            try(Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_TABLE);
+                statement.execute(CLEAR);
+            }
+            upsert = connection.prepareStatement(UPSERT);
+            select = connection.prepareStatement(SELECT);
+            delete = connection.prepareStatement(DELETE);
+        } catch (SQLException x) {
+            throw new IOException("Couldn't open the session database.", x);
+        }
+
+    }
+
+    @Override
+    public synchronized void write(final SessionKey key, final byte[] encoded) throws IOException {
+        try {
+            upsert.setString(1, key.getServiceName());
+            upsert.setString(2, key.getServiceUserId());
+            upsert.setBytes(3, encoded);
+            upsert.executeUpdate();
+        } catch (SQLException x) {
+            throw new IOException("Couldn't store session " + key + ".", x);
+        }
+    }
+
+    @Override
+    public synchronized byte[] read(final SessionKey key) throws IOException {
+
+        try {
+            select.setString(1, key.getServiceName());
+            select.setString(2, key.getServiceUserId());
+            try(ResultSet results = select.executeQuery()) {
+                return results.next() ? results.getBytes(1) : null;
+            }
+        } catch (SQLException x) {
+            throw new IOException("Couldn't read session " + key + ".", x);
+        }
+
+    }
+
+    @Override
+    public synchronized void remove(final SessionKey key) throws IOException {
+        try {
+            delete.setString(1, key.getServiceName());
+            delete.setString(2, key.getServiceUserId());
+            delete.executeUpdate();
+        } catch (SQLException x) {
+            throw new IOException("Couldn't remove session " + key + ".", x);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+
+        try(Statement statement = connection.createStatement();
+                ResultSet results = statement.executeQuery(COUNT)) {
+            results.next();
+            return results.getInt(1);
+        } catch (SQLException x) {
+            throw new IllegalStateException("Couldn't count sessions.", x);
+        }
+
+    }
+
+    @Override
+    public synchronized List<SessionKey> keys() throws IOException {
+
+        final List<SessionKey> keys = new ArrayList<>();
+        try(Statement statement = connection.createStatement();
+                ResultSet results = statement.executeQuery(SELECT_KEYS)) {
+            while(results.next()) {
+                keys.add(SessionKey.of(results.getString(1), results.getString(2)));
+            }
+        } catch (SQLException x) {
+            throw new IOException("Couldn't list sessions.", x);
+        }
+
+        return keys;
+
+    }
+
+    /**
+     * Closes the database. The database file is left behind, and emptied again the next time the store is opened.
+     * @throws IOException If there is an error closing the database.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            connection.close();
+        } catch (SQLException x) {
+            throw new IOException("Couldn't close the session database.", x);
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package net.codelizard.hoc.logic;
+
+import net.codelizard.hoc.GameResponse;
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.content.GameContent;
+import net.codelizard.hoc.content.Hero;
+import net.codelizard.hoc.content.ResourceType;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * <p>A single game played directly against the GameState machine, without sessions, journaling or a messaging service
+ * in between. Each turn is run the same way {@link ActionProcessor} runs one: the state is reseeded, the current
+ * GameState's {@code update} handles the message and the resulting GameState's {@code enterState} builds the reply.
+ * Used for simulations, where millions of games need to be played as quickly as possible.</p>
+ *
+ * <p>Games start at the dungeon entrance with their party already chosen, and the turn seeds all come from the game's
+ * own seed, so the same seed and the same messages always play out the same way.</p>
+ *
+ * <p>HeadlessGames are not thread-safe, but separate games can be played on separate threads.</p>
+ *
+ * @author Codelizard
+ */
+public final class HeadlessGame {
+
+    /** The content the game is played with, fixed for its whole length. */
+    private final GameContent content;
+
+    /** Where each turn's seed comes from. */
+    private final SplittableRandom turnSeeds;
+
+    /** The numbers the game is balanced by. */
+    private final RuleSet rules;
+
+    /** The player's state. */
+    private PlayerState state;
+
+    /** The reply to the last message, or to entering the dungeon. */
+    private GameResponse response;
+
+    /** How many messages have been played. */
+    private int turns;
+
+    /** How many times the party has been wiped out and forced to retreat. */
+    private int wipes;
+
+    /**
+     * Starts a new game with a random party, as Quick Play would choose one.
+     * @param seed The seed the whole game is played from.
+     */
+    public HeadlessGame(final long seed) {
+        this(seed, null);
+    }
+
+    /**
+     * Starts a new game with the given party.
+     * @param seed The seed the whole game is played from.
+     * @param heroes The four heroes to play with, or {@code null} to choose them at random.
+     */
+    public HeadlessGame(final long seed, final List<Hero> heroes) {
+        this(seed, heroes, RuleSet.STANDARD);
+    }
+
+    /**
+     * Starts a new game with the given party and rules.
+     * @param seed The seed the whole game is played from.
+     * @param heroes The four heroes to play with, or {@code null} to choose them at random.
+     * @param rules The numbers to balance the game by.
+     */
+    public HeadlessGame(final long seed, final List<Hero> heroes, final RuleSet rules) {
+
+        content = HeroesOfCordan.getContent();
+        turnSeeds = new SplittableRandom(seed);
+        this.rules = rules;
+
+        state = new PlayerState();
+        state.useContent(content);
+        state.setRules(rules);
+        state.reseed(turnSeeds.nextLong());
+        state.setParty(new Party(heroes != null ? heroes : content.fourRandomHeroes(state.getRandom())));
+        state.calculateResources();
+        state.setGameState(GameState.ENTER_DUNGEON);
+
+        response = state.getGameState().enterState(state);
+
+    }
+
+    /**
+     * Plays one turn.
+     * @param text The message the player sends.
+     * @return The game's reply.
+     * @throws IllegalStateException If the game is already over.
+     */
+    public GameResponse play(final String text) {
+
+        if(isOver()) {
+            throw new IllegalStateException("The game is already over.");
+        }
+
+        final long turnSeed = turnSeeds.nextLong();
+        state.reseed(turnSeed);
+
+        final PlayerState newState = state.getGameState().update(state, PlayerCommand.parse(text));
+        if(newState != state) {
+            newState.reseed(turnSeed);
+            newState.useContent(content);
+            newState.setRules(rules);
+            state = newState;
+        }
+
+        if(state.getGameState() == GameState.OUT_OF_HEALTH) {
+            wipes++;
+        }
+
+        turns++;
+        response = state.getGameState().enterState(state);
+        return response;
+
+    }
+
+    /**
+     * @return The player's state. It belongs to the game and must only be looked at, not changed.
+     */
+    public PlayerState getState() {
+        return state;
+    }
+
+    /**
+     * @return The reply to the last message, or to entering the dungeon if no messages have been played yet.
+     */
+    public GameResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * @return How many messages have been played.
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * @return How many times the party has been wiped out and forced to retreat.
+     */
+    public int getWipes() {
+        return wipes;
+    }
+
+    /**
+     * @return The floor the party has reached.
+     */
+    public int getFloor() {
+        return state.getFloorNumber();
+    }
+
+    /**
+     * @return How much Time the party has left.
+     */
+    public int getTimeRemaining() {
+        return state.getResourceCount(ResourceType.TIME);
+    }
+
+    /**
+     * @return Whether or not the party has won or run out of time.
+     */
+    public boolean isOver() {
+        return isWon() || state.getGameState() == GameState.OUT_OF_TIME;
+    }
+
+    /**
+     * @return Whether or not the party has won.
+     */
+    public boolean isWon() {
+        return state.getGameState() == GameState.VICTORY;
+    }
+
+}
@@ -0,0 +1,51 @@
+package net.codelizard.hoc.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A SessionStore that keeps encoded states on the heap. Passivating into it still saves memory, since an encoded state
+ * is a small fraction of the size of a live PlayerState, but nothing ever leaves the JVM.
+ *
+ * @author Codelizard
+ */
+public class InMemorySessionStore implements SessionStore {
+
+    /** Every stored state. */
+    private final ConcurrentHashMap<SessionKey, byte[]> states = new ConcurrentHashMap<>();
+
+    public InMemorySessionStore() {}
+
+    @Override
+    public void write(final SessionKey key, final byte[] encoded) {
+        states.put(key, encoded.clone());
+    }
+
+    @Override
+    public byte[] read(final SessionKey key) {
+        final byte[] encoded = states.get(key);
+        return encoded == null ? null : encoded.clone();
+    }
+
+    @Override
+    public void remove(final SessionKey key) {
+        states.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return states.size();
+    }
+
+    @Override
+    public List<SessionKey> keys() {
+        return new ArrayList<>(states.keySet());
+    }
+
+    @Override
+    public void close() {
+        states.clear();
+    }
+
+}
@@ -0,0 +1,231 @@
+package net.codelizard.hoc.logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A SessionStore that appends encoded states to a memory-mapped file and finds them again through an in-memory
+ * index, which costs a few dozen bytes per session instead of the few kilobytes a live PlayerState takes. Reads and
+ * writes are plain memory copies; the OS decides which parts of the file stay in RAM. Once most of the file is
+ * superseded records, the live ones are copied into a fresh file.</p>
+ *
+ * <p>The file is mapped in fixed-size chunks, and a record never spans two of them. Like every SessionStore it's
+ * scratch space: the file is emptied when the store is opened and deleted when it's closed.</p>
+ *
+ * @author Codelizard
+ */
+public class MappedFileSessionStore implements SessionStore {
+
+    /** Size of each mapped chunk of the file. Also the largest record the store can hold. */
+    private static final int CHUNK_BYTES = 16 * 1024 * 1024;
+
+    /** The file is never compacted while it's smaller than this. */
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    /** Number of low bits of an index entry that hold the record length; the rest hold its offset. */
+    private static final int LENGTH_BITS = 25;
+
+    /** Mask for the length part of an index entry. */
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+
+    /** The file records are kept in. */
+    private final Path file;
+
+    /** The file compaction copies into. The two swap places every time the store is compacted. */
+    private final Path compactFile;
+
+    /** The file currently in use: either {@link #file} or {@link #compactFile}. */
+    private Path currentFile;
+
+    /** The open file. Replaced whenever the file is compacted. */
+    private FileChannel channel;
+
+    /** Every chunk of the file mapped so far, in order. */
+    private List<MappedByteBuffer> chunks = new ArrayList<>();
+
+    /** Where each session's newest record is, as its offset shifted left by {@link #LENGTH_BITS} plus its length. */
+    private final Map<SessionKey, Long> index = new HashMap<>();
+
+    /** How many bytes of the file belong to records in the index. */
+    private long liveBytes;
+
+    /** The end of the last record, where the next one goes if it fits in the same chunk. */
+    private long fileEnd;
+
+    /**
+     * Opens a new, empty MappedFileSessionStore, discarding anything already in the file.
+     * @param file The file to keep records in.
+     * @throws IOException If the file couldn't be created.
+     */
+    public MappedFileSessionStore(final Path file) throws IOException {
+        this.file = file;
+        this.compactFile = file.resolveSibling(file.getFileName() + ".compact");
+        if(file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.deleteIfExists(compactFile);
+        this.currentFile = file;
+        this.channel = openEmpty(file);
+    }
+
+    @Override
+    public synchronized void write(final SessionKey key, final byte[] encoded) throws IOException {
+
+        if(encoded.length > CHUNK_BYTES) {
+            throw new IOException("Encoded state is too large to store: " + encoded.length + " bytes.");
+        }
+
+        final long offset = append(encoded);
+        final Long previous = index.put(key, (offset << LENGTH_BITS) | encoded.length);
+        liveBytes += encoded.length - (previous == null ? 0 : length(previous));
+
+        if(fileEnd > MIN_COMPACT_BYTES && fileEnd > 2 * liveBytes) {
+            compact();
+        }
+
+    }
+
+    @Override
+    public synchronized byte[] read(final SessionKey key) {
+
+        final Long entry = index.get(key);
+        if(entry == null) {
+            return null;
+        }
+
+        final byte[] encoded = new byte[length(entry)];
+        copy(chunks, entry, encoded);
+        return encoded;
+
+    }
+
+    @Override
+    public synchronized void remove(final SessionKey key) {
+        final Long previous = index.remove(key);
+        if(previous != null) {
+            liveBytes -= length(previous);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return The current size of the file, including superseded records.
+     */
+    public synchronized long fileBytes() {
+        return fileEnd;
+    }
+
+    @Override
+    public synchronized List<SessionKey> keys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Closes and deletes the file.
+     * @throws IOException If there is an error closing or deleting the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        index.clear();
+        chunks.clear();
+        channel.close();
+        Files.deleteIfExists(currentFile);
+    }
+
+    /**
+     * Copies a record to the end of the file, starting a new chunk if it doesn't fit in the current one.
+     * @param record The record.
+     * @return The offset the record was written at.
+     * @throws IOException If a new chunk couldn't be mapped.
+     */
+    private long append(final byte[] record) throws IOException {
+
+        long offset = fileEnd;
+        if(offset % CHUNK_BYTES + record.length > CHUNK_BYTES) {
+            offset = (offset / CHUNK_BYTES + 1) * CHUNK_BYTES;
+        }
+
+        final int chunkIndex = (int) (offset / CHUNK_BYTES);
+        while(chunks.size() <= chunkIndex) {
+            //Mapping past the end of the file grows it.
+            chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * CHUNK_BYTES, CHUNK_BYTES));
+        }
+
+        final ByteBuffer chunk = chunks.get(chunkIndex).duplicate();
+        chunk.position((int) (offset % CHUNK_BYTES));
+        chunk.put(record);
+
+        fileEnd = offset + record.length;
+        return offset;
+
+    }
+
+    /**
+     * Copies a record out of the file.
+     * @param from The chunks of the file the record is in.
+     * @param entry The record's index entry.
+     * @param destination Where to copy it to. Must be exactly as long as the record.
+     */
+    private static void copy(final List<MappedByteBuffer> from, final long entry, final byte[] destination) {
+        final long offset = offset(entry);
+        final ByteBuffer chunk = from.get((int) (offset / CHUNK_BYTES)).duplicate();
+        chunk.position((int) (offset % CHUNK_BYTES));
+        chunk.get(destination);
+    }
+
+    /**
+     * Copies the records in the index into the other file, then switches to it.
+     * @throws IOException If there is an error creating or writing the other file.
+     */
+    private void compact() throws IOException {
+
+        final Path oldFile = currentFile;
+        final FileChannel oldChannel = channel;
+        final List<MappedByteBuffer> oldChunks = chunks;
+
+        currentFile = oldFile.equals(file) ? compactFile : file;
+        channel = openEmpty(currentFile);
+        chunks = new ArrayList<>();
+        fileEnd = 0;
+        liveBytes = 0;
+
+        for(Map.Entry<SessionKey, Long> nextEntry : index.entrySet()) {
+            final byte[] record = new byte[length(nextEntry.getValue())];
+            copy(oldChunks, nextEntry.getValue(), record);
+            nextEntry.setValue((append(record) << LENGTH_BITS) | record.length);
+            liveBytes += record.length;
+        }
+
+        //The old mappings stay valid until they're garbage collected, even with the file gone.
+        oldChannel.close();
+        Files.deleteIfExists(oldFile);
+
+    }
+
+    private static FileChannel openEmpty(final Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static long offset(final long entry) {
+        return entry >>> LENGTH_BITS;
+    }
+
+    private static int length(final long entry) {
+        return (int) (entry & LENGTH_MASK);
+    }
+
+}
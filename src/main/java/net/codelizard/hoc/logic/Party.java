@@ -1,15 +1,20 @@
 package net.codelizard.hoc.logic;
 
+import net.codelizard.hoc.content.ContentIndex;
 import net.codelizard.hoc.content.DiscountType;
 import net.codelizard.hoc.content.Hero;
 import net.codelizard.hoc.content.HeroDiscount;
 import net.codelizard.hoc.content.ResourceType;
+import net.codelizard.hoc.content.ResourceVector;
 
 import java.util.*;
 
 /**
  * Represents the active party and provides helper methods for interacting with the party as a whole.
  * 
+ * <p>The party's maximum resources and discounts are looked up every time an obstacle is checked, so they're worked
+ * out once and kept until the heroes or the level change.</p>
+ * 
  * @author Codelizard
  */
 public class Party {
@@ -17,11 +22,8 @@ public class Party {
     /** How big a party has to be to be considered "full". */
     public static final int FULL_PARTY_SIZE = 4;
     
-    /** Default amount of time the party has to beat the game. */
-    private static final int TIME_LIMIT = 250;
-    
-    /** The base health of the party. The party gets 1 more each level they gain past 1. */
-    private static final int HEALTH_BASE = 10;
+    /** Every discount type, by ordinal. */
+    private static final DiscountType[] DISCOUNT_TYPES = DiscountType.values();
     
     /** The heroes making up the party. */
     private final List<Hero> heroes = new ArrayList<>();
@@ -29,6 +31,18 @@ public class Party {
     /** The party's current level. */
     private int level = 1;
     
+    /** The party's resource pool maximum counts, as of the last time the aggregates were worked out. */
+    private final ResourceVector maxResources = new ResourceVector();
+    
+    /** How many heroes discount each resource, for each DiscountType by ordinal. */
+    private final ResourceVector[] discounts = new ResourceVector[DISCOUNT_TYPES.length];
+    
+    /** Whether the heroes or level have changed since the aggregates were last worked out. */
+    private boolean aggregatesStale = true;
+    
+    /** The rules the aggregates were last worked out with. */
+    private RuleSet aggregateRules = RuleSet.STANDARD;
+    
     /**
      * Creates a new, empty Party.
      */
@@ -54,6 +68,7 @@ public class Party {
      */
     public void setLevel(int level) {
         this.level = level;
+        aggregatesStale = true;
     }
     
     /**
@@ -62,6 +77,22 @@ public class Party {
      */
     public void addHero(Hero hero) {
         heroes.add(hero);
+        aggregatesStale = true;
+    }
+    
+    /**
+     * Replaces every hero with the hero of the same ID from another version of the content. Heroes that version doesn't
+     * have are kept as they are.
+     * @param index The index of the content version to switch to.
+     */
+    void remapHeroes(final ContentIndex index) {
+        for(int position = 0; position < heroes.size(); position++) {
+            final Hero remapped = index.getHero(heroes.get(position).getId());
+            if(remapped != null) {
+                heroes.set(position, remapped);
+            }
+        }
+        aggregatesStale = true;
     }
     
     /**
@@ -70,6 +101,7 @@ public class Party {
      * @return {@code true} if the hero was removed, {@code false} if they were not in the party.
      */
     public boolean removeHero(Hero hero) {
+        aggregatesStale = true;
         return heroes.remove(hero);
     }
     
@@ -96,47 +128,84 @@ public class Party {
     }
 
     /**
-     * @return A mapping representing the party's resource pool maximum counts.
+     * @return The heroes in the party, in the order they joined.
      */
-    public Map<ResourceType, Integer> getMaxResources() {
-        
-        final Map<ResourceType, Integer> maxResources = new HashMap<>();
-        maxResources.put(ResourceType.TIME, TIME_LIMIT);
-        maxResources.put(ResourceType.HEALTH, HEALTH_BASE + (level - 1));
-        
-        for(Hero nextHero : heroes) {
-            final Map<ResourceType, Integer> heroResources = nextHero.getResources().get(level);
-            for(ResourceType nextResource : heroResources.keySet()) {
-                maxResources.put(
-                    nextResource,
-                    maxResources.getOrDefault(nextResource, 0) + heroResources.get(nextResource)
-                );
-            }
-        }
-        
-        return maxResources;
+    List<Hero> getHeroes() {
+        return Collections.unmodifiableList(heroes);
+    }
+    
+    /**
+     * @param rules The rules to play by.
+     * @return The party's resource pool maximum counts.
+     */
+    public ResourceVector getMaxResources(final RuleSet rules) {
+        final ResourceVector copy = new ResourceVector();
+        fillMaxResources(copy, rules);
+        return copy;
     }
     
-    public Integer eventDiscount(final ResourceType resourceType) {
-        return calculateDiscount(DiscountType.EVENT, resourceType);
+    /**
+     * Overwrites a vector with the party's resource pool maximum counts, without allocating a new one.
+     * @param destination The vector to overwrite.
+     * @param rules The rules to play by.
+     */
+    void fillMaxResources(final ResourceVector destination, final RuleSet rules) {
+        updateAggregates(rules);
+        destination.setAll(maxResources);
     }
     
-    public Integer monsterDiscount(final ResourceType resourceType) {
-        return calculateDiscount(DiscountType.MONSTER, resourceType);
+    /**
+     * @param resourceType A resource type.
+     * @return How much the party's heroes discount events that cost that resource.
+     */
+    public int eventDiscount(final ResourceType resourceType) {
+        updateAggregates(aggregateRules);
+        return discounts[DiscountType.EVENT.ordinal()].get(resourceType);
     }
     
-    private Integer calculateDiscount(final DiscountType discountType, final ResourceType resourceType) {
+    /**
+     * @param resourceType A resource type.
+     * @return How much the party's heroes discount monsters that cost that resource.
+     */
+    public int monsterDiscount(final ResourceType resourceType) {
+        updateAggregates(aggregateRules);
+        return discounts[DiscountType.MONSTER.ordinal()].get(resourceType);
+    }
+    
+    /**
+     * Works out the party's maximum resources and discounts again, if the heroes, level or rules have changed since
+     * the last time.
+     * @param rules The rules to play by.
+     */
+    private void updateAggregates(final RuleSet rules) {
+        
+        if(!aggregatesStale && rules == aggregateRules) {
+            return;
+        }
         
-        int totalDiscount = 0;
+        maxResources.clear();
+        maxResources.set(ResourceType.TIME, rules.get(Rule.TIME_LIMIT));
+        maxResources.set(ResourceType.HEALTH, rules.get(Rule.HEALTH_BASE) + (level - 1));
+        
+        for(int type = 0; type < discounts.length; type++) {
+            if(discounts[type] == null) {
+                discounts[type] = new ResourceVector();
+            }
+            discounts[type].clear();
+        }
         
         for(Hero nextHero : heroes) {
+            
+            maxResources.addAll(nextHero.getResourceAmounts(level));
+            
+            //Each hero gives a discount of 1 to one resource, on either events or monsters.
             final HeroDiscount discount = nextHero.getDiscount();
-            if(discountType.equals(discount.getType()) && resourceType.equals(discount.getResource())) {
-                totalDiscount++;
-            }
+            discounts[discount.getType().ordinal()].add(discount.getResource(), 1);
+            
         }
         
-        return totalDiscount;
+        aggregateRules = rules;
+        aggregatesStale = false;
         
     }
     
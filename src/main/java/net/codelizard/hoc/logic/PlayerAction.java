@@ -17,6 +17,7 @@ public final class PlayerAction {
     private final String userFirstName;
     private final String serviceName;
     private final String serviceUserId;
+    private final SessionKey sessionKey;
     
     /**
      * Creates a new PlayerAction object with the given parameters.
@@ -30,6 +31,7 @@ public final class PlayerAction {
         this.userFirstName = userFirstName;
         this.serviceName = serviceName;
         this.serviceUserId = serviceUserId;
+        this.sessionKey = SessionKey.of(serviceName, serviceUserId);
     }
 
     /**
@@ -60,6 +62,13 @@ public final class PlayerAction {
         return serviceUserId;
     }
     
+    /**
+     * @return The key of the session this action belongs to.
+     */
+    public SessionKey getSessionKey() {
+        return sessionKey;
+    }
+    
     /**
      * Returns a brief description of this object for debugging purposes.
      * @return A one-line description of this PlayerAction object.
@@ -0,0 +1,186 @@
+package net.codelizard.hoc.logic;
+
+import net.codelizard.hoc.content.ContentIndex;
+import net.codelizard.hoc.content.ResourceType;
+
+/**
+ * <p>A player's message, parsed once when it arrives into the forms that GameStates look for: the raw text, the key
+ * for looking up which button it is, the number it holds (if any), the 0-based list index it picks (if any) and the
+ * resource type it names (if any).</p>
+ *
+ * <p>Parsing never throws, however malformed the input, so that players sending garbage don't cost a stack trace
+ * apiece. Numbers follow the same rules as {@link Integer#parseInt(String)}.</p>
+ *
+ * <p>PlayerCommand objects are immutable.</p>
+ *
+ * @author Codelizard
+ */
+public final class PlayerCommand {
+
+    /** Returned by {@link #getListIndex()} when the message doesn't pick a list entry. */
+    public static final int NO_INDEX = -1;
+
+    /** Returned by {@link #parseInt(String, int, int)} for anything that isn't an int. */
+    private static final long NOT_A_NUMBER = Long.MIN_VALUE;
+
+    /** Every resource type, by ordinal. */
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
+
+    /** The message text, never {@code null}. */
+    private final String text;
+
+    /** The text normalized for button lookups; see {@link ContentIndex#buttonKey(String)}. */
+    private final String buttonKey;
+
+    /** Whether the whole message is a number. */
+    private final boolean isNumber;
+
+    /** The number the whole message holds, if it is one. */
+    private final int number;
+
+    /** The 0-based list index picked by the message, or {@link #NO_INDEX}. */
+    private final int listIndex;
+
+    /** The resource type the message names, or {@code null}. */
+    private final ResourceType resourceType;
+
+    private PlayerCommand(final String text, final boolean isNumber, final int number, final int listIndex,
+            final ResourceType resourceType) {
+        this.text = text;
+        this.buttonKey = ContentIndex.buttonKey(text);
+        this.isNumber = isNumber;
+        this.number = number;
+        this.listIndex = listIndex;
+        this.resourceType = resourceType;
+    }
+
+    /**
+     * Parses a player's message.
+     * @param text The text the player sent, or {@code null} if the message had none.
+     * @return The parsed command.
+     */
+    public static PlayerCommand parse(final String text) {
+
+        final String safeText = text == null ? "" : text;
+
+        final long number = parseInt(safeText, 0, safeText.length());
+
+        //List entries are shown as "<1-based index>: <description>", and players may send just the number.
+        final int colon = safeText.indexOf(':');
+        final long listNumber = colon >= 0 ? parseInt(safeText, 0, colon) : number;
+
+        return new PlayerCommand(
+            safeText,
+            number != NOT_A_NUMBER,
+            number != NOT_A_NUMBER ? (int) number : 0,
+            listNumber != NOT_A_NUMBER && listNumber > Integer.MIN_VALUE ? (int) listNumber - 1 : NO_INDEX,
+            parseResourceType(safeText)
+        );
+
+    }
+
+    /**
+     * @return The message text; empty, never {@code null}, if the message had none.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return The text normalized for looking up which button it is; see {@link ContentIndex#button}.
+     */
+    public String getButtonKey() {
+        return buttonKey;
+    }
+
+    /**
+     * @param expected A button label or command.
+     * @return Whether the message is that label or command, ignoring case.
+     */
+    public boolean matches(final String expected) {
+        return expected != null && expected.equalsIgnoreCase(text);
+    }
+
+    /**
+     * @return Whether the whole message is a number.
+     */
+    public boolean isNumber() {
+        return isNumber;
+    }
+
+    /**
+     * @return The number the whole message holds, or 0 if it isn't one.
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * @return The 0-based index of the list entry the message picks, from the 1-based number before any colon in it,
+     * or {@link #NO_INDEX} if it doesn't start with a number. May be out of range for the list.
+     */
+    public int getListIndex() {
+        return listIndex;
+    }
+
+    /**
+     * @return The resource type the message names, ignoring case, or {@code null} if it doesn't name one.
+     */
+    public ResourceType getResourceType() {
+        return resourceType;
+    }
+
+    /**
+     * @return A one-line description of this PlayerCommand for debugging purposes.
+     */
+    @Override
+    public String toString() {
+        return "PlayerCommand: \"" + text + "\"";
+    }
+
+    /**
+     * Parses part of a string as a decimal int, accepting exactly what {@link Integer#parseInt(String)} does.
+     * @param text The string.
+     * @param start Where the number starts.
+     * @param end Where the number ends, exclusive.
+     * @return The number, or {@link #NOT_A_NUMBER} if that part of the string isn't an int.
+     */
+    private static long parseInt(final String text, final int start, final int end) {
+
+        int position = start;
+        boolean negative = false;
+        if(position < end && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+            negative = text.charAt(position) == '-';
+            position++;
+        }
+        if(position >= end) {
+            return NOT_A_NUMBER;
+        }
+
+        long value = 0;
+        for(; position < end; position++) {
+            final int digit = Character.digit(text.charAt(position), 10);
+            if(digit < 0) {
+                return NOT_A_NUMBER;
+            }
+            value = value * 10 + digit;
+            if(value > (long) Integer.MAX_VALUE + 1) {
+                return NOT_A_NUMBER;
+            }
+        }
+
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? NOT_A_NUMBER : value;
+
+    }
+
+    private static ResourceType parseResourceType(final String text) {
+        for(ResourceType nextType : RESOURCE_TYPES) {
+            if(nextType.name().equalsIgnoreCase(text)) {
+                return nextType;
+            }
+        }
+        return null;
+    }
+
+}
@@ -6,15 +6,15 @@ import net.codelizard.hoc.content.*;
 import java.util.*;
 
 /**
- * POJO representation of the player's current state in the game.
+ * POJO representation of the player's current state in the game. Idle states are encoded by {@link PlayerStateCodec}
+ * and kept in a {@link SessionStore}.
  * 
- * @todo Store this in a database via Hibernate instead of in-memory.
  * @author Codelizard
  */
 public class PlayerState {
     
-    /** How many kills the player needs (per floor) to fight the boss. */
-    private static final int REQUIRED_KILLS = 10;
+    /** Every resource type, by ordinal. */
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
     
     /** The current state the player is in. */
     private GameState state = GameState.TITLE;
@@ -32,10 +32,10 @@ public class PlayerState {
     private int kills = 0;
     
     /** The player's current resources. */
-    private Map<ResourceType, Integer> currentResources = null;
+    private ResourceVector currentResources = null;
     
     /** The player's maximum resources. */
-    private Map<ResourceType, Integer> maxResources = null;
+    private ResourceVector maxResources = null;
     
     /** The party's current equipment. */
     private final List<Equipment> equipment = new ArrayList<>();
@@ -44,16 +44,16 @@ public class PlayerState {
     private final List<Consumable> consumables = new ArrayList<>();
     
     /** The events on the current floor. */
-    private final List<Event> floorEvents = new ArrayList<>();
+    private final FloorDeck<Event> floorEvents = new FloorDeck<>(Event.class);
     
     /** The monsters on the current floor. */
-    private final List<Monster> floorMonsters = new ArrayList<>();
+    private final FloorDeck<Monster> floorMonsters = new FloorDeck<>(Monster.class);
     
     /** The equipment on the current floor. */
-    private final List<Equipment> floorEquipment = new ArrayList<>();
+    private final FloorDeck<Equipment> floorEquipment = new FloorDeck<>(Equipment.class);
     
     /** The consumables on the current floor. */
-    private final List<Consumable> floorConsumables = new ArrayList<>();
+    private final FloorDeck<Consumable> floorConsumables = new FloorDeck<>(Consumable.class);
     
     /** Which states the player has seen instruction messages for. */
     private final Set<GameState> seenInstructions = EnumSet.noneOf(GameState.class);
@@ -71,6 +71,20 @@ public class PlayerState {
     /** Temporary variable indicating that loot has been added to the inventory (to prevent duplication). */
     private boolean lootAwarded;
     
+    /** The sequence number of the last journaled action applied to this state, or 0 if none has been. */
+    private long journalSequence;
+    
+    /** The version of the game content that this state's heroes, items and cards come from. */
+    private int contentVersion;
+    
+    /** Source of every random choice made for this player, down to which flavor text they're shown. Reseeded at the
+     * start of each turn so that journaled turns can be replayed exactly. Only ever used by the thread running the
+     * player's turn, so unlike a shared generator it's never contended. */
+    private SplittableRandom random = new SplittableRandom();
+    
+    /** The numbers the game is balanced by. Only simulations ever change them, so they aren't encoded. */
+    private RuleSet rules = RuleSet.STANDARD;
+    
     public PlayerState() {}
 
     /**
@@ -101,6 +115,13 @@ public class PlayerState {
         return kills;
     }
     
+    /**
+     * @return How many monsters the player needs to kill on each floor before they can fight its boss.
+     */
+    public int getRequiredKills() {
+        return rules.get(Rule.REQUIRED_KILLS);
+    }
+    
     /**
      * Checks whether or not the player has seen instructions on a particular state.
      * @param gameState The state to check instructions for.
@@ -138,6 +159,83 @@ public class PlayerState {
         return lootAwarded;
     }
 
+    /**
+     * @return The sequence number of the last journaled action applied to this state, or 0 if none has been.
+     */
+    public long getJournalSequence() {
+        return journalSequence;
+    }
+    
+    /**
+     * @return The random number generator to use for every random choice made for this player.
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+    
+    /**
+     * @return The numbers the game is balanced by.
+     */
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    /**
+     * @return The floor the party is currently on (1-indexed), or 0 if they haven't entered the dungeon yet.
+     */
+    int getFloorNumber() {
+        return floorNumber;
+    }
+    
+    /**
+     * @return The player's current resources, or {@code null} if they haven't been calculated yet.
+     */
+    ResourceVector getCurrentResources() {
+        return currentResources;
+    }
+    
+    /**
+     * @return The player's maximum resources, or {@code null} if they haven't been calculated yet.
+     */
+    ResourceVector getMaxResources() {
+        return maxResources;
+    }
+    
+    /**
+     * @return The remaining events on the current floor.
+     */
+    FloorDeck<Event> getFloorEvents() {
+        return floorEvents;
+    }
+    
+    /**
+     * @return The remaining monsters on the current floor.
+     */
+    FloorDeck<Monster> getFloorMonsters() {
+        return floorMonsters;
+    }
+    
+    /**
+     * @return The remaining equipment on the current floor.
+     */
+    FloorDeck<Equipment> getFloorEquipment() {
+        return floorEquipment;
+    }
+    
+    /**
+     * @return The remaining consumables on the current floor.
+     */
+    FloorDeck<Consumable> getFloorConsumables() {
+        return floorConsumables;
+    }
+    
+    /**
+     * @return Every state the player has seen the instructions for.
+     */
+    Set<GameState> getSeenInstructions() {
+        return seenInstructions;
+    }
+    
     /**
      * @param state The new state the player is in.
      */
@@ -207,6 +305,103 @@ public class PlayerState {
         this.lootAwarded = lootAwarded;
     }
     
+    /**
+     * Changes the numbers the game is balanced by. Call {@link #calculateResources()} afterwards for the new maximums
+     * to take effect.
+     * @param rules The new rules.
+     */
+    public void setRules(final RuleSet rules) {
+        this.rules = rules;
+    }
+    
+    /**
+     * @param floorNumber The floor the party is on.
+     */
+    void setFloorNumber(final int floorNumber) {
+        this.floorNumber = floorNumber;
+    }
+    
+    /**
+     * Replaces the player's resources wholesale, such as when restoring a saved state.
+     * @param currentResources The player's current resources, or {@code null} if they haven't been calculated yet.
+     * @param maxResources The player's maximum resources, or {@code null} if they haven't been calculated yet.
+     */
+    void setResources(final ResourceVector currentResources, final ResourceVector maxResources) {
+        this.currentResources = currentResources;
+        this.maxResources = maxResources;
+    }
+    
+    /**
+     * @param journalSequence The sequence number of the journaled action that was just applied to this state.
+     */
+    void setJournalSequence(final long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+    
+    /**
+     * @return The version of the game content that this state's heroes, items and cards come from.
+     */
+    public int getContentVersion() {
+        return contentVersion;
+    }
+    
+    /**
+     * @param contentVersion The version of the game content that this state's heroes, items and cards come from.
+     */
+    void setContentVersion(final int contentVersion) {
+        this.contentVersion = contentVersion;
+    }
+    
+    /**
+     * Switches this state over to the given version of the game content, replacing every hero, item and card with the
+     * one that has the same ID in that version. Does nothing if the state is already on that version.
+     * @param content The content version to switch to.
+     */
+    void useContent(final GameContent content) {
+        
+        if(contentVersion == content.getVersion()) {
+            return;
+        }
+        
+        final ContentIndex index = content.getIndex();
+        remap(equipment, Equipment.class, index);
+        remap(consumables, Consumable.class, index);
+        floorEvents.useContent(index);
+        floorMonsters.useContent(index);
+        floorEquipment.useContent(index);
+        floorConsumables.useContent(index);
+        
+        if(transmuteResult != null) {
+            final Item remapped = index.get(transmuteResult.getId(), Item.class);
+            transmuteResult = remapped != null ? remapped : transmuteResult;
+        }
+        if(party != null) {
+            party.remapHeroes(index);
+        }
+        
+        contentVersion = content.getVersion();
+        
+    }
+    
+    private static <T extends ContentObject> void remap(final List<T> objects, final Class<T> type,
+            final ContentIndex index) {
+        for(int position = 0; position < objects.size(); position++) {
+            final T remapped = index.get(objects.get(position).getId(), type);
+            if(remapped != null) {
+                objects.set(position, remapped);
+            }
+        }
+    }
+    
+    /**
+     * Reseeds the state's random number generator. Called at the start of every turn with the seed recorded for that
+     * turn in the journal.
+     * @param seed The new seed.
+     */
+    void reseed(final long seed) {
+        random = new SplittableRandom(seed);
+    }
+    
     /**
      * Returns whether or not the party is below the maximum on one of the specified resources.
      * @param resourceTypes The resource types to check.
@@ -246,7 +441,7 @@ public class PlayerState {
      * @return Whether or not the party meets the requirements to fight the current boss.
      */
     public boolean canFightBoss() {
-        return kills >= REQUIRED_KILLS;
+        return kills >= rules.get(Rule.REQUIRED_KILLS);
     }
     
     /**
@@ -254,41 +449,40 @@ public class PlayerState {
      */
     public void calculateResources() {
         
-        maxResources = party.getMaxResources();
+        if(maxResources == null) {
+            maxResources = new ResourceVector();
+        }
+        party.fillMaxResources(maxResources, rules);
         if(currentResources == null) {
-            currentResources = party.getMaxResources();
+            currentResources = party.getMaxResources(rules);
         }
         
         for(Equipment nextEquipment : equipment) {
-            
-            final Map<ResourceType, ResourceValue> equipmentResources = nextEquipment.getResources();
-            for(ResourceType nextResource : equipmentResources.keySet()) {
-                
-                ResourceValue nextValue = equipmentResources.get(nextResource);
-                if(nextValue != null && nextValue.getValue() != 0) {
-                    Integer newValue = getResourceMax(nextResource) + nextValue.getValue();
-                    maxResources.put(nextResource, newValue);
-                }
-                
-            }
-            
+            maxResources.addAll(nextEquipment.getResourceAmounts());
         }
         
     }
     
     public String statusReport() {
+        return appendStatusReport(new StringBuilder()).toString();
+    }
+    
+    /**
+     * Appends the status report to a message being built, without building it separately first.
+     * @param output The message to append to.
+     * @return The same message, for chaining.
+     */
+    public StringBuilder appendStatusReport(final StringBuilder output) {
         
-        final StringBuilder output = new StringBuilder();
-        
-        for(ResourceType nextType : ResourceType.values()) {
-            if(output.length() > 0) {
-                output.append(", ");
-            }
-            output.append(getResourceCount(nextType))
+        String separator = "";
+        for(ResourceType nextType : RESOURCE_TYPES) {
+            output.append(separator)
+                  .append(getResourceCount(nextType))
                   .append("/")
                   .append(getResourceMax(nextType))
                   .append(" ")
                   .append(nextType.name);
+            separator = ", ";
         }
         
         output.append(", ")
@@ -302,14 +496,10 @@ public class PlayerState {
             output.append("\n\n")
                   .append(HeroesOfCordan.getStaticMessage("status.consumables"));
             
-            final StringBuilder consumableText = new StringBuilder();
-            for(Consumable nextConsumable : consumables) {
-                if(consumableText.length() > 0) {
-                    consumableText.append(", ");
-                }
-                consumableText.append(nextConsumable.benefits());
+            for(int item = 0; item < consumables.size(); item++) {
+                output.append(item > 0 ? ", " : "")
+                      .append(consumables.get(item).benefits());
             }
-            output.append(consumableText);
 
         }
         
@@ -318,18 +508,14 @@ public class PlayerState {
             output.append("\n")
                   .append(HeroesOfCordan.getStaticMessage("status.equipment"));
             
-            final StringBuilder equipmentText = new StringBuilder();
-            for(Equipment nextEquipment : equipment) {
-                if(equipmentText.length() > 0) {
-                    equipmentText.append(", ");
-                }
-                equipmentText.append(nextEquipment.benefits());
+            for(int item = 0; item < equipment.size(); item++) {
+                output.append(item > 0 ? ", " : "")
+                      .append(equipment.get(item).benefits());
             }
-            output.append(equipmentText);
             
         }
         
-        return output.toString();
+        return output;
         
     }
     
@@ -340,23 +526,12 @@ public class PlayerState {
     public void nextFloor() {
         
         floorNumber++;
-        final Tier floor = HeroesOfCordan.getContent().getTiers().get(floorNumber);
-        
-        floorEvents.clear();
-        floorEvents.addAll(floor.getEvents());
-        Collections.shuffle(floorEvents);
-        
-        floorConsumables.clear();
-        floorConsumables.addAll(floor.getConsumables());
-        Collections.shuffle(floorConsumables);
+        final ContentIndex index = HeroesOfCordan.getContent().getIndex();
         
-        floorEquipment.clear();
-        floorEquipment.addAll(floor.getEquipment());
-        Collections.shuffle(floorEquipment);
-        
-        floorMonsters.clear();
-        floorMonsters.addAll(floor.getMonsters());
-        Collections.shuffle(floorMonsters);
+        floorEvents.deal(index, floorNumber, random);
+        floorConsumables.deal(index, floorNumber, random);
+        floorEquipment.deal(index, floorNumber, random);
+        floorMonsters.deal(index, floorNumber, random);
         
         kills = 0;
         
@@ -366,7 +541,7 @@ public class PlayerState {
      * @return The Event on top of the Event deck.
      */
     public Event upcomingEvent() { 
-        return floorEvents.get(0);
+        return floorEvents.top();
     }
     
     /**
@@ -374,9 +549,9 @@ public class PlayerState {
      */
     public Monster upcomingMonster() {
         if(fightingBoss) {
-            return HeroesOfCordan.getContent().getTiers().get(party.getLevel()).getBoss();
+            return HeroesOfCordan.getContent().getIndex().boss(party.getLevel());
         } else {
-            return floorMonsters.get(0);
+            return floorMonsters.top();
         }
     }
     
@@ -384,14 +559,14 @@ public class PlayerState {
      * @return The Consumable on top of the Consumable deck.
      */
     public Consumable upcomingConsumable() {
-        return floorConsumables.get(0);
+        return floorConsumables.top();
     }
     
     /**
      * @return The Equipment on top of the Equipment deck.
      */
     public Equipment upcomingEquipment() {
-        return floorEquipment.get(0);
+        return floorEquipment.top();
     }
     
     /**
@@ -399,7 +574,7 @@ public class PlayerState {
      * @return The current value of the given resource.
      */
     public int getResourceCount(final ResourceType type) {
-        return currentResources.getOrDefault(type, 0);
+        return currentResources.get(type);
     }
     
     /**
@@ -407,7 +582,7 @@ public class PlayerState {
      * @return The maximum value of the given resource.
      */
     public int getResourceMax(final ResourceType type) {
-        return maxResources.getOrDefault(type, 0);
+        return maxResources.get(type);
     }
     
     /**
@@ -508,11 +683,11 @@ public class PlayerState {
      * @param gain How much to gain of the specified resource.
      * @param overcharge Whether or not the resource gain can go over the maximum.
      */
-    public void gainResource(final ResourceType resourceType, final Integer gain, boolean overcharge) {
+    public void gainResource(final ResourceType resourceType, final int gain, boolean overcharge) {
         final int max = getResourceMax(resourceType);
         final int current = getResourceCount(resourceType);
         final int newValue = overcharge ? current + gain : Math.min(current + gain, max);
-        currentResources.put(resourceType, newValue);
+        currentResources.set(resourceType, newValue);
     }
     
     /**
@@ -520,8 +695,8 @@ public class PlayerState {
      * @param resourceType The resource used.
      * @param cost How much to spend of the specified resource.
      */
-    public void spendResource(final ResourceType resourceType, final Integer cost) {
-        currentResources.put(resourceType, getResourceCount(resourceType) - cost);
+    public void spendResource(final ResourceType resourceType, final int cost) {
+        currentResources.add(resourceType, -cost);
     }
     
     /**
@@ -529,10 +704,8 @@ public class PlayerState {
      * @param consumable The consumable to use.
      */
     public void useConsumable(final Consumable consumable) {
-        Map<ResourceType, ResourceValue> resources = consumable.getResources();
-        for(ResourceType nextType : resources.keySet()) {
-            gainResource(nextType, resources.get(nextType).getValue(), true);
-        }
+        //Consumables always overcharge, so this is a straight sum.
+        currentResources.addAll(consumable.getResourceAmounts());
     }
     
     /**
@@ -541,7 +714,7 @@ public class PlayerState {
     public void refillResources() {
         for(ResourceType nextType : ResourceType.values()) {
             if(!nextType.canAlwaysSpend) {
-                currentResources.put(nextType, getResourceMax(nextType));
+                currentResources.set(nextType, getResourceMax(nextType));
             }
         }
     }
@@ -550,7 +723,7 @@ public class PlayerState {
      * Resets the party's health to its maximum value.
      */
     public void refillHealth() {
-        currentResources.put(ResourceType.HEALTH, getResourceMax(ResourceType.HEALTH));
+        currentResources.set(ResourceType.HEALTH, getResourceMax(ResourceType.HEALTH));
     }
     
     /**
@@ -570,29 +743,16 @@ public class PlayerState {
      */
     public Consumable transmuteConsumable(final Consumable oldConsumable) {
         
-        final Tier itemTier = HeroesOfCordan.getContent().getTiers().get(oldConsumable.getTier());
-        final List<Consumable> pool = itemTier.getConsumables();
+        final Consumable newConsumable = HeroesOfCordan.getContent().getIndex().randomOther(oldConsumable, random);
         
-        if(pool.size() == 1) {
-            
-            //Just in case someone provided a data file with only one item this tier
-            return pool.get(0);
-            
-        } else {
-            
-            Consumable newConsumable;
-            do {
-                final int index = (int) Math.round(pool.size() * Math.random());
-                newConsumable = pool.get(index);                
-            } while(newConsumable.getId().equals(oldConsumable.getId()));
-            
+        //Only the original can come back, if it's the only one in its pool; then there's nothing to swap.
+        if(newConsumable != oldConsumable) {
             consumables.remove(oldConsumable);
             consumables.add(newConsumable);
-            
-            return newConsumable;
-            
         }
         
+        return newConsumable;
+        
     }
     
     /**
@@ -604,61 +764,44 @@ public class PlayerState {
      */
     public Equipment transmuteEquipment(final Equipment oldEquipment) {
         
-        final Tier itemTier = HeroesOfCordan.getContent().getTiers().get(oldEquipment.getTier());
-        final List<Equipment> pool = itemTier.getEquipment();
+        final Equipment newEquipment = HeroesOfCordan.getContent().getIndex().randomOther(oldEquipment, random);
         
-        if(pool.size() == 1) {
-            
-            //Just in case someone provided a data file with only one item this tier
-            return pool.get(0);
-            
-        } else {
-            
-            Equipment newEquipment;
-            do {
-                final int index = (int) Math.round(pool.size() * Math.random());
-                newEquipment = pool.get(index);                
-            } while(newEquipment.getId().equals(oldEquipment.getId()));
-            
+        //Only the original can come back, if it's the only one in its pool; then there's nothing to swap.
+        if(newEquipment != oldEquipment) {
             equipment.remove(oldEquipment);
             equipment.add(newEquipment);
-            
-            return newEquipment;
-            
         }
         
+        return newEquipment;
+        
     }
     
     /**
      * Takes the event at the top of the deck and puts it at the bottom, getting a new one in its place.
      */
     public void redrawEvent() {
-        if(!floorEvents.isEmpty()) {
-            floorEvents.add(floorEvents.remove(0));
-        }
+        floorEvents.redraw();
     }
     
     /**
      * Takes the monster at the top of the deck and puts it at the bottom, getting a new one in its place.
      */
     public void redrawMonster() {
-        if(!floorMonsters.isEmpty()) {
-            floorMonsters.add(floorMonsters.remove(0));
-        }
+        floorMonsters.redraw();
     }
     
     /**
      * Removes the current event from the game.
      */
     public void nextEvent() {
-        floorEvents.remove(0);
+        floorEvents.discard();
     }
     
     /**
      * Removes the current monster from the game and increments the kill count.
      */
     public void nextMonster() {
-        floorMonsters.remove(0);
+        floorMonsters.discard();
         kills++;
     }
     
@@ -666,14 +809,14 @@ public class PlayerState {
      * Removes the current consumable from the game.
      */
     public void nextConsumable() {
-        floorConsumables.remove(0);
+        floorConsumables.discard();
     }
     
     /**
      * Removes the current equipment from the game.
      */
     public void nextEquipment() {
-        floorEquipment.remove(0);
+        floorEquipment.discard();
     }
     
 }
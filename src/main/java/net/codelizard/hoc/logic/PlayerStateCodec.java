@@ -0,0 +1,441 @@
+package net.codelizard.hoc.logic;
+
+import net.codelizard.hoc.content.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * <p>Converts PlayerStates to and from a compact binary form, for persistence and for measuring how much memory
+ * sessions take up.</p>
+ *
+ * <ul>
+ * <li>Heroes and inventory items are stored by ID and resolved against the latest GameContent when read back in, so a
+ * saved state never holds a copy of the content itself, and picks up any content reloaded since it was saved.</li>
+ * <li>Each remaining floor deck is dealt from a single tier, so it's stored as the tier number followed by a
+ * permutation of positions in that tier's list: one byte per card.</li>
+ * <li>Resources are stored as a bitmask of which types are nonzero followed by the values as variable-length ints,
+ * so most of them take a single byte.</li>
+ * </ul>
+ *
+ * <p>Every encoded state starts with a format version byte, so that older saves can still be read (or at least
+ * rejected cleanly) once the format changes.</p>
+ *
+ * <p>PlayerStateCodecs are immutable and thread-safe, but the state being written must not be in the middle of a
+ * turn.</p>
+ *
+ * @author Codelizard
+ */
+public class PlayerStateCodec {
+
+    /** The current format version. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Marks an absent optional game state. */
+    private static final int NO_STATE = 0xFF;
+
+    /** Largest tier list that can be stored one byte per card. */
+    private static final int MAX_DECK_SIZE = 0xFF;
+
+    //Bits of the flags byte.
+    private static final int HAS_PARTY = 1;
+    private static final int HAS_TRANSMUTE_RESULT = 1 << 1;
+    private static final int FIGHTING_BOSS = 1 << 2;
+    private static final int LOOT_AWARDED = 1 << 3;
+    private static final int HAS_CURRENT_RESOURCES = 1 << 4;
+    private static final int HAS_MAX_RESOURCES = 1 << 5;
+
+    /** Every resource type, by ordinal. */
+    private static final ResourceType[] RESOURCE_TYPES = ResourceType.values();
+
+    /** Every game state, by ordinal. */
+    private static final GameState[] GAME_STATES = GameState.values();
+
+    /** Supplies the game content that saved states refer to, which may change between calls. */
+    private final Supplier<GameContent> content;
+
+    /**
+     * Creates a new PlayerStateCodec for content that never changes.
+     * @param content The game content that saved states refer to.
+     * @throws IllegalArgumentException If a tier has too many of something for decks to be stored compactly.
+     */
+    public PlayerStateCodec(final GameContent content) {
+        this(() -> content);
+    }
+
+    /**
+     * Creates a new PlayerStateCodec for content that may be reloaded. Each state is written or read against whatever
+     * version the supplier returns at the time.
+     * @param content Supplies the game content that saved states refer to.
+     * @throws IllegalArgumentException If a tier has too many of something for decks to be stored compactly.
+     */
+    public PlayerStateCodec(final Supplier<GameContent> content) {
+
+        this.content = content;
+
+        final ContentIndex contentIndex = content.get().getIndex();
+        for(Integer nextTier : content.get().getTiers().keySet()) {
+            checkDeckSize(contentIndex.pool(Event.class, nextTier));
+            checkDeckSize(contentIndex.pool(Monster.class, nextTier));
+            checkDeckSize(contentIndex.pool(Equipment.class, nextTier));
+            checkDeckSize(contentIndex.pool(Consumable.class, nextTier));
+        }
+
+    }
+
+    private static void checkDeckSize(final List<? extends ContentObject> pool) {
+        if(pool.size() > MAX_DECK_SIZE) {
+            throw new IllegalArgumentException("Tiers can have at most " + MAX_DECK_SIZE + " of each kind of card.");
+        }
+    }
+
+    /**
+     * @param state The state to encode.
+     * @return The encoded state.
+     */
+    public byte[] encode(final PlayerState state) {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            write(state, new DataOutputStream(bytes));
+        } catch (IOException x) {
+            //ByteArrayOutputStream never throws.
+            throw new IllegalStateException(x);
+        }
+        return bytes.toByteArray();
+
+    }
+
+    /**
+     * @param encoded A state produced by {@link #encode(PlayerState)}.
+     * @return The decoded state.
+     * @throws IOException If the data is malformed or refers to content that no longer exists.
+     */
+    public PlayerState decode(final byte[] encoded) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(encoded)));
+    }
+
+    /**
+     * Reads just the journal sequence number out of an encoded state, without decoding the rest of it.
+     * @param encoded A state produced by {@link #encode(PlayerState)}.
+     * @return The sequence number of the last journaled action applied to the state.
+     * @throws IOException If the data is malformed.
+     */
+    public static long journalSequence(final byte[] encoded) throws IOException {
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        final int version = in.readUnsignedByte();
+        if(version != FORMAT_VERSION) {
+            throw new IOException("Unsupported PlayerState format " + version + ".");
+        }
+
+        //Skip the flags, game state and return state.
+        in.skipBytes(3);
+        return readVarLong(in);
+
+    }
+
+    /**
+     * Writes a PlayerState out.
+     * @param state The state to write.
+     * @param out The output to write to.
+     * @throws IOException If there is an error writing.
+     */
+    public void write(final PlayerState state, final DataOutput out) throws IOException {
+
+        final Party party = state.getParty();
+        final Item transmuteResult = state.getTransmuteResult();
+        final ResourceVector currentResources = state.getCurrentResources();
+        final ResourceVector maxResources = state.getMaxResources();
+
+        int flags = 0;
+        flags |= party != null ? HAS_PARTY : 0;
+        flags |= transmuteResult != null ? HAS_TRANSMUTE_RESULT : 0;
+        flags |= state.isFightingBoss() ? FIGHTING_BOSS : 0;
+        flags |= state.isLootAwarded() ? LOOT_AWARDED : 0;
+        flags |= currentResources != null ? HAS_CURRENT_RESOURCES : 0;
+        flags |= maxResources != null ? HAS_MAX_RESOURCES : 0;
+
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(flags);
+        out.writeByte(state.getGameState().ordinal());
+        out.writeByte(state.getReturnState() == null ? NO_STATE : state.getReturnState().ordinal());
+
+        writeVarLong(out, state.getJournalSequence());
+        writeVarLong(out, zigZag(state.getHeroIndex()));
+        writeVarLong(out, state.getFloorNumber());
+        writeVarLong(out, state.getKills());
+
+        long seen = 0;
+        for(GameState nextState : state.getSeenInstructions()) {
+            seen |= 1L << nextState.ordinal();
+        }
+        writeVarLong(out, seen);
+
+        if(party != null) {
+            writeVarLong(out, party.getLevel());
+            out.writeByte(party.partySize());
+            for(Hero nextHero : party.getHeroes()) {
+                out.writeUTF(nextHero.getId());
+            }
+        }
+
+        if(currentResources != null) {
+            writeResources(currentResources, out);
+        }
+        if(maxResources != null) {
+            writeResources(maxResources, out);
+        }
+
+        writeIds(state.getEquipment(), out);
+        writeIds(state.getConsumables(), out);
+        if(transmuteResult != null) {
+            out.writeUTF(transmuteResult.getId());
+        }
+
+        writeDeck(state.getFloorEvents(), out);
+        writeDeck(state.getFloorMonsters(), out);
+        writeDeck(state.getFloorEquipment(), out);
+        writeDeck(state.getFloorConsumables(), out);
+
+    }
+
+    /**
+     * Reads a PlayerState in.
+     * @param in The input to read from.
+     * @return The state that was read.
+     * @throws IOException If there is an error reading, the data is malformed or it refers to content that no longer
+     * exists.
+     */
+    public PlayerState read(final DataInput in) throws IOException {
+
+        final int version = in.readUnsignedByte();
+        if(version != FORMAT_VERSION) {
+            throw new IOException("Unsupported PlayerState format " + version + ".");
+        }
+
+        final GameContent gameContent = content.get();
+        final ContentIndex contentIndex = gameContent.getIndex();
+        final int flags = in.readUnsignedByte();
+        final PlayerState state = new PlayerState();
+        state.setContentVersion(gameContent.getVersion());
+
+        state.setGameState(gameState(in.readUnsignedByte()));
+        final int returnState = in.readUnsignedByte();
+        state.setReturnState(returnState == NO_STATE ? null : gameState(returnState));
+
+        state.setJournalSequence(readVarLong(in));
+        state.setHeroIndex((int) unZigZag(readVarLong(in)));
+        state.setFloorNumber((int) readVarLong(in));
+        state.setKills((int) readVarLong(in));
+
+        final long seen = readVarLong(in);
+        for(GameState nextState : GAME_STATES) {
+            if((seen & (1L << nextState.ordinal())) != 0) {
+                state.setSeenInstructions(nextState, true);
+            }
+        }
+
+        if((flags & HAS_PARTY) != 0) {
+            final Party party = new Party();
+            party.setLevel((int) readVarLong(in));
+            final int partySize = in.readUnsignedByte();
+            for(int index = 0; index < partySize; index++) {
+                final String heroId = in.readUTF();
+                final Hero hero = contentIndex.getHero(heroId);
+                if(hero == null) {
+                    throw new IOException("Unknown hero \"" + heroId + "\".");
+                }
+                party.addHero(hero);
+            }
+            state.setParty(party);
+        }
+
+        state.setResources(
+            (flags & HAS_CURRENT_RESOURCES) != 0 ? readResources(in) : null,
+            (flags & HAS_MAX_RESOURCES) != 0 ? readResources(in) : null
+        );
+
+        readIds(in, Equipment.class, contentIndex, state.getEquipment());
+        readIds(in, Consumable.class, contentIndex, state.getConsumables());
+        if((flags & HAS_TRANSMUTE_RESULT) != 0) {
+            state.setTransmuteResult(lookup(in.readUTF(), Item.class, contentIndex));
+        }
+
+        state.setFightingBoss((flags & FIGHTING_BOSS) != 0);
+        state.setLootAwarded((flags & LOOT_AWARDED) != 0);
+
+        readDeck(in, contentIndex, state.getFloorEvents());
+        readDeck(in, contentIndex, state.getFloorMonsters());
+        readDeck(in, contentIndex, state.getFloorEquipment());
+        readDeck(in, contentIndex, state.getFloorConsumables());
+
+        return state;
+
+    }
+
+    private static void writeResources(final ResourceVector resources, final DataOutput out) throws IOException {
+
+        //Zeroes are left out, since a missing type reads back as zero anyway.
+        final int present = resources.nonZeroTypes();
+        out.writeByte(present);
+
+        //Values go in ordinal order so that the bitmask is all that's needed to tell which is which.
+        for(ResourceType nextType : RESOURCE_TYPES) {
+            if((present & (1 << nextType.ordinal())) != 0) {
+                writeVarLong(out, zigZag(resources.get(nextType)));
+            }
+        }
+
+    }
+
+    private static ResourceVector readResources(final DataInput in) throws IOException {
+
+        final int present = in.readUnsignedByte();
+        if(present >>> RESOURCE_TYPES.length != 0) {
+            throw new IOException("Unknown resource types in " + Integer.toBinaryString(present) + ".");
+        }
+
+        final ResourceVector resources = new ResourceVector();
+        for(ResourceType nextType : RESOURCE_TYPES) {
+            if((present & (1 << nextType.ordinal())) != 0) {
+                resources.set(nextType, (int) unZigZag(readVarLong(in)));
+            }
+        }
+        return resources;
+
+    }
+
+    private static void writeIds(final List<? extends ContentObject> contentObjects, final DataOutput out)
+            throws IOException {
+        writeVarLong(out, contentObjects.size());
+        for(ContentObject nextObject : contentObjects) {
+            out.writeUTF(nextObject.getId());
+        }
+    }
+
+    private static <T extends ContentObject> void readIds(final DataInput in, final Class<T> type,
+            final ContentIndex contentIndex, final List<? super T> destination) throws IOException {
+
+        final long count = readVarLong(in);
+        destination.clear();
+        for(long index = 0; index < count; index++) {
+            destination.add(lookup(in.readUTF(), type, contentIndex));
+        }
+
+    }
+
+    private static void writeDeck(final FloorDeck<?> deck, final DataOutput out) throws IOException {
+
+        if(deck.size() > MAX_DECK_SIZE) {
+            throw new IllegalStateException("A tier " + deck.getTier() + " deck has more than " + MAX_DECK_SIZE
+                + " cards.");
+        }
+
+        out.writeByte(deck.size());
+        if(deck.isEmpty()) {
+            return;
+        }
+
+        //A deck is always dealt from a single tier, which is usually (but not always) the current floor's.
+        writeVarLong(out, deck.getTier());
+        for(int card = 0; card < deck.size(); card++) {
+            out.writeByte(deck.positionAt(card));
+        }
+
+    }
+
+    private static void readDeck(final DataInput in, final ContentIndex contentIndex, final FloorDeck<?> deck)
+            throws IOException {
+
+        final int count = in.readUnsignedByte();
+        if(count == 0) {
+            deck.clear();
+            return;
+        }
+
+        final long tierNumber = readVarLong(in);
+        if(tierNumber < 1 || tierNumber > Integer.MAX_VALUE) {
+            throw new IOException("Deck saved from tier " + tierNumber + ", which doesn't exist.");
+        }
+
+        final int[] positions = new int[count];
+        for(int card = 0; card < count; card++) {
+            positions[card] = in.readUnsignedByte();
+        }
+
+        try {
+            deck.restore(contentIndex, (int) tierNumber, positions);
+        } catch (IllegalArgumentException x) {
+            throw new IOException(x.getMessage(), x);
+        }
+
+    }
+
+    private static <T extends ContentObject> T lookup(final String id, final Class<T> type,
+            final ContentIndex contentIndex) throws IOException {
+
+        final T found = contentIndex.get(id, type);
+        if(found == null) {
+            throw new IOException("Unknown " + type.getSimpleName() + " \"" + id + "\".");
+        }
+        return found;
+
+    }
+
+    private static GameState gameState(final int ordinal) throws IOException {
+        if(ordinal >= GAME_STATES.length) {
+            throw new IOException("Unknown game state " + ordinal + ".");
+        }
+        return GAME_STATES[ordinal];
+    }
+
+    /**
+     * Writes a non-negative number seven bits at a time, lowest bits first, with the top bit of each byte marking
+     * whether more follow.
+     * @param out The output to write to.
+     * @param value The number to write.
+     * @throws IOException If there is an error writing.
+     */
+    private static void writeVarLong(final DataOutput out, long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(final DataInput in) throws IOException {
+
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            final int next = in.readUnsignedByte();
+            value |= (long) (next & 0x7F) << shift;
+            if((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length number.");
+
+    }
+
+    /**
+     * @param value A signed number.
+     * @return The number with its sign moved to the lowest bit, so that small negative numbers stay small.
+     */
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
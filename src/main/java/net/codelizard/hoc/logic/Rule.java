@@ -0,0 +1,112 @@
+package net.codelizard.hoc.logic;
+
+/**
+ * The numbers the rules of the game are balanced by, each with the value the game is normally played with. A
+ * {@link RuleSet} gives every one of them a value.
+ *
+ * @author Codelizard
+ */
+public enum Rule {
+
+    /** How much Time it costs to use the Back To Adventure action. */
+    FIGHT_TIME_COST(3),
+
+    /** How much Time it costs to use the Short Rest action. */
+    SHORT_REST_TIME_COST(5),
+
+    /** How much Time it costs to use the Long Rest action. */
+    LONG_REST_TIME_COST(15),
+
+    /** How much Physical it costs to use the Charge Ahead action. */
+    CHARGE_PHYSICAL_COST(1),
+
+    /** How much Time it costs to use the Charge Ahead action. */
+    CHARGE_TIME_COST(2),
+
+    /** How much Arcane it costs to use the Transmute action. */
+    TRANSMUTE_ARCANE_COST(1),
+
+    /** How much Time it costs to use the Transmute action. */
+    TRANSMUTE_TIME_COST(1),
+
+    /** How much Divine it costs to use the Cure action. */
+    CURE_DIVINE_COST(1),
+
+    /** How much Time it costs to use the Cure action. */
+    CURE_TIME_COST(1),
+
+    /** How much Health is gained by the Cure action. */
+    CURE_HEALTH_GAIN(1),
+
+    /** How much Divine it costs to use the Mass Cure action. */
+    MASS_CURE_DIVINE_COST(3),
+
+    /** How much Time it costs to use the Mass Cure action. */
+    MASS_CURE_TIME_COST(1),
+
+    /** How much Health is gained by the Mass Cure action. */
+    MASS_CURE_HEALTH_GAIN(4),
+
+    /** How much Stealth it costs to use the Scout Ahead action. */
+    SCOUT_STEALTH_COST(1),
+
+    /** How much Time it costs to use the Scout Ahead action. */
+    SCOUT_TIME_COST(1),
+
+    /** How much Mechanical it costs to use the Secret Door action. */
+    SECRET_DOOR_MECHANICAL_COST(1),
+
+    /** How much Time it costs to use the Secret Door action. */
+    SECRET_DOOR_TIME_COST(1),
+
+    /** How much Time it costs to use the Seal A Portal action. */
+    BOSS_TIME_COST(3),
+
+    /** How much Physical it costs to use the Dramatic Entry action. */
+    BOSS_CHARGE_PHYSICAL_COST(1),
+
+    /** How much Time it costs to use the Dramatic Entry action. */
+    BOSS_CHARGE_TIME_COST(2),
+
+    /** How much Time the party loses if it wipes. */
+    TPK_TIME_COST(20),
+
+    /** How much Time the party has to beat the game. */
+    TIME_LIMIT(250, 1),
+
+    /** The base health of the party. The party gets 1 more each level they gain past 1. */
+    HEALTH_BASE(10),
+
+    /** How many kills the party needs (per floor) to fight the boss. */
+    REQUIRED_KILLS(10);
+
+    /** The value the game is normally played with. */
+    public final int standard;
+
+    /** The smallest value the rule can be given. */
+    public final int minimum;
+
+    Rule(final int standard) {
+        this(standard, 0);
+    }
+
+    Rule(final int standard, final int minimum) {
+        this.standard = standard;
+        this.minimum = minimum;
+    }
+
+    /**
+     * @param name A rule's name, in any case.
+     * @return The rule.
+     * @throws IllegalArgumentException If there's no such rule.
+     */
+    public static Rule forName(final String name) {
+        for(Rule nextRule : values()) {
+            if(nextRule.name().equalsIgnoreCase(name.trim())) {
+                return nextRule;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rule \"" + name + "\".");
+    }
+
+}
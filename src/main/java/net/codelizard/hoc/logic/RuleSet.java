@@ -0,0 +1,71 @@
+package net.codelizard.hoc.logic;
+
+import java.util.Arrays;
+
+/**
+ * <p>A value for every {@link Rule}: what each action costs, how much Time and Health the party starts with, how many
+ * kills open the way to the boss. Real players always get {@link #STANDARD}; other rule sets are built with a
+ * {@link RuleSetBuilder} to see how the game plays with different numbers, and are only ever used in simulations, so
+ * they aren't saved with a session.</p>
+ *
+ * <p>RuleSet objects are immutable.</p>
+ *
+ * @author Codelizard
+ */
+public final class RuleSet {
+
+    /** Every rule, by ordinal. */
+    private static final Rule[] RULES = Rule.values();
+
+    /** The rules the game is normally played with. */
+    public static final RuleSet STANDARD = new RuleSetBuilder().build();
+
+    /** Each rule's value, by ordinal. */
+    private final int[] values;
+
+    /**
+     * @param values Each rule's value, by ordinal. Copied, so the caller can keep changing its array.
+     */
+    RuleSet(final int[] values) {
+        this.values = values.clone();
+    }
+
+    /**
+     * @param rule A rule.
+     * @return The rule's value.
+     */
+    public int get(final Rule rule) {
+        return values[rule.ordinal()];
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof RuleSet && Arrays.equals(values, ((RuleSet) other).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    /**
+     * @return The rules that differ from the standard ones, as {@code NAME=value} pairs that
+     * {@link RuleSetBuilder#set(String)} accepts, or "standard" if none do.
+     */
+    @Override
+    public String toString() {
+
+        final StringBuilder output = new StringBuilder();
+        for(Rule nextRule : RULES) {
+            if(get(nextRule) != nextRule.standard) {
+                if(output.length() > 0) {
+                    output.append(',');
+                }
+                output.append(nextRule.name()).append('=').append(get(nextRule));
+            }
+        }
+        return output.length() == 0 ? "standard" : output.toString();
+
+    }
+
+}
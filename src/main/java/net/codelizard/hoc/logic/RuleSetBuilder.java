@@ -0,0 +1,89 @@
+package net.codelizard.hoc.logic;
+
+/**
+ * Builder object for creating {@link RuleSet} objects. Every rule starts out with its standard value, or its value in
+ * the rule set the builder was made from.
+ *
+ * @author Codelizard
+ */
+public class RuleSetBuilder {
+
+    /** Every rule, by ordinal. */
+    private static final Rule[] RULES = Rule.values();
+
+    /** Each rule's value so far, by ordinal. */
+    private final int[] values = new int[RULES.length];
+
+    /** Creates a new RuleSetBuilder with every rule at its standard value. */
+    public RuleSetBuilder() {
+        for(Rule nextRule : RULES) {
+            values[nextRule.ordinal()] = nextRule.standard;
+        }
+    }
+
+    /**
+     * Creates a new RuleSetBuilder starting from an existing rule set.
+     * @param base The rule set to start from.
+     */
+    public RuleSetBuilder(final RuleSet base) {
+        for(Rule nextRule : RULES) {
+            values[nextRule.ordinal()] = base.get(nextRule);
+        }
+    }
+
+    /**
+     * @param rule The rule to change.
+     * @param value Its new value.
+     * @return This builder.
+     */
+    public RuleSetBuilder set(final Rule rule, final int value) {
+        values[rule.ordinal()] = value;
+        return this;
+    }
+
+    /**
+     * Changes several rules at once, as written on a command line.
+     * @param assignments Comma-separated {@code NAME=value} pairs, with rule names in any case. May be empty.
+     * @return This builder.
+     * @throws IllegalArgumentException If a pair is malformed or names a rule that doesn't exist.
+     */
+    public RuleSetBuilder set(final String assignments) {
+
+        for(String nextAssignment : assignments.split(",")) {
+
+            if(nextAssignment.trim().isEmpty()) {
+                continue;
+            }
+
+            final int equals = nextAssignment.indexOf('=');
+            if(equals < 0) {
+                throw new IllegalArgumentException("Expected NAME=value, not \"" + nextAssignment + "\".");
+            }
+            try {
+                set(Rule.forName(nextAssignment.substring(0, equals)),
+                    Integer.parseInt(nextAssignment.substring(equals + 1).trim()));
+            } catch (NumberFormatException x) {
+                throw new IllegalArgumentException("Expected NAME=value, not \"" + nextAssignment + "\".", x);
+            }
+
+        }
+        return this;
+
+    }
+
+    /**
+     * Instantiates a new {@link RuleSet} from the values set so far.
+     * @return The created RuleSet object.
+     * @throws IllegalArgumentException If any rule is below its minimum.
+     */
+    public RuleSet build() {
+        for(Rule nextRule : RULES) {
+            if(values[nextRule.ordinal()] < nextRule.minimum) {
+                throw new IllegalArgumentException(nextRule + " must be at least " + nextRule.minimum + ", not "
+                    + values[nextRule.ordinal()] + ".");
+            }
+        }
+        return new RuleSet(values);
+    }
+
+}
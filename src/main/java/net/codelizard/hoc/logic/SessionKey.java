@@ -0,0 +1,163 @@
+package net.codelizard.hoc.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Identifies a single player's session: the messaging service they're on, and their ID on that service.</p>
+ *
+ * <p>Service names are interned into small integers the first time they're seen, and user IDs that are plain decimal
+ * numbers (such as Telegram's) are stored as a {@code long}, so comparing and hashing a key never touches a string
+ * on the common path. Other user IDs are kept as strings.</p>
+ *
+ * <p>SessionKey objects are immutable.</p>
+ *
+ * @author Codelizard
+ */
+public final class SessionKey {
+
+    /** Interned service IDs by service name. */
+    private static final ConcurrentMap<String, Integer> SERVICE_IDS = new ConcurrentHashMap<>();
+
+    /** Service names by interned service ID. Only appended to, while holding the lock on this list. */
+    private static final List<String> SERVICE_NAMES = new ArrayList<>();
+
+    /** The longest user ID that's guaranteed to fit in a {@code long}. */
+    private static final int MAX_NUMERIC_DIGITS = 18;
+
+    /** The interned ID of the service. */
+    private final int serviceId;
+
+    /** The user's ID on the service, if it was numeric. */
+    private final long numericUserId;
+
+    /** The user's ID on the service if it was not numeric, or {@code null} if it was. */
+    private final String textUserId;
+
+    /** Precomputed hash code. */
+    private final int hash;
+
+    private SessionKey(final int serviceId, final long numericUserId, final String textUserId) {
+        this.serviceId = serviceId;
+        this.numericUserId = numericUserId;
+        this.textUserId = textUserId;
+        this.hash = 31 * (31 * serviceId + Long.hashCode(numericUserId)) + (textUserId == null ? 0 : textUserId.hashCode());
+    }
+
+    /**
+     * Creates the SessionKey for a user on a service.
+     * @param serviceName The name of the messaging platform.
+     * @param serviceUserId The user's ID on that platform.
+     * @return The user's SessionKey.
+     */
+    public static SessionKey of(final String serviceName, final String serviceUserId) {
+
+        final int serviceId = internService(serviceName);
+
+        if(isCanonicalNumber(serviceUserId)) {
+            return new SessionKey(serviceId, Long.parseLong(serviceUserId), null);
+        } else {
+            return new SessionKey(serviceId, 0, serviceUserId);
+        }
+
+    }
+
+    /**
+     * @return The name of the messaging platform this session is on.
+     */
+    public String getServiceName() {
+        synchronized(SERVICE_NAMES) {
+            return SERVICE_NAMES.get(serviceId);
+        }
+    }
+
+    /**
+     * @return The user's ID on their messaging platform, in its original text form.
+     */
+    public String getServiceUserId() {
+        return textUserId == null ? Long.toString(numericUserId) : textUserId;
+    }
+
+    /**
+     * @param serviceName A service name.
+     * @return The interned ID of the service, which is assigned the first time the name is seen.
+     */
+    private static int internService(final String serviceName) {
+
+        final Integer existing = SERVICE_IDS.get(serviceName);
+        if(existing != null) {
+            return existing;
+        }
+
+        synchronized(SERVICE_NAMES) {
+            return SERVICE_IDS.computeIfAbsent(serviceName, name -> {
+                SERVICE_NAMES.add(name);
+                return SERVICE_NAMES.size() - 1;
+            });
+        }
+
+    }
+
+    /**
+     * Checks whether or not a user ID can be stored as a number and turned back into exactly the same text later. That
+     * means only digits, no leading zeroes (other than "0" itself), and short enough to not overflow.
+     * @param userId The user ID to check.
+     * @return {@code true} if the ID can be stored as a {@code long}.
+     */
+    private static boolean isCanonicalNumber(final String userId) {
+
+        final int length = userId.length();
+        if(length == 0 || length > MAX_NUMERIC_DIGITS || (length > 1 && userId.charAt(0) == '0')) {
+            return false;
+        }
+
+        for(int index = 0; index < length; index++) {
+            final char next = userId.charAt(index);
+            if(next < '0' || next > '9') {
+                return false;
+            }
+        }
+
+        return true;
+
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Compares this SessionKey against another object. Two SessionKeys are equal if they are for the same user ID on
+     * the same service.
+     * @param obj The object to compare to.
+     * @return {@code true} if the the given object is equal to this one, {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(final Object obj) {
+
+        if(this == obj) {
+            return true;
+        } else if(obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        final SessionKey other = (SessionKey) obj;
+        return hash == other.hash
+            && serviceId == other.serviceId
+            && numericUserId == other.numericUserId
+            && (textUserId == null ? other.textUserId == null : textUserId.equals(other.textUserId));
+
+    }
+
+    /**
+     * @return A one-line description of this SessionKey for debugging purposes.
+     */
+    @Override
+    public String toString() {
+        return getServiceName() + "/" + getServiceUserId();
+    }
+
+}
@@ -0,0 +1,427 @@
+package net.codelizard.hoc.logic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * <p>Holds every player's current PlayerState, keyed by {@link SessionKey}. All operations are safe to call from any
+ * thread, and none of them block turn processing for other players.</p>
+ *
+ * <p>A registry can optionally be given a limit on how many sessions it keeps in memory. Once there are more than that,
+ * a background thread passivates the least recently used ones: encodes them, writes them to a
+ * {@link SessionStore} and drops them from memory. Looking a passivated session up reactivates it transparently.
+ * Each state is locked while it's being passivated, so it's never caught in the middle of a turn; a turn that was
+ * waiting on that lock must check {@link #isResident(SessionKey, PlayerState)} once it has it, and look the state up
+ * again if it was passivated in the meantime.</p>
+ *
+ * <p>Iteration (for admin tooling) only covers sessions in memory, and is weakly consistent: it never throws because
+ * of concurrent changes, and reflects some state of the registry at or after the moment it started. Note that the
+ * PlayerStates themselves may be in the middle of a turn while they're being looked at.</p>
+ *
+ * @author Codelizard
+ */
+public class SessionRegistry {
+
+    /** Passivation brings the number of resident sessions down to this fraction of the limit, so it runs in batches. */
+    private static final double LOW_WATERMARK = 0.9;
+
+    /** Every session currently in memory. */
+    private final ConcurrentHashMap<SessionKey, Resident> sessions = new ConcurrentHashMap<>();
+
+    /** The most sessions to keep in memory, or {@link Integer#MAX_VALUE} to keep them all. */
+    private final int residentLimit;
+
+    /** Where passivated sessions go, or {@code null} if sessions are never passivated. */
+    private final SessionStore passivated;
+
+    /** Converts states to and from their passivated form, or {@code null} if sessions are never passivated. */
+    private final PlayerStateCodec codec;
+
+    /** The passivation thread, or {@code null} if sessions are never passivated. */
+    private final Thread passivator;
+
+    /** Guards {@link #passivationRequested}. */
+    private final Object passivationLock = new Object();
+
+    /** Whether or not the passivation thread has been asked to run. Guarded by {@link #passivationLock}. */
+    private boolean passivationRequested;
+
+    /** Lookups that found the session in memory. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Lookups that didn't find the session in memory, whether or not it was then reactivated. */
+    private final LongAdder misses = new LongAdder();
+
+    /** Sessions brought back into memory from the passivation store. */
+    private final LongAdder reactivations = new LongAdder();
+
+    /** Sessions moved out of memory into the passivation store. */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new SessionRegistry that keeps every session in memory.
+     */
+    public SessionRegistry() {
+        this.residentLimit = Integer.MAX_VALUE;
+        this.passivated = null;
+        this.codec = null;
+        this.passivator = null;
+    }
+
+    /**
+     * Creates a new SessionRegistry that passivates the least recently used sessions once there are too many in memory.
+     * @param residentLimit The most sessions to keep in memory.
+     * @param passivated Where passivated sessions go.
+     * @param codec Converts states to and from their passivated form.
+     */
+    public SessionRegistry(final int residentLimit, final SessionStore passivated, final PlayerStateCodec codec) {
+
+        this.residentLimit = Math.max(1, residentLimit);
+        this.passivated = passivated;
+        this.codec = codec;
+
+        this.passivator = new Thread(this::passivateLoop, "HoC-Passivate");
+        passivator.setDaemon(true);
+        passivator.start();
+
+    }
+
+    /**
+     * Looks up a player's state, reactivating it if it was passivated.
+     * @param key The session to look up.
+     * @return The player's current state, or {@code null} if they have none.
+     */
+    public PlayerState get(final SessionKey key) {
+
+        final Resident resident = sessions.get(key);
+        if(resident != null) {
+            hits.increment();
+            return resident.touch();
+        }
+
+        misses.increment();
+        if(passivated == null) {
+            return null;
+        }
+
+        final Resident reactivated = sessions.computeIfAbsent(key, this::reactivate);
+        if(reactivated == null) {
+            return null;
+        }
+
+        requestPassivationIfFull();
+        return reactivated.touch();
+
+    }
+
+    /**
+     * Looks up a player's state only if it's in memory. Never reactivates a passivated session.
+     * @param key The session to look up.
+     * @return The player's state, or {@code null} if it isn't in memory.
+     */
+    public PlayerState getResident(final SessionKey key) {
+        final Resident resident = sessions.get(key);
+        return resident == null ? null : resident.state;
+    }
+
+    /**
+     * @param key A session.
+     * @param state A state that was looked up for the session.
+     * @return {@code true} if the state is still the session's current, in-memory state; {@code false} if it has since
+     * been replaced, removed or passivated.
+     */
+    public boolean isResident(final SessionKey key, final PlayerState state) {
+        final Resident resident = sessions.get(key);
+        return resident != null && resident.state == state;
+    }
+
+    /**
+     * Atomically looks up a player's state, creating it if they have none. The factory is called at most once per
+     * missing session.
+     * @param key The session to look up.
+     * @param factory Creates the state for a player who has none.
+     * @return The player's current state.
+     */
+    public PlayerState getOrCreate(final SessionKey key, final Supplier<PlayerState> factory) {
+
+        //Most lookups hit, and get() doesn't lock anything, unlike computeIfAbsent().
+        final PlayerState existing = get(key);
+        if(existing != null) {
+            return existing;
+        }
+
+        final Resident created = sessions.computeIfAbsent(key, missingKey -> {
+            final Resident reactivated = reactivate(missingKey);
+            return reactivated != null ? reactivated : new Resident(missingKey, factory.get());
+        });
+
+        requestPassivationIfFull();
+        return created.touch();
+
+    }
+
+    /**
+     * @param key The session to record the state of.
+     * @param state The player's new state.
+     */
+    public void put(final SessionKey key, final PlayerState state) {
+        sessions.put(key, new Resident(key, state));
+        requestPassivationIfFull();
+    }
+
+    /**
+     * @param key The session to forget.
+     * @return The state the player had in memory, or {@code null} if they had none.
+     */
+    public PlayerState remove(final SessionKey key) {
+
+        if(passivated != null) {
+            try {
+                passivated.remove(key);
+            } catch (IOException x) {
+                throw new UncheckedIOException("Couldn't remove session " + key + ".", x);
+            }
+        }
+
+        final Resident removed = sessions.remove(key);
+        return removed == null ? null : removed.state;
+
+    }
+
+    /**
+     * @return The number of sessions in memory.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * @return The number of sessions with a copy in the passivation store. A session that was reactivated keeps its
+     * copy until it's passivated again, so this can overlap with {@link #size()}.
+     */
+    public int passivatedSize() {
+        return passivated == null ? 0 : passivated.size();
+    }
+
+    /**
+     * Calls the given action for every session in memory.
+     * @param action The action to run for each session.
+     */
+    public void forEach(final BiConsumer<SessionKey, PlayerState> action) {
+        sessions.forEach((key, resident) -> action.accept(key, resident.state));
+    }
+
+    /**
+     * Calls the given action with the encoded form of every session in the passivation store. Since reactivated sessions
+     * keep their stored copy, some of these may be older than the session's state in memory.
+     * @param action The action to run for each passivated session.
+     * @throws IOException If there is an error reading the passivation store.
+     */
+    public void forEachPassivated(final BiConsumer<SessionKey, byte[]> action) throws IOException {
+
+        if(passivated == null) {
+            return;
+        }
+
+        for(SessionKey nextKey : passivated.keys()) {
+            final byte[] encoded = passivated.read(nextKey);
+            if(encoded != null) {
+                action.accept(nextKey, encoded);
+            }
+        }
+
+    }
+
+    /**
+     * @return How many lookups found the session in memory.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many lookups didn't find the session in memory.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return How many sessions have been brought back into memory from the passivation store.
+     */
+    public long getReactivationCount() {
+        return reactivations.sum();
+    }
+
+    /**
+     * @return How many sessions have been moved out of memory into the passivation store.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return A one-line summary of the registry's metrics, for logging.
+     */
+    public String metricsReport() {
+
+        final long hitCount = getHitCount();
+        final long lookups = hitCount + getMissCount();
+
+        return String.format(
+            "resident=%d passivated=%d hits=%d misses=%d hit-rate=%.1f%% reactivations=%d evictions=%d",
+            size(), passivatedSize(), hitCount, getMissCount(), lookups == 0 ? 100.0 : 100.0 * hitCount / lookups,
+            getReactivationCount(), getEvictionCount()
+        );
+
+    }
+
+    /**
+     * Loads a session from the passivation store. Called from inside {@code computeIfAbsent}, so that two threads can
+     * never reactivate the same session at once.
+     * @param key The session to load.
+     * @return The reactivated session, or {@code null} if it isn't in the store.
+     */
+    private Resident reactivate(final SessionKey key) {
+
+        if(passivated == null) {
+            return null;
+        }
+
+        try {
+            final byte[] encoded = passivated.read(key);
+            if(encoded == null) {
+                return null;
+            }
+            reactivations.increment();
+            return new Resident(key, codec.decode(encoded));
+        } catch (IOException x) {
+            throw new UncheckedIOException("Couldn't reactivate session " + key + ".", x);
+        }
+
+    }
+
+    /**
+     * Wakes up the passivation thread if there are more sessions in memory than the limit.
+     */
+    private void requestPassivationIfFull() {
+
+        if(passivator == null || sessions.size() <= residentLimit) {
+            return;
+        }
+
+        synchronized(passivationLock) {
+            passivationRequested = true;
+            passivationLock.notifyAll();
+        }
+
+    }
+
+    /**
+     * Main loop of the passivation thread. Each time it's woken up, it passivates the least recently used sessions
+     * until the number in memory is down to the low watermark.
+     */
+    private void passivateLoop() {
+
+        while(true) {
+
+            synchronized(passivationLock) {
+                while(!passivationRequested) {
+                    try {
+                        passivationLock.wait();
+                    } catch (InterruptedException x) {
+                        return;
+                    }
+                }
+                passivationRequested = false;
+            }
+
+            final int target = (int) (residentLimit * LOW_WATERMARK);
+            final int excess = sessions.size() - target;
+            if(excess <= 0) {
+                continue;
+            }
+
+            //One pass over everything to find the oldest is cheaper than keeping an exact LRU order on every lookup.
+            //Access times keep changing while this runs, so they're copied before sorting.
+            final Resident[] residents = sessions.values().toArray(new Resident[0]);
+            final long[] accessTimes = new long[residents.length];
+            final Integer[] order = new Integer[residents.length];
+            for(int index = 0; index < residents.length; index++) {
+                accessTimes[index] = residents[index].lastAccess;
+                order[index] = index;
+            }
+            Arrays.sort(order, Comparator.comparingLong(index -> accessTimes[index]));
+
+            int passivatedCount = 0;
+            for(int index = 0; index < order.length && passivatedCount < excess; index++) {
+                try {
+                    if(passivate(residents[order[index]])) {
+                        passivatedCount++;
+                    }
+                } catch (Exception x) {
+                    //Leave it in memory; going over the limit is better than losing a session.
+                    x.printStackTrace();
+                }
+            }
+
+        }
+
+    }
+
+    /**
+     * Moves a single session out of memory. A turn that replaces a player's state keeps the new one locked until it has
+     * been entered, so a state is never written out before its first turn has finished with it.
+     * @param resident The session's in-memory entry when it was chosen.
+     * @return {@code true} if it was passivated, {@code false} if it changed in the meantime.
+     * @throws IOException If the session couldn't be written to the store.
+     */
+    private boolean passivate(final Resident resident) throws IOException {
+
+        synchronized(resident.state) {
+
+            if(sessions.get(resident.key) != resident) {
+                return false;
+            }
+
+            //Written before it's removed, so that a lookup in between always finds it in one place or the other.
+            passivated.write(resident.key, codec.encode(resident.state));
+            sessions.remove(resident.key, resident);
+            evictions.increment();
+            return true;
+
+        }
+
+    }
+
+    /**
+     * A session in memory, along with when it was last looked up.
+     */
+    private static final class Resident {
+
+        private final SessionKey key;
+
+        private final PlayerState state;
+
+        /** When the session was last looked up, from {@link System#nanoTime()}. */
+        private volatile long lastAccess = System.nanoTime();
+
+        Resident(final SessionKey key, final PlayerState state) {
+            this.key = key;
+            this.state = state;
+        }
+
+        PlayerState touch() {
+            lastAccess = System.nanoTime();
+            return state;
+        }
+
+    }
+
+}
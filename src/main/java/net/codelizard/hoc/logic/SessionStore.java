@@ -0,0 +1,55 @@
+package net.codelizard.hoc.logic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * <p>Somewhere to keep encoded PlayerStates that aren't in memory. {@link SessionRegistry} passivates idle sessions
+ * into a SessionStore and reactivates them from it, so the backend decides where the bulk of all sessions actually
+ * lives: on the heap, in a memory-mapped file or in an embedded database.</p>
+ *
+ * <p>A SessionStore holds the working set, not the record of truth: snapshots and the action journal are what survive a
+ * restart, and snapshots copy every stored session out. Implementations therefore start out empty and don't need to
+ * sync anything to disk.</p>
+ *
+ * <p>Implementations must be thread-safe.</p>
+ *
+ * @author Codelizard
+ */
+public interface SessionStore extends Closeable {
+
+    /**
+     * Stores a session's encoded state, replacing any previous one.
+     * @param key The session.
+     * @param encoded The encoded state.
+     * @throws IOException If the state couldn't be stored.
+     */
+    void write(SessionKey key, byte[] encoded) throws IOException;
+
+    /**
+     * @param key The session to look up.
+     * @return The session's encoded state, or {@code null} if it isn't in the store.
+     * @throws IOException If the state couldn't be read.
+     */
+    byte[] read(SessionKey key) throws IOException;
+
+    /**
+     * Forgets a session. Does nothing if the session isn't in the store.
+     * @param key The session to forget.
+     * @throws IOException If the session couldn't be removed.
+     */
+    void remove(SessionKey key) throws IOException;
+
+    /**
+     * @return The number of sessions in the store.
+     */
+    int size();
+
+    /**
+     * @return A copy of every session key in the store, taken at some point during the call.
+     * @throws IOException If the keys couldn't be read.
+     */
+    List<SessionKey> keys() throws IOException;
+
+}
@@ -0,0 +1,592 @@
+package net.codelizard.hoc.persistence;
+
+import net.codelizard.hoc.logic.PlayerAction;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * <p>An append-only, checksummed log of every PlayerAction the game has accepted. Together with the latest snapshot it
+ * is enough to rebuild every player's state after a restart or crash.</p>
+ *
+ * <p>The journal is split into segment files named after the sequence number of their first record, so that segments
+ * already covered by a snapshot can be deleted whole. Each segment starts with a magic number and a format version,
+ * and a segment in any other format is refused rather than replayed, since the same records would play out
+ * differently. Each record after that is framed as {@code [int payload length][int CRC32 of payload][payload]}; a
+ * frame that is cut short or fails its checksum marks the end of the usable journal (it can only be the tail of a
+ * write that was interrupted by a crash).</p>
+ *
+ * <p>Appends never wait for the disk. A single flusher thread collects every record appended since its last write,
+ * writes them in one go and syncs the file once for the whole batch (group commit), so the cost of an fsync is shared
+ * between every player whose turn landed in the same batch. Each append's {@link Ticket} completes once its record is
+ * durable.</p>
+ *
+ * <p>ActionJournals are thread-safe.</p>
+ *
+ * @author Codelizard
+ */
+public class ActionJournal implements Closeable {
+
+    /** File name prefix of journal segments. */
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    /** File name suffix of journal segments. */
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** Identifies a journal segment ("HoCJ"). */
+    private static final int MAGIC = 0x486F434A;
+
+    /**
+     * The current segment format. Must change whenever replaying the same records would turn out differently, such as
+     * when the way turn seeds are used changes, not just when the layout of a record does.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Size of a segment's magic number and format version. */
+    private static final int SEGMENT_HEADER_BYTES = 5;
+
+    /** Segments are rolled over once they grow past this size. */
+    private static final long MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    /** Frames claiming to be bigger than this are treated as corrupt. */
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+    /** Size of a frame's length and checksum header. */
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    /** The directory segments are kept in. */
+    private final Path directory;
+
+    /** The flusher thread. */
+    private final Thread flusher;
+
+    /** Guards every field below. */
+    private final Object lock = new Object();
+
+    /** The sequence number the next appended record will get. */
+    private long nextSequence;
+
+    /** Framed records waiting for the flusher. */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /** Tickets waiting for the records in {@link #pending} to be written. */
+    private List<Ticket> pendingTickets = new ArrayList<>();
+
+    /** The segment currently being appended to. Only touched by the flusher thread once it has started. */
+    private FileChannel segment;
+
+    /** The size of the current segment. Only touched by the flusher thread once it has started. */
+    private long segmentBytes;
+
+    /** Whether or not a roll to a new segment has been requested. */
+    private boolean rollRequested;
+
+    /** How many times the journal has rolled to a new segment. */
+    private long rollCount;
+
+    /** The first sequence number in the segment that was started by the most recent roll. */
+    private long lastRollSequence;
+
+    /** An error that stopped the flusher from rolling, to be handed to whoever asked for the roll. */
+    private IOException rollFailure;
+
+    /** Whether or not the journal has been closed. */
+    private boolean closed;
+
+    /** How many records have been made durable. */
+    private long recordsWritten;
+
+    /** How many batches (and so, syncs) the records were written in. */
+    private long flushes;
+
+    /**
+     * Opens the journal in the given directory, creating it if necessary. Any torn record left at the end of a segment
+     * by a crash is cut off, and appending starts in a fresh segment.
+     * @param directory The directory to keep the journal in.
+     * @param minimumSequence The lowest sequence number that may be given to a new record. Must be higher than the
+     * sequence number of anything already applied to a snapshotted state.
+     * @throws IOException If there is an error reading or creating the journal, or a segment is in another format.
+     */
+    public ActionJournal(final Path directory, final long minimumSequence) throws IOException {
+
+        this.directory = directory;
+        Files.createDirectories(directory);
+
+        long sequence = Math.max(1, minimumSequence);
+        for(Path nextSegment : listSegments()) {
+            sequence = Math.max(sequence, firstSequence(nextSegment));
+            sequence = Math.max(sequence, recoverSegment(nextSegment) + 1);
+        }
+
+        this.nextSequence = sequence;
+        startSegment(sequence);
+
+        this.flusher = new Thread(this::flushLoop, "HoC-Journal");
+        flusher.setDaemon(true);
+        flusher.start();
+
+    }
+
+    /**
+     * Records an action. The record is given its sequence number immediately, but it's only safe from a crash once its
+     * ticket completes.
+     * @param action The action to record.
+     * @param turnSeed The seed the player's random number generator will be given for this turn.
+     * @return A ticket holding the record's sequence number, which completes once the record is durable.
+     * @throws IOException If the journal has been closed.
+     */
+    public Ticket append(final PlayerAction action, final long turnSeed) throws IOException {
+
+        synchronized(lock) {
+
+            if(closed) {
+                throw new IOException("The journal is closed.");
+            }
+
+            final Ticket ticket = new Ticket(nextSequence++);
+            writeFrame(pending, encode(ticket.sequence, turnSeed, action));
+            pendingTickets.add(ticket);
+
+            //Only the first record of a batch needs to wake the flusher up.
+            if(pendingTickets.size() == 1) {
+                lock.notifyAll();
+            }
+
+            return ticket;
+
+        }
+
+    }
+
+    /**
+     * Closes the current segment and starts a new one, waiting until the switch has happened. Every record in the older
+     * segments was appended before this method returned.
+     * @return The lowest sequence number that can appear in the new segment.
+     * @throws IOException If the new segment couldn't be started or the journal has been closed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public long roll() throws IOException, InterruptedException {
+
+        synchronized(lock) {
+
+            final long targetRoll = rollCount + 1;
+            rollRequested = true;
+            lock.notifyAll();
+
+            while(rollCount < targetRoll) {
+                if(rollFailure != null) {
+                    final IOException failure = rollFailure;
+                    rollFailure = null;
+                    throw failure;
+                } else if(closed) {
+                    throw new IOException("The journal is closed.");
+                }
+                lock.wait();
+            }
+
+            return lastRollSequence;
+
+        }
+
+    }
+
+    /**
+     * Deletes every segment that only holds records with sequence numbers below the given one.
+     * @param sequence The lowest sequence number that must be kept.
+     * @throws IOException If there is an error deleting segments.
+     */
+    public void deleteSegmentsBefore(final long sequence) throws IOException {
+
+        final List<Path> segments = listSegments();
+
+        //A segment's records all come before the first record of the segment after it.
+        for(int index = 0; index < segments.size() - 1; index++) {
+            if(firstSequence(segments.get(index + 1)) <= sequence) {
+                Files.deleteIfExists(segments.get(index));
+            }
+        }
+
+    }
+
+    /**
+     * Reads back every intact record in the journal, in order. Used during recovery, before any new records are
+     * appended.
+     * @param consumer Called for every record.
+     * @throws IOException If there is an error reading the journal, or a segment is in another format.
+     */
+    public void replay(final Consumer<JournalRecord> consumer) throws IOException {
+        for(Path nextSegment : listSegments()) {
+            readSegment(nextSegment, consumer);
+        }
+    }
+
+    /**
+     * @return How many records have been made durable since the journal was opened.
+     */
+    public long getRecordsWritten() {
+        synchronized(lock) {
+            return recordsWritten;
+        }
+    }
+
+    /**
+     * @return How many batches the durable records were written in. Comparing this to {@link #getRecordsWritten()}
+     * shows how well group commit is working.
+     */
+    public long getFlushes() {
+        synchronized(lock) {
+            return flushes;
+        }
+    }
+
+    /**
+     * Stops accepting new records, waits for everything already appended to be written and closes the journal.
+     * @throws IOException If there is an error closing the current segment.
+     */
+    @Override
+    public void close() throws IOException {
+
+        synchronized(lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+
+        try {
+            flusher.join();
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+
+        segment.close();
+
+    }
+
+    /**
+     * Body of the flusher thread: repeatedly takes the whole pending batch, writes it, syncs it and completes its
+     * tickets, until the journal is closed and drained.
+     */
+    private void flushLoop() {
+
+        while(true) {
+
+            final ByteArrayOutputStream batch;
+            final List<Ticket> tickets;
+            final boolean roll;
+
+            synchronized(lock) {
+
+                while(pendingTickets.isEmpty() && !rollRequested && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException x) {
+                        //Only close() stops the flusher, so that no accepted record is ever dropped.
+                    }
+                }
+
+                if(pendingTickets.isEmpty() && closed) {
+                    lock.notifyAll();
+                    return;
+                }
+
+                batch = pending;
+                tickets = pendingTickets;
+                roll = rollRequested;
+                pending = new ByteArrayOutputStream();
+                pendingTickets = new ArrayList<>();
+                rollRequested = false;
+
+            }
+
+            IOException failure = null;
+            if(!tickets.isEmpty()) {
+                try {
+                    final ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                    while(buffer.hasRemaining()) {
+                        segmentBytes += segment.write(buffer);
+                    }
+                    segment.force(false);
+                } catch (IOException x) {
+                    failure = x;
+                }
+            }
+
+            for(Ticket nextTicket : tickets) {
+                if(failure == null) {
+                    nextTicket.committed.complete(null);
+                } else {
+                    nextTicket.committed.completeExceptionally(failure);
+                }
+            }
+
+            final boolean rolling = roll || segmentBytes >= MAX_SEGMENT_BYTES;
+            long newSequence = 0;
+            IOException rollError = null;
+            if(rolling) {
+
+                //Records appended since the batch was taken go into the new segment, so it has to be named after the
+                //first of them.
+                synchronized(lock) {
+                    newSequence = pendingTickets.isEmpty() ? nextSequence : pendingTickets.get(0).sequence;
+                }
+
+                try {
+                    segment.close();
+                    startSegment(newSequence);
+                } catch (IOException x) {
+                    rollError = x;
+                }
+
+            }
+
+            synchronized(lock) {
+
+                if(!tickets.isEmpty()) {
+                    flushes++;
+                    recordsWritten += failure == null ? tickets.size() : 0;
+                }
+
+                if(rolling) {
+                    if(rollError == null) {
+                        rollCount++;
+                        lastRollSequence = newSequence;
+                    } else {
+                        rollFailure = rollError;
+                    }
+                    lock.notifyAll();
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Starts appending to a new, empty segment, writing its header if it doesn't have one yet.
+     * @param firstSequence The sequence number of the first record that may go into the segment.
+     * @throws IOException If the segment couldn't be created.
+     */
+    private void startSegment(final long firstSequence) throws IOException {
+
+        final Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentBytes = segment.size();
+
+        //The header only has to be durable along with the first record, which syncs the same file.
+        if(segmentBytes == 0) {
+            final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES);
+            header.putInt(MAGIC).put((byte) FORMAT_VERSION);
+            header.flip();
+            while(header.hasRemaining()) {
+                segmentBytes += segment.write(header);
+            }
+        }
+
+    }
+
+    /**
+     * @return Every segment in the journal directory, oldest first.
+     * @throws IOException If the directory couldn't be listed.
+     */
+    private List<Path> listSegments() throws IOException {
+
+        final List<Path> segments = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for(Path nextPath : stream) {
+                segments.add(nextPath);
+            }
+        }
+
+        //The sequence numbers in the names are zero-padded, so name order is sequence order.
+        Collections.sort(segments);
+        return segments;
+
+    }
+
+    /**
+     * @param segment A segment file.
+     * @return The sequence number the segment is named after.
+     */
+    private static long firstSequence(final Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Checks a segment left over from a previous run and cuts off any torn or corrupt tail.
+     * @param segment The segment to check.
+     * @return The highest sequence number in the segment, or 0 if it holds no records.
+     * @throws IOException If there is an error reading or truncating the segment.
+     */
+    private long recoverSegment(final Path segment) throws IOException {
+
+        final long[] lastSequence = new long[1];
+        final long validBytes = readSegment(segment, record -> lastSequence[0] = record.getSequence());
+
+        if(validBytes < Files.size(segment)) {
+            System.out.println("Truncating damaged journal tail in " + segment.getFileName() + " at byte " + validBytes
+                + ".");
+            try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+                channel.force(true);
+            }
+        }
+
+        return lastSequence[0];
+
+    }
+
+    /**
+     * Reads every intact record from a segment, stopping at the first torn or corrupt frame.
+     * @param segment The segment to read.
+     * @param consumer Called for every intact record.
+     * @return How many bytes of the segment were intact. A segment whose header was cut short counts as having none.
+     * @throws IOException If there is an error reading the segment, or it's in another format.
+     */
+    private static long readSegment(final Path segment, final Consumer<JournalRecord> consumer) throws IOException {
+
+        long validBytes = 0;
+        final CRC32 crc = new CRC32();
+
+        try(InputStream file = Files.newInputStream(segment);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+
+            final int magic;
+            final int version;
+            try {
+                magic = in.readInt();
+                version = in.readUnsignedByte();
+            } catch (EOFException x) {
+                return validBytes;
+            }
+
+            if(magic != MAGIC) {
+                throw new IOException(segment.getFileName() + " is not a journal segment, or was written before "
+                    + "segments had a format version.");
+            } else if(version != FORMAT_VERSION) {
+                throw new IOException(segment.getFileName() + " is in journal format " + version + ", but only format "
+                    + FORMAT_VERSION + " can be replayed.");
+            }
+            validBytes = SEGMENT_HEADER_BYTES;
+
+            while(true) {
+
+                final byte[] payload;
+                try {
+                    final int length = in.readInt();
+                    final int checksum = in.readInt();
+                    if(length <= 0 || length > MAX_RECORD_BYTES) {
+                        return validBytes;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if((int) crc.getValue() != checksum) {
+                        return validBytes;
+                    }
+                } catch (EOFException x) {
+                    return validBytes;
+                }
+
+                consumer.accept(decode(payload));
+                validBytes += FRAME_HEADER_BYTES + payload.length;
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Appends a framed record to a buffer.
+     * @param out The buffer to append to.
+     * @param payload The encoded record.
+     */
+    private static void writeFrame(final ByteArrayOutputStream out, final byte[] payload) {
+
+        final CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        header.putInt(payload.length).putInt((int) crc.getValue());
+        out.write(header.array(), 0, FRAME_HEADER_BYTES);
+        out.write(payload, 0, payload.length);
+
+    }
+
+    private static byte[] encode(final long sequence, final long turnSeed, final PlayerAction action) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + action.getInputText().length());
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(sequence);
+        out.writeLong(turnSeed);
+        out.writeUTF(action.getServiceName());
+        out.writeUTF(action.getServiceUserId());
+        out.writeUTF(action.getUserFirstName());
+        out.writeUTF(action.getInputText());
+        return bytes.toByteArray();
+
+    }
+
+    private static JournalRecord decode(final byte[] payload) throws IOException {
+
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        return new JournalRecord(
+            in.readLong(), in.readLong(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()
+        );
+
+    }
+
+    /**
+     * The receipt for an appended record.
+     */
+    public static final class Ticket {
+
+        /** The record's sequence number. */
+        private final long sequence;
+
+        /** Completes once the record is durable. */
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        private Ticket(final long sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return The record's sequence number.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return A future that completes once the record is durable, or completes exceptionally if it couldn't be
+         * written.
+         */
+        public CompletableFuture<Void> getCommitted() {
+            return committed;
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package net.codelizard.hoc.persistence;
+
+import net.codelizard.hoc.logic.PlayerAction;
+import net.codelizard.hoc.logic.PlayerActionBuilder;
+
+/**
+ * A single accepted PlayerAction as recorded in the {@link ActionJournal}, along with everything needed to replay it
+ * exactly. JournalRecords are immutable.
+ *
+ * @author Codelizard
+ */
+public final class JournalRecord {
+
+    /** The record's position in the journal. Sequence numbers start at 1 and only ever increase. */
+    private final long sequence;
+
+    /** The seed the player's random number generator was given for this turn. */
+    private final long turnSeed;
+
+    /** The action the player took. */
+    private final PlayerAction action;
+
+    /**
+     * Creates a new JournalRecord.
+     * @param sequence The record's position in the journal.
+     * @param turnSeed The seed the player's random number generator was given for this turn.
+     * @param action The action the player took.
+     */
+    public JournalRecord(final long sequence, final long turnSeed, final PlayerAction action) {
+        this.sequence = sequence;
+        this.turnSeed = turnSeed;
+        this.action = action;
+    }
+
+    /**
+     * Creates a new JournalRecord from the individual fields of its action.
+     * @param sequence The record's position in the journal.
+     * @param turnSeed The seed the player's random number generator was given for this turn.
+     * @param serviceName The name of the messaging platform the action came from.
+     * @param serviceUserId The user's ID on that platform.
+     * @param userFirstName The user's first name.
+     * @param inputText The text the user sent.
+     */
+    JournalRecord(final long sequence, final long turnSeed, final String serviceName, final String serviceUserId,
+            final String userFirstName, final String inputText) {
+        this(sequence, turnSeed, new PlayerActionBuilder()
+            .setServiceName(serviceName)
+            .setServiceUserId(serviceUserId)
+            .setUserFirstName(userFirstName)
+            .setInputText(inputText)
+            .build()
+        );
+    }
+
+    /**
+     * @return The record's position in the journal.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The seed the player's random number generator was given for this turn.
+     */
+    public long getTurnSeed() {
+        return turnSeed;
+    }
+
+    /**
+     * @return The action the player took.
+     */
+    public PlayerAction getAction() {
+        return action;
+    }
+
+    /**
+     * @return A one-line description of this JournalRecord for debugging purposes.
+     */
+    @Override
+    public String toString() {
+        return "JournalRecord{" + "sequence=" + sequence + ", turnSeed=" + turnSeed + ", action=" + action + '}';
+    }
+
+}
@@ -0,0 +1,171 @@
+package net.codelizard.hoc.persistence;
+
+import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.PlayerState;
+import net.codelizard.hoc.logic.PlayerStateCodec;
+import net.codelizard.hoc.logic.SessionRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Keeps every player's progress safe across restarts and crashes, using an {@link ActionJournal} of every accepted
+ * action plus periodic snapshots from a {@link SnapshotStore}.</p>
+ *
+ * <p>On startup, {@link #recover()} loads the newest snapshot, replays the journal on top of it and then hands the
+ * journal to the ActionProcessor so that new actions are recorded. After that, {@link #snapshot()} can be called at any
+ * time (or on a schedule via {@link #startSnapshots(long, TimeUnit)}) to shorten the journal that the next recovery
+ * will have to replay.</p>
+ *
+ * @author Codelizard
+ */
+public class SessionPersistence implements Closeable {
+
+    /**
+     * How many snapshots to keep. Keeping more than one means a damaged newest snapshot can be recovered from by
+     * falling back to the one before it, at the cost of keeping the journal back to that one too.
+     */
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    /** The directory journal segments and snapshots are kept in. */
+    private final Path directory;
+
+    /** The action processor whose sessions are being kept safe. */
+    private final ActionProcessor actionProcessor;
+
+    /** Reads and writes snapshots. */
+    private final SnapshotStore snapshots;
+
+    /** The journal. Only set once recovery has finished. */
+    private ActionJournal journal;
+
+    /** Runs scheduled snapshots, if they've been started. */
+    private ScheduledExecutorService snapshotScheduler;
+
+    /**
+     * Creates a new SessionPersistence. Nothing is read until {@link #recover()} is called.
+     * @param directory The directory to keep journal segments and snapshots in.
+     * @param actionProcessor The action processor whose sessions should be kept safe.
+     * @param codec Converts states to and from their saved form.
+     * @throws IOException If the directory couldn't be created.
+     */
+    public SessionPersistence(final Path directory, final ActionProcessor actionProcessor,
+            final PlayerStateCodec codec) throws IOException {
+        this.directory = directory;
+        this.actionProcessor = actionProcessor;
+        this.snapshots = new SnapshotStore(directory, codec);
+    }
+
+    /**
+     * Restores every session from the newest snapshot and the journal, then starts journaling new actions. Must be
+     * called once, before any actions are processed.
+     * @return The number of journaled actions that were replayed.
+     * @throws IOException If there is an error reading the snapshot or journal.
+     */
+    public synchronized long recover() throws IOException {
+
+        final SessionRegistry sessions = actionProcessor.getSessions();
+        final long snapshotSequence = snapshots.loadLatest((key, state) -> {
+            final PlayerState existing = sessions.get(key);
+            if(existing == null || existing.getJournalSequence() < state.getJournalSequence()) {
+                sessions.put(key, state);
+            }
+        });
+
+        journal = new ActionJournal(directory, snapshotSequence);
+
+        final long[] replayed = new long[1];
+        journal.replay(record -> {
+            //Skip anything the snapshot already includes.
+            final PlayerState existing = sessions.get(record.getAction().getSessionKey());
+            if(existing == null || existing.getJournalSequence() < record.getSequence()) {
+                actionProcessor.replay(record);
+                replayed[0]++;
+            }
+        });
+
+        actionProcessor.setJournal(journal);
+        return replayed[0];
+
+    }
+
+    /**
+     * Takes a snapshot of every session, then deletes whatever old snapshots and journal segments are no longer needed.
+     * @return The number of sessions saved.
+     * @throws IOException If there is an error writing the snapshot or cleaning up.
+     * @throws InterruptedException If interrupted while waiting for the journal to roll over.
+     */
+    public synchronized int snapshot() throws IOException, InterruptedException {
+
+        //Every record before the roll point was appended (and so applied) before any state is copied below.
+        final long sequence = journal.roll();
+        final int saved = snapshots.write(sequence, actionProcessor.getSessions());
+
+        final long oldestKept = snapshots.prune(SNAPSHOTS_KEPT);
+        if(oldestKept > 0) {
+            journal.deleteSegmentsBefore(oldestKept);
+        }
+
+        return saved;
+
+    }
+
+    /**
+     * Starts taking snapshots on a schedule.
+     * @param interval The time between snapshots.
+     * @param unit The unit of the interval.
+     */
+    public synchronized void startSnapshots(final long interval, final TimeUnit unit) {
+
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "HoC-Snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (Exception x) {
+                //Keep going; the journal still has everything, and the next snapshot may succeed.
+                x.printStackTrace();
+            }
+        }, interval, interval, unit);
+
+    }
+
+    /**
+     * @return The journal, or {@code null} if recovery hasn't happened yet.
+     */
+    public synchronized ActionJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Stops scheduled snapshots and closes the journal once everything appended so far has been written.
+     * @throws IOException If there is an error closing the journal.
+     */
+    @Override
+    public void close() throws IOException {
+
+        final ScheduledExecutorService scheduler;
+        final ActionJournal openJournal;
+        synchronized(this) {
+            scheduler = snapshotScheduler;
+            openJournal = journal;
+        }
+
+        if(scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if(openJournal != null) {
+            openJournal.close();
+        }
+
+    }
+
+}
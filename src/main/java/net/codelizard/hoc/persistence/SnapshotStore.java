@@ -0,0 +1,320 @@
+package net.codelizard.hoc.persistence;
+
+import net.codelizard.hoc.logic.PlayerState;
+import net.codelizard.hoc.logic.PlayerStateCodec;
+import net.codelizard.hoc.logic.SessionKey;
+import net.codelizard.hoc.logic.SessionRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <p>Reads and writes snapshots: point-in-time copies of every player's state. A snapshot is named after the journal
+ * sequence number it was taken at; every journal record below that number has been applied to the states in it, so
+ * the journal segments before it are only needed if the snapshot itself turns out to be damaged.</p>
+ *
+ * <p>Snapshots are written to a temporary file and moved into place once complete, and end with a checksum of their
+ * whole contents, so a crash mid-write can never leave a snapshot that looks valid but isn't.</p>
+ *
+ * @author Codelizard
+ */
+public class SnapshotStore {
+
+    /** File name prefix of snapshots. */
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    /** File name suffix of snapshots. */
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    /** Identifies a snapshot file ("HoCS"). */
+    private static final int MAGIC = 0x486F4353;
+
+    /** The current snapshot format. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The directory snapshots are kept in. */
+    private final Path directory;
+
+    /** Converts states to and from their saved form. */
+    private final PlayerStateCodec codec;
+
+    /**
+     * Creates a new SnapshotStore.
+     * @param directory The directory to keep snapshots in.
+     * @param codec Converts states to and from their saved form.
+     * @throws IOException If the directory couldn't be created.
+     */
+    public SnapshotStore(final Path directory, final PlayerStateCodec codec) throws IOException {
+        this.directory = directory;
+        this.codec = codec;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Writes a snapshot of every session in a registry, including passivated ones. Each state in memory is locked while
+     * it's being copied, so that it's never caught in the middle of a turn.
+     * @param sequence The journal sequence number the snapshot is taken at.
+     * @param sessions The sessions to save.
+     * @return The number of sessions saved.
+     * @throws IOException If there is an error writing the snapshot.
+     */
+    public int write(final long sequence, final SessionRegistry sessions) throws IOException {
+
+        final Path target = snapshotPath(sequence);
+        final Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        final int count;
+        final CRC32 crc = new CRC32();
+
+        try(OutputStream file = Files.newOutputStream(temporary);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc)))) {
+
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(sequence);
+
+            //Sessions in memory first, then passivated ones that weren't seen in memory. A session that moves between
+            //the two partway through can be seen twice; readers keep whichever copy is newest.
+            final Set<SessionKey> written = new HashSet<>();
+            try {
+                sessions.forEach((key, ignored) -> {
+                    final byte[] encoded = encodeCurrent(key, sessions);
+                    if(encoded != null) {
+                        writeEntry(out, key, encoded);
+                        written.add(key);
+                    }
+                });
+                sessions.forEachPassivated((key, encoded) -> {
+                    if(!written.contains(key) && journalSequence(encoded) != 0) {
+                        writeEntry(out, key, encoded);
+                        written.add(key);
+                    }
+                });
+            } catch (UncheckedIOException x) {
+                throw x.getCause();
+            }
+
+            out.writeBoolean(false);
+            out.flush();
+            count = written.size();
+
+            //The checksum covers everything before it, so it's written straight to the file.
+            new DataOutputStream(file).writeLong(crc.getValue());
+
+        }
+
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException x) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return count;
+
+    }
+
+    private static long journalSequence(final byte[] encoded) {
+        try {
+            return PlayerStateCodec.journalSequence(encoded);
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    private static void writeEntry(final DataOutputStream out, final SessionKey key, final byte[] encoded) {
+        try {
+            out.writeBoolean(true);
+            out.writeUTF(key.getServiceName());
+            out.writeUTF(key.getServiceUserId());
+            out.writeInt(encoded.length);
+            out.write(encoded);
+        } catch (IOException x) {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    /**
+     * Encodes a session's in-memory state while holding its lock. If the session's state is replaced by another one
+     * while waiting for the lock, the new one is encoded instead.
+     * @param key The session to encode.
+     * @param sessions The registry the session is in.
+     * @return The encoded state, or {@code null} if there is nothing worth saving.
+     */
+    private byte[] encodeCurrent(final SessionKey key, final SessionRegistry sessions) {
+
+        while(true) {
+
+            final PlayerState state = sessions.getResident(key);
+            if(state == null) {
+                return null;
+            }
+
+            synchronized(state) {
+                if(sessions.isResident(key, state)) {
+                    //A state no journaled action has been applied to yet is the same as no state at all; saving it
+                    //would make replaying that player's first action look like their second.
+                    return state.getJournalSequence() == 0 ? null : codec.encode(state);
+                }
+            }
+
+        }
+
+    }
+
+    /**
+     * Loads the newest intact snapshot. Damaged snapshots are skipped in favor of older ones.
+     * @param consumer Called with every session in the snapshot. A session can appear more than once if it was
+     * passivated or reactivated while the snapshot was being written; its newest copy is the one with the highest
+     * journal sequence number.
+     * @return The journal sequence number the snapshot was taken at, or 0 if there was no intact snapshot.
+     * @throws IOException If there is an error reading the snapshot directory.
+     */
+    public long loadLatest(final BiConsumer<SessionKey, PlayerState> consumer) throws IOException {
+
+        final List<Path> snapshots = listSnapshots();
+        Collections.reverse(snapshots);
+
+        for(Path nextSnapshot : snapshots) {
+
+            final List<SessionKey> keys = new ArrayList<>();
+            final List<PlayerState> states = new ArrayList<>();
+            final long sequence;
+
+            try {
+                sequence = read(nextSnapshot, keys, states);
+            } catch (IOException x) {
+                System.out.println("Skipping damaged snapshot " + nextSnapshot.getFileName() + ": " + x.getMessage());
+                continue;
+            }
+
+            for(int index = 0; index < keys.size(); index++) {
+                consumer.accept(keys.get(index), states.get(index));
+            }
+            return sequence;
+
+        }
+
+        return 0;
+
+    }
+
+    /**
+     * Reads a whole snapshot, checking its checksum before anything in it is used.
+     * @param snapshot The snapshot to read.
+     * @param keys Filled with the session keys in the snapshot.
+     * @param states Filled with the states in the snapshot, in the same order as their keys.
+     * @return The journal sequence number the snapshot was taken at.
+     * @throws IOException If the snapshot couldn't be read or is damaged.
+     */
+    private long read(final Path snapshot, final List<SessionKey> keys, final List<PlayerState> states)
+            throws IOException {
+
+        final CRC32 crc = new CRC32();
+
+        try(InputStream file = new BufferedInputStream(Files.newInputStream(snapshot))) {
+
+            final DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if(in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file.");
+            } else if(in.readByte() != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format.");
+            }
+
+            final long sequence = in.readLong();
+            while(in.readBoolean()) {
+                keys.add(SessionKey.of(in.readUTF(), in.readUTF()));
+                final byte[] encoded = new byte[in.readInt()];
+                in.readFully(encoded);
+                states.add(codec.decode(encoded));
+            }
+
+            final long expected = crc.getValue();
+            if(new DataInputStream(file).readLong() != expected) {
+                throw new IOException("Checksum mismatch.");
+            }
+
+            return sequence;
+
+        }
+
+    }
+
+    /**
+     * Deletes every snapshot except the newest few, along with any temporary files left by interrupted writes.
+     * @param keep How many of the newest snapshots to keep.
+     * @return The sequence number of the oldest snapshot that was kept, or 0 if none were.
+     * @throws IOException If there is an error deleting snapshots.
+     */
+    public long prune(final int keep) throws IOException {
+
+        final List<Path> snapshots = listSnapshots();
+        final int firstKept = Math.max(0, snapshots.size() - keep);
+
+        for(int index = 0; index < firstKept; index++) {
+            Files.deleteIfExists(snapshots.get(index));
+        }
+
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*.tmp")) {
+            for(Path nextPath : stream) {
+                Files.deleteIfExists(nextPath);
+            }
+        }
+
+        return firstKept < snapshots.size() ? sequenceOf(snapshots.get(firstKept)) : 0;
+
+    }
+
+    /**
+     * @return Every snapshot in the directory, oldest first.
+     * @throws IOException If the directory couldn't be listed.
+     */
+    private List<Path> listSnapshots() throws IOException {
+
+        final List<Path> snapshots = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for(Path nextPath : stream) {
+                snapshots.add(nextPath);
+            }
+        }
+
+        //The sequence numbers in the names are zero-padded, so name order is sequence order.
+        Collections.sort(snapshots);
+        return snapshots;
+
+    }
+
+    private Path snapshotPath(final long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    private static long sequenceOf(final Path snapshot) {
+        final String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+}
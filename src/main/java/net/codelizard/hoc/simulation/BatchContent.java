@@ -0,0 +1,195 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.content.Consumable;
+import net.codelizard.hoc.content.ContentIndex;
+import net.codelizard.hoc.content.ContentObject;
+import net.codelizard.hoc.content.Equipment;
+import net.codelizard.hoc.content.Event;
+import net.codelizard.hoc.content.GameContent;
+import net.codelizard.hoc.content.Hero;
+import net.codelizard.hoc.content.Monster;
+import net.codelizard.hoc.content.ResourceType;
+import net.codelizard.hoc.content.ResourceVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>GameContent flattened into arrays of ints for {@link GameBatch}: every card of each kind gets a dense number, and
+ * its resource amounts, tier and position in its pool are looked up by that number. Heroes are numbered in content
+ * order, the same order {@link GameContent#fourRandomHeroes} shuffles.</p>
+ *
+ * <p>Built once per simulation and never changed afterwards, so it's safe to share between threads.</p>
+ *
+ * @author Codelizard
+ */
+final class BatchContent {
+
+    /** Number of resource types; every per-resource array is laid out in strides of this. */
+    static final int RESOURCES = ResourceType.values().length;
+
+    /** Kinds of card, numbered in the order {@code PlayerState.nextFloor()} deals their decks. */
+    static final int EVENTS = 0;
+    static final int CONSUMABLES = 1;
+    static final int EQUIPMENT = 2;
+    static final int MONSTERS = 3;
+
+    /** The pool of a tier that doesn't exist. */
+    private static final int[] NO_CARDS = new int[0];
+
+    /** The content classes of each kind of card, by kind number. */
+    private static final List<Class<? extends ContentObject>> KINDS = Collections.unmodifiableList(Arrays.asList(
+        Event.class, Consumable.class, Equipment.class, Monster.class
+    ));
+
+    /** Number of heroes. */
+    final int heroCount;
+
+    /** Number of party levels with a slot in {@link #heroResources}, from 0. */
+    final int levels;
+
+    /** Each hero's resources at each level, at {@code (hero * levels + level) * RESOURCES + type}. */
+    final int[] heroResources;
+
+    /** Whether each hero has resources for each level, at {@code hero * levels + level}. */
+    final boolean[] heroHasLevel;
+
+    /** Which DiscountType each hero gives, by ordinal. */
+    final int[] heroDiscountType;
+
+    /** Which resource each hero discounts, by ordinal. */
+    final int[] heroDiscountResource;
+
+    /** For each kind, each tier's pool as card numbers in pool order. Tiers past the last have empty pools. */
+    final int[][][] pools;
+
+    /** For each kind, the size of its largest pool, which is all a deck of that kind ever has to hold. */
+    final int[] deckCapacity;
+
+    /** For each kind, every card's resource amounts at {@code card * RESOURCES + type}. */
+    final int[][] amounts;
+
+    /** For each kind, every card's tier. */
+    final int[][] tiers;
+
+    /** For each kind, every card's position in its tier's pool, or -1 for bosses. */
+    final int[][] positions;
+
+    /** Every monster's LootType, by ordinal. */
+    final int[] monsterLoot;
+
+    /** Each tier's boss as a monster number, or -1 if the tier has none. */
+    final int[] bosses;
+
+    /**
+     * Flattens content. Object tiers must already have been inferred.
+     * @param content The content to flatten.
+     */
+    BatchContent(final GameContent content) {
+
+        final ContentIndex index = content.getIndex();
+        final int highestTier = content.getTiers().keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+
+        //Parties gain a level per boss, so they can never get further than one past the highest tier.
+        final List<Hero> heroes = content.getHeroes();
+        heroCount = heroes.size();
+        levels = highestTier + 2;
+        heroResources = new int[heroCount * levels * RESOURCES];
+        heroHasLevel = new boolean[heroCount * levels];
+        heroDiscountType = new int[heroCount];
+        heroDiscountResource = new int[heroCount];
+        for(int hero = 0; hero < heroCount; hero++) {
+
+            for(int level = 0; level < levels; level++) {
+                final ResourceVector resources = heroes.get(hero).getResourceAmounts(level);
+                if(resources != null) {
+                    heroHasLevel[hero * levels + level] = true;
+                    copyAmounts(resources, heroResources, hero * levels + level);
+                }
+            }
+
+            heroDiscountType[hero] = heroes.get(hero).getDiscount().getType().ordinal();
+            heroDiscountResource[hero] = heroes.get(hero).getDiscount().getResource().ordinal();
+
+        }
+
+        pools = new int[KINDS.size()][highestTier + 2][];
+        deckCapacity = new int[KINDS.size()];
+        amounts = new int[KINDS.size()][];
+        tiers = new int[KINDS.size()][];
+        positions = new int[KINDS.size()][];
+        bosses = new int[highestTier + 2];
+        Arrays.fill(bosses, -1);
+
+        final List<Monster> monsters = new ArrayList<>();
+        for(int kind = 0; kind < KINDS.size(); kind++) {
+
+            //Number the cards tier by tier, in pool order.
+            final List<ContentObject> cards = new ArrayList<>();
+            for(int tier = 0; tier < pools[kind].length; tier++) {
+                final List<? extends ContentObject> pool = index.pool(KINDS.get(kind), tier);
+                pools[kind][tier] = new int[pool.size()];
+                for(int position = 0; position < pool.size(); position++) {
+                    pools[kind][tier][position] = cards.size();
+                    cards.add(pool.get(position));
+                }
+                deckCapacity[kind] = Math.max(deckCapacity[kind], pool.size());
+            }
+
+            //Bosses aren't in any pool, but are fought just like the monsters that are.
+            if(kind == MONSTERS) {
+                for(int tier = 0; tier < bosses.length; tier++) {
+                    if(index.boss(tier) != null) {
+                        bosses[tier] = cards.size();
+                        cards.add(index.boss(tier));
+                    }
+                }
+                for(ContentObject nextCard : cards) {
+                    monsters.add((Monster) nextCard);
+                }
+            }
+
+            amounts[kind] = new int[cards.size() * RESOURCES];
+            tiers[kind] = new int[cards.size()];
+            positions[kind] = new int[cards.size()];
+            for(int card = 0; card < cards.size(); card++) {
+                copyAmounts(cards.get(card).getResourceAmounts(), amounts[kind], card);
+                tiers[kind][card] = cards.get(card).getTier();
+                positions[kind][card] = index.position(cards.get(card));
+            }
+
+        }
+
+        monsterLoot = new int[monsters.size()];
+        for(int monster = 0; monster < monsters.size(); monster++) {
+            monsterLoot[monster] = monsters.get(monster).getLootType().ordinal();
+        }
+
+    }
+
+    /**
+     * @param kind A kind of card.
+     * @param tier A tier number.
+     * @return The tier's pool of that kind, empty if there's no such tier.
+     */
+    int[] pool(final int kind, final int tier) {
+        return tier >= 0 && tier < pools[kind].length ? pools[kind][tier] : NO_CARDS;
+    }
+
+    /**
+     * @param level A party level.
+     * @return The boss fought at that level as a monster number, or -1 if there is none.
+     */
+    int boss(final int level) {
+        return level >= 0 && level < bosses.length ? bosses[level] : -1;
+    }
+
+    private static void copyAmounts(final ResourceVector source, final int[] destination, final int slot) {
+        for(ResourceType nextType : ResourceType.values()) {
+            destination[slot * RESOURCES + nextType.ordinal()] = source.get(nextType);
+        }
+    }
+
+}
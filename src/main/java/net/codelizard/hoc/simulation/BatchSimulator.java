@@ -0,0 +1,267 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.RuleSet;
+import net.codelizard.hoc.logic.RuleSetBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Plays the same games as {@link Simulator} with the cautious policy, but many times faster: games are played in
+ * {@link GameBatch}es of thousands at a time, with each batch's state kept in flat arrays instead of a PlayerState and
+ * a reply per game. Use it when only the outcomes matter, for sweeps that need millions of games.</p>
+ *
+ * <pre>java net.codelizard.hoc.simulation.BatchSimulator [--games N] [--seed S] [--threads T] [--batch B]
+ *     [--max-turns M] [--rules NAME=V,...] [--output results.csv] [--verify true]</pre>
+ *
+ * <p>Game {@code i} is played from seed {@code S + i} and ends exactly as it does in the Simulator with
+ * {@code --policy cautious} and the same {@code --rules}, so the two write the same CSV lines. {@code --verify true}
+ * proves it: every game is played again through {@link Simulator#play}, any game that ended differently is printed,
+ * and both engines' rates are reported along with how many times faster the batches were. Batches are shared out
+ * between threads by fork/join.</p>
+ *
+ * @author Codelizard
+ */
+public final class BatchSimulator {
+
+    /** How to run the batch simulator. */
+    private static final String USAGE = "BatchSimulator [--games N] [--seed S] [--threads T] [--batch B]"
+        + " [--max-turns M] [--rules NAME=V,...] [--output results.csv] [--verify true]";
+
+    /** Games played if no count is given. */
+    private static final long DEFAULT_GAMES = 1_000_000;
+
+    /** Games played side by side in one batch if no other number is given. */
+    private static final int DEFAULT_BATCH = 4_096;
+
+    /** Most mismatches printed when checking. */
+    private static final int MISMATCHES_SHOWN = 10;
+
+    private BatchSimulator() {}
+
+    /**
+     * @param args The options described in the class documentation.
+     * @throws Exception If the content can't be loaded, the results can't be written, or a checked game ended
+     * differently in the Simulator.
+     */
+    public static void main(final String... args) throws Exception {
+
+        final Options options = new Options(USAGE, args);
+        final long games = options.getLong("games", DEFAULT_GAMES);
+        final long firstSeed = options.getLong("seed", System.nanoTime());
+        final int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final int batchSize = options.getInt("batch", DEFAULT_BATCH);
+        final int maxTurns = options.getInt("max-turns", Simulator.DEFAULT_MAX_TURNS);
+        final RuleSet rules = new RuleSetBuilder().set(options.get("rules", "")).build();
+        final String output = options.get("output", null);
+        final boolean verify = Boolean.parseBoolean(options.get("verify", "false"));
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batches must hold at least one game, not " + batchSize + ".");
+        }
+        if(verify && games > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("At most " + Integer.MAX_VALUE + " games can be verified.");
+        }
+
+        HeroesOfCordan.loadContent();
+        final BatchContent content = new BatchContent(HeroesOfCordan.getContent());
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+
+        System.out.println("Playing " + games + " games from seed " + firstSeed + " with " + rules
+            + " rules in batches of " + batchSize + " on " + threads + " threads.");
+
+        final GameResult[] results = verify ? new GameResult[(int) games] : null;
+        final SimulationStats stats = new SimulationStats(threads);
+        final long batchTime;
+        try(Writer writer = output == null ? null : Files.newBufferedWriter(Paths.get(output))) {
+            if(writer != null) {
+                writer.write(GameResult.CSV_HEADER);
+                writer.write('\n');
+            }
+            final long started = System.nanoTime();
+            pool.invoke(new Batches(content, rules, firstSeed, firstSeed + games, firstSeed, batchSize, maxTurns,
+                stats, writer, results));
+            batchTime = System.nanoTime() - started;
+        } finally {
+            if(!verify) {
+                pool.shutdown();
+            }
+        }
+        System.out.println(stats.metricsReport());
+
+        if(verify) {
+
+            final SimulationStats referenceStats = new SimulationStats(threads);
+            final LongAdder mismatches = new LongAdder();
+            final long referenceTime;
+            try {
+                final long started = System.nanoTime();
+                pool.invoke(new Check(firstSeed, firstSeed + games, firstSeed, maxTurns, rules, results,
+                    referenceStats, mismatches, new AtomicInteger()));
+                referenceTime = System.nanoTime() - started;
+            } finally {
+                pool.shutdown();
+            }
+
+            System.out.println(referenceStats.metricsReport());
+            System.out.println(String.format("verified=%d mismatches=%d speedup=%.1fx", games, mismatches.sum(),
+                batchTime == 0 ? 0.0 : (double) referenceTime / batchTime));
+            if(mismatches.sum() > 0) {
+                throw new IllegalStateException(mismatches.sum() + " games ended differently in the Simulator.");
+            }
+
+        }
+
+    }
+
+    /**
+     * Plays the games for a range of seeds, splitting the range in half until it fits in one GameBatch.
+     */
+    @SuppressWarnings("serial")
+    private static final class Batches extends SeedRange<Void> {
+
+        private final BatchContent content;
+
+        private final RuleSet rules;
+
+        /** The seed of the simulation's first game, for placing results. */
+        private final long baseSeed;
+
+        private final int batchSize;
+
+        private final int maxTurns;
+
+        private final SimulationStats stats;
+
+        /** Where to write each game's CSV line, or {@code null} not to. */
+        private final Writer writer;
+
+        /** Where to keep each game's result for checking, by its place in the simulation, or {@code null} not to. */
+        private final GameResult[] results;
+
+        Batches(final BatchContent content, final RuleSet rules, final long firstSeed, final long endSeed,
+                final long baseSeed, final int batchSize, final int maxTurns, final SimulationStats stats,
+                final Writer writer, final GameResult[] results) {
+            super(firstSeed, endSeed, batchSize);
+            this.content = content;
+            this.rules = rules;
+            this.baseSeed = baseSeed;
+            this.batchSize = batchSize;
+            this.maxTurns = maxTurns;
+            this.stats = stats;
+            this.writer = writer;
+            this.results = results;
+        }
+
+        @Override
+        protected Batches split(final long from, final long to) {
+            return new Batches(content, rules, from, to, baseSeed, batchSize, maxTurns, stats, writer, results);
+        }
+
+        @Override
+        protected Void play() {
+
+            final GameBatch batch = new GameBatch(content, rules, (int) (endSeed - firstSeed), maxTurns);
+            batch.play(firstSeed, (int) (endSeed - firstSeed));
+
+            final StringBuilder csv = writer == null ? null : new StringBuilder();
+            for(int game = 0; game < batch.size(); game++) {
+                final GameResult result = batch.result(game);
+                stats.record(result);
+                if(csv != null) {
+                    result.appendCsv(csv);
+                }
+                if(results != null) {
+                    results[(int) (firstSeed - baseSeed) + game] = result;
+                }
+            }
+
+            if(csv != null) {
+                try {
+                    synchronized(writer) {
+                        writer.append(csv);
+                    }
+                } catch (IOException x) {
+                    throw new UncheckedIOException(x);
+                }
+            }
+            return null;
+
+        }
+
+    }
+
+    /**
+     * Plays the games for a range of seeds through the Simulator and compares how they ended with the batches.
+     */
+    @SuppressWarnings("serial")
+    private static final class Check extends SeedRange<Void> {
+
+        /** The seed of the simulation's first game, for finding results. */
+        private final long baseSeed;
+
+        private final int maxTurns;
+
+        private final RuleSet rules;
+
+        /** The batches' results, by each game's place in the simulation. */
+        private final GameResult[] results;
+
+        private final SimulationStats stats;
+
+        private final LongAdder mismatches;
+
+        /** How many mismatches have been printed. */
+        private final AtomicInteger shown;
+
+        Check(final long firstSeed, final long endSeed, final long baseSeed, final int maxTurns,
+                final RuleSet rules, final GameResult[] results, final SimulationStats stats,
+                final LongAdder mismatches, final AtomicInteger shown) {
+            super(firstSeed, endSeed, SIMULATOR_SPLIT_SIZE);
+            this.baseSeed = baseSeed;
+            this.maxTurns = maxTurns;
+            this.rules = rules;
+            this.results = results;
+            this.stats = stats;
+            this.mismatches = mismatches;
+            this.shown = shown;
+        }
+
+        @Override
+        protected Check split(final long from, final long to) {
+            return new Check(from, to, baseSeed, maxTurns, rules, results, stats, mismatches, shown);
+        }
+
+        @Override
+        protected Void play() {
+
+            for(long seed = firstSeed; seed < endSeed; seed++) {
+
+                final GameResult expected = Simulator.play(seed, null, StandardPolicy.CAUTIOUS, maxTurns, rules);
+                final GameResult actual = results[(int) (seed - baseSeed)];
+                stats.record(expected);
+
+                if(expected.outcome != actual.outcome || expected.floor != actual.floor
+                        || expected.timeRemaining != actual.timeRemaining || expected.deaths != actual.deaths
+                        || expected.turns != actual.turns) {
+                    mismatches.increment();
+                    if(shown.getAndIncrement() < MISMATCHES_SHOWN) {
+                        System.err.print("Mismatch:\n  simulator " + expected.appendCsv(new StringBuilder())
+                            + "  batch     " + actual.appendCsv(new StringBuilder()));
+                    }
+                }
+
+            }
+            return null;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,1040 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.content.DiscountType;
+import net.codelizard.hoc.content.LootType;
+import net.codelizard.hoc.content.ResourceType;
+import net.codelizard.hoc.logic.GameState;
+import net.codelizard.hoc.logic.Party;
+import net.codelizard.hoc.logic.PlayerState;
+import net.codelizard.hoc.logic.Rule;
+import net.codelizard.hoc.logic.RuleSet;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>Plays a batch of games side by side, with {@link StandardPolicy#CAUTIOUS} making every choice, keeping each part
+ * of every game's state in its own flat array of primitives rather than in a PlayerState per game. Every turn runs
+ * the same rules as {@link GameState}'s {@code update} and {@code enterState}, but only the parts that change the
+ * outcome: there's no text, no buttons and no PlayerCommand, just counters and card numbers.</p>
+ *
+ * <p>Games are played in lockstep, one turn of every unfinished game at a time, so each turn is a tight loop over the
+ * same few arrays. Turn seeds are worked out the way {@link SplittableRandom#nextLong()} does, and a random number
+ * generator is only made for the few turns that shuffle or transmute, so any game plays out exactly as it does through
+ * {@link Simulator#play} from the same seed; {@link BatchSimulator} can check that it does.</p>
+ *
+ * <p>GameBatches are not thread-safe, but separate batches can be played on separate threads.</p>
+ *
+ * @author Codelizard
+ */
+final class GameBatch {
+
+    /** Every GameState, by ordinal. */
+    private static final GameState[] STATES = GameState.values();
+
+    /** Every LootType, by ordinal. */
+    private static final LootType[] LOOT_TYPES = LootType.values();
+
+    /** Stride of the per-resource arrays. */
+    private static final int RESOURCES = BatchContent.RESOURCES;
+
+    /** Resource types by ordinal, for indexing the per-resource arrays. */
+    private static final int PHYSICAL = ResourceType.PHYSICAL.ordinal();
+    private static final int ARCANE = ResourceType.ARCANE.ordinal();
+    private static final int DIVINE = ResourceType.DIVINE.ordinal();
+    private static final int STEALTH = ResourceType.STEALTH.ordinal();
+    private static final int MECHANICAL = ResourceType.MECHANICAL.ordinal();
+    private static final int HEALTH = ResourceType.HEALTH.ordinal();
+    private static final int TIME = ResourceType.TIME.ordinal();
+
+    /** Whether each resource type can be spent into negatives, by ordinal. */
+    private static final boolean[] ALWAYS_SPEND = new boolean[RESOURCES];
+
+    /** The most items of each kind a party can be holding, just before it has to give one up. */
+    private static final int ITEM_SLOTS = Party.FULL_PARTY_SIZE + 1;
+
+    /** The gamma {@link SplittableRandom} advances its seed by. */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /*
+     * Bits of availableActions(), one per ACTION button in the order ACTION declares them, which is also the order the
+     * buttons are shown in. The lowest bit set is the button the policy falls back on.
+     */
+    private static final int FIGHT = 1;
+    private static final int SHORT_REST = 1 << 1;
+    private static final int LONG_REST = 1 << 2;
+    private static final int CHARGE = 1 << 3;
+    private static final int TRANSMUTE = 1 << 4;
+    private static final int CURE = 1 << 5;
+    private static final int MASS_CURE = 1 << 6;
+    private static final int SCOUT = 1 << 7;
+    private static final int SECRET_DOOR = 1 << 8;
+    private static final int USE_CONSUMABLE = 1 << 9;
+    private static final int BOSS = 1 << 10;
+    private static final int BOSS_CHARGE = 1 << 11;
+    private static final int REPEAT_INSTRUCTIONS = 1 << 12;
+
+    /** Marks a game that hasn't finished in {@link #outcomes}. */
+    private static final byte PLAYING = -1;
+
+    static {
+        for(ResourceType nextType : ResourceType.values()) {
+            ALWAYS_SPEND[nextType.ordinal()] = nextType.canAlwaysSpend;
+        }
+    }
+
+    /** The content the games are played with. */
+    private final BatchContent content;
+
+    /** The numbers the games are balanced by. */
+    private final RuleSet rules;
+
+    /** The most games the batch can hold. */
+    private final int capacity;
+
+    /** Turns after which a game is abandoned. */
+    private final int maxTurns;
+
+    /** How many games the last call to {@link #play} played. */
+    private int count;
+
+    /** Each game's seed. */
+    private final long[] seeds;
+
+    /** Each game's turn seed generator, as a SplittableRandom's seed. */
+    private final long[] turnSeeds;
+
+    /** Each game's GameState, by ordinal. */
+    private final byte[] states;
+
+    /** The GameState each game goes back to after using a consumable, by ordinal. */
+    private final byte[] returnStates;
+
+    /** Each game's Outcome by ordinal, or {@link #PLAYING}. */
+    private final byte[] outcomes;
+
+    /** Each game's current resources, at {@code game * RESOURCES + type}. */
+    private final int[] resources;
+
+    /** Each game's maximum resources, at {@code game * RESOURCES + type}. */
+    private final int[] maxResources;
+
+    /** How much each game's party discounts events, at {@code game * RESOURCES + type}. */
+    private final int[] eventDiscounts;
+
+    /** How much each game's party discounts monsters, at {@code game * RESOURCES + type}. */
+    private final int[] monsterDiscounts;
+
+    /** Each game's heroes as hero numbers, at {@code game * FULL_PARTY_SIZE + hero}. */
+    private final int[] heroes;
+
+    /** Each game's party level. */
+    private final int[] levels;
+
+    /** Each game's floor. */
+    private final int[] floors;
+
+    /** Each game's monsters killed on this floor. */
+    private final int[] kills;
+
+    /** Whether each game's party is fighting its boss. */
+    private final boolean[] fightingBoss;
+
+    /** Whether each game's loot has been handed out yet. */
+    private final boolean[] lootAwarded;
+
+    /** Each game's equipment as card numbers, at {@code game * ITEM_SLOTS + item}. */
+    private final int[] equipment;
+
+    /** How much equipment each game's party has. */
+    private final int[] equipmentCounts;
+
+    /** Each game's consumables as card numbers, at {@code game * ITEM_SLOTS + item}. */
+    private final int[] consumables;
+
+    /** How many consumables each game's party has. */
+    private final int[] consumableCounts;
+
+    /** For each kind of card, each game's deck as a ring of pool positions, at {@code game * capacity + slot}. */
+    private final short[][] deckOrders;
+
+    /** For each kind of card, where each game's top card is in its ring. */
+    private final int[][] deckHeads;
+
+    /** For each kind of card, how many cards each game's deck has left. */
+    private final int[][] deckSizes;
+
+    /** For each kind of card, the tier each game's deck was dealt from. */
+    private final int[][] deckTiers;
+
+    /** How many times each game's party has been wiped out. */
+    private final int[] wipes;
+
+    /** How many turns each game has played. */
+    private final int[] turns;
+
+    /** Indexes of the games still being played, in the first {@code live} entries. */
+    private final int[] playing;
+
+    /** Scratch space for shuffling heroes. */
+    private final int[] heroOrder;
+
+    /**
+     * Creates a new, empty GameBatch.
+     * @param content The content to play with.
+     * @param rules The numbers to balance the games by.
+     * @param capacity The most games to play at once.
+     * @param maxTurns Turns after which a game is abandoned.
+     */
+    GameBatch(final BatchContent content, final RuleSet rules, final int capacity, final int maxTurns) {
+
+        this.content = content;
+        this.rules = rules;
+        this.capacity = capacity;
+        this.maxTurns = maxTurns;
+
+        seeds = new long[capacity];
+        turnSeeds = new long[capacity];
+        states = new byte[capacity];
+        returnStates = new byte[capacity];
+        outcomes = new byte[capacity];
+        resources = new int[capacity * RESOURCES];
+        maxResources = new int[capacity * RESOURCES];
+        eventDiscounts = new int[capacity * RESOURCES];
+        monsterDiscounts = new int[capacity * RESOURCES];
+        heroes = new int[capacity * Party.FULL_PARTY_SIZE];
+        levels = new int[capacity];
+        floors = new int[capacity];
+        kills = new int[capacity];
+        fightingBoss = new boolean[capacity];
+        lootAwarded = new boolean[capacity];
+        equipment = new int[capacity * ITEM_SLOTS];
+        equipmentCounts = new int[capacity];
+        consumables = new int[capacity * ITEM_SLOTS];
+        consumableCounts = new int[capacity];
+        wipes = new int[capacity];
+        turns = new int[capacity];
+        playing = new int[capacity];
+        heroOrder = new int[content.heroCount];
+
+        final int kinds = content.deckCapacity.length;
+        deckOrders = new short[kinds][];
+        deckHeads = new int[kinds][capacity];
+        deckSizes = new int[kinds][capacity];
+        deckTiers = new int[kinds][capacity];
+        for(int kind = 0; kind < kinds; kind++) {
+            deckOrders[kind] = new short[capacity * content.deckCapacity[kind]];
+        }
+
+    }
+
+    /**
+     * Plays a run of games from start to finish, replacing whatever the batch played before.
+     * @param firstSeed The seed of the first game; each game after it has the next seed.
+     * @param games How many games to play.
+     * @throws IllegalArgumentException If there are more games than the batch can hold.
+     */
+    void play(final long firstSeed, final int games) {
+
+        if(games < 0 || games > capacity) {
+            throw new IllegalArgumentException("A batch of " + capacity + " can't play " + games + " games.");
+        }
+        count = games;
+
+        int live = 0;
+        for(int game = 0; game < games; game++) {
+            if(start(game, firstSeed + game)) {
+                playing[live++] = game;
+            }
+        }
+
+        //Every unfinished game has played exactly as many turns as the batch has.
+        for(int turn = 0; turn < maxTurns && live > 0; turn++) {
+            int stillPlaying = 0;
+            for(int next = 0; next < live; next++) {
+                final int game = playing[next];
+                if(step(game)) {
+                    playing[stillPlaying++] = game;
+                }
+            }
+            live = stillPlaying;
+        }
+
+        for(int next = 0; next < live; next++) {
+            outcomes[playing[next]] = (byte) GameResult.Outcome.ABANDONED.ordinal();
+        }
+
+    }
+
+    /**
+     * @return How many games the last call to {@link #play} played.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @param game A game's place in the batch, from 0.
+     * @return How the game ended, the same way {@link Simulator#play} reports it.
+     */
+    GameResult result(final int game) {
+        return new GameResult(seeds[game], GameResult.Outcome.values()[outcomes[game]], floors[game],
+            resources[game * RESOURCES + TIME], wipes[game], turns[game]);
+    }
+
+    /**
+     * Sets a game up the way {@link net.codelizard.hoc.logic.HeadlessGame} does, with a random party at the dungeon
+     * entrance.
+     * @return Whether or not the game was set up; if not, it's already over with an error.
+     */
+    private boolean start(final int game, final long seed) {
+
+        seeds[game] = seed;
+        turnSeeds[game] = mix64(seed + GOLDEN_GAMMA);
+        outcomes[game] = PLAYING;
+
+        final int base = game * RESOURCES;
+        for(int type = 0; type < RESOURCES; type++) {
+            resources[base + type] = 0;
+            eventDiscounts[base + type] = 0;
+            monsterDiscounts[base + type] = 0;
+        }
+        levels[game] = 1;
+        floors[game] = 0;
+        kills[game] = 0;
+        fightingBoss[game] = false;
+        lootAwarded[game] = false;
+        equipmentCounts[game] = 0;
+        consumableCounts[game] = 0;
+        wipes[game] = 0;
+        turns[game] = 0;
+        for(int kind = 0; kind < deckSizes.length; kind++) {
+            deckSizes[kind][game] = 0;
+        }
+
+        //Quick Play's party: a shuffle of every hero, taking the first four.
+        final SplittableRandom random = new SplittableRandom(nextTurnSeed(game));
+        if(content.heroCount < Party.FULL_PARTY_SIZE) {
+            outcomes[game] = (byte) GameResult.Outcome.ERROR.ordinal();
+            return false;
+        }
+        for(int hero = 0; hero < heroOrder.length; hero++) {
+            heroOrder[hero] = hero;
+        }
+        for(int position = heroOrder.length; position > 1; position--) {
+            final int other = random.nextInt(position);
+            final int swapped = heroOrder[position - 1];
+            heroOrder[position - 1] = heroOrder[other];
+            heroOrder[other] = swapped;
+        }
+
+        for(int member = 0; member < Party.FULL_PARTY_SIZE; member++) {
+            final int hero = heroOrder[member];
+            heroes[game * Party.FULL_PARTY_SIZE + member] = hero;
+            final int[] discounts = content.heroDiscountType[hero] == DiscountType.EVENT.ordinal()
+                ? eventDiscounts
+                : monsterDiscounts;
+            discounts[base + content.heroDiscountResource[hero]]++;
+        }
+
+        if(!calculateResources(game)) {
+            outcomes[game] = (byte) GameResult.Outcome.ERROR.ordinal();
+            return false;
+        }
+        System.arraycopy(maxResources, base, resources, base, RESOURCES);
+
+        states[game] = (byte) GameState.ENTER_DUNGEON.ordinal();
+        return true;
+
+    }
+
+    /**
+     * Plays one turn of a game, the way {@link net.codelizard.hoc.logic.HeadlessGame#play} does.
+     * @return Whether or not the game is still being played.
+     */
+    private boolean step(final int game) {
+
+        final long turnSeed = nextTurnSeed(game);
+        if(!update(game, turnSeed)) {
+            outcomes[game] = (byte) GameResult.Outcome.ERROR.ordinal();
+            return false;
+        }
+
+        if(states[game] == GameState.OUT_OF_HEALTH.ordinal()) {
+            wipes[game]++;
+        }
+
+        turns[game]++;
+        if(!enterState(game, turnSeed)) {
+            outcomes[game] = (byte) GameResult.Outcome.ERROR.ordinal();
+            return false;
+        }
+
+        if(states[game] == GameState.VICTORY.ordinal()) {
+            outcomes[game] = (byte) GameResult.Outcome.WON.ordinal();
+            return false;
+        } else if(states[game] == GameState.OUT_OF_TIME.ordinal()) {
+            outcomes[game] = (byte) GameResult.Outcome.OUT_OF_TIME.ordinal();
+            return false;
+        }
+        return true;
+
+    }
+
+    /**
+     * Makes the policy's choice for the game's current state and carries it out, as that state's {@code update} does.
+     * @return {@code false} where the real game would have thrown an exception.
+     */
+    private boolean update(final int game, final long turnSeed) {
+
+        final GameState state = STATES[states[game]];
+        switch(state) {
+            case ENTER_DUNGEON:
+                floors[game] = 0;
+                nextFloor(game, new SplittableRandom(turnSeed));
+                setState(game, GameState.EVENT);
+                return true;
+            case EVENT:
+            case MONSTER:
+                return payFor(game, state);
+            case ACTION:
+                act(game);
+                return true;
+            case LOOT_CONSUMABLE:
+                if(consumableCounts[game] > Party.FULL_PARTY_SIZE) {
+                    useConsumable(game);
+                }
+                lootAwarded[game] = false;
+                setState(game, GameState.EVENT);
+                return true;
+            case LOOT_EQUIPMENT:
+                if(equipmentCounts[game] > Party.FULL_PARTY_SIZE) {
+                    removeItem(equipment, equipmentCounts, game);
+                }
+                if(!calculateResources(game)) {
+                    return false;
+                }
+                lootAwarded[game] = false;
+                setState(game, GameState.EVENT);
+                return true;
+            case USE_CONSUMABLE:
+                if(consumableCounts[game] > 0) {
+                    useConsumable(game);
+                }
+                states[game] = returnStates[game];
+                return true;
+            case TRANSMUTE:
+                return transmute(game, turnSeed);
+            case SCOUT:
+                redraw(BatchContent.EVENTS, game);
+                setState(game, GameState.ACTION);
+                return true;
+            case SECRET_DOOR:
+                redraw(BatchContent.MONSTERS, game);
+                setState(game, GameState.ACTION);
+                return true;
+            case LOOT_LEVELUP:
+            case OUT_OF_HEALTH:
+                setState(game, GameState.EVENT);
+                return true;
+            case READY_FOR_BOSS:
+            case SHORT_REST:
+            case LONG_REST:
+            case CURE:
+            case MASS_CURE:
+            case TRANSMUTE_RESULT:
+                setState(game, GameState.ACTION);
+                return true;
+            default:
+                throw new IllegalStateException("Batched games never reach " + state + ".");
+        }
+
+    }
+
+    /**
+     * Carries out whatever the game's new state does on the way in, as that state's {@code enterState} does.
+     * @return {@code false} where the real game would have thrown an exception.
+     */
+    private boolean enterState(final int game, final long turnSeed) {
+
+        final int base = game * RESOURCES;
+        switch(STATES[states[game]]) {
+            case EVENT:
+            case SCOUT:
+                return top(BatchContent.EVENTS, game) >= 0;
+            case MONSTER:
+            case SECRET_DOOR:
+                return upcomingMonster(game) >= 0;
+            case LOOT_CONSUMABLE:
+                return loot(BatchContent.CONSUMABLES, consumables, consumableCounts, game);
+            case LOOT_EQUIPMENT:
+                return loot(BatchContent.EQUIPMENT, equipment, equipmentCounts, game);
+            case LOOT_LEVELUP:
+                levels[game]++;
+                if(!calculateResources(game)) {
+                    return false;
+                }
+                nextFloor(game, new SplittableRandom(turnSeed));
+                return true;
+            case SHORT_REST:
+                refillResources(game);
+                return true;
+            case LONG_REST:
+                refillResources(game);
+                resources[base + HEALTH] = maxResources[base + HEALTH];
+                return true;
+            case CURE:
+                resources[base + HEALTH] = Math.min(resources[base + HEALTH] + rules.get(Rule.CURE_HEALTH_GAIN),
+                    maxResources[base + HEALTH]);
+                return true;
+            case MASS_CURE:
+                resources[base + HEALTH] = Math.min(resources[base + HEALTH] + rules.get(Rule.MASS_CURE_HEALTH_GAIN),
+                    maxResources[base + HEALTH]);
+                return true;
+            case OUT_OF_HEALTH:
+                resources[base + TIME] -= rules.get(Rule.TPK_TIME_COST);
+                if(resources[base + TIME] <= 0) {
+                    setState(game, GameState.OUT_OF_TIME);
+                } else {
+                    refillResources(game);
+                    resources[base + HEALTH] = maxResources[base + HEALTH];
+                }
+                return true;
+            default:
+                return true;
+        }
+
+    }
+
+    /**
+     * Pays for the upcoming event or monster with the resource the cautious policy picks, or uses a consumable if it
+     * can't pay with anything.
+     */
+    private boolean payFor(final int game, final GameState state) {
+
+        final boolean monster = state == GameState.MONSTER;
+        final int kind = monster ? BatchContent.MONSTERS : BatchContent.EVENTS;
+        final int card = monster ? upcomingMonster(game) : top(BatchContent.EVENTS, game);
+        if(card < 0) {
+            return false;
+        }
+
+        final int[] costs = content.amounts[kind];
+        final int[] discounts = monster ? monsterDiscounts : eventDiscounts;
+        final int base = game * RESOURCES;
+
+        //Spend whatever leaves the most behind, but keep Health for when nothing else will do and Time for last.
+        int best = -1;
+        int bestCost = 0;
+        int bestPreference = -1;
+        int bestLeft = Integer.MIN_VALUE;
+        for(int type = 0; type < RESOURCES; type++) {
+
+            final int baseCost = costs[card * RESOURCES + type];
+            if(baseCost == 0) {
+                continue;
+            }
+            final int cost = Math.max(1, baseCost - discounts[base + type]);
+            if(!ALWAYS_SPEND[type] && cost > resources[base + type]) {
+                continue;
+            }
+
+            final int left = resources[base + type] - cost;
+            final int preference;
+            if(!ALWAYS_SPEND[type]) {
+                preference = 3;
+            } else if(type == HEALTH && left > 0) {
+                preference = 2;
+            } else if(type == TIME) {
+                preference = 1;
+            } else {
+                preference = 0;
+            }
+
+            if(preference > bestPreference || preference == bestPreference && left > bestLeft) {
+                best = type;
+                bestCost = cost;
+                bestPreference = preference;
+                bestLeft = left;
+            }
+
+        }
+
+        if(best < 0) {
+            //Nothing will do, so use a consumable if there is one, or else send a message that does nothing.
+            if(consumableCounts[game] > 0) {
+                returnStates[game] = (byte) state.ordinal();
+                setState(game, GameState.USE_CONSUMABLE);
+            }
+            return true;
+        }
+
+        if(monster) {
+            fightingBoss[game] = false;
+        }
+        resources[base + best] -= bestCost;
+
+        if(resources[base + TIME] <= 0) {
+            setState(game, GameState.OUT_OF_TIME);
+            return true;
+        } else if(resources[base + HEALTH] <= 0) {
+            setState(game, GameState.OUT_OF_HEALTH);
+            return true;
+        }
+
+        if(!monster) {
+            discard(BatchContent.EVENTS, game);
+            setState(game, kills[game] >= rules.get(Rule.REQUIRED_KILLS) ? GameState.READY_FOR_BOSS : GameState.ACTION);
+            return true;
+        }
+
+        switch(LOOT_TYPES[content.monsterLoot[card]]) {
+            case CONSUMABLE:
+                setState(game, GameState.LOOT_CONSUMABLE);
+                break;
+            case EQUIPMENT:
+                setState(game, GameState.LOOT_EQUIPMENT);
+                break;
+            case LEVELUP:
+                setState(game, GameState.LOOT_LEVELUP);
+                break;
+            case WIN:
+                setState(game, GameState.VICTORY);
+                break;
+            default:
+                return false;
+        }
+
+        //Bosses count as a kill of the monster on top of the deck, just as they do in the real game.
+        if(deckSizes[BatchContent.MONSTERS][game] == 0) {
+            return false;
+        }
+        discard(BatchContent.MONSTERS, game);
+        kills[game]++;
+        return true;
+
+    }
+
+    /**
+     * Picks an ACTION button the way the cautious policy does and presses it.
+     */
+    private void act(final int game) {
+
+        final int base = game * RESOURCES;
+        final int available = availableActions(game);
+        final int physical = resources[base + PHYSICAL];
+        final int health = resources[base + HEALTH];
+
+        int missing = 0;
+        int maximum = 0;
+        for(int type = PHYSICAL; type <= MECHANICAL; type++) {
+            missing += Math.max(0, maxResources[base + type] - resources[base + type]);
+            maximum += maxResources[base + type];
+        }
+
+        final boolean plentyOfPhysical = physical >= StandardPolicy.CHARGE_PHYSICAL * maxResources[base + PHYSICAL];
+        final int button;
+        if(plentyOfPhysical && physical > rules.get(Rule.BOSS_CHARGE_PHYSICAL_COST) && (available & BOSS_CHARGE) != 0) {
+            button = BOSS_CHARGE;
+        } else if((available & BOSS) != 0) {
+            button = BOSS;
+        } else if(health < StandardPolicy.HEAL_HEALTH * maxResources[base + HEALTH]
+                && (available & (MASS_CURE | CURE | LONG_REST)) != 0) {
+            button = (available & MASS_CURE) != 0 ? MASS_CURE : (available & CURE) != 0 ? CURE : LONG_REST;
+        } else if((available & SHORT_REST) != 0 && missing > 0
+                && missing >= StandardPolicy.SHORT_REST_MISSING * maximum) {
+            button = SHORT_REST;
+        } else if(plentyOfPhysical && (available & CHARGE) != 0) {
+            button = CHARGE;
+        } else if((available & FIGHT) != 0) {
+            button = FIGHT;
+        } else {
+            button = Integer.lowestOneBit(available);
+        }
+
+        switch(button) {
+            case FIGHT:
+                resources[base + TIME] -= rules.get(Rule.FIGHT_TIME_COST);
+                setState(game, GameState.MONSTER);
+                break;
+            case SHORT_REST:
+                resources[base + TIME] -= rules.get(Rule.SHORT_REST_TIME_COST);
+                setState(game, GameState.SHORT_REST);
+                break;
+            case LONG_REST:
+                resources[base + TIME] -= rules.get(Rule.LONG_REST_TIME_COST);
+                setState(game, GameState.LONG_REST);
+                break;
+            case CHARGE:
+                if(physical >= rules.get(Rule.CHARGE_PHYSICAL_COST)) {
+                    resources[base + PHYSICAL] -= rules.get(Rule.CHARGE_PHYSICAL_COST);
+                    resources[base + TIME] -= rules.get(Rule.CHARGE_TIME_COST);
+                    setState(game, GameState.MONSTER);
+                }
+                break;
+            case TRANSMUTE:
+                if(resources[base + ARCANE] >= rules.get(Rule.TRANSMUTE_ARCANE_COST) && hasItems(game)) {
+                    setState(game, GameState.TRANSMUTE);
+                }
+                break;
+            case CURE:
+                if(resources[base + DIVINE] >= rules.get(Rule.CURE_DIVINE_COST)) {
+                    resources[base + DIVINE] -= rules.get(Rule.CURE_DIVINE_COST);
+                    resources[base + TIME] -= rules.get(Rule.CURE_TIME_COST);
+                    setState(game, GameState.CURE);
+                }
+                break;
+            case MASS_CURE:
+                if(resources[base + DIVINE] >= rules.get(Rule.MASS_CURE_DIVINE_COST)) {
+                    resources[base + DIVINE] -= rules.get(Rule.MASS_CURE_DIVINE_COST);
+                    resources[base + TIME] -= rules.get(Rule.MASS_CURE_TIME_COST);
+                    setState(game, GameState.MASS_CURE);
+                }
+                break;
+            case SCOUT:
+                if(resources[base + STEALTH] >= rules.get(Rule.SCOUT_STEALTH_COST)) {
+                    resources[base + STEALTH] -= rules.get(Rule.SCOUT_STEALTH_COST);
+                    resources[base + TIME] -= rules.get(Rule.SCOUT_TIME_COST);
+                    setState(game, GameState.SCOUT);
+                }
+                break;
+            case SECRET_DOOR:
+                if(resources[base + MECHANICAL] >= rules.get(Rule.SECRET_DOOR_MECHANICAL_COST)) {
+                    resources[base + MECHANICAL] -= rules.get(Rule.SECRET_DOOR_MECHANICAL_COST);
+                    resources[base + TIME] -= rules.get(Rule.SECRET_DOOR_TIME_COST);
+                    setState(game, GameState.SECRET_DOOR);
+                }
+                break;
+            case USE_CONSUMABLE:
+                if(hasItems(game)) {
+                    returnStates[game] = (byte) GameState.ACTION.ordinal();
+                    setState(game, GameState.USE_CONSUMABLE);
+                }
+                break;
+            case BOSS:
+                resources[base + TIME] -= rules.get(Rule.BOSS_TIME_COST);
+                fightingBoss[game] = true;
+                setState(game, GameState.MONSTER);
+                break;
+            case BOSS_CHARGE:
+                if(physical > rules.get(Rule.BOSS_CHARGE_PHYSICAL_COST)) {
+                    resources[base + PHYSICAL] -= rules.get(Rule.BOSS_CHARGE_PHYSICAL_COST);
+                    resources[base + TIME] -= rules.get(Rule.BOSS_CHARGE_TIME_COST);
+                    fightingBoss[game] = true;
+                    setState(game, GameState.MONSTER);
+                }
+                break;
+            default:
+                //Repeating the instructions changes nothing that matters here.
+                break;
+        }
+
+        if(resources[base + TIME] <= 0) {
+            setState(game, GameState.OUT_OF_TIME);
+        }
+
+    }
+
+    /**
+     * Works out which ACTION buttons the game would show, the same way GameState does.
+     */
+    private int availableActions(final int game) {
+
+        final int base = game * RESOURCES;
+        final boolean monstersLeft = deckSizes[BatchContent.MONSTERS][game] > 0;
+        final boolean hasItems = hasItems(game);
+        final boolean hasPhysical = resources[base + PHYSICAL] > 0;
+
+        boolean belowMax = false;
+        for(int type = PHYSICAL; type <= MECHANICAL; type++) {
+            belowMax |= resources[base + type] < maxResources[base + type];
+        }
+
+        int available = REPEAT_INSTRUCTIONS;
+        if(monstersLeft) {
+            available |= FIGHT;
+        }
+        if(belowMax) {
+            available |= SHORT_REST;
+        }
+        if(belowMax || resources[base + HEALTH] < maxResources[base + HEALTH]) {
+            available |= LONG_REST;
+        }
+        if(hasPhysical && monstersLeft) {
+            available |= CHARGE;
+        }
+        if(resources[base + ARCANE] > 0 && hasItems) {
+            available |= TRANSMUTE;
+        }
+        if(resources[base + DIVINE] > 0) {
+            available |= CURE;
+        }
+        if(resources[base + DIVINE] >= rules.get(Rule.MASS_CURE_DIVINE_COST)) {
+            available |= MASS_CURE;
+        }
+        if(resources[base + STEALTH] > 0) {
+            available |= SCOUT;
+        }
+        if(resources[base + MECHANICAL] > 0 && monstersLeft) {
+            available |= SECRET_DOOR;
+        }
+        if(hasItems) {
+            available |= USE_CONSUMABLE;
+        }
+        if(kills[game] >= rules.get(Rule.REQUIRED_KILLS)) {
+            available |= BOSS;
+            if(hasPhysical) {
+                available |= BOSS_CHARGE;
+            }
+        }
+        return available;
+
+    }
+
+    /**
+     * Transmutes the first item, equipment before consumables, just as the policy picks the first item listed.
+     */
+    private boolean transmute(final int game, final long turnSeed) {
+
+        final int[] items;
+        final int[] itemCounts;
+        final int kind;
+        if(equipmentCounts[game] > 0) {
+            items = equipment;
+            itemCounts = equipmentCounts;
+            kind = BatchContent.EQUIPMENT;
+        } else if(consumableCounts[game] > 0) {
+            items = consumables;
+            itemCounts = consumableCounts;
+            kind = BatchContent.CONSUMABLES;
+        } else {
+            //Only Cancel is on offer.
+            setState(game, GameState.ACTION);
+            return true;
+        }
+
+        //Pick another card from the same pool, skipping over the one being transmuted.
+        final int item = items[game * ITEM_SLOTS];
+        final int position = content.positions[kind][item];
+        final int[] pool = content.pool(kind, content.tiers[kind][item]);
+        if(position >= 0 && pool.length >= 2) {
+            int choice = new SplittableRandom(turnSeed).nextInt(pool.length - 1);
+            if(choice >= position) {
+                choice++;
+            }
+            removeItem(items, itemCounts, game);
+            items[game * ITEM_SLOTS + itemCounts[game]++] = pool[choice];
+        }
+
+        final int base = game * RESOURCES;
+        resources[base + ARCANE] -= rules.get(Rule.TRANSMUTE_ARCANE_COST);
+        resources[base + TIME] -= rules.get(Rule.TRANSMUTE_TIME_COST);
+        if(!calculateResources(game)) {
+            return false;
+        }
+
+        setState(game, resources[base + TIME] <= 0 ? GameState.OUT_OF_TIME : GameState.TRANSMUTE_RESULT);
+        return true;
+
+    }
+
+    /**
+     * Hands out the loot on top of a deck, unless it already has been.
+     */
+    private boolean loot(final int kind, final int[] items, final int[] itemCounts, final int game) {
+
+        final int card = top(kind, game);
+        if(card < 0) {
+            return false;
+        }
+
+        if(!lootAwarded[game]) {
+            items[game * ITEM_SLOTS + itemCounts[game]++] = card;
+            discard(kind, game);
+            lootAwarded[game] = true;
+        }
+        return true;
+
+    }
+
+    /**
+     * Removes the first consumable and adds its resources, overcharging.
+     */
+    private void useConsumable(final int game) {
+
+        final int consumable = consumables[game * ITEM_SLOTS];
+        removeItem(consumables, consumableCounts, game);
+
+        final int[] amounts = content.amounts[BatchContent.CONSUMABLES];
+        for(int type = 0; type < RESOURCES; type++) {
+            resources[game * RESOURCES + type] += amounts[consumable * RESOURCES + type];
+        }
+
+    }
+
+    /**
+     * Works out a game's maximum resources from its party's level and its equipment, as
+     * {@link PlayerState#calculateResources()} does. Current resources are left alone.
+     * @return {@code false} if a hero has no resources for the party's level.
+     */
+    private boolean calculateResources(final int game) {
+
+        final int level = levels[game];
+        if(level < 0 || level >= content.levels) {
+            return false;
+        }
+        for(int member = 0; member < Party.FULL_PARTY_SIZE; member++) {
+            if(!content.heroHasLevel[heroes[game * Party.FULL_PARTY_SIZE + member] * content.levels + level]) {
+                return false;
+            }
+        }
+
+        final int base = game * RESOURCES;
+        for(int type = 0; type < RESOURCES; type++) {
+            maxResources[base + type] = 0;
+        }
+        maxResources[base + TIME] = rules.get(Rule.TIME_LIMIT);
+        maxResources[base + HEALTH] = rules.get(Rule.HEALTH_BASE) + (level - 1);
+
+        for(int member = 0; member < Party.FULL_PARTY_SIZE; member++) {
+            final int hero = heroes[game * Party.FULL_PARTY_SIZE + member];
+            final int heroBase = (hero * content.levels + level) * RESOURCES;
+            for(int type = 0; type < RESOURCES; type++) {
+                maxResources[base + type] += content.heroResources[heroBase + type];
+            }
+        }
+
+        final int[] amounts = content.amounts[BatchContent.EQUIPMENT];
+        for(int item = 0; item < equipmentCounts[game]; item++) {
+            final int itemBase = equipment[game * ITEM_SLOTS + item] * RESOURCES;
+            for(int type = 0; type < RESOURCES; type++) {
+                maxResources[base + type] += amounts[itemBase + type];
+            }
+        }
+        return true;
+
+    }
+
+    /**
+     * Refills every resource that can't be spent into negatives.
+     */
+    private void refillResources(final int game) {
+        final int base = game * RESOURCES;
+        for(int type = 0; type < RESOURCES; type++) {
+            if(!ALWAYS_SPEND[type]) {
+                resources[base + type] = maxResources[base + type];
+            }
+        }
+    }
+
+    /**
+     * Moves to the next floor and deals its decks in the same order, with the same shuffle, as PlayerState.
+     */
+    private void nextFloor(final int game, final SplittableRandom random) {
+
+        floors[game]++;
+        deal(BatchContent.EVENTS, game, random);
+        deal(BatchContent.CONSUMABLES, game, random);
+        deal(BatchContent.EQUIPMENT, game, random);
+        deal(BatchContent.MONSTERS, game, random);
+        kills[game] = 0;
+
+    }
+
+    private void deal(final int kind, final int game, final SplittableRandom random) {
+
+        final int cards = content.pool(kind, floors[game]).length;
+        final short[] order = deckOrders[kind];
+        final int base = game * content.deckCapacity[kind];
+        for(int position = 0; position < cards; position++) {
+            order[base + position] = (short) position;
+        }
+
+        //Fisher-Yates, drawing from the end of the deck, exactly as FloorDeck does.
+        for(int position = cards; position > 1; position--) {
+            final int other = random.nextInt(position);
+            final short swapped = order[base + position - 1];
+            order[base + position - 1] = order[base + other];
+            order[base + other] = swapped;
+        }
+
+        deckTiers[kind][game] = floors[game];
+        deckHeads[kind][game] = 0;
+        deckSizes[kind][game] = cards;
+
+    }
+
+    /**
+     * @return The card on top of one of a game's decks, or -1 if it's empty.
+     */
+    private int top(final int kind, final int game) {
+
+        if(deckSizes[kind][game] == 0) {
+            return -1;
+        }
+        final int position = deckOrders[kind][game * content.deckCapacity[kind] + deckHeads[kind][game]];
+        return content.pool(kind, deckTiers[kind][game])[position];
+
+    }
+
+    /**
+     * @return The monster the game's party faces next, its boss if it's fighting one, or -1 if there is none.
+     */
+    private int upcomingMonster(final int game) {
+        return fightingBoss[game] ? content.boss(levels[game]) : top(BatchContent.MONSTERS, game);
+    }
+
+    /**
+     * Removes the top card of a non-empty deck.
+     */
+    private void discard(final int kind, final int game) {
+        deckHeads[kind][game] = (deckHeads[kind][game] + 1) % content.deckCapacity[kind];
+        deckSizes[kind][game]--;
+    }
+
+    /**
+     * Moves the top card of a deck to the bottom, if there is one.
+     */
+    private void redraw(final int kind, final int game) {
+
+        final int size = deckSizes[kind][game];
+        if(size > 0) {
+            final short[] order = deckOrders[kind];
+            final int ring = content.deckCapacity[kind];
+            final int base = game * ring;
+            final int head = deckHeads[kind][game];
+            order[base + (head + size) % ring] = order[base + head];
+            deckHeads[kind][game] = (head + 1) % ring;
+        }
+
+    }
+
+    /**
+     * Removes the first of a game's items, moving the rest up.
+     */
+    private static void removeItem(final int[] items, final int[] itemCounts, final int game) {
+        final int base = game * ITEM_SLOTS;
+        System.arraycopy(items, base + 1, items, base, itemCounts[game] - 1);
+        itemCounts[game]--;
+    }
+
+    private boolean hasItems(final int game) {
+        return equipmentCounts[game] > 0 || consumableCounts[game] > 0;
+    }
+
+    private void setState(final int game, final GameState state) {
+        states[game] = (byte) state.ordinal();
+    }
+
+    private long nextTurnSeed(final int game) {
+        turnSeeds[game] += GOLDEN_GAMMA;
+        return mix64(turnSeeds[game]);
+    }
+
+    /** SplittableRandom's output function, so that turn seeds come out exactly as HeadlessGame's do. */
+    private static long mix64(final long seed) {
+        long mixed = (seed ^ (seed >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+}
@@ -0,0 +1,109 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.logic.HeadlessGame;
+
+/**
+ * How one simulated game ended.
+ *
+ * @author Codelizard
+ */
+public final class GameResult {
+
+    /** Header for the CSV lines written by {@link #appendCsv(StringBuilder)}. */
+    public static final String CSV_HEADER = "seed,outcome,floor,time_remaining,deaths,turns";
+
+    /** How a game can end. */
+    public enum Outcome {
+
+        /** The party beat the final boss. */
+        WON,
+
+        /** The party ran out of time. */
+        OUT_OF_TIME,
+
+        /** The game was still going after the turn limit, usually because the policy got stuck. */
+        ABANDONED,
+
+        /** The game threw an exception. */
+        ERROR;
+
+        /** Lower case, for CSV output. */
+        public final String label = name().toLowerCase();
+
+    }
+
+    /** The seed the game was played from. Replaying it with the same policy plays the same game. */
+    public final long seed;
+
+    /** How the game ended. */
+    public final Outcome outcome;
+
+    /** The floor the party reached. */
+    public final int floor;
+
+    /** Time the party had left at the end. */
+    public final int timeRemaining;
+
+    /** How many times the party was wiped out. */
+    public final int deaths;
+
+    /** How many messages were played. */
+    public final int turns;
+
+    /**
+     * @param seed The seed the game was played from.
+     * @param outcome How the game ended.
+     * @param floor The floor the party reached.
+     * @param timeRemaining Time the party had left at the end.
+     * @param deaths How many times the party was wiped out.
+     * @param turns How many messages were played.
+     */
+    public GameResult(final long seed, final Outcome outcome, final int floor, final int timeRemaining,
+            final int deaths, final int turns) {
+        this.seed = seed;
+        this.outcome = outcome;
+        this.floor = floor;
+        this.timeRemaining = timeRemaining;
+        this.deaths = deaths;
+        this.turns = turns;
+    }
+
+    /**
+     * @param seed The seed the game was played from.
+     * @param game The game, which has either ended or been given up on.
+     * @return The game's result.
+     */
+    static GameResult of(final long seed, final HeadlessGame game) {
+
+        final Outcome outcome;
+        if(game.isWon()) {
+            outcome = Outcome.WON;
+        } else if(game.isOver()) {
+            outcome = Outcome.OUT_OF_TIME;
+        } else {
+            outcome = Outcome.ABANDONED;
+        }
+
+        return new GameResult(seed, outcome, game.getFloor(), game.getTimeRemaining(), game.getWipes(),
+            game.getTurns());
+
+    }
+
+    /**
+     * @return Whether or not the party won.
+     */
+    public boolean isWon() {
+        return outcome == Outcome.WON;
+    }
+
+    /**
+     * Appends this result as a line of CSV, in the columns of {@link #CSV_HEADER}.
+     * @param output Where to append the line.
+     * @return The same StringBuilder, for chaining.
+     */
+    public StringBuilder appendCsv(final StringBuilder output) {
+        return output.append(seed).append(',').append(outcome.label).append(',').append(floor).append(',')
+            .append(timeRemaining).append(',').append(deaths).append(',').append(turns).append('\n');
+    }
+
+}
@@ -0,0 +1,68 @@
+package net.codelizard.hoc.simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line options for the simulation tools, given as {@code --name value} pairs.
+ *
+ * @author Codelizard
+ */
+final class Options {
+
+    /** The options given, by name without the leading dashes. */
+    private final Map<String, String> values = new HashMap<>();
+
+    /**
+     * @param usage How to use the tool, shown when the arguments can't be parsed.
+     * @param args The arguments to parse.
+     * @throws IllegalArgumentException If the arguments aren't all {@code --name value} pairs.
+     */
+    Options(final String usage, final String... args) {
+        for(int index = 0; index < args.length; index += 2) {
+            if(!args[index].startsWith("--") || index + 1 == args.length) {
+                throw new IllegalArgumentException("Usage: " + usage);
+            }
+            values.put(args[index].substring(2), args[index + 1]);
+        }
+    }
+
+    /**
+     * @param name The option's name.
+     * @param defaultValue What to return if the option wasn't given.
+     * @return The option's value.
+     */
+    String get(final String name, final String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * @param name The option's name.
+     * @param defaultValue What to return if the option wasn't given.
+     * @return The option's value.
+     * @throws IllegalArgumentException If the value isn't a number.
+     */
+    long getLong(final String name, final long defaultValue) {
+        final String value = values.get(name);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException x) {
+            throw new IllegalArgumentException("--" + name + " must be a number, not \"" + value + "\".", x);
+        }
+    }
+
+    /**
+     * @param name The option's name.
+     * @param defaultValue What to return if the option wasn't given.
+     * @return The option's value.
+     * @throws IllegalArgumentException If the value isn't a number or is out of range for an int.
+     */
+    int getInt(final String name, final int defaultValue) {
+        final long value = getLong(name, defaultValue);
+        if(value != (int) value) {
+            throw new IllegalArgumentException("--" + name + " is out of range: " + value + ".");
+        }
+        return (int) value;
+    }
+
+}
@@ -0,0 +1,237 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.content.Hero;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Totals over the games one party composition played in a {@link PartySweep}. Not thread-safe: each fork/join task
+ * builds its own and they're merged as the tasks finish.
+ *
+ * @author Codelizard
+ */
+final class PartyResult {
+
+    /** Header for the lines written by {@link #toCsv()}. */
+    static final String CSV_HEADER = "party,games,wins,win_time_remaining,deaths,floors,abandoned,errors";
+
+    /** Separates hero IDs in the party column. Hero IDs contain spaces, but never this. */
+    private static final String HERO_SEPARATOR = "|";
+
+    /** z for a 95% confidence interval. */
+    private static final double Z = 1.959964;
+
+    /** The heroes, in content order. */
+    final List<Hero> heroes;
+
+    long games;
+
+    long wins;
+
+    /** Total Time left at the end of games the party won. */
+    long winTimeRemaining;
+
+    long deaths;
+
+    /** Total floors reached. */
+    long floors;
+
+    long abandoned;
+
+    long errors;
+
+    /**
+     * @param heroes The party's heroes, in content order.
+     */
+    PartyResult(final List<Hero> heroes) {
+        this.heroes = heroes;
+    }
+
+    /**
+     * @param result The result of a game this party played.
+     */
+    void add(final GameResult result) {
+        games++;
+        deaths += result.deaths;
+        floors += result.floor;
+        switch(result.outcome) {
+            case WON:
+                wins++;
+                winTimeRemaining += result.timeRemaining;
+                break;
+            case ABANDONED:
+                abandoned++;
+                break;
+            case ERROR:
+                errors++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @param other Totals over more of this party's games, to add to these.
+     * @return This PartyResult, for chaining.
+     */
+    PartyResult merge(final PartyResult other) {
+        games += other.games;
+        wins += other.wins;
+        winTimeRemaining += other.winTimeRemaining;
+        deaths += other.deaths;
+        floors += other.floors;
+        abandoned += other.abandoned;
+        errors += other.errors;
+        return this;
+    }
+
+    /**
+     * @return The fraction of games won.
+     */
+    double winRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * @return The lower end of the 95% Wilson score interval around the win rate.
+     */
+    double winRateLow() {
+        return wilsonLow(wins, games);
+    }
+
+    /**
+     * @return The upper end of the 95% Wilson score interval around the win rate.
+     */
+    double winRateHigh() {
+        return wilsonHigh(wins, games);
+    }
+
+    /**
+     * @return Average Time left at the end of a win.
+     */
+    double averageWinTime() {
+        return wins == 0 ? 0 : (double) winTimeRemaining / wins;
+    }
+
+    /**
+     * @return Average wipes per game.
+     */
+    double averageDeaths() {
+        return games == 0 ? 0 : (double) deaths / games;
+    }
+
+    /**
+     * @return Average floor reached.
+     */
+    double averageFloor() {
+        return games == 0 ? 0 : (double) floors / games;
+    }
+
+    /**
+     * @return The heroes' names, for people to read.
+     */
+    String names() {
+        final StringBuilder output = new StringBuilder();
+        for(Hero nextHero : heroes) {
+            if(output.length() > 0) {
+                output.append(", ");
+            }
+            output.append(nextHero.getName());
+        }
+        return output.toString();
+    }
+
+    /**
+     * @return The heroes' IDs, identifying the party in checkpoints.
+     */
+    String key() {
+        final StringBuilder output = new StringBuilder();
+        for(Hero nextHero : heroes) {
+            if(output.length() > 0) {
+                output.append(HERO_SEPARATOR);
+            }
+            output.append(nextHero.getId());
+        }
+        return output.toString();
+    }
+
+    /**
+     * @return The totals as a line of CSV, in the columns of {@link #CSV_HEADER}, without a line break.
+     */
+    String toCsv() {
+        return key() + ',' + games + ',' + wins + ',' + winTimeRemaining + ',' + deaths + ',' + floors + ','
+            + abandoned + ',' + errors;
+    }
+
+    /**
+     * @param line A line written by {@link #toCsv()}.
+     * @param heroesById Every hero, by ID.
+     * @return The totals the line records.
+     * @throws IllegalArgumentException If the line is malformed or names a hero that doesn't exist.
+     */
+    static PartyResult parseCsv(final String line, final Map<String, Hero> heroesById) {
+
+        final String[] columns = line.split(",");
+        if(columns.length != 8) {
+            throw new IllegalArgumentException("Expected 8 columns: " + line);
+        }
+
+        final List<Hero> heroes = new ArrayList<>();
+        for(String nextId : columns[0].split("\\" + HERO_SEPARATOR)) {
+            final Hero hero = heroesById.get(nextId);
+            if(hero == null) {
+                throw new IllegalArgumentException("No hero with ID \"" + nextId + "\": " + line);
+            }
+            heroes.add(hero);
+        }
+
+        final PartyResult result = new PartyResult(Collections.unmodifiableList(heroes));
+        try {
+            result.games = Long.parseLong(columns[1]);
+            result.wins = Long.parseLong(columns[2]);
+            result.winTimeRemaining = Long.parseLong(columns[3]);
+            result.deaths = Long.parseLong(columns[4]);
+            result.floors = Long.parseLong(columns[5]);
+            result.abandoned = Long.parseLong(columns[6]);
+            result.errors = Long.parseLong(columns[7]);
+        } catch (NumberFormatException x) {
+            throw new IllegalArgumentException("Malformed totals: " + line, x);
+        }
+        return result;
+
+    }
+
+    /**
+     * @param wins Games won.
+     * @param games Games played.
+     * @return The lower end of the 95% Wilson score interval around the win rate.
+     */
+    static double wilsonLow(final long wins, final long games) {
+        return wilsonCentre(wins, games) - wilsonHalfWidth(wins, games);
+    }
+
+    /**
+     * @param wins Games won.
+     * @param games Games played.
+     * @return The upper end of the 95% Wilson score interval around the win rate.
+     */
+    static double wilsonHigh(final long wins, final long games) {
+        return wilsonCentre(wins, games) + wilsonHalfWidth(wins, games);
+    }
+
+    private static double wilsonCentre(final long wins, final long games) {
+        return games == 0 ? 0 : ((double) wins / games + Z * Z / (2 * games)) / (1 + Z * Z / games);
+    }
+
+    private static double wilsonHalfWidth(final long wins, final long games) {
+        if(games == 0) {
+            return 0;
+        }
+        final double rate = (double) wins / games;
+        return Z * Math.sqrt(rate * (1 - rate) / games + Z * Z / (4.0 * games * games)) / (1 + Z * Z / games);
+    }
+
+}
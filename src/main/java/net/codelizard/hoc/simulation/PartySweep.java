@@ -0,0 +1,432 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.content.Hero;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>Plays every possible party of four heroes through the same seeded games and ranks them by how often they win,
+ * with 95% Wilson score intervals, to show which compositions Quick Play can deal that are too strong or too weak.</p>
+ *
+ * <pre>java net.codelizard.hoc.simulation.PartySweep [--games N] [--seed S] [--policy random|cautious|&lt;class&gt;]
+ *     [--threads T] [--max-turns M] [--heroes name,name,...] [--checkpoint party-sweep.checkpoint]
+ *     [--output party-sweep.csv] [--top K]</pre>
+ *
+ * <p>Every party plays the games for seeds {@code S} to {@code S + N - 1}, so differences between parties aren't
+ * drowned out by differences between dungeons. {@code --heroes} limits the sweep to parties made of the listed
+ * heroes. Parties are played side by side and each party's games are split between threads too, so every core stays
+ * busy right to the end.</p>
+ *
+ * <p>Each party's totals are appended to the checkpoint as soon as it finishes. Running the sweep again with the same
+ * checkpoint skips the parties already recorded there, so an interrupted sweep picks up where it left off; the
+ * checkpoint records the options it was started with, and a sweep with different options refuses to use it. Start a
+ * new checkpoint after changing the content. The full ranked table is written to the output file and the best and
+ * worst parties are printed.</p>
+ *
+ * @author Codelizard
+ */
+public final class PartySweep {
+
+    /** How to run the sweep. */
+    private static final String USAGE = "PartySweep [--games N] [--seed S] [--policy random|cautious|<class>]"
+        + " [--threads T] [--max-turns M] [--heroes name,name,...] [--checkpoint file] [--output file] [--top K]";
+
+    /** Heroes in a party. */
+    private static final int PARTY_SIZE = 4;
+
+    /** Games each party plays if no count is given. */
+    private static final long DEFAULT_GAMES = 2_000;
+
+    /** Seed used if none is given. Fixed, unlike the Simulator's, so that a resumed sweep finds its checkpoint. */
+    private static final long DEFAULT_SEED = 1;
+
+    /** Checkpoint file used if none is given. */
+    private static final String DEFAULT_CHECKPOINT = "party-sweep.checkpoint";
+
+    /** Ranked table written if no other file is given. */
+    private static final String DEFAULT_OUTPUT = "party-sweep.csv";
+
+    /** Parties printed from each end of the ranking if no other number is given. */
+    private static final int DEFAULT_TOP = 10;
+
+    /** Starts the line in a checkpoint that records the options the sweep was started with. */
+    private static final String OPTIONS_PREFIX = "# ";
+
+    /** Seconds between progress reports. */
+    private static final long PROGRESS_INTERVAL = 10;
+
+    private PartySweep() {}
+
+    /**
+     * @param args The options described in the class documentation.
+     * @throws Exception If the content can't be loaded or the checkpoint or results can't be read or written.
+     */
+    public static void main(final String... args) throws Exception {
+
+        final Options options = new Options(USAGE, args);
+        final long games = options.getLong("games", DEFAULT_GAMES);
+        final long firstSeed = options.getLong("seed", DEFAULT_SEED);
+        final String policyName = options.get("policy", StandardPolicy.CAUTIOUS.name());
+        final Policy policy = StandardPolicy.forName(policyName);
+        final int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final int maxTurns = options.getInt("max-turns", Simulator.DEFAULT_MAX_TURNS);
+        final Path checkpoint = Paths.get(options.get("checkpoint", DEFAULT_CHECKPOINT));
+        final Path output = Paths.get(options.get("output", DEFAULT_OUTPUT));
+        final int top = options.getInt("top", DEFAULT_TOP);
+
+        HeroesOfCordan.loadContent();
+        final List<Hero> pool = heroPool(options.get("heroes", null));
+
+        //Only the options that change the results need to match for a checkpoint to be reused.
+        final String sweepOptions = OPTIONS_PREFIX + "games=" + games + " seed=" + firstSeed + " policy=" + policyName
+            + " max-turns=" + maxTurns + " heroes=" + new PartyResult(pool).key();
+
+        final List<List<Hero>> parties = new ArrayList<>();
+        combinations(pool, 0, new ArrayList<>(), parties);
+
+        final Map<String, PartyResult> recorded = readCheckpoint(checkpoint, sweepOptions);
+        final Map<String, PartyResult> finished = new ConcurrentHashMap<>(recorded);
+        final int alreadyFinished = finished.size();
+
+        System.out.println(parties.size() + " parties of " + pool.size() + " heroes, " + alreadyFinished
+            + " already in " + checkpoint + ". Playing " + games + " games each from seed " + firstSeed + " with "
+            + policy + " on " + threads + " threads.");
+
+        final ForkJoinPool forkJoinPool = new ForkJoinPool(threads);
+        final ProgressReporter progress = new ProgressReporter("Sweep");
+        progress.start(PROGRESS_INTERVAL, () -> "parties=" + finished.size() + "/" + parties.size() + " "
+            + progress.gameRate());
+
+        try(Writer writer = openCheckpoint(checkpoint, sweepOptions, recorded.values())) {
+
+            final List<PartyTask> remaining = new ArrayList<>();
+            for(List<Hero> nextParty : parties) {
+                if(!finished.containsKey(new PartyResult(nextParty).key())) {
+                    remaining.add(new PartyTask(nextParty, firstSeed, firstSeed + games, policy, maxTurns, writer,
+                        finished, progress));
+                }
+            }
+
+            //Every party is forked at once, so threads that finish early steal from the parties still running.
+            for(PartyTask nextTask : remaining) {
+                forkJoinPool.execute(nextTask);
+            }
+            for(PartyTask nextTask : remaining) {
+                nextTask.join();
+            }
+
+        } finally {
+            progress.close();
+            forkJoinPool.shutdown();
+        }
+
+        final List<PartyResult> ranked = new ArrayList<>(finished.values());
+        ranked.sort(Comparator.comparingDouble(PartyResult::winRate).reversed()
+            .thenComparing(Comparator.comparingDouble(PartyResult::winRateLow).reversed())
+            .thenComparing(PartyResult::key));
+
+        writeTable(ranked, output);
+        printTable(ranked, top);
+
+        System.out.println(String.format("Played %d games in %.1f s. Full table written to %s.",
+            progress.getGameCount(), progress.elapsedSeconds(), output));
+
+    }
+
+    /**
+     * @param names Comma-separated names or IDs of the heroes to sweep over, or {@code null} for all of them.
+     * @return The heroes, in content order.
+     * @throws IllegalArgumentException If a hero doesn't exist, or there aren't enough for a party.
+     */
+    private static List<Hero> heroPool(final String names) {
+
+        final List<Hero> heroes = HeroesOfCordan.getContent().getHeroes();
+        final List<Hero> pool = new ArrayList<>();
+        if(names == null) {
+            pool.addAll(heroes);
+        } else {
+            for(String nextName : names.split(",")) {
+                Hero found = null;
+                for(Hero nextHero : heroes) {
+                    if(nextHero.getName().equalsIgnoreCase(nextName.trim())
+                            || nextHero.getId().equalsIgnoreCase(nextName.trim())) {
+                        found = nextHero;
+                    }
+                }
+                if(found == null) {
+                    throw new IllegalArgumentException("No hero named \"" + nextName + "\".");
+                }
+                if(!pool.contains(found)) {
+                    pool.add(found);
+                }
+            }
+            pool.sort(Comparator.comparingInt(heroes::indexOf));
+        }
+
+        if(pool.size() < PARTY_SIZE) {
+            throw new IllegalArgumentException("A party needs " + PARTY_SIZE + " heroes, but only " + pool.size()
+                + " were given.");
+        }
+        return pool;
+
+    }
+
+    /**
+     * Adds every way of finishing a party to a list.
+     * @param pool The heroes to choose from.
+     * @param from The first hero in the pool that can still be chosen.
+     * @param party The heroes chosen so far.
+     * @param parties Where to add the finished parties.
+     */
+    private static void combinations(final List<Hero> pool, final int from, final List<Hero> party,
+            final List<List<Hero>> parties) {
+
+        if(party.size() == PARTY_SIZE) {
+            parties.add(Collections.unmodifiableList(new ArrayList<>(party)));
+            return;
+        }
+
+        for(int index = from; index <= pool.size() - (PARTY_SIZE - party.size()); index++) {
+            party.add(pool.get(index));
+            combinations(pool, index + 1, party, parties);
+            party.remove(party.size() - 1);
+        }
+
+    }
+
+    /**
+     * @param checkpoint The checkpoint file.
+     * @param sweepOptions The options line the checkpoint must have been started with.
+     * @return The parties recorded in the checkpoint, by key, or none if there's no checkpoint yet.
+     * @throws IOException If the checkpoint can't be read.
+     * @throws IllegalStateException If the checkpoint was started with different options.
+     */
+    private static Map<String, PartyResult> readCheckpoint(final Path checkpoint, final String sweepOptions)
+            throws IOException {
+
+        final Map<String, PartyResult> recorded = new LinkedHashMap<>();
+        if(!Files.exists(checkpoint)) {
+            return recorded;
+        }
+
+        final String text = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8);
+        final List<String> lines = new ArrayList<>(Arrays.asList(text.split("\n", -1)));
+        //Every line is written with its line break, so whatever follows the last one was cut off mid-write.
+        final String partial = lines.remove(lines.size() - 1);
+        if(!partial.isEmpty()) {
+            System.err.println("Ignoring partial checkpoint line: " + partial);
+        }
+        if(lines.isEmpty()) {
+            return recorded;
+        }
+        if(!lines.get(0).equals(sweepOptions)) {
+            throw new IllegalStateException(checkpoint + " is from a sweep with different options (\""
+                + lines.get(0).substring(Math.min(lines.get(0).length(), OPTIONS_PREFIX.length()))
+                + "\"). Run with those options, or with a different --checkpoint.");
+        }
+
+        final Map<String, Hero> heroesById = new HashMap<>();
+        for(Hero nextHero : HeroesOfCordan.getContent().getHeroes()) {
+            heroesById.put(nextHero.getId(), nextHero);
+        }
+
+        for(String nextLine : lines.subList(1, lines.size())) {
+            try {
+                final PartyResult result = PartyResult.parseCsv(nextLine, heroesById);
+                recorded.put(result.key(), result);
+            } catch (IllegalArgumentException x) {
+                System.err.println("Ignoring checkpoint line: " + x.getMessage());
+            }
+        }
+        return recorded;
+
+    }
+
+    /**
+     * Starts the checkpoint afresh with the options line and the parties already recorded, so that nothing left over
+     * from a sweep that was killed mid-write ends up in front of the lines that come after it.
+     * @param checkpoint The checkpoint file.
+     * @param sweepOptions The options line to start it with.
+     * @param recorded The parties read back from the old checkpoint, if there was one.
+     * @return A writer that appends to the new checkpoint.
+     * @throws IOException If the checkpoint can't be written.
+     */
+    private static Writer openCheckpoint(final Path checkpoint, final String sweepOptions,
+            final Collection<PartyResult> recorded) throws IOException {
+
+        //Written beside it and moved into place, so that being killed now still leaves the old checkpoint intact.
+        final Path rewritten = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try(BufferedWriter writer = Files.newBufferedWriter(rewritten, StandardCharsets.UTF_8)) {
+            writer.write(sweepOptions);
+            writer.write('\n');
+            for(PartyResult nextResult : recorded) {
+                writer.write(nextResult.toCsv());
+                writer.write('\n');
+            }
+        }
+        Files.move(rewritten, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return Files.newBufferedWriter(checkpoint, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+    }
+
+    private static void writeTable(final List<PartyResult> ranked, final Path output) throws IOException {
+        try(PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            writer.println("rank,party,games,win_rate,win_rate_low,win_rate_high,win_time_remaining,deaths,floor,"
+                + "abandoned,errors");
+            int rank = 1;
+            for(PartyResult nextResult : ranked) {
+                writer.println(String.format("%d,\"%s\",%d,%.5f,%.5f,%.5f,%.2f,%.3f,%.3f,%d,%d",
+                    rank++, nextResult.names(), nextResult.games, nextResult.winRate(), nextResult.winRateLow(),
+                    nextResult.winRateHigh(), nextResult.averageWinTime(), nextResult.averageDeaths(),
+                    nextResult.averageFloor(), nextResult.abandoned, nextResult.errors));
+            }
+        }
+    }
+
+    private static void printTable(final List<PartyResult> ranked, final int top) {
+
+        System.out.println(String.format("%6s  %-50s %8s %17s %6s %6s", "Rank", "Party", "Win %", "95% CI",
+            "Deaths", "Floor"));
+        for(int rank = 0; rank < ranked.size(); rank++) {
+            if(rank == top && ranked.size() > 2 * top) {
+                System.out.println(String.format("%6s", "..."));
+                rank = ranked.size() - top;
+            }
+            final PartyResult nextResult = ranked.get(rank);
+            System.out.println(String.format("%6d  %-50s %7.2f%% [%6.2f%%, %6.2f%%] %6.2f %6.2f",
+                rank + 1, nextResult.names(), 100 * nextResult.winRate(), 100 * nextResult.winRateLow(),
+                100 * nextResult.winRateHigh(), nextResult.averageDeaths(), nextResult.averageFloor()));
+        }
+
+    }
+
+    /**
+     * Plays every game for one party, then records the party's totals in the checkpoint.
+     */
+    @SuppressWarnings("serial")
+    private static final class PartyTask extends RecursiveAction {
+
+        private final List<Hero> heroes;
+
+        private final long firstSeed;
+
+        private final long endSeed;
+
+        private final Policy policy;
+
+        private final int maxTurns;
+
+        /** Where to append the party's totals. */
+        private final Writer checkpoint;
+
+        /** Every finished party's totals, by key. */
+        private final Map<String, PartyResult> finished;
+
+        /** Counts the games played. */
+        private final ProgressReporter progress;
+
+        PartyTask(final List<Hero> heroes, final long firstSeed, final long endSeed, final Policy policy,
+                final int maxTurns, final Writer checkpoint, final Map<String, PartyResult> finished,
+                final ProgressReporter progress) {
+            this.heroes = heroes;
+            this.firstSeed = firstSeed;
+            this.endSeed = endSeed;
+            this.policy = policy;
+            this.maxTurns = maxTurns;
+            this.checkpoint = checkpoint;
+            this.finished = finished;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+
+            final PartyResult result = new GameRange(heroes, firstSeed, endSeed, policy, maxTurns, progress).compute();
+
+            //Flushed line by line, so that everything recorded survives the sweep being killed.
+            try {
+                synchronized(checkpoint) {
+                    checkpoint.write(result.toCsv());
+                    checkpoint.write('\n');
+                    checkpoint.flush();
+                }
+            } catch (IOException x) {
+                throw new UncheckedIOException(x);
+            }
+            finished.put(result.key(), result);
+
+        }
+
+    }
+
+    /**
+     * Plays one party's games for a range of seeds through the Simulator, and adds up how they went.
+     */
+    @SuppressWarnings("serial")
+    private static final class GameRange extends SeedRange<PartyResult> {
+
+        private final List<Hero> heroes;
+
+        private final Policy policy;
+
+        private final int maxTurns;
+
+        /** Counts the games played. */
+        private final ProgressReporter progress;
+
+        GameRange(final List<Hero> heroes, final long firstSeed, final long endSeed, final Policy policy,
+                final int maxTurns, final ProgressReporter progress) {
+            super(firstSeed, endSeed, SIMULATOR_SPLIT_SIZE);
+            this.heroes = heroes;
+            this.policy = policy;
+            this.maxTurns = maxTurns;
+            this.progress = progress;
+        }
+
+        @Override
+        protected GameRange split(final long from, final long to) {
+            return new GameRange(heroes, from, to, policy, maxTurns, progress);
+        }
+
+        @Override
+        protected PartyResult play() {
+            final PartyResult result = new PartyResult(heroes);
+            for(long seed = firstSeed; seed < endSeed; seed++) {
+                result.add(Simulator.play(seed, heroes, policy, maxTurns));
+            }
+            progress.addGames(endSeed - firstSeed);
+            return result;
+        }
+
+        @Override
+        protected PartyResult merge(final PartyResult first, final PartyResult second) {
+            return first.merge(second);
+        }
+
+    }
+
+}
@@ -0,0 +1,26 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.logic.HeadlessGame;
+
+import java.util.SplittableRandom;
+
+/**
+ * <p>Decides what a simulated player sends next. The game's last reply lists the buttons on offer, and the player's
+ * state says everything else there is to know.</p>
+ *
+ * <p>One Policy plays every game in a simulation, from every thread at once, so implementations must be thread-safe;
+ * the simplest way is to keep no state at all. Custom policies are loaded by class name and need a public no-argument
+ * constructor.</p>
+ *
+ * @author Codelizard
+ */
+public interface Policy {
+
+    /**
+     * @param game The game being played.
+     * @param random Random number generator for the policy's own choices, seeded from the game's seed.
+     * @return The message to send next. Any text is allowed, just as it is from a real player.
+     */
+    String choose(HeadlessGame game, SplittableRandom random);
+
+}
@@ -0,0 +1,85 @@
+package net.codelizard.hoc.simulation;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Prints a progress line to standard error at a fixed interval while a simulation runs, from a daemon thread so that
+ * it never keeps the JVM alive. Also counts the games played, for reports that give a rate. Safe to call from any
+ * thread.
+ *
+ * @author Codelizard
+ */
+final class ProgressReporter implements AutoCloseable {
+
+    /** When the reporter was made, in {@link System#nanoTime()} terms. */
+    private final long startTime = System.nanoTime();
+
+    /** Games played so far. */
+    private final LongAdder games = new LongAdder();
+
+    /** Runs the reports. */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param name What's being run, for the thread's name, such as {@code "Simulation"}.
+     */
+    ProgressReporter(final String name) {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "HoC-" + name + "-Progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts printing reports.
+     * @param intervalSeconds Seconds between reports, and before the first one.
+     * @param report Makes each report's line.
+     */
+    void start(final long intervalSeconds, final Supplier<String> report) {
+        executor.scheduleAtFixedRate(() -> System.err.println(report.get()), intervalSeconds, intervalSeconds,
+            TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param count How many more games have been played.
+     */
+    void addGames(final long count) {
+        games.add(count);
+    }
+
+    /**
+     * @return How many games have been played.
+     */
+    long getGameCount() {
+        return games.sum();
+    }
+
+    /**
+     * @return Seconds since the reporter was made.
+     */
+    double elapsedSeconds() {
+        return (System.nanoTime() - startTime) / 1e9;
+    }
+
+    /**
+     * @return The games played so far and how many were played per second, for a report.
+     */
+    String gameRate() {
+        final long played = games.sum();
+        return String.format("games=%d games/s=%.0f", played, played / elapsedSeconds());
+    }
+
+    /**
+     * Stops printing reports. The counts can still be read afterwards.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+}
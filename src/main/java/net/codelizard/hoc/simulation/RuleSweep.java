@@ -0,0 +1,431 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.Rule;
+import net.codelizard.hoc.logic.RuleSet;
+import net.codelizard.hoc.logic.RuleSetBuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Plays the same seeded games under many different {@link RuleSet}s and tabulates how often the party wins under
+ * each, with 95% Wilson score intervals, to show how sensitive the game's balance is to each of its numbers.</p>
+ *
+ * <pre>java net.codelizard.hoc.simulation.RuleSweep --vary NAME=from:to[:step],... [--games N] [--seed S]
+ *     [--policy random|cautious|&lt;class&gt;] [--threads T] [--batch B] [--max-turns M] [--rules NAME=V,...]
+ *     [--samples K] [--sample-seed S] [--output rule-sweep.csv]</pre>
+ *
+ * <p>Each {@code --vary} rule takes every value from {@code from} to {@code to} in steps of {@code step}, 1 if not
+ * given, while the rest keep their values from {@code --rules}, which start out standard. By default every
+ * combination of the varied values is played; {@code --samples K} plays K combinations picked at random instead, for
+ * when the grid is too big. Every combination plays the games for seeds {@code S} to {@code S + N - 1}, so the
+ * differences between them come from the rules rather than the dungeons.</p>
+ *
+ * <p>Combinations are played side by side and each one's games are split between threads too. With the cautious
+ * policy games are played in {@link GameBatch}es, which honour rule sets just as the Simulator does but are many
+ * times faster. The table is written to the output file and printed.</p>
+ *
+ * @author Codelizard
+ */
+public final class RuleSweep {
+
+    /** How to run the sweep. */
+    private static final String USAGE = "RuleSweep --vary NAME=from:to[:step],... [--games N] [--seed S]"
+        + " [--policy random|cautious|<class>] [--threads T] [--batch B] [--max-turns M] [--rules NAME=V,...]"
+        + " [--samples K] [--sample-seed S] [--output file]";
+
+    /** Games each combination plays if no count is given. */
+    private static final long DEFAULT_GAMES = 10_000;
+
+    /** Seed used if none is given. Fixed, so that sweeps run on different days can be compared. */
+    private static final long DEFAULT_SEED = 1;
+
+    /** Table written if no other file is given. */
+    private static final String DEFAULT_OUTPUT = "rule-sweep.csv";
+
+    /** Games played side by side in one batch if no other number is given. */
+    private static final int DEFAULT_BATCH = 4_096;
+
+    /** Seconds between progress reports. */
+    private static final long PROGRESS_INTERVAL = 10;
+
+    private RuleSweep() {}
+
+    /**
+     * @param args The options described in the class documentation.
+     * @throws Exception If the content can't be loaded or the results can't be written.
+     */
+    public static void main(final String... args) throws Exception {
+
+        final Options options = new Options(USAGE, args);
+        final long games = options.getLong("games", DEFAULT_GAMES);
+        final long firstSeed = options.getLong("seed", DEFAULT_SEED);
+        final Policy policy = StandardPolicy.forName(options.get("policy", StandardPolicy.CAUTIOUS.name()));
+        final int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final int batchSize = options.getInt("batch", DEFAULT_BATCH);
+        final int maxTurns = options.getInt("max-turns", Simulator.DEFAULT_MAX_TURNS);
+        final RuleSet base = new RuleSetBuilder().set(options.get("rules", "")).build();
+        final int samples = options.getInt("samples", 0);
+        final long sampleSeed = options.getLong("sample-seed", DEFAULT_SEED);
+        final Path output = Paths.get(options.get("output", DEFAULT_OUTPUT));
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batches must hold at least one game, not " + batchSize + ".");
+        }
+
+        final List<Axis> axes = parseAxes(options.get("vary", null));
+        final List<Point> points = samples > 0 ? samplePoints(base, axes, samples, sampleSeed)
+            : gridPoints(base, axes);
+
+        HeroesOfCordan.loadContent();
+        final BatchContent content = policy == StandardPolicy.CAUTIOUS
+            ? new BatchContent(HeroesOfCordan.getContent()) : null;
+
+        System.out.println(points.size() + " combinations of " + axes.size() + " rules. Playing " + games
+            + " games each from seed " + firstSeed + " with " + policy + " on " + threads + " threads.");
+
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final AtomicInteger finished = new AtomicInteger();
+        final ProgressReporter progress = new ProgressReporter("RuleSweep");
+        progress.start(PROGRESS_INTERVAL, () -> "combinations=" + finished.get() + "/" + points.size() + " "
+            + progress.gameRate());
+
+        try {
+
+            final List<GameRange> tasks = new ArrayList<>();
+            for(Point nextPoint : points) {
+                nextPoint.stats = new SimulationStats(threads);
+                tasks.add(new GameRange(content, policy, nextPoint, firstSeed, firstSeed + games, batchSize,
+                    maxTurns, progress, finished));
+            }
+
+            //Every combination is forked at once, so threads that finish early steal from the ones still running.
+            for(GameRange nextTask : tasks) {
+                pool.execute(nextTask);
+            }
+            for(GameRange nextTask : tasks) {
+                nextTask.join();
+            }
+
+        } finally {
+            progress.close();
+            pool.shutdown();
+        }
+
+        writeTable(axes, points, output);
+        printTable(axes, points);
+
+        System.out.println(String.format("Played %d games in %.1f s. Table written to %s.",
+            progress.getGameCount(), progress.elapsedSeconds(), output));
+
+    }
+
+    /**
+     * @param vary Comma-separated {@code NAME=from:to[:step]} ranges.
+     * @return The rules to vary and the values each one takes, in the order given.
+     * @throws IllegalArgumentException If no ranges are given or one is malformed.
+     */
+    private static List<Axis> parseAxes(final String vary) {
+
+        if(vary == null || vary.trim().isEmpty()) {
+            throw new IllegalArgumentException("Give the rules to vary with --vary. Usage: " + USAGE);
+        }
+
+        final List<Axis> axes = new ArrayList<>();
+        for(String nextRange : vary.split(",")) {
+
+            final int equals = nextRange.indexOf('=');
+            final String[] bounds = nextRange.substring(equals + 1).split(":");
+            if(equals < 0 || bounds.length < 2 || bounds.length > 3) {
+                throw new IllegalArgumentException("Expected NAME=from:to[:step], not \"" + nextRange + "\".");
+            }
+
+            final Rule rule = Rule.forName(nextRange.substring(0, equals));
+            final int from;
+            final int to;
+            final int step;
+            try {
+                from = Integer.parseInt(bounds[0].trim());
+                to = Integer.parseInt(bounds[1].trim());
+                step = bounds.length == 3 ? Integer.parseInt(bounds[2].trim()) : 1;
+            } catch (NumberFormatException x) {
+                throw new IllegalArgumentException("Expected NAME=from:to[:step], not \"" + nextRange + "\".", x);
+            }
+            if(step < 1 || to < from) {
+                throw new IllegalArgumentException(rule + " must run upwards in steps of at least 1, not \""
+                    + nextRange + "\".");
+            }
+            for(Axis nextAxis : axes) {
+                if(nextAxis.rule == rule) {
+                    throw new IllegalArgumentException(rule + " is varied more than once.");
+                }
+            }
+
+            final int[] values = new int[(to - from) / step + 1];
+            for(int index = 0; index < values.length; index++) {
+                values[index] = from + index * step;
+            }
+            axes.add(new Axis(rule, values));
+
+        }
+        return axes;
+
+    }
+
+    /**
+     * @param base The rules that aren't varied.
+     * @param axes The rules to vary.
+     * @return Every combination of the varied values, with the last rule changing fastest.
+     * @throws IllegalArgumentException If a combination breaks a rule's minimum.
+     */
+    private static List<Point> gridPoints(final RuleSet base, final List<Axis> axes) {
+
+        final List<Point> points = new ArrayList<>();
+        final int[] indices = new int[axes.size()];
+        while(true) {
+
+            final int[] values = new int[axes.size()];
+            for(int axis = 0; axis < axes.size(); axis++) {
+                values[axis] = axes.get(axis).values[indices[axis]];
+            }
+            points.add(new Point(base, axes, values));
+
+            //Count up like an odometer, and stop once the first rule rolls over.
+            int axis = axes.size() - 1;
+            while(axis >= 0 && ++indices[axis] == axes.get(axis).values.length) {
+                indices[axis] = 0;
+                axis--;
+            }
+            if(axis < 0) {
+                return points;
+            }
+
+        }
+
+    }
+
+    /**
+     * @param base The rules that aren't varied.
+     * @param axes The rules to vary.
+     * @param samples How many combinations to pick.
+     * @param sampleSeed The seed the combinations are picked from.
+     * @return Up to {@code samples} different combinations of the varied values, picked uniformly at random. Fewer if
+     * the grid doesn't have that many.
+     * @throws IllegalArgumentException If a combination breaks a rule's minimum.
+     */
+    private static List<Point> samplePoints(final RuleSet base, final List<Axis> axes, final int samples,
+            final long sampleSeed) {
+
+        long gridSize = 1;
+        for(Axis nextAxis : axes) {
+            gridSize = Math.min(Long.MAX_VALUE / nextAxis.values.length, gridSize) * nextAxis.values.length;
+        }
+        if(gridSize <= samples) {
+            return gridPoints(base, axes);
+        }
+
+        final SplittableRandom random = new SplittableRandom(sampleSeed);
+        final Set<RuleSet> picked = new LinkedHashSet<>();
+        final List<Point> points = new ArrayList<>();
+        while(points.size() < samples) {
+            final int[] values = new int[axes.size()];
+            for(int axis = 0; axis < axes.size(); axis++) {
+                values[axis] = axes.get(axis).values[random.nextInt(axes.get(axis).values.length)];
+            }
+            final Point point = new Point(base, axes, values);
+            if(picked.add(point.rules)) {
+                points.add(point);
+            }
+        }
+        return points;
+
+    }
+
+    private static void writeTable(final List<Axis> axes, final List<Point> points, final Path output)
+            throws IOException {
+        try(PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+
+            final StringBuilder header = new StringBuilder();
+            for(Axis nextAxis : axes) {
+                header.append(nextAxis.rule.name().toLowerCase()).append(',');
+            }
+            writer.println(header + "games,wins,win_rate,win_rate_low,win_rate_high,win_time_remaining,deaths,floor,"
+                + "abandoned,errors");
+
+            for(Point nextPoint : points) {
+                final StringBuilder line = new StringBuilder();
+                for(int nextValue : nextPoint.values) {
+                    line.append(nextValue).append(',');
+                }
+                final SimulationStats stats = nextPoint.stats;
+                final long gameCount = stats.getGameCount();
+                final long winCount = stats.getWinCount();
+                writer.println(line + String.format("%d,%d,%.5f,%.5f,%.5f,%.2f,%.3f,%.3f,%d,%d",
+                    gameCount, winCount, gameCount == 0 ? 0.0 : (double) winCount / gameCount,
+                    PartyResult.wilsonLow(winCount, gameCount), PartyResult.wilsonHigh(winCount, gameCount),
+                    stats.averageWinTime(), stats.averageDeaths(), stats.averageFloor(), stats.getAbandonedCount(),
+                    stats.getErrorCount()));
+            }
+
+        }
+    }
+
+    private static void printTable(final List<Axis> axes, final List<Point> points) {
+
+        final StringBuilder header = new StringBuilder();
+        for(Axis nextAxis : axes) {
+            header.append(String.format("%" + nextAxis.width() + "s ", nextAxis.rule.name()));
+        }
+        System.out.println(header + String.format(" %8s %17s %9s %6s %6s", "Win %", "95% CI", "Time left", "Deaths",
+            "Floor"));
+
+        for(Point nextPoint : points) {
+            final StringBuilder line = new StringBuilder();
+            for(int axis = 0; axis < axes.size(); axis++) {
+                line.append(String.format("%" + axes.get(axis).width() + "d ", nextPoint.values[axis]));
+            }
+            final SimulationStats stats = nextPoint.stats;
+            final long gameCount = stats.getGameCount();
+            final long winCount = stats.getWinCount();
+            System.out.println(line + String.format(" %7.2f%% [%6.2f%%, %6.2f%%] %9.2f %6.2f %6.2f",
+                gameCount == 0 ? 0.0 : 100.0 * winCount / gameCount, 100 * PartyResult.wilsonLow(winCount, gameCount),
+                100 * PartyResult.wilsonHigh(winCount, gameCount), stats.averageWinTime(), stats.averageDeaths(),
+                stats.averageFloor()));
+        }
+
+    }
+
+    /**
+     * A rule being varied, and the values it takes.
+     */
+    private static final class Axis {
+
+        final Rule rule;
+
+        final int[] values;
+
+        Axis(final Rule rule, final int[] values) {
+            this.rule = rule;
+            this.values = values;
+        }
+
+        /**
+         * @return How wide the rule's column is in the printed table.
+         */
+        int width() {
+            return Math.max(rule.name().length(), String.valueOf(values[values.length - 1]).length());
+        }
+
+    }
+
+    /**
+     * One combination of the varied values, and the totals of the games played with it.
+     */
+    private static final class Point {
+
+        /** The value of each varied rule, in the order they were given. */
+        final int[] values;
+
+        /** The rules the games are played by. */
+        final RuleSet rules;
+
+        /** Totals of the games played so far. Set just before the games start. */
+        SimulationStats stats;
+
+        /**
+         * @throws IllegalArgumentException If a value breaks its rule's minimum.
+         */
+        Point(final RuleSet base, final List<Axis> axes, final int[] values) {
+            final RuleSetBuilder builder = new RuleSetBuilder(base);
+            for(int axis = 0; axis < axes.size(); axis++) {
+                builder.set(axes.get(axis).rule, values[axis]);
+            }
+            this.values = values;
+            this.rules = builder.build();
+        }
+
+    }
+
+    /**
+     * Plays one combination's games for a range of seeds, in GameBatches or through the Simulator.
+     */
+    @SuppressWarnings("serial")
+    private static final class GameRange extends SeedRange<Void> {
+
+        /** The content flattened for batches, or {@code null} to play through the Simulator. */
+        private final BatchContent content;
+
+        private final Policy policy;
+
+        private final Point point;
+
+        private final int batchSize;
+
+        private final int maxTurns;
+
+        /** Counts the games played. */
+        private final ProgressReporter progress;
+
+        /** Combinations finished so far, counted by the range that covers all of a combination's games. */
+        private final AtomicInteger finished;
+
+        GameRange(final BatchContent content, final Policy policy, final Point point, final long firstSeed,
+                final long endSeed, final int batchSize, final int maxTurns, final ProgressReporter progress,
+                final AtomicInteger finished) {
+            super(firstSeed, endSeed, content == null ? SIMULATOR_SPLIT_SIZE : batchSize);
+            this.content = content;
+            this.policy = policy;
+            this.point = point;
+            this.batchSize = batchSize;
+            this.maxTurns = maxTurns;
+            this.progress = progress;
+            this.finished = finished;
+        }
+
+        @Override
+        protected Void compute() {
+            super.compute();
+            if(finished != null) {
+                finished.incrementAndGet();
+            }
+            return null;
+        }
+
+        @Override
+        protected GameRange split(final long from, final long to) {
+            return new GameRange(content, policy, point, from, to, batchSize, maxTurns, progress, null);
+        }
+
+        @Override
+        protected Void play() {
+
+            if(content != null) {
+                final GameBatch batch = new GameBatch(content, point.rules, (int) (endSeed - firstSeed), maxTurns);
+                batch.play(firstSeed, (int) (endSeed - firstSeed));
+                for(int game = 0; game < batch.size(); game++) {
+                    point.stats.record(batch.result(game));
+                }
+            } else {
+                for(long seed = firstSeed; seed < endSeed; seed++) {
+                    point.stats.record(Simulator.play(seed, null, policy, maxTurns, point.rules));
+                }
+            }
+            progress.addGames(endSeed - firstSeed);
+            return null;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+package net.codelizard.hoc.simulation;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays the games for a range of seeds by fork/join, splitting the range in half until it's small enough to play
+ * directly, then merging the halves' results. Subclasses say how to play a small range, how to make a task for part
+ * of the range, and, if they return results, how to merge two of them.
+ *
+ * @param <R> What playing a range produces, or {@link Void} if the games are recorded as they're played.
+ * @author Codelizard
+ */
+@SuppressWarnings("serial")
+abstract class SeedRange<R> extends RecursiveTask<R> {
+
+    /** Most games a task plays directly through {@link Simulator#play} before it splits its range. */
+    static final long SIMULATOR_SPLIT_SIZE = 256;
+
+    /** The first seed in the range. */
+    protected final long firstSeed;
+
+    /** The seed just past the end of the range. */
+    protected final long endSeed;
+
+    /** Most games played directly before the range is split. */
+    private final long splitSize;
+
+    /**
+     * @param firstSeed The first seed in the range.
+     * @param endSeed The seed just past the end of the range.
+     * @param splitSize Most games played directly before the range is split. At least 1.
+     */
+    SeedRange(final long firstSeed, final long endSeed, final long splitSize) {
+        this.firstSeed = firstSeed;
+        this.endSeed = endSeed;
+        this.splitSize = splitSize;
+    }
+
+    @Override
+    protected R compute() {
+
+        if(endSeed - firstSeed > splitSize) {
+            final long middle = firstSeed + (endSeed - firstSeed) / 2;
+            final SeedRange<R> second = split(middle, endSeed);
+            second.fork();
+            final R first = split(firstSeed, middle).compute();
+            return merge(first, second.join());
+        }
+
+        return play();
+
+    }
+
+    /**
+     * @param from The first seed of the part.
+     * @param to The seed just past the end of the part.
+     * @return A task that plays part of this one's range the same way.
+     */
+    protected abstract SeedRange<R> split(long from, long to);
+
+    /**
+     * Plays every game in the range, which is small enough to play directly.
+     * @return What the games produced.
+     */
+    protected abstract R play();
+
+    /**
+     * @param first What the first half of the range produced.
+     * @param second What the second half produced.
+     * @return What the whole range produced. By default, the first half's result, for tasks that return nothing.
+     */
+    protected R merge(final R first, final R second) {
+        return first;
+    }
+
+}
@@ -0,0 +1,161 @@
+package net.codelizard.hoc.simulation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals over the games of a simulation. Every game's result is recorded from whichever thread played it, so
+ * all operations are safe to call from any thread.
+ *
+ * @author Codelizard
+ */
+public final class SimulationStats {
+
+    /** When the simulation started, in {@link System#nanoTime()} terms. */
+    private final long startTime = System.nanoTime();
+
+    /** How many threads are playing games. */
+    private final int threads;
+
+    /** Games played. */
+    private final LongAdder games = new LongAdder();
+
+    /** Games the party won. */
+    private final LongAdder wins = new LongAdder();
+
+    /** Games given up on at the turn limit. */
+    private final LongAdder abandoned = new LongAdder();
+
+    /** Games that threw an exception. */
+    private final LongAdder errors = new LongAdder();
+
+    /** Total Time left at the end of games the party won. */
+    private final LongAdder winTimeRemaining = new LongAdder();
+
+    /** Total wipes over every game. */
+    private final LongAdder deaths = new LongAdder();
+
+    /** Total floors reached over every game. */
+    private final LongAdder floors = new LongAdder();
+
+    /** Total messages played over every game. */
+    private final LongAdder turns = new LongAdder();
+
+    /**
+     * @param threads How many threads are playing games, for the per-core rate.
+     */
+    public SimulationStats(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param result The result of a game that just finished.
+     */
+    public void record(final GameResult result) {
+
+        games.increment();
+        deaths.add(result.deaths);
+        floors.add(result.floor);
+        turns.add(result.turns);
+
+        switch(result.outcome) {
+            case WON:
+                wins.increment();
+                winTimeRemaining.add(result.timeRemaining);
+                break;
+            case ABANDONED:
+                abandoned.increment();
+                break;
+            case ERROR:
+                errors.increment();
+                break;
+            default:
+                break;
+        }
+
+    }
+
+    /**
+     * @return How many games have been played.
+     */
+    public long getGameCount() {
+        return games.sum();
+    }
+
+    /**
+     * @return How many games the party won.
+     */
+    public long getWinCount() {
+        return wins.sum();
+    }
+
+    /**
+     * @return How many games were given up on at the turn limit.
+     */
+    public long getAbandonedCount() {
+        return abandoned.sum();
+    }
+
+    /**
+     * @return How many games threw an exception.
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * @return Average Time left at the end of a win.
+     */
+    public double averageWinTime() {
+        return average(winTimeRemaining.sum(), getWinCount());
+    }
+
+    /**
+     * @return Average wipes per game.
+     */
+    public double averageDeaths() {
+        return average(deaths.sum(), getGameCount());
+    }
+
+    /**
+     * @return Average floor reached per game.
+     */
+    public double averageFloor() {
+        return average(floors.sum(), getGameCount());
+    }
+
+    /**
+     * @return Games played per second since the simulation started.
+     */
+    public double gamesPerSecond() {
+        final long elapsed = System.nanoTime() - startTime;
+        return elapsed == 0 ? 0 : getGameCount() * 1e9 / elapsed;
+    }
+
+    /**
+     * @return A one-line summary of the simulation so far, for logging.
+     */
+    public String metricsReport() {
+
+        final long gameCount = getGameCount();
+        final long winCount = getWinCount();
+        final double perSecond = gamesPerSecond();
+
+        return String.format(
+            "games=%d wins=%d win-rate=%.2f%% win-time-left=%.2f deaths=%.3f floor=%.2f turns=%.1f abandoned=%d"
+                + " errors=%d games/s=%.0f games/s/core=%.0f",
+            gameCount, winCount, percent(winCount, gameCount), average(winTimeRemaining.sum(), winCount),
+            average(deaths.sum(), gameCount), average(floors.sum(), gameCount), average(turns.sum(), gameCount),
+            abandoned.sum(), getErrorCount(), perSecond, perSecond / threads
+        );
+
+    }
+
+    private static double percent(final long count, final long total) {
+        return total == 0 ? 0 : 100.0 * count / total;
+    }
+
+    private static double average(final long sum, final long count) {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+}
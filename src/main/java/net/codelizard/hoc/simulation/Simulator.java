@@ -0,0 +1,212 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.content.Hero;
+import net.codelizard.hoc.logic.HeadlessGame;
+import net.codelizard.hoc.logic.Rule;
+import net.codelizard.hoc.logic.RuleSet;
+import net.codelizard.hoc.logic.RuleSetBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Plays large numbers of games with a {@link Policy} standing in for the player, to see how the content and rules
+ * hold up: how often parties win, with how much time to spare, how often they're wiped out and how far they get.</p>
+ *
+ * <pre>java net.codelizard.hoc.simulation.Simulator [--games N] [--seed S] [--policy random|cautious|&lt;class&gt;]
+ *     [--threads T] [--max-turns M] [--rules NAME=V,...] [--output results.csv]</pre>
+ *
+ * <p>Game {@code i} is played from seed {@code S + i}, and so is every choice the policy makes in it, so any game can
+ * be replayed on its own from the seed in its CSV line. Games are shared out between threads by fork/join, and the CSV
+ * lines are written in whatever order the games finish. {@code --rules} changes any of the {@link Rule}s the games
+ * are played by, such as {@code --rules TIME_LIMIT=200,LONG_REST_TIME_COST=10}.</p>
+ *
+ * @author Codelizard
+ */
+public final class Simulator {
+
+    /** How to run the simulator. */
+    private static final String USAGE = "Simulator [--games N] [--seed S] [--policy random|cautious|<class>]"
+        + " [--threads T] [--max-turns M] [--rules NAME=V,...] [--output results.csv]";
+
+    /** Games played if no count is given. */
+    private static final long DEFAULT_GAMES = 100_000;
+
+    /**
+     * Turns after which a game is abandoned. A party runs out of time long before this however it plays, unless the
+     * policy keeps sending messages that don't do anything.
+     */
+    public static final int DEFAULT_MAX_TURNS = 5_000;
+
+    /** Seconds between progress reports. */
+    private static final long PROGRESS_INTERVAL = 5;
+
+    /** Whether or not an error has been reported yet. Only the first is, since they're usually all the same. */
+    private static final AtomicBoolean ERROR_REPORTED = new AtomicBoolean();
+
+    private Simulator() {}
+
+    /**
+     * @param args The options described in the class documentation.
+     * @throws Exception If the content can't be loaded or the results can't be written.
+     */
+    public static void main(final String... args) throws Exception {
+
+        final Options options = new Options(USAGE, args);
+        final long games = options.getLong("games", DEFAULT_GAMES);
+        final long firstSeed = options.getLong("seed", System.nanoTime());
+        final Policy policy = StandardPolicy.forName(options.get("policy", StandardPolicy.CAUTIOUS.name()));
+        final int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final int maxTurns = options.getInt("max-turns", DEFAULT_MAX_TURNS);
+        final RuleSet rules = new RuleSetBuilder().set(options.get("rules", "")).build();
+        final String output = options.get("output", null);
+
+        HeroesOfCordan.loadContent();
+
+        final SimulationStats stats = new SimulationStats(threads);
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        final ProgressReporter progress = new ProgressReporter("Simulation");
+        progress.start(PROGRESS_INTERVAL, stats::metricsReport);
+
+        System.out.println("Playing " + games + " games from seed " + firstSeed + " with " + policy + " and "
+            + rules + " rules on " + threads + " threads.");
+
+        try(Writer writer = output == null ? null : Files.newBufferedWriter(Paths.get(output))) {
+            if(writer != null) {
+                writer.write(GameResult.CSV_HEADER);
+                writer.write('\n');
+            }
+            pool.invoke(new Batch(firstSeed, firstSeed + games, policy, maxTurns, rules, stats, writer));
+        } finally {
+            progress.close();
+            pool.shutdown();
+        }
+
+        System.out.println(stats.metricsReport());
+
+    }
+
+    /**
+     * Plays one game from start to finish.
+     * @param seed The seed for both the game and the policy's choices.
+     * @param heroes The party to play with, or {@code null} to choose one at random.
+     * @param policy Makes the player's choices.
+     * @param maxTurns Turns after which the game is abandoned.
+     * @return How the game ended.
+     */
+    public static GameResult play(final long seed, final List<Hero> heroes, final Policy policy, final int maxTurns) {
+        return play(seed, heroes, policy, maxTurns, RuleSet.STANDARD);
+    }
+
+    /**
+     * Plays one game from start to finish with different rules.
+     * @param seed The seed for both the game and the policy's choices.
+     * @param heroes The party to play with, or {@code null} to choose one at random.
+     * @param policy Makes the player's choices.
+     * @param maxTurns Turns after which the game is abandoned.
+     * @param rules The numbers to balance the game by.
+     * @return How the game ended.
+     */
+    public static GameResult play(final long seed, final List<Hero> heroes, final Policy policy, final int maxTurns,
+            final RuleSet rules) {
+
+        final SplittableRandom seeds = new SplittableRandom(seed);
+        final HeadlessGame game;
+        try {
+            game = new HeadlessGame(seeds.nextLong(), heroes, rules);
+        } catch (RuntimeException x) {
+            reportError(seed, x);
+            return new GameResult(seed, GameResult.Outcome.ERROR, 0, 0, 0, 0);
+        }
+
+        final SplittableRandom choices = seeds.split();
+        try {
+            while(!game.isOver() && game.getTurns() < maxTurns) {
+                game.play(policy.choose(game, choices));
+            }
+        } catch (RuntimeException x) {
+            reportError(seed, x);
+            return new GameResult(seed, GameResult.Outcome.ERROR, game.getFloor(), game.getTimeRemaining(),
+                game.getWipes(), game.getTurns());
+        }
+
+        return GameResult.of(seed, game);
+
+    }
+
+    private static void reportError(final long seed, final RuntimeException x) {
+        if(ERROR_REPORTED.compareAndSet(false, true)) {
+            System.err.println("Game with seed " + seed + " failed. Further errors are only counted.");
+            x.printStackTrace();
+        }
+    }
+
+    /**
+     * Plays the games for a range of seeds through {@link #play}.
+     */
+    @SuppressWarnings("serial")
+    private static final class Batch extends SeedRange<Void> {
+
+        private final Policy policy;
+
+        private final int maxTurns;
+
+        private final RuleSet rules;
+
+        private final SimulationStats stats;
+
+        /** Where to write each game's CSV line, or {@code null} not to. */
+        private final Writer writer;
+
+        Batch(final long firstSeed, final long endSeed, final Policy policy, final int maxTurns, final RuleSet rules,
+                final SimulationStats stats, final Writer writer) {
+            super(firstSeed, endSeed, SIMULATOR_SPLIT_SIZE);
+            this.policy = policy;
+            this.maxTurns = maxTurns;
+            this.rules = rules;
+            this.stats = stats;
+            this.writer = writer;
+        }
+
+        @Override
+        protected Batch split(final long from, final long to) {
+            return new Batch(from, to, policy, maxTurns, rules, stats, writer);
+        }
+
+        @Override
+        protected Void play() {
+
+            final StringBuilder csv = writer == null ? null : new StringBuilder();
+            for(long seed = firstSeed; seed < endSeed; seed++) {
+                final GameResult result = Simulator.play(seed, null, policy, maxTurns, rules);
+                stats.record(result);
+                if(csv != null) {
+                    result.appendCsv(csv);
+                }
+            }
+
+            //One write per batch rather than per game, so threads rarely wait on each other.
+            if(csv != null) {
+                try {
+                    synchronized(writer) {
+                        writer.append(csv);
+                    }
+                } catch (IOException x) {
+                    throw new UncheckedIOException(x);
+                }
+            }
+            return null;
+
+        }
+
+    }
+
+}
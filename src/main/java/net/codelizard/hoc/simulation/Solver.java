@@ -0,0 +1,420 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.content.ContentIndex;
+import net.codelizard.hoc.content.ResourceType;
+import net.codelizard.hoc.logic.GameState;
+import net.codelizard.hoc.logic.HeadlessGame;
+import net.codelizard.hoc.logic.PlayerState;
+import net.codelizard.hoc.logic.PlayerStateCodec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Searches for the best way through one seeded game, to measure how winnable the content is with perfect play
+ * rather than with whatever a {@link Policy} happens to do.</p>
+ *
+ * <pre>java net.codelizard.hoc.simulation.Solver --seed S [--iterations N] [--threads T] [--memory MB]
+ *     [--exploration C] [--policy random|cautious|&lt;class&gt;] [--max-turns M]</pre>
+ *
+ * <p>Seeds are the same as the Simulator's, so a game from a simulation's CSV can be solved to see whether it could
+ * have been won. The game is deterministic given its seed and the messages sent, so the search is a Monte Carlo tree
+ * search over the choices made on the ACTION, EVENT and MONSTER screens; everywhere else, and once a game leaves the
+ * tree, the policy plays on. Wins score between 0.5 and 1 depending on the Time left, and losses below 0.5 depending on
+ * how far the party got and how quickly.</p>
+ *
+ * <p>Every thread searches the same {@link TranspositionTable}, keyed by a hash of the encoded player state and the
+ * turn number, and no more of it is built than {@code --memory} allows. The best game found is replayed from its
+ * messages to check it, then printed in full.</p>
+ *
+ * @author Codelizard
+ */
+public final class Solver {
+
+    /** How to run the solver. */
+    private static final String USAGE = "Solver --seed S [--iterations N] [--threads T] [--memory MB] [--exploration C]"
+        + " [--policy random|cautious|<class>] [--max-turns M]";
+
+    /** Games played if no count is given. */
+    private static final long DEFAULT_ITERATIONS = 100_000;
+
+    /** Memory for the transposition table if no other amount is given, in megabytes. */
+    private static final long DEFAULT_MEMORY = 256;
+
+    /** How much the search favours trying moves over repeating the best ones, if no other weight is given. */
+    private static final double DEFAULT_EXPLORATION = 0.3;
+
+    /** The screens the search chooses moves on. */
+    private static final Set<GameState> SEARCHED_STATES = EnumSet.of(GameState.ACTION, GameState.EVENT,
+        GameState.MONSTER);
+
+    /** Seconds between progress reports. */
+    private static final long PROGRESS_INTERVAL = 5;
+
+    /** The seed, as given in a simulation's CSV. */
+    private final long seed;
+
+    /** The seed the game itself is played from. */
+    private final long gameSeed;
+
+    /** Plays the moves the search doesn't choose. */
+    private final Policy policy;
+
+    private final int maxTurns;
+
+    /** How much the search favours trying moves over repeating the best ones. */
+    private final double exploration;
+
+    private final TranspositionTable table;
+
+    /** Encodes states to be hashed. */
+    private final PlayerStateCodec codec;
+
+    /** The floor with the final boss. */
+    private final int finalFloor;
+
+    /** Games played so far. */
+    private final LongAdder iterations = new LongAdder();
+
+    /** The best game found so far. */
+    private final AtomicReference<Solution> best = new AtomicReference<>();
+
+    /**
+     * @param seed The seed of the game to solve, as given in a simulation's CSV.
+     * @param policy Plays the moves the search doesn't choose.
+     * @param maxTurns Turns after which a game is given up on.
+     * @param exploration How much the search favours trying moves over repeating the best ones.
+     * @param table The table to search in.
+     */
+    public Solver(final long seed, final Policy policy, final int maxTurns, final double exploration,
+            final TranspositionTable table) {
+
+        this.seed = seed;
+        this.gameSeed = new SplittableRandom(seed).nextLong();
+        this.policy = policy;
+        this.maxTurns = maxTurns;
+        this.exploration = exploration;
+        this.table = table;
+        this.codec = new PlayerStateCodec(HeroesOfCordan.getContent());
+
+        final ContentIndex index = HeroesOfCordan.getContent().getIndex();
+        int floors = 0;
+        while(index.boss(floors + 1) != null) {
+            floors++;
+        }
+        this.finalFloor = Math.max(1, floors);
+
+    }
+
+    /**
+     * @param args The options described in the class documentation.
+     * @throws Exception If the content can't be loaded or the search is interrupted.
+     */
+    public static void main(final String... args) throws Exception {
+
+        final Options options = new Options(USAGE, args);
+        if(options.get("seed", null) == null) {
+            throw new IllegalArgumentException("Usage: " + USAGE);
+        }
+        final long seed = options.getLong("seed", 0);
+        final long iterations = options.getLong("iterations", DEFAULT_ITERATIONS);
+        final int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final long memory = options.getLong("memory", DEFAULT_MEMORY);
+        final double exploration = Double.parseDouble(options.get("exploration",
+            String.valueOf(DEFAULT_EXPLORATION)));
+        final Policy policy = StandardPolicy.forName(options.get("policy", StandardPolicy.CAUTIOUS.name()));
+        final int maxTurns = options.getInt("max-turns", Simulator.DEFAULT_MAX_TURNS);
+
+        HeroesOfCordan.loadContent();
+
+        final GameResult baseline = Simulator.play(seed, null, policy, maxTurns);
+        System.out.println("Solving seed " + seed + " with " + iterations + " games on " + threads
+            + " threads. " + policy + " alone: " + describe(baseline) + ".");
+
+        final TranspositionTable table = new TranspositionTable(memory * 1024 * 1024);
+        final Solver solver = new Solver(seed, policy, maxTurns, exploration, table);
+        final long startTime = System.nanoTime();
+        final Solution solution = solver.solve(iterations, threads);
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.println(String.format("Searched %d games in %.1f s (%.0f games/s). %s",
+            solver.getIterationCount(), seconds, solver.getIterationCount() / seconds, table.metricsReport()));
+        System.out.println("Best found: " + describe(solution.result) + String.format(", reward %.4f.",
+            solution.reward));
+
+        //The search and the replay must agree, or the game isn't as deterministic as the search assumes.
+        final GameResult replayed = solver.replay(solution.moves);
+        if(replayed.outcome != solution.result.outcome || replayed.timeRemaining != solution.result.timeRemaining
+                || replayed.floor != solution.result.floor) {
+            throw new IllegalStateException("Replaying the best game gave a different result: " + describe(replayed)
+                + ".");
+        }
+
+        for(int turn = 0; turn < solution.moves.size(); turn++) {
+            System.out.println(String.format("%4d  %s", turn + 1, solution.moves.get(turn)));
+        }
+
+    }
+
+    /**
+     * Searches for the best game.
+     * @param games How many games to play in the search.
+     * @param threads How many threads to search with.
+     * @return The best game found.
+     * @throws InterruptedException If interrupted while waiting for the search to finish.
+     * @throws ExecutionException If the game threw an exception during the search.
+     */
+    public Solution solve(final long games, final int threads) throws InterruptedException, ExecutionException {
+
+        final AtomicLong remaining = new AtomicLong(games);
+        final SplittableRandom random = new SplittableRandom(seed);
+        final List<Callable<Void>> searchers = new ArrayList<>();
+        for(int thread = 0; thread < threads; thread++) {
+            final SplittableRandom threadRandom = random.split();
+            searchers.add(() -> {
+                while(remaining.getAndDecrement() > 0) {
+                    iterate(threadRandom);
+                }
+                return null;
+            });
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+            runnable -> new Thread(runnable, "HoC-Solver-" + threadCount.incrementAndGet()));
+        final ProgressReporter progress = new ProgressReporter("Solver");
+        progress.start(PROGRESS_INTERVAL, () -> "games=" + getIterationCount() + " best="
+            + (best.get() == null ? "none" : describe(best.get().result)) + " " + table.metricsReport());
+
+        try {
+            for(Future<Void> nextSearcher : executor.invokeAll(searchers)) {
+                nextSearcher.get();
+            }
+        } finally {
+            progress.close();
+            executor.shutdownNow();
+        }
+
+        return best.get();
+
+    }
+
+    /**
+     * @return How many games the search has played.
+     */
+    public long getIterationCount() {
+        return iterations.sum();
+    }
+
+    /**
+     * Plays a game by sending the given messages.
+     * @param moves Moves as recorded in a {@link Solution}.
+     * @return How the game ended.
+     */
+    public GameResult replay(final List<String> moves) {
+        final HeadlessGame game = new HeadlessGame(gameSeed);
+        for(String nextMove : moves) {
+            game.play(nextMove.substring(nextMove.indexOf(": ") + 2));
+        }
+        return GameResult.of(seed, game);
+    }
+
+    /**
+     * Plays one game: down the tree choosing moves by UCT, adding one new position, then on to the end with the
+     * policy. The reward is then added to every move chosen in the tree.
+     */
+    private void iterate(final SplittableRandom random) {
+
+        final HeadlessGame game = new HeadlessGame(gameSeed);
+        final List<String> moves = new ArrayList<>();
+        final List<TranspositionTable.Node> path = new ArrayList<>();
+        final List<Integer> pathMoves = new ArrayList<>();
+
+        boolean inTree = true;
+        double furthest = 0;
+        int furthestTime = 0;
+        while(!game.isOver() && game.getTurns() < maxTurns) {
+
+            //How quickly the party got as far as it did is what separates one loss from another.
+            final double progress = progress(game);
+            if(progress > furthest) {
+                furthest = progress;
+                furthestTime = game.getTimeRemaining();
+            }
+
+            final GameState gameState = game.getState().getGameState();
+            final List<String> options = game.getResponse().getResponses();
+            if(!inTree || !SEARCHED_STATES.contains(gameState) || options.isEmpty()) {
+                play(game, policy.choose(game, random), moves);
+                continue;
+            }
+
+            final byte[] encoded = codec.encode(game.getState());
+            final TranspositionTable.Node node = table.get(hash(encoded, game.getTurns()), options);
+            if(node == null) {
+                inTree = false;
+                continue;
+            }
+
+            final int move = select(node, random);
+            final boolean newPosition = node.visits.getAndIncrement() == 0;
+            node.moveVisits.incrementAndGet(move);
+            path.add(node);
+            pathMoves.add(move);
+            play(game, node.moves.get(move), moves);
+
+            //A move that changes nothing only uses up turns, so it's never tried again.
+            if(game.getState().getGameState() == gameState && move < Long.SIZE
+                    && Arrays.equals(encoded, codec.encode(game.getState()))) {
+                final long bit = 1L << move;
+                node.wasted.getAndUpdate(wasted -> wasted | bit);
+            }
+
+            if(newPosition) {
+                inTree = false;
+            }
+
+        }
+
+        final double reward = reward(game, furthest, furthestTime);
+        final long scaledReward = Math.round(reward * TranspositionTable.REWARD_SCALE);
+        for(int step = 0; step < path.size(); step++) {
+            path.get(step).moveRewards.addAndGet(pathMoves.get(step), scaledReward);
+        }
+        iterations.increment();
+
+        Solution current = best.get();
+        while(current == null || reward > current.reward) {
+            final Solution found = new Solution(GameResult.of(seed, game), reward,
+                Collections.unmodifiableList(moves));
+            if(best.compareAndSet(current, found)) {
+                break;
+            }
+            current = best.get();
+        }
+
+    }
+
+    /**
+     * Chooses a move by UCT: the best average reward so far, plus a bonus for moves that haven't been tried much.
+     * Untried moves come first, in random order so that threads spread out.
+     */
+    private int select(final TranspositionTable.Node node, final SplittableRandom random) {
+
+        final long wasted = node.wasted.get();
+        final double logVisits = Math.log(Math.max(1, node.visits.get()));
+
+        int chosen = 0;
+        double chosenScore = Double.NEGATIVE_INFINITY;
+        for(int move = 0; move < node.moves.size(); move++) {
+
+            if(move < Long.SIZE && (wasted & 1L << move) != 0) {
+                continue;
+            }
+
+            final int visits = node.moveVisits.get(move);
+            final double score;
+            if(visits == 0) {
+                score = Double.MAX_VALUE * random.nextDouble();
+            } else {
+                score = node.moveRewards.get(move) / (double) TranspositionTable.REWARD_SCALE / visits
+                    + exploration * Math.sqrt(logVisits / visits);
+            }
+            if(score > chosenScore) {
+                chosen = move;
+                chosenScore = score;
+            }
+
+        }
+        return chosen;
+
+    }
+
+    /**
+     * @return Between 0.5 and 1 for a win, more with more Time left. Below 0.5 for a loss: mostly for how far the
+     * party got, and partly for how much Time it had left when it got there.
+     */
+    private double reward(final HeadlessGame game, final double furthest, final int furthestTime) {
+
+        final int timeMax = Math.max(1, game.getState().getResourceMax(ResourceType.TIME));
+        if(game.isWon()) {
+            return 0.5 + 0.5 * Math.max(0, game.getTimeRemaining()) / timeMax;
+        }
+        return 0.49 * (0.8 * furthest + 0.2 * Math.max(0, furthestTime) / timeMax);
+
+    }
+
+    /**
+     * @return How far through the dungeon the party is, from 0 at the entrance to 1 when it can fight the final boss.
+     */
+    private double progress(final HeadlessGame game) {
+        final PlayerState state = game.getState();
+        final double kills = Math.min(1.0, state.getKills() / (double) Math.max(1, state.getRequiredKills()));
+        return Math.max(0, Math.min(1, (game.getFloor() - 1 + kills) / finalFloor));
+    }
+
+    private static void play(final HeadlessGame game, final String move, final List<String> moves) {
+        moves.add(game.getState().getGameState() + ": " + move);
+        game.play(move);
+    }
+
+    /**
+     * @return A 64-bit hash of an encoded state and the turn it was reached on. The turn matters because each turn is
+     * played with its own seed.
+     */
+    private static long hash(final byte[] encoded, final int turn) {
+
+        //FNV-1a, then a final mix so that the turn spreads into every bit.
+        long hash = 0xcbf29ce484222325L;
+        for(byte nextByte : encoded) {
+            hash = (hash ^ (nextByte & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= turn * 0x9e3779b97f4a7c15L;
+        hash = (hash ^ hash >>> 33) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ hash >>> 33) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ hash >>> 33;
+
+    }
+
+    private static String describe(final GameResult result) {
+        return result.outcome.label + " on floor " + result.floor + " with " + result.timeRemaining + " Time left";
+    }
+
+    /**
+     * The best game found by a search.
+     */
+    public static final class Solution {
+
+        /** How the game ended. */
+        public final GameResult result;
+
+        /** The search's score for the game. */
+        public final double reward;
+
+        /** Every message sent, each prefixed with the screen it was sent from, as in {@code "ACTION: Charge Ahead"}. */
+        public final List<String> moves;
+
+        Solution(final GameResult result, final double reward, final List<String> moves) {
+            this.result = result;
+            this.reward = reward;
+            this.moves = moves;
+        }
+
+    }
+
+}
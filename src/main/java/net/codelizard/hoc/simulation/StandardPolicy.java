@@ -0,0 +1,197 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.content.ContentIndex;
+import net.codelizard.hoc.content.Obstacle;
+import net.codelizard.hoc.content.ResourceType;
+import net.codelizard.hoc.logic.GameState;
+import net.codelizard.hoc.logic.HeadlessGame;
+import net.codelizard.hoc.logic.PlayerCommand;
+import net.codelizard.hoc.logic.PlayerState;
+import net.codelizard.hoc.logic.Rule;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * The policies that come with the simulator.
+ *
+ * @author Codelizard
+ */
+public enum StandardPolicy implements Policy {
+
+    /** Presses a random button every turn. A baseline: anything that plays worse than this is broken. */
+    RANDOM() {
+
+        @Override
+        public String choose(final HeadlessGame game, final SplittableRandom random) {
+            final List<String> options = game.getResponse().getResponses();
+            return options.isEmpty() ? FREE_TEXT : options.get(random.nextInt(options.size()));
+        }
+
+    },
+
+    /**
+     * Plays the way a careful new player would: heals when hurt, rests when drained, charges when it can spare the
+     * Physical, fights the boss as soon as it can, and pays for events and monsters with whatever leaves it the most,
+     * keeping Health and then Time for last.
+     */
+    CAUTIOUS() {
+
+        @Override
+        public String choose(final HeadlessGame game, final SplittableRandom random) {
+
+            final List<String> options = game.getResponse().getResponses();
+            if(options.isEmpty()) {
+                return FREE_TEXT;
+            }
+
+            final PlayerState state = game.getState();
+            switch(state.getGameState()) {
+                case ACTION:
+                    return chooseAction(state, options);
+                case EVENT:
+                case MONSTER:
+                    return chooseResource(state, options);
+                default:
+                    return options.get(0);
+            }
+
+        }
+
+    };
+
+    /** Sent when the game isn't offering any buttons. */
+    private static final String FREE_TEXT = "OK.";
+
+    /** Below this fraction of its maximum Health, the cautious party heals. */
+    static final double HEAL_HEALTH = 0.8;
+
+    /** The ways to heal, best first. */
+    private static final List<String> HEALING_BUTTONS = Arrays.asList(
+        "action.mass_cure", "action.cure", "action.long_rest"
+    );
+
+    /** With at least this fraction of its maximum Physical, the cautious party charges rather than walks. */
+    static final double CHARGE_PHYSICAL = 0.25;
+
+    /** Once it's missing this fraction of its other resources, the cautious party takes a short rest. */
+    static final double SHORT_REST_MISSING = 0.5;
+
+    /**
+     * @param name A standard policy's name, in any case, or the name of a class implementing Policy.
+     * @return The policy.
+     * @throws IllegalArgumentException If there's no such policy.
+     */
+    public static Policy forName(final String name) {
+
+        for(StandardPolicy nextPolicy : values()) {
+            if(nextPolicy.name().equalsIgnoreCase(name)) {
+                return nextPolicy;
+            }
+        }
+
+        try {
+            return (Policy) Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException x) {
+            throw new IllegalArgumentException("Unknown policy \"" + name + "\".", x);
+        }
+
+    }
+
+    private static String chooseAction(final PlayerState state, final List<String> options) {
+
+        //Every button on offer, by the key of the button it is.
+        final Map<String, String> offered = new HashMap<>();
+        for(String nextOption : options) {
+            offered.put(HeroesOfCordan.getContent().getIndex()
+                .button(GameState.ACTION, ContentIndex.buttonKey(nextOption)), nextOption);
+        }
+
+        //Charging costs less Time than walking, as long as there's Physical to spare.
+        final boolean plentyOfPhysical = state.getResourceCount(ResourceType.PHYSICAL)
+            >= CHARGE_PHYSICAL * state.getResourceMax(ResourceType.PHYSICAL);
+
+        //Dramatic Entry is offered with any Physical left, but needs more than it costs to do anything.
+        if(plentyOfPhysical
+                && state.getResourceCount(ResourceType.PHYSICAL) > state.getRules().get(Rule.BOSS_CHARGE_PHYSICAL_COST)
+                && offered.containsKey("action.boss_charge")) {
+            return offered.get("action.boss_charge");
+        } else if(offered.containsKey("action.boss")) {
+            return offered.get("action.boss");
+        }
+
+        //Healing with Divine is far quicker than resting.
+        if(state.getResourceCount(ResourceType.HEALTH) < HEAL_HEALTH * state.getResourceMax(ResourceType.HEALTH)) {
+            for(String nextButton : HEALING_BUTTONS) {
+                if(offered.containsKey(nextButton)) {
+                    return offered.get(nextButton);
+                }
+            }
+        }
+
+        int missing = 0;
+        int maximum = 0;
+        for(ResourceType nextType : ResourceType.SHORT_REST_RESOURCES) {
+            missing += Math.max(0, state.getResourceMax(nextType) - state.getResourceCount(nextType));
+            maximum += state.getResourceMax(nextType);
+        }
+        if(offered.containsKey("action.short_rest") && missing > 0 && missing >= SHORT_REST_MISSING * maximum) {
+            return offered.get("action.short_rest");
+        }
+
+        if(plentyOfPhysical && offered.containsKey("action.charge")) {
+            return offered.get("action.charge");
+        } else if(offered.containsKey("action.fight")) {
+            return offered.get("action.fight");
+        }
+
+        return options.get(0);
+
+    }
+
+    private static String chooseResource(final PlayerState state, final List<String> options) {
+
+        final Obstacle obstacle = state.getGameState() == GameState.MONSTER
+            ? state.upcomingMonster()
+            : state.upcomingEvent();
+
+        String best = null;
+        int bestPreference = -1;
+        int bestLeft = Integer.MIN_VALUE;
+        for(String nextOption : options) {
+
+            final ResourceType type = PlayerCommand.parse(nextOption).getResourceType();
+            if(type == null) {
+                continue;
+            }
+
+            //Spend whatever leaves the most behind, but keep Health for when nothing else will do and Time for last.
+            final int left = state.getResourceCount(type) - obstacle.cost(type, state);
+            final int preference;
+            if(!type.canAlwaysSpend) {
+                preference = 3;
+            } else if(type == ResourceType.HEALTH && left > 0) {
+                preference = 2;
+            } else if(type == ResourceType.TIME) {
+                preference = 1;
+            } else {
+                preference = 0;
+            }
+
+            if(preference > bestPreference || preference == bestPreference && left > bestLeft) {
+                best = nextOption;
+                bestPreference = preference;
+                bestLeft = left;
+            }
+
+        }
+
+        return best != null ? best : options.get(0);
+
+    }
+
+}
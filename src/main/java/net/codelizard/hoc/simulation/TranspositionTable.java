@@ -0,0 +1,153 @@
+package net.codelizard.hoc.simulation;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>The {@link Solver}'s search tree, shared by all of its threads. Positions are found by a 64-bit hash of the game
+ * state rather than by the moves that led to them, so two move orders that end up in the same place share what's
+ * been learned about it.</p>
+ *
+ * <p>The table never holds more than roughly its memory budget. Once that's used up, no more positions are added and
+ * the search carries on refining the ones it already has. All operations are safe to call from any thread.</p>
+ *
+ * @author Codelizard
+ */
+public final class TranspositionTable {
+
+    /** Scale of the fixed-point rewards held by nodes, which are between 0 and 1. */
+    static final long REWARD_SCALE = 1_000_000;
+
+    /** Rough size of a node with no moves, including its map entry and boxed key. */
+    private static final long NODE_BYTES = 200;
+
+    /** Rough size of each of a node's moves. */
+    private static final long MOVE_BYTES = 16;
+
+    /** Positions, by state hash. */
+    private final ConcurrentHashMap<Long, Node> nodes = new ConcurrentHashMap<>();
+
+    /** The most memory the nodes may take up, in bytes. */
+    private final long budget;
+
+    /** Roughly how much memory the nodes take up, in bytes. */
+    private final AtomicLong used = new AtomicLong();
+
+    /** Lookups that found the position. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Lookups that added the position. */
+    private final LongAdder misses = new LongAdder();
+
+    /** Lookups that couldn't add the position because the table was full. */
+    private final LongAdder refusals = new LongAdder();
+
+    /**
+     * @param budget The most memory the table may take up, in bytes.
+     * @throws IllegalArgumentException If the budget isn't positive.
+     */
+    public TranspositionTable(final long budget) {
+        if(budget < 1) {
+            throw new IllegalArgumentException("Transposition table budget must be positive, not " + budget + ".");
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * Finds a position, adding it if it's new and there's room.
+     * @param hash The position's state hash.
+     * @param moves The moves that can be made from the position, used if it has to be added.
+     * @return The position's node, or {@code null} if it's new and the table is full.
+     */
+    Node get(final long hash, final List<String> moves) {
+
+        final Node found = nodes.get(hash);
+        if(found != null) {
+            hits.increment();
+            return found;
+        }
+
+        final long size = NODE_BYTES + MOVE_BYTES * moves.size();
+        if(used.addAndGet(size) > budget) {
+            used.addAndGet(-size);
+            refusals.increment();
+            return null;
+        }
+
+        misses.increment();
+        final Node added = new Node(moves);
+        final Node raced = nodes.putIfAbsent(hash, added);
+        if(raced != null) {
+            used.addAndGet(-size);
+            return raced;
+        }
+        return added;
+
+    }
+
+    /**
+     * @return How many positions are in the table.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return Roughly how much memory the table takes up, in bytes.
+     */
+    public long usedBytes() {
+        return used.get();
+    }
+
+    /**
+     * @return A one-line summary of the table's metrics, for logging.
+     */
+    public String metricsReport() {
+
+        final long hitCount = hits.sum();
+        final long lookups = hitCount + misses.sum() + refusals.sum();
+
+        return String.format(
+            "positions=%d memory=%.1f/%.1fMB hits=%d misses=%d refusals=%d hit-rate=%.1f%%",
+            size(), used.get() / 1048576.0, budget / 1048576.0, hitCount, misses.sum(), refusals.sum(),
+            lookups == 0 ? 100.0 : 100.0 * hitCount / lookups
+        );
+
+    }
+
+    /**
+     * A position in the search: the moves that can be made from it, and how well each has done so far. Visits are
+     * counted when a move is chosen and rewards added once the game is over, so threads searching at the same time see
+     * each other's unfinished visits as losses and spread out over different moves.
+     */
+    static final class Node {
+
+        /** The messages that can be sent from this position. */
+        final List<String> moves;
+
+        /** Visits to this position. */
+        final AtomicInteger visits = new AtomicInteger();
+
+        /** Visits to each move. */
+        final AtomicIntegerArray moveVisits;
+
+        /** Total reward from each move, in units of 1 / {@link #REWARD_SCALE}. */
+        final AtomicLongArray moveRewards;
+
+        /** Moves found to leave the game exactly as it was, which are never worth making. One bit each. */
+        final AtomicLong wasted = new AtomicLong();
+
+        Node(final List<String> moves) {
+            this.moves = moves;
+            this.moveVisits = new AtomicIntegerArray(moves.size());
+            this.moveRewards = new AtomicLongArray(moves.size());
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package net.codelizard.hoc.logic;
+
+import net.codelizard.hoc.GameResponse;
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.persistence.ActionJournal;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how ActionProcessor behaves when an action can't be journaled.
+ *
+ * @author Codelizard
+ */
+public class ActionProcessorTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void loadContent() throws IOException {
+        HeroesOfCordan.loadContent();
+    }
+
+    @Test
+    public void firstContactThatCannotBeJournaledLeavesNoSession() throws IOException {
+
+        final ActionJournal journal = new ActionJournal(folder.getRoot().toPath(), 1);
+        journal.close();
+
+        final ActionProcessor processor = new ActionProcessor();
+        processor.setJournal(journal);
+        final PlayerAction action = new PlayerActionBuilder()
+            .setInputText("/start")
+            .setServiceName("Test")
+            .setServiceUserId("1")
+            .setUserFirstName("Player 1")
+            .build();
+
+        final GameResponse failed = processor.handleAction(action);
+        assertTrue(failed.getText().startsWith(HeroesOfCordan.getStaticMessage("error.journal")));
+        assertNull(processor.getSessions().get(action.getSessionKey()));
+
+        //Once the journal works again, the player is welcomed as if the failed message had never arrived.
+        processor.setJournal(null);
+        final GameResponse welcome = new ActionProcessor().handleAction(action);
+        assertEquals(welcome.getText(), processor.handleAction(action).getText());
+
+    }
+
+}
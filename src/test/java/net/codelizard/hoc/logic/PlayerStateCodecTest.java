@@ -0,0 +1,197 @@
+package net.codelizard.hoc.logic;
+
+import net.codelizard.hoc.GameResponse;
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.content.GameContent;
+import net.codelizard.hoc.content.ResourceType;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plays seeded games and, whenever one reaches a state worth saving, checks that the state survives being encoded
+ * and decoded: the copy encodes to the same bytes, looks the same, and plays on exactly as the original does.
+ *
+ * @author Codelizard
+ */
+public class PlayerStateCodecTest {
+
+    /** The game states every round trip must have been tried from at least once. */
+    private static final Set<GameState> CHECKED_STATES = EnumSet.of(GameState.ACTION, GameState.EVENT,
+        GameState.MONSTER, GameState.LOOT_CONSUMABLE, GameState.LOOT_EQUIPMENT, GameState.TRANSMUTE);
+
+    /** Number of games to play. */
+    private static final int GAMES = 40;
+
+    /** Most turns to play in each game. */
+    private static final int TURNS = 400;
+
+    /** Number of turns the original and its copy are played side by side after each round trip. */
+    private static final int MIRRORED_TURNS = 8;
+
+    private static GameContent content;
+
+    private static PlayerStateCodec codec;
+
+    @BeforeClass
+    public static void loadContent() throws IOException {
+        HeroesOfCordan.loadContent();
+        content = HeroesOfCordan.getContent();
+        codec = new PlayerStateCodec(content);
+    }
+
+    @Test
+    public void decodedStatesEncodeAndPlayTheSame() throws IOException {
+
+        final Map<GameState, Integer> checked = new EnumMap<>(GameState.class);
+        for(int game = 0; game < GAMES; game++) {
+
+            final Random random = new Random(game);
+            final Session original = new Session(random.nextLong());
+            String text = nextText(random, original.response);
+            for(int turn = 0; turn < TURNS && !original.isOver(); turn++) {
+
+                final GameState gameState = original.state.getGameState();
+                if(CHECKED_STATES.contains(gameState)) {
+                    checkRoundTrip(original, random, text);
+                    final Integer count = checked.get(gameState);
+                    checked.put(gameState, count == null ? 1 : count + 1);
+                }
+
+                original.play(random.nextLong(), text);
+                text = nextText(random, original.response);
+
+            }
+
+        }
+
+        for(GameState nextState : CHECKED_STATES) {
+            assertTrue("No game reached " + nextState, checked.containsKey(nextState));
+        }
+
+    }
+
+    /**
+     * Encodes and decodes the original's state, checks the copy against it, then plays both side by side for a few
+     * turns. The original is left as far along as the copy was played.
+     * @param original The game to copy.
+     * @param random Chooses the turn seeds and messages for the turns played side by side.
+     * @param text The message both are sent first.
+     */
+    private static void checkRoundTrip(final Session original, final Random random, String text) throws IOException {
+
+        final byte[] encoded = codec.encode(original.state);
+        final Session copy = new Session(codec.decode(encoded), original.response);
+        assertArrayEquals(encoded, codec.encode(copy.state));
+        assertSameState(original.state, copy.state);
+
+        for(int turn = 0; turn < MIRRORED_TURNS && !original.isOver(); turn++) {
+            final long turnSeed = random.nextLong();
+            original.play(turnSeed, text);
+            copy.play(turnSeed, text);
+            assertEquals(original.response.getText(), copy.response.getText());
+            assertEquals(original.response.getResponses(), copy.response.getResponses());
+            assertArrayEquals(codec.encode(original.state), codec.encode(copy.state));
+            text = nextText(random, original.response);
+        }
+
+    }
+
+    private static void assertSameState(final PlayerState expected, final PlayerState actual) {
+
+        assertSame(expected.getGameState(), actual.getGameState());
+        assertSame(expected.getReturnState(), actual.getReturnState());
+        assertEquals(expected.getFloorNumber(), actual.getFloorNumber());
+        assertEquals(expected.getParty().getLevel(), actual.getParty().getLevel());
+        assertEquals(expected.listHeroes(), actual.listHeroes());
+        assertEquals(expected.getHeroIndex(), actual.getHeroIndex());
+        assertEquals(expected.getKills(), actual.getKills());
+        assertEquals(expected.isFightingBoss(), actual.isFightingBoss());
+        assertEquals(expected.isLootAwarded(), actual.isLootAwarded());
+        assertEquals(expected.getJournalSequence(), actual.getJournalSequence());
+        assertEquals(expected.getContentVersion(), actual.getContentVersion());
+
+        //Cards come back as the content's own instances, not look-alikes.
+        assertSame(expected.getTransmuteResult(), actual.getTransmuteResult());
+        assertSame(expected.upcomingEvent(), actual.upcomingEvent());
+        assertSame(expected.upcomingMonster(), actual.upcomingMonster());
+        assertSame(expected.upcomingConsumable(), actual.upcomingConsumable());
+        assertSame(expected.upcomingEquipment(), actual.upcomingEquipment());
+        assertEquals(expected.getEquipment(), actual.getEquipment());
+        assertEquals(expected.getConsumables(), actual.getConsumables());
+        assertEquals(expected.listItems(), actual.listItems());
+
+        for(ResourceType nextType : ResourceType.values()) {
+            assertEquals(nextType.name(), expected.getResourceCount(nextType), actual.getResourceCount(nextType));
+            assertEquals(nextType.name(), expected.getResourceMax(nextType), actual.getResourceMax(nextType));
+        }
+        assertEquals(expected.statusReport(), actual.statusReport());
+
+    }
+
+    private static String nextText(final Random random, final GameResponse response) {
+        final List<String> options = response.getResponses();
+        return options.isEmpty() ? "OK." : options.get(random.nextInt(options.size()));
+    }
+
+    /**
+     * A game played turn by turn from seeds chosen by the test, the way HeadlessGame plays one, so that two games can
+     * be sent the same turns.
+     */
+    private static final class Session {
+
+        private PlayerState state;
+
+        private GameResponse response;
+
+        Session(final long seed) {
+
+            state = new PlayerState();
+            state.useContent(content);
+            state.reseed(seed);
+            state.setParty(new Party(content.fourRandomHeroes(state.getRandom())));
+            state.calculateResources();
+            state.setGameState(GameState.ENTER_DUNGEON);
+
+            response = state.getGameState().enterState(state);
+
+        }
+
+        Session(final PlayerState state, final GameResponse response) {
+            this.state = state;
+            this.response = response;
+        }
+
+        void play(final long turnSeed, final String text) {
+
+            state.reseed(turnSeed);
+            final PlayerState newState = state.getGameState().update(state, PlayerCommand.parse(text));
+            if(newState != state) {
+                newState.reseed(turnSeed);
+                newState.useContent(content);
+                state = newState;
+            }
+            response = state.getGameState().enterState(state);
+
+        }
+
+        boolean isOver() {
+            return state.getGameState() == GameState.VICTORY || state.getGameState() == GameState.OUT_OF_TIME;
+        }
+
+    }
+
+}
@@ -0,0 +1,171 @@
+package net.codelizard.hoc.logic;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that every {@link SessionStore} backend behaves the way the interface says it should.
+ *
+ * @author Codelizard
+ */
+@RunWith(Parameterized.class)
+public class SessionStoreTest {
+
+    /** Size of the records used to make file-backed stores grow. */
+    private static final int LARGE_BYTES = 64 * 1024;
+
+    /** How many times the large record is rewritten. Enough to make the mmap store compact its file. */
+    private static final int REWRITES = 40;
+
+    private static final SessionKey FIRST = SessionKey.of("Conformance", "1");
+
+    private static final SessionKey SECOND = SessionKey.of("Conformance", "2");
+
+    private static final SessionKey OTHER_SERVICE = SessionKey.of("Other", "1");
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Iterable<Object[]> backends() {
+        return Arrays.asList(new Object[] {"memory"}, new Object[] {"mmap"}, new Object[] {"h2"});
+    }
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final String backend;
+
+    private SessionStore store;
+
+    public SessionStoreTest(final String backend) {
+        this.backend = backend;
+    }
+
+    @Before
+    public void openStore() throws IOException {
+        switch(backend) {
+            case "memory":
+                store = new InMemorySessionStore();
+                break;
+            case "mmap":
+                store = new MappedFileSessionStore(folder.getRoot().toPath().resolve("sessions.bin"));
+                break;
+            case "h2":
+                store = new H2SessionStore(folder.getRoot().toPath().resolve("sessions"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+    @After
+    public void closeStore() throws IOException {
+        store.close();
+    }
+
+    @Test
+    public void startsEmpty() throws IOException {
+        assertEquals(0, store.size());
+        assertTrue(store.keys().isEmpty());
+        assertNull(store.read(FIRST));
+    }
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+
+        writeThree();
+
+        assertArrayEquals(new byte[] {1, 2, 3}, store.read(FIRST));
+        assertArrayEquals(new byte[0], store.read(SECOND));
+        assertArrayEquals(new byte[] {9}, store.read(OTHER_SERVICE));
+        assertEquals(3, store.size());
+        assertEquals(new HashSet<>(Arrays.asList(FIRST, SECOND, OTHER_SERVICE)), new HashSet<>(store.keys()));
+
+    }
+
+    @Test
+    public void writingAgainReplacesTheRecord() throws IOException {
+
+        writeThree();
+        store.write(FIRST, new byte[] {4, 5});
+
+        assertArrayEquals(new byte[] {4, 5}, store.read(FIRST));
+        assertArrayEquals(new byte[] {9}, store.read(OTHER_SERVICE));
+        assertEquals(3, store.size());
+
+    }
+
+    @Test
+    public void keepsNoReferenceToItsArrays() throws IOException {
+
+        final byte[] written = {7};
+        store.write(SECOND, written);
+        written[0] = 8;
+        assertEquals(7, store.read(SECOND)[0]);
+
+        store.read(SECOND)[0] = 8;
+        assertEquals(7, store.read(SECOND)[0]);
+
+    }
+
+    @Test
+    public void removedSessionsAreGone() throws IOException {
+
+        writeThree();
+        store.remove(FIRST);
+        store.remove(SessionKey.of("Conformance", "missing"));
+
+        assertNull(store.read(FIRST));
+        assertEquals(2, store.size());
+        assertEquals(new HashSet<>(Arrays.asList(SECOND, OTHER_SERVICE)), new HashSet<>(store.keys()));
+
+        store.write(FIRST, new byte[] {6});
+        assertArrayEquals(new byte[] {6}, store.read(FIRST));
+
+    }
+
+    @Test
+    public void largeRecordsSurviveRewrites() throws IOException {
+
+        writeThree();
+        store.remove(SECOND);
+
+        final byte[] large = new byte[LARGE_BYTES];
+        for(int round = 0; round < REWRITES; round++) {
+            large[0] = (byte) round;
+            large[LARGE_BYTES - 1] = (byte) -round;
+            store.write(FIRST, large);
+        }
+
+        assertArrayEquals(large, store.read(FIRST));
+        assertArrayEquals(new byte[] {9}, store.read(OTHER_SERVICE));
+        assertNull(store.read(SECOND));
+        assertEquals(2, store.size());
+
+        if(store instanceof MappedFileSessionStore) {
+            //Without compaction the file would hold every rewrite.
+            assertTrue("The file should have been compacted",
+                ((MappedFileSessionStore) store).fileBytes() < (long) LARGE_BYTES * REWRITES / 2);
+        }
+
+    }
+
+    private void writeThree() throws IOException {
+        store.write(FIRST, new byte[] {1, 2, 3});
+        store.write(SECOND, new byte[0]);
+        store.write(OTHER_SERVICE, new byte[] {9});
+    }
+
+}
@@ -0,0 +1,385 @@
+package net.codelizard.hoc.persistence;
+
+import net.codelizard.hoc.GameResponse;
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.ActionProcessor;
+import net.codelizard.hoc.logic.InMemorySessionStore;
+import net.codelizard.hoc.logic.PlayerActionBuilder;
+import net.codelizard.hoc.logic.PlayerStateCodec;
+import net.codelizard.hoc.logic.SessionKey;
+import net.codelizard.hoc.logic.SessionRegistry;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Plays sessions with the journal running, then checks that recovery rebuilds exactly the same states from the
+ * snapshots and journal left behind, including after a crash tore the last record in half.
+ *
+ * @author Codelizard
+ */
+public class SessionPersistenceTest {
+
+    /** Number of players taking turns side by side. */
+    private static final int PLAYERS = 3;
+
+    /** Number of turns each player takes. */
+    private static final int TURNS = 40;
+
+    /** How often a player playing new games starts one, in turns. */
+    private static final int NEW_GAME_TURNS = 4;
+
+    /** Number of times the race between new games and snapshots is run. */
+    private static final int ROUNDS = 20;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static PlayerStateCodec codec;
+
+    @BeforeClass
+    public static void loadContent() throws IOException {
+        HeroesOfCordan.loadContent();
+        codec = new PlayerStateCodec(HeroesOfCordan.getContent());
+    }
+
+    @Test
+    public void recoversEverySessionFromTheJournal() throws Exception {
+
+        final Path directory = folder.getRoot().toPath();
+        final Map<SessionKey, byte[]> played = playSessions(directory, false);
+
+        final ActionProcessor recovered = new ActionProcessor();
+        try(SessionPersistence persistence = new SessionPersistence(directory, recovered, codec)) {
+            assertEquals(PLAYERS * TURNS, persistence.recover());
+        }
+        assertSameStates(played, recovered);
+
+    }
+
+    @Test
+    public void recoversFromASnapshotAndTheJournalAfterIt() throws Exception {
+
+        final Path directory = folder.getRoot().toPath();
+        final Map<SessionKey, byte[]> played = playSessions(directory, true);
+
+        final ActionProcessor recovered = new ActionProcessor();
+        try(SessionPersistence persistence = new SessionPersistence(directory, recovered, codec)) {
+            //Only the turns after the snapshot are replayed.
+            assertEquals(PLAYERS * (TURNS - TURNS / 2), persistence.recover());
+        }
+        assertSameStates(played, recovered);
+
+    }
+
+    @Test
+    public void cutsOffATornRecordAndReplaysTheRest() throws Exception {
+
+        final Path directory = folder.getRoot().toPath();
+        final SessionKey key = SessionKey.of("Test", "torn");
+        final List<byte[]> history = new ArrayList<>();
+
+        final ActionProcessor original = new ActionProcessor();
+        try(SessionPersistence persistence = new SessionPersistence(directory, original, codec)) {
+            persistence.recover();
+            final Random random = new Random(7);
+            String text = "/start";
+            for(int turn = 0; turn < TURNS; turn++) {
+                text = nextText(random, play(original, key, text));
+                history.add(codec.encode(original.getSessions().get(key)));
+            }
+        }
+
+        //A crash partway through writing the last record leaves only the start of its frame behind.
+        final Path segment = newestSegment(directory);
+        final long intactSize = Files.size(segment);
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(intactSize - 3);
+        }
+
+        final ActionProcessor recovered = new ActionProcessor();
+        try(SessionPersistence persistence = new SessionPersistence(directory, recovered, codec)) {
+            assertEquals(TURNS - 1, persistence.recover());
+            assertArrayEquals(history.get(TURNS - 2), codec.encode(recovered.getSessions().get(key)));
+            assertTrue("The torn frame should have been cut off", Files.size(segment) < intactSize - 3);
+
+            //The journal carries on after the damage, and what it records is recovered too.
+            play(recovered, key, "/start");
+            history.add(codec.encode(recovered.getSessions().get(key)));
+        }
+
+        final ActionProcessor recoveredAgain = new ActionProcessor();
+        try(SessionPersistence persistence = new SessionPersistence(directory, recoveredAgain, codec)) {
+            assertEquals(TURNS, persistence.recover());
+        }
+        assertArrayEquals(history.get(TURNS), codec.encode(recoveredAgain.getSessions().get(key)));
+
+    }
+
+    @Test
+    public void refusesToReplayAJournalInAnotherFormat() throws Exception {
+
+        final Path directory = folder.getRoot().toPath();
+        playSessions(directory, false);
+
+        //The format version is the byte after the magic number.
+        final Path segment = newestSegment(directory);
+        final byte[] bytes = Files.readAllBytes(segment);
+        bytes[4]++;
+        Files.write(segment, bytes);
+        assertRecoveryRefused(directory);
+
+    }
+
+    @Test
+    public void refusesToReplayAJournalWithoutAFormat() throws Exception {
+
+        final Path directory = folder.getRoot().toPath();
+        playSessions(directory, false);
+
+        //Segments used to start straight away with the first record.
+        final Path segment = newestSegment(directory);
+        final byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOfRange(bytes, 5, bytes.length));
+        assertRecoveryRefused(directory);
+
+    }
+
+    @Test
+    public void snapshotsTakenDuringNewGamesRecoverTheSameStates() throws Exception {
+
+        for(int round = 0; round < ROUNDS; round++) {
+
+            final Path directory = folder.newFolder().toPath();
+            final ActionProcessor processor = new ActionProcessor();
+            final ExecutorService players = Executors.newFixedThreadPool(PLAYERS);
+            try(SessionPersistence persistence = new SessionPersistence(directory, processor, codec)) {
+
+                persistence.recover();
+                final List<Future<?>> played = new ArrayList<>();
+                for(int player = 0; player < PLAYERS; player++) {
+                    final SessionKey key = key(player);
+                    final Random random = new Random(round * PLAYERS + player);
+                    played.add(players.submit(() -> playNewGames(processor, key, random)));
+                }
+
+                //Snapshots keep being taken for as long as anyone is playing, so they land in the middle of turns
+                //that replace a player's state.
+                while(!allDone(played)) {
+                    persistence.snapshot();
+                }
+                for(Future<?> nextPlayer : played) {
+                    nextPlayer.get();
+                }
+
+            } finally {
+                players.shutdown();
+            }
+
+            final Map<SessionKey, byte[]> expected = new HashMap<>();
+            for(int player = 0; player < PLAYERS; player++) {
+                expected.put(key(player), codec.encode(processor.getSessions().get(key(player))));
+            }
+
+            final ActionProcessor recovered = new ActionProcessor();
+            try(SessionPersistence persistence = new SessionPersistence(directory, recovered, codec)) {
+                persistence.recover();
+            }
+            assertSameStates(expected, recovered);
+
+        }
+
+    }
+
+    @Test
+    public void passivatedSessionsKeepWhatNewGamesEntered() throws Exception {
+
+        final Path directory = folder.getRoot().toPath();
+        //With room for only one session, every other player is passivated as soon as anyone takes a turn.
+        final SessionRegistry sessions = new SessionRegistry(1, new InMemorySessionStore(), codec);
+        final ActionProcessor processor = new ActionProcessor(sessions);
+        try(SessionPersistence persistence = new SessionPersistence(directory, processor, codec)) {
+
+            persistence.recover();
+            final Random random = new Random(3);
+            final String[] texts = new String[PLAYERS];
+            Arrays.fill(texts, "/start");
+            for(int turn = 1; turn <= TURNS; turn++) {
+                for(int player = 0; player < PLAYERS; player++) {
+                    texts[player] = newGameText(turn, random, play(processor, key(player), texts[player]));
+                }
+            }
+
+        }
+        assertTrue("Nothing was passivated", sessions.getEvictionCount() > 0);
+
+        //Looking each session up brings back whatever copy passivation left behind.
+        final Map<SessionKey, byte[]> played = new HashMap<>();
+        for(int player = 0; player < PLAYERS; player++) {
+            played.put(key(player), codec.encode(processor.getSessions().get(key(player))));
+        }
+
+        final ActionProcessor recovered = new ActionProcessor();
+        try(SessionPersistence persistence = new SessionPersistence(directory, recovered, codec)) {
+            assertEquals(PLAYERS * TURNS, persistence.recover());
+        }
+        assertSameStates(played, recovered);
+
+    }
+
+    /**
+     * Plays a session that keeps abandoning its game, alternating between {@code /start} and {@code /restart}, since
+     * those are the turns that replace a player's state instead of changing it.
+     * @param processor Plays the turns.
+     * @param key The player's session.
+     * @param random Chooses the buttons pressed in between.
+     * @return {@code null}, so that this can be submitted as a Callable.
+     */
+    private static Void playNewGames(final ActionProcessor processor, final SessionKey key, final Random random) {
+
+        String text = "/start";
+        for(int turn = 1; turn <= TURNS; turn++) {
+            text = newGameText(turn, random, play(processor, key, text));
+        }
+        return null;
+
+    }
+
+    /**
+     * @param turn The turn just played, counting from 1.
+     * @param random Chooses the button to press.
+     * @param response The reply to the turn just played.
+     * @return Every few turns {@code /start} or {@code /restart}, taking turns; otherwise one of the reply's buttons.
+     */
+    private static String newGameText(final int turn, final Random random, final GameResponse response) {
+        if(turn % NEW_GAME_TURNS != 0) {
+            return nextText(random, response);
+        }
+        return turn % (NEW_GAME_TURNS * 2) == 0 ? "/start" : "/restart";
+    }
+
+    private static boolean allDone(final List<Future<?>> futures) {
+        for(Future<?> nextFuture : futures) {
+            if(!nextFuture.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Plays every player's session with the journal running, then closes it.
+     * @param directory Where to keep the journal and snapshots.
+     * @param snapshotHalfway Whether or not to take a snapshot halfway through.
+     * @return Every player's final state, encoded.
+     */
+    private static Map<SessionKey, byte[]> playSessions(final Path directory, final boolean snapshotHalfway)
+            throws Exception {
+
+        final ActionProcessor processor = new ActionProcessor();
+        final Map<SessionKey, byte[]> played = new HashMap<>();
+        try(SessionPersistence persistence = new SessionPersistence(directory, processor, codec)) {
+
+            assertEquals(0, persistence.recover());
+
+            final Random random = new Random(1);
+            final String[] texts = new String[PLAYERS];
+            Arrays.fill(texts, "/start");
+            for(int turn = 0; turn < TURNS; turn++) {
+                if(snapshotHalfway && turn == TURNS / 2) {
+                    persistence.snapshot();
+                }
+                //Players take turns in between each other's, the way they do on a live server.
+                for(int player = 0; player < PLAYERS; player++) {
+                    texts[player] = nextText(random, play(processor, key(player), texts[player]));
+                }
+            }
+
+        }
+
+        for(int player = 0; player < PLAYERS; player++) {
+            played.put(key(player), codec.encode(processor.getSessions().get(key(player))));
+        }
+        return played;
+
+    }
+
+    private static void assertSameStates(final Map<SessionKey, byte[]> expected, final ActionProcessor recovered) {
+        assertEquals(expected.size(), recovered.getSessions().size());
+        for(Map.Entry<SessionKey, byte[]> nextEntry : expected.entrySet()) {
+            assertArrayEquals("State of " + nextEntry.getKey(), nextEntry.getValue(),
+                codec.encode(recovered.getSessions().get(nextEntry.getKey())));
+        }
+    }
+
+    private static void assertRecoveryRefused(final Path directory) throws IOException {
+
+        final ActionProcessor recovered = new ActionProcessor();
+        try(SessionPersistence persistence = new SessionPersistence(directory, recovered, codec)) {
+            persistence.recover();
+            fail("A journal in another format was replayed");
+        } catch (IOException x) {
+            assertEquals(0, recovered.getSessions().size());
+        }
+
+    }
+
+    private static Path newestSegment(final Path directory) throws IOException {
+
+        final List<Path> segments = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for(Path nextPath : stream) {
+                if(Files.size(nextPath) > 0) {
+                    segments.add(nextPath);
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments.get(segments.size() - 1);
+
+    }
+
+    private static SessionKey key(final int player) {
+        return SessionKey.of("Test", String.valueOf(player));
+    }
+
+    private static GameResponse play(final ActionProcessor processor, final SessionKey key, final String text) {
+        return processor.handleAction(new PlayerActionBuilder()
+            .setInputText(text)
+            .setServiceName(key.getServiceName())
+            .setServiceUserId(key.getServiceUserId())
+            .setUserFirstName("Player " + key.getServiceUserId())
+            .build()
+        );
+    }
+
+    private static String nextText(final Random random, final GameResponse response) {
+        final List<String> options = response.getResponses();
+        return options.isEmpty() ? "OK." : options.get(random.nextInt(options.size()));
+    }
+
+}
@@ -0,0 +1,91 @@
+package net.codelizard.hoc.simulation;
+
+import net.codelizard.hoc.HeroesOfCordan;
+import net.codelizard.hoc.logic.RuleSet;
+import net.codelizard.hoc.logic.RuleSetBuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Plays the same seeds through {@link GameBatch} and {@link Simulator#play} and checks that every game ends the same
+ * way. GameBatch works out turn seeds itself instead of asking a SplittableRandom for them, so this is also what
+ * notices if the JDK ever changes how SplittableRandom makes them.
+ *
+ * @author Codelizard
+ */
+public class GameBatchTest {
+
+    /** Number of seeds to play under each set of rules. */
+    private static final int GAMES = 200;
+
+    /** The first seed played. */
+    private static final long FIRST_SEED = 1;
+
+    private static BatchContent content;
+
+    @BeforeClass
+    public static void loadContent() throws IOException {
+        HeroesOfCordan.loadContent();
+        content = new BatchContent(HeroesOfCordan.getContent());
+    }
+
+    @Test
+    public void standardRulesPlayTheSame() {
+        assertSameGames(RuleSet.STANDARD, Simulator.DEFAULT_MAX_TURNS);
+    }
+
+    @Test
+    public void shortGamesAreAbandonedTheSame() {
+        assertSameGames(RuleSet.STANDARD, 60);
+    }
+
+    @Test
+    public void cheapRestsPlayTheSame() {
+        assertSameGames(rules("SHORT_REST_TIME_COST=1,LONG_REST_TIME_COST=2,TPK_TIME_COST=5"),
+            Simulator.DEFAULT_MAX_TURNS);
+    }
+
+    @Test
+    public void shortFloorsAndMoreHealthPlayTheSame() {
+        assertSameGames(rules("REQUIRED_KILLS=4,HEALTH_BASE=18,TIME_LIMIT=400"), Simulator.DEFAULT_MAX_TURNS);
+    }
+
+    @Test
+    public void expensiveAbilitiesPlayTheSame() {
+        assertSameGames(rules("TRANSMUTE_ARCANE_COST=3,CURE_DIVINE_COST=2,MASS_CURE_HEALTH_GAIN=8,"
+            + "SCOUT_STEALTH_COST=2,SECRET_DOOR_TIME_COST=0,CHARGE_PHYSICAL_COST=3"), Simulator.DEFAULT_MAX_TURNS);
+    }
+
+    @Test
+    public void harshTimePlaysTheSame() {
+        assertSameGames(rules("TIME_LIMIT=60,FIGHT_TIME_COST=5,BOSS_TIME_COST=8"), Simulator.DEFAULT_MAX_TURNS);
+    }
+
+    private static RuleSet rules(final String assignments) {
+        return new RuleSetBuilder().set(assignments).build();
+    }
+
+    private static void assertSameGames(final RuleSet rules, final int maxTurns) {
+
+        final GameBatch batch = new GameBatch(content, rules, GAMES, maxTurns);
+        batch.play(FIRST_SEED, GAMES);
+        assertEquals(GAMES, batch.size());
+
+        for(int game = 0; game < GAMES; game++) {
+            final GameResult expected = Simulator.play(FIRST_SEED + game, null, StandardPolicy.CAUTIOUS, maxTurns,
+                rules);
+            assertEquals("Seed " + (FIRST_SEED + game) + " with " + rules, csv(expected), csv(batch.result(game)));
+        }
+
+    }
+
+    private static String csv(final GameResult result) {
+        return result.appendCsv(new StringBuilder()).toString();
+    }
+
+}